@@ -0,0 +1,83 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import pixelitor.filters.util.FilterAction;
+import pixelitor.filters.util.Filters;
+import pixelitor.layers.BlendingMode;
+
+import java.util.Arrays;
+
+/**
+ * Runs the JMH benchmarks with the given JMH command-line options.
+ * By default, the filter benchmarks run for all the registered
+ * filters, the blending benchmarks run for all the layer blending modes,
+ * and the results are saved as JSON, so that the results
+ * of different releases can be compared.
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        var cmdOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+
+        if (!cmdOptions.getParameter(FilterBenchmark.FILTER_NAME_PARAM).hasValue()) {
+            options.param(FilterBenchmark.FILTER_NAME_PARAM, getFilterNames());
+        }
+        if (!cmdOptions.getParameter(BlendingModeBenchmark.MODE_PARAM).hasValue()) {
+            options.param(BlendingModeBenchmark.MODE_PARAM, getLayerModeNames());
+        }
+        if (!cmdOptions.getResult().hasValue() && !cmdOptions.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON).result(DEFAULT_RESULT_FILE);
+        }
+
+        new Runner(options.build()).run();
+
+        // the app's static initializers can start non-daemon threads
+        System.exit(0);
+    }
+
+    private static String[] getFilterNames() {
+        Benchmarks.init();
+
+        // some filters can be created only if there is an open image
+        Benchmarks.createComp(16, 16);
+
+        return Arrays.stream(Filters.getAllFilters())
+            .filter(action -> Benchmarks.canBenchmark(action.getFilter()))
+            .map(FilterAction::getName)
+            .toArray(String[]::new);
+    }
+
+    private static String[] getLayerModeNames() {
+        Benchmarks.init();
+        return Arrays.stream(BlendingMode.LAYER_MODES)
+            .map(BlendingMode::name)
+            .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.benchmarks;
+
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.filters.CommandLineFilter;
+import pixelitor.filters.Filter;
+import pixelitor.filters.RandomFilter;
+import pixelitor.filters.convolve.Convolve;
+import pixelitor.filters.gmic.GMICFilter;
+import pixelitor.filters.levels.Levels;
+import pixelitor.menus.MenuBar;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * The common setup of the benchmarks.
+ */
+final class Benchmarks {
+    private static boolean initialized = false;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Sets up the same environment as the unit tests
+     * and registers the filters of the menus.
+     */
+    static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        TestHelper.setUnitTestingMode(false);
+        MenuBar.registerFilters();
+        initialized = true;
+    }
+
+    /**
+     * Returns true if the given filter can be benchmarked, which isn't the case
+     * for the filters running external programs or other random filters.
+     */
+    static boolean canBenchmark(Filter filter) {
+        return !(filter instanceof GMICFilter)
+            && !(filter instanceof CommandLineFilter)
+            && !(filter instanceof RandomFilter);
+    }
+
+    /**
+     * Returns true if the given filter gets its settings only from its dialog.
+     * Such filters are randomized, which doesn't change the amount of work.
+     */
+    static boolean needsRandomSettings(Filter filter) {
+        return filter instanceof Levels || filter instanceof Convolve;
+    }
+
+    /**
+     * Creates a composition with a single image layer, which is
+     * also the active composition, because some filters use its canvas.
+     */
+    static Composition createComp(int width, int height) {
+        var comp = Composition.fromImage(createImage(width, height, 1, false), null, "Benchmark");
+        TestHelper.setupMockViewFor(comp);
+        return comp;
+    }
+
+    /**
+     * Creates a reproducible image with smooth gradients and noise, which
+     * is a more realistic input for the filters than a uniform image.
+     */
+    static BufferedImage createImage(int width, int height, long seed, boolean translucent) {
+        BufferedImage img = ImageUtils.createSysCompatibleImage(width, height);
+        int[] pixels = ImageUtils.getPixels(img);
+        Random rand = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = rand.nextInt(32);
+                int r = (255 * x / width + noise) & 0xFF;
+                int g = (255 * y / height + noise) & 0xFF;
+                int b = (r ^ g) & 0xFF;
+                int a = translucent ? (x + y) * 255 / (width + height) : 255;
+
+                // the system-compatible images are premultiplied
+                r = r * a / 255;
+                g = g * a / 255;
+                b = b * a / 255;
+                pixels[x + y * width] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pixelitor.Canvas;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.layers.BlendingMode;
+import pixelitor.layers.ImageLayer;
+import pixelitor.layers.Layer;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the composition of a translucent layer
+ * over an opaque one with the blending modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class BlendingModeBenchmark {
+    static {
+        // the blending modes can be initialized only after the texts
+        Benchmarks.init();
+    }
+
+    static final String MODE_PARAM = "mode";
+
+    // BenchmarkRunner leaves out the pass-through
+    // mode, which can be used only by layer groups
+    @Param
+    public BlendingMode mode;
+
+    @Param({"256", "1024", "2048"})
+    public int size;
+
+    private List<Layer> layers;
+    private Canvas canvas;
+
+    @Setup
+    public void setup() {
+        Composition comp = Benchmarks.createComp(size, size);
+        ImageLayer top = TestHelper.createImageLayer(comp,
+            Benchmarks.createImage(size, size, 2, true), "top");
+        top.setBlendingMode(mode, false, false);
+        comp.addLayerWithoutUI(top);
+
+        layers = List.of(comp.getLayer(0), top);
+        canvas = comp.getCanvas();
+    }
+
+    @Benchmark
+    public BufferedImage composite() {
+        return ImageUtils.calcComposite(layers, canvas);
+    }
+}
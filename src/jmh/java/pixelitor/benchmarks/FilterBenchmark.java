@@ -0,0 +1,73 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pixelitor.filters.Filter;
+import pixelitor.filters.gui.FilterWithGUI;
+import pixelitor.filters.util.Filters;
+import pixelitor.utils.Rnd;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the filters with their default settings.
+ * {@link BenchmarkRunner} replaces the filter names
+ * with the names of all the filters in {@link Filters}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+    // the same random settings are benchmarked in every run
+    private static final long SETTINGS_SEED = 42;
+
+    static final String FILTER_NAME_PARAM = "filterName";
+
+    @Param({"Gaussian Blur", "Kaleidoscope", "Levels"})
+    public String filterName;
+
+    @Param({"256", "1024", "2048"})
+    public int size;
+
+    private Filter filter;
+    private BufferedImage src;
+
+    @Setup
+    public void setup() {
+        Benchmarks.init();
+        src = Benchmarks.createComp(size, size)
+            .getActiveDrawableOrThrow()
+            .getFilterSourceImage();
+
+        // created after the composition, because some filters need an open image
+        filter = Filters.getFilterActionByName(filterName).getFilter();
+        if (Benchmarks.needsRandomSettings(filter)) {
+            Rnd.setSeed(SETTINGS_SEED);
+            ((FilterWithGUI) filter).randomize();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage filter() {
+        return filter.transformImage(src);
+    }
+}
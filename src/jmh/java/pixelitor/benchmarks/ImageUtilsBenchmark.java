@@ -0,0 +1,119 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * Measures the frequently used operations of {@link ImageUtils}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ImageUtilsBenchmark {
+    @Param({"256", "1024", "2048"})
+    public int size;
+
+    private BufferedImage img;
+
+    // has transparent borders around the opaque center
+    private BufferedImage bordered;
+
+    @Setup
+    public void setup() {
+        Benchmarks.init();
+        img = Benchmarks.createImage(size, size, 3, false);
+
+        bordered = ImageUtils.createSysCompatibleImage(size, size);
+        var g = bordered.createGraphics();
+        g.drawImage(img, size / 4, size / 3, size / 2, size / 3, null);
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage resizeDown() {
+        // uses the progressive bilinear scaling
+        return ImageUtils.resize(img, size / 4, size / 4);
+    }
+
+    @Benchmark
+    public BufferedImage resizeSlightly() {
+        // uses a single bicubic step
+        return ImageUtils.resize(img, size * 4 / 5, size * 4 / 5);
+    }
+
+    @Benchmark
+    public Rectangle calcOpaqueBounds() {
+        return ImageUtils.calcOpaqueBounds(bordered);
+    }
+
+    @Benchmark
+    public BufferedImage premultiply(PremultiplyState state) {
+        ImageUtils.premultiply(state.unpremultipliedImg);
+        return state.unpremultipliedImg;
+    }
+
+    @Benchmark
+    public BufferedImage unpremultiply(PremultiplyState state) {
+        ImageUtils.unpremultiply(state.premultipliedImg);
+        return state.premultipliedImg;
+    }
+
+    /**
+     * The images of the premultiplication benchmarks, which are
+     * reset before each call, because they are modified in place.
+     */
+    @State(Scope.Thread)
+    public static class PremultiplyState {
+        private int[] premultipliedPixels;
+        private int[] unpremultipliedPixels;
+        private BufferedImage premultipliedImg;
+        private BufferedImage unpremultipliedImg;
+
+        @Setup
+        public void setup(ImageUtilsBenchmark benchmark) {
+            int size = benchmark.size;
+            BufferedImage translucent = Benchmarks.createImage(size, size, 4, true);
+            premultipliedPixels = ImageUtils.getPixels(translucent).clone();
+            premultipliedImg = new BufferedImage(size, size, TYPE_INT_ARGB);
+
+            unpremultipliedImg = new BufferedImage(size, size, TYPE_INT_ARGB);
+            var g = unpremultipliedImg.createGraphics();
+            g.drawImage(translucent, 0, 0, null);
+            g.dispose();
+            unpremultipliedPixels = ImageUtils.getPixels(unpremultipliedImg).clone();
+        }
+
+        @Setup(Level.Invocation)
+        public void resetPixels() {
+            System.arraycopy(premultipliedPixels, 0,
+                ImageUtils.getPixels(premultipliedImg), 0, premultipliedPixels.length);
+            System.arraycopy(unpremultipliedPixels, 0,
+                ImageUtils.getPixels(unpremultipliedImg), 0, unpremultipliedPixels.length);
+        }
+    }
+}
@@ -70,5 +70,15 @@ public final class AddComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            return Math.min(d + s, 255);
+        }
     }
 }
@@ -78,5 +78,18 @@ public final class ColorBurnComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            if (s == 0) {
+                return s;
+            }
+            return Math.max(255 - (((255 - d) << 8) / s), 0);
+        }
     }
 }
@@ -29,16 +29,16 @@ public final class ColorComposite extends RGBComposite {
         return new Context(extraAlpha, srcColorModel, dstColorModel);
     }
 
-    static class Context extends RGBCompositeContext {
-        private final float[] sHSB = new float[3];
-        private final float[] dHSB = new float[3];
-
+    static class Context extends HSBCompositeContext {
         public Context(float alpha, ColorModel srcColorModel, ColorModel dstColorModel) {
             super(alpha, srcColorModel, dstColorModel);
         }
 
         @Override
         public void composeRGB(int[] src, int[] dst, float alpha) {
+            float[] sHSB = new float[3];
+            float[] dHSB = new float[3];
+
             int w = src.length;
 
             for (int i = 0; i < w; i += 4) {
@@ -71,5 +71,11 @@ public final class ColorComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected void mixHSB(float[] sHSB, float[] dHSB) {
+            dHSB[0] = sHSB[0];
+            dHSB[1] = sHSB[1];
+        }
     }
 }
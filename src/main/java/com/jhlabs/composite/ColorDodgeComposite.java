@@ -78,5 +78,18 @@ public final class ColorDodgeComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            if (s == 255) {
+                return s;
+            }
+            return Math.min((d << 8) / (255 - s), 255);
+        }
     }
 }
@@ -61,5 +61,15 @@ public final class DarkenComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            return d < s ? d : s;
+        }
     }
 }
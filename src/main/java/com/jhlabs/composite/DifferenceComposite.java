@@ -72,5 +72,15 @@ public final class DifferenceComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            return Math.abs(d - s);
+        }
     }
 }
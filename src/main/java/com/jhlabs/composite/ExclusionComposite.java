@@ -63,5 +63,15 @@ public final class ExclusionComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            return d + multiply255(s, 255 - d - d);
+        }
     }
 }
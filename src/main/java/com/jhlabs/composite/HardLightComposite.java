@@ -78,5 +78,18 @@ public final class HardLightComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            if (s > 127) {
+                return 255 - 2 * multiply255(255 - s, 255 - d);
+            }
+            return 2 * multiply255(s, d);
+        }
     }
 }
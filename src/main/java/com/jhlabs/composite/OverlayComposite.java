@@ -97,5 +97,18 @@ public final class OverlayComposite extends RGBComposite {
 //                }
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            if (d < 128) {
+                return 2 * multiply255(d, s);
+            }
+            return 2 * (255 - multiply255(255 - d, 255 - s));
+        }
     }
 }
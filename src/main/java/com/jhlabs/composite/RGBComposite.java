@@ -16,10 +16,12 @@ limitations under the License.
 
 package com.jhlabs.composite;
 
+import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
+
 import java.awt.*;
-import java.awt.image.ColorModel;
-import java.awt.image.Raster;
-import java.awt.image.WritableRaster;
+import java.awt.image.*;
+import java.util.concurrent.Future;
 
 public abstract class RGBComposite implements Composite {
     protected float extraAlpha;
@@ -58,6 +60,10 @@ public abstract class RGBComposite implements Composite {
     }
 
     public abstract static class RGBCompositeContext implements CompositeContext {
+        // smaller areas are composed on the calling thread
+        private static final int MIN_PARALLEL_PIXELS = 256 * 256;
+        private static final int MIN_BAND_HEIGHT = 16;
+
         private final float alpha;
 //        private final ColorModel srcColorModel;
 //        private final ColorModel dstColorModel;
@@ -88,32 +94,221 @@ public abstract class RGBComposite implements Composite {
             return a < 0 ? 0 : a > 255 ? 255 : a;
         }
 
+        /**
+         * Composes a row of pixels, where each pixel is represented
+         * by four ints (red, green, blue, alpha) in the 0..255 range.
+         * The result is written into the dst array.
+         */
         public abstract void composeRGB(int[] src, int[] dst, float alpha);
 
+        /**
+         * Returns true if this context can compose packed ARGB pixels
+         * with {@link #composeARGB(int[], int[], float)}.
+         */
+        protected boolean composesPacked() {
+            return false;
+        }
+
+        /**
+         * Composes a row of packed ARGB pixels, with the same results as
+         * {@link #composeRGB(int[], int[], float)}, but without unpacking
+         * the samples. The result is written into the dst array.
+         * <p>
+         * This implementation is for the blend modes that treat each color
+         * channel independently, see {@link #blendChannel(int, int)}.
+         */
+        public void composeARGB(int[] src, int[] dst, float alpha) {
+            for (int i = 0; i < src.length; i++) {
+                int s = src[i];
+                int sa = s >>> 24;
+                if (sa == 0) {
+                    continue; // the destination doesn't change
+                }
+                int d = dst[i];
+                dst[i] = blend(
+                    blendChannel((d >> 16) & 0xFF, (s >> 16) & 0xFF),
+                    blendChannel((d >> 8) & 0xFF, (s >> 8) & 0xFF),
+                    blendChannel(d & 0xFF, s & 0xFF),
+                    sa, d, alpha);
+            }
+        }
+
+        /**
+         * Returns the result of the blend mode for a destination
+         * and a source channel value, both in the 0..255 range.
+         * Used by the default {@link #composeARGB(int[], int[], float)}.
+         */
+        protected int blendChannel(int d, int s) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Blends the color calculated by a blend mode with the
+         * destination pixel, rounding exactly like the composeRGB
+         * implementations, and returns the new packed destination pixel.
+         * The calculated values are truncated to 8 bits, like the
+         * samples written by {@link WritableRaster#setPixels}.
+         */
+        static int blend(int dor, int dog, int dob, int sa, int dstPixel, float alpha) {
+            if (sa == 255 && alpha == 1.0f) {
+                // an opaque source replaces the destination
+                return 0xFF_00_00_00 | (dor & 0xFF) << 16 | (dog & 0xFF) << 8 | dob & 0xFF;
+            }
+            int dia = dstPixel >>> 24;
+            int dir = (dstPixel >> 16) & 0xFF;
+            int dig = (dstPixel >> 8) & 0xFF;
+            int dib = dstPixel & 0xFF;
+
+            float a = alpha * sa / 255.0f;
+            float ac = 1 - a;
+
+            int r = (int) (a * dor + ac * dir);
+            int g = (int) (a * dog + ac * dig);
+            int b = (int) (a * dob + ac * dib);
+            int outAlpha = (int) (sa * alpha + dia * ac);
+            return (outAlpha & 0xFF) << 24 | (r & 0xFF) << 16 | (g & 0xFF) << 8 | b & 0xFF;
+        }
+
         @Override
         public void compose(Raster src, Raster dstIn, WritableRaster dstOut) {
-            float alpha = this.alpha;
+            int height = dstOut.getHeight();
+            boolean packed = composesPacked()
+                && isPackedARGB(src) && isPackedARGB(dstIn) && isPackedARGB(dstOut);
 
-            int[] srcPix = null;
-            int[] dstPix = null;
+            int numBands = calcNumBands(dstOut.getWidth(), height);
+            if (numBands == 1) {
+                composeRows(src, dstIn, dstOut, 0, height, packed);
+                return;
+            }
+
+            // split the rows into bands that are composed in parallel
+            Future<?>[] futures = new Future<?>[numBands];
+            for (int i = 0; i < numBands; i++) {
+                int startRow = (int) ((long) height * i / numBands);
+                int endRow = (int) ((long) height * (i + 1) / numBands);
+                futures[i] = ThreadPool.submit(() ->
+                    composeRows(src, dstIn, dstOut, startRow, endRow, packed));
+            }
+            ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+        }
+
+        private static int calcNumBands(int width, int height) {
+            if ((long) width * height < MIN_PARALLEL_PIXELS || ThreadPool.isPoolThread()) {
+                // a pool thread waiting for other pool threads could deadlock
+                return 1;
+            }
+            return Math.max(1, Math.min(ThreadPool.NUM_CORES, height / MIN_BAND_HEIGHT));
+        }
+
+        // composes the rows from startRow (inclusive) to endRow (exclusive),
+        // which are relative to the top of the destination raster
+        private void composeRows(Raster src, Raster dstIn, WritableRaster dstOut,
+                                 int startRow, int endRow, boolean packed) {
+            float alpha = this.alpha;
 
             int x = dstOut.getMinX();
             int w = dstOut.getWidth();
-            int y0 = dstOut.getMinY();
-            int y1 = y0 + dstOut.getHeight();
+            int y0 = dstOut.getMinY() + startRow;
+            int y1 = dstOut.getMinY() + endRow;
+
+            if (packed) {
+                int[] srcPix = new int[w];
+                int[] dstPix = new int[w];
+                for (int y = y0; y < y1; y++) {
+                    src.getDataElements(x, y, w, 1, srcPix);
+                    dstIn.getDataElements(x, y, w, 1, dstPix);
+                    composeARGB(srcPix, dstPix, alpha);
+                    dstOut.setDataElements(x, y, w, 1, dstPix);
+                }
+                return;
+            }
 
+            int[] srcPix = null;
+            int[] dstPix = null;
             for (int y = y0; y < y1; y++) {
                 srcPix = src.getPixels(x, y, w, 1, srcPix);
                 dstPix = dstIn.getPixels(x, y, w, 1, dstPix);
-//                int srclength = srcPix.length;
-//                int dstlength = dstPix.length;
-//                if(srclength > dstlength) {
-//                    continue;
-//                }
-                // System.out.println("RGBComposite$RGBCompositeContext.compose dstlength = " + dstlength + ", srclength = " + srclength);
                 composeRGB(srcPix, dstPix, alpha);
                 dstOut.setPixels(x, y, w, 1, dstPix);
             }
         }
+
+        // returns true if the raster stores its pixels as ints in
+        // the default ARGB layout, premultiplied or not
+        private static boolean isPackedARGB(Raster raster) {
+            if (raster.getTransferType() != DataBuffer.TYPE_INT
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm)) {
+                return false;
+            }
+            int[] masks = sm.getBitMasks();
+            return masks.length == 4
+                && masks[0] == 0x00_FF_00_00
+                && masks[1] == 0x00_00_FF_00
+                && masks[2] == 0x00_00_00_FF
+                && masks[3] == 0xFF_00_00_00;
+        }
+    }
+
+    /**
+     * The base context of the blend modes that combine the hue,
+     * saturation and brightness components of the source and destination.
+     */
+    abstract static class HSBCompositeContext extends RGBCompositeContext {
+        protected HSBCompositeContext(float alpha, ColorModel srcColorModel, ColorModel dstColorModel) {
+            super(alpha, srcColorModel, dstColorModel);
+        }
+
+        /**
+         * Copies the components taken from the source
+         * color from sHSB into dHSB.
+         */
+        protected abstract void mixHSB(float[] sHSB, float[] dHSB);
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        public void composeARGB(int[] src, int[] dst, float alpha) {
+            float[] sHSB = new float[3];
+            float[] dHSB = new float[3];
+
+            // neighboring pixels often have the same colors,
+            // so the result for the last color pair is reused
+            boolean hasLast = false;
+            int lastSrcRGB = 0;
+            int lastDstRGB = 0;
+            int lastRGB = 0;
+
+            for (int i = 0; i < src.length; i++) {
+                int s = src[i];
+                int sa = s >>> 24;
+                if (sa == 0) {
+                    continue; // the destination doesn't change
+                }
+                int d = dst[i];
+                int srcRGB = s & 0xFF_FF_FF;
+                int dstRGB = d & 0xFF_FF_FF;
+
+                int doRGB;
+                if (hasLast && srcRGB == lastSrcRGB && dstRGB == lastDstRGB) {
+                    doRGB = lastRGB;
+                } else {
+                    Color.RGBtoHSB((s >> 16) & 0xFF, (s >> 8) & 0xFF, s & 0xFF, sHSB);
+                    Color.RGBtoHSB((d >> 16) & 0xFF, (d >> 8) & 0xFF, d & 0xFF, dHSB);
+
+                    mixHSB(sHSB, dHSB);
+                    doRGB = Color.HSBtoRGB(dHSB[0], dHSB[1], dHSB[2]);
+
+                    hasLast = true;
+                    lastSrcRGB = srcRGB;
+                    lastDstRGB = dstRGB;
+                    lastRGB = doRGB;
+                }
+
+                dst[i] = blend((doRGB >> 16) & 0xFF, (doRGB >> 8) & 0xFF, doRGB & 0xFF, sa, d, alpha);
+            }
+        }
     }
 }
@@ -64,5 +64,15 @@ public final class ScreenComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            return 255 - multiply255(255 - d, 255 - s);
+        }
     }
 }
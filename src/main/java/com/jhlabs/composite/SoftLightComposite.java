@@ -64,5 +64,16 @@ public final class SoftLightComposite extends RGBComposite {
                 dst[i + 3] = (int) (sa * alpha + dia * ac);
             }
         }
+
+        @Override
+        protected boolean composesPacked() {
+            return true;
+        }
+
+        @Override
+        protected int blendChannel(int d, int s) {
+            int m = multiply255(s, d);
+            return m + multiply255(d, 255 - multiply255(255 - d, 255 - s) - m);
+        }
     }
 }
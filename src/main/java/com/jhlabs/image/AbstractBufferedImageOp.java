@@ -34,6 +34,19 @@ import static java.awt.image.BufferedImage.*;
  */
 public abstract class AbstractBufferedImageOp implements BufferedImageOp, Cloneable {
     //  ******* Start of Pixelitor-specific stuff *******
+    /**
+     * Returned by {@link #getInputMargin()} if the filter
+     * can't compute a region of the output from a part of the input.
+     */
+    public static final int MARGIN_UNKNOWN = -1;
+
+    /**
+     * Returned by {@link #getInputMargin()} if the filter needs the whole
+     * input for any region, but it can compute only the pixels of a
+     * given destination region, see {@link #setDestRegion(Rectangle)}.
+     */
+    public static final int MARGIN_FULL_INPUT = Integer.MAX_VALUE;
+
     /**
      * The filter name in Pixelitor.
      */
@@ -47,6 +60,12 @@ public abstract class AbstractBufferedImageOp implements BufferedImageOp, Clonea
      */
     private boolean usedAsHelper = false;
 
+    /**
+     * The part of the destination that has to be computed,
+     * or null if the whole destination has to be computed.
+     */
+    protected Rectangle destRegion;
+
     protected AbstractBufferedImageOp(String filterName) {
         this.filterName = filterName;
         assert filterName != null;
@@ -61,6 +80,25 @@ public abstract class AbstractBufferedImageOp implements BufferedImageOp, Clonea
         return pt;
     }
 
+    /**
+     * Returns how many pixels of the input are needed around a region
+     * in order to compute the same output for that region as for the whole
+     * image, or one of {@link #MARGIN_UNKNOWN} and {@link #MARGIN_FULL_INPUT}.
+     */
+    public int getInputMargin() {
+        return MARGIN_UNKNOWN;
+    }
+
+    /**
+     * Restricts the next runs to the given region of the destination,
+     * which is only respected by the filters returning
+     * {@link #MARGIN_FULL_INPUT} from {@link #getInputMargin()}.
+     * The pixels outside the region are left unchanged.
+     */
+    public void setDestRegion(Rectangle destRegion) {
+        this.destRegion = destRegion;
+    }
+
     protected ProgressTracker createProgressTracker(int workUnits) {
         if (!usedAsHelper) {
             pt = new StatusBarProgressTracker(filterName, workUnits);
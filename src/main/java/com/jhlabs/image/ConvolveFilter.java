@@ -119,6 +119,14 @@ public class ConvolveFilter extends AbstractBufferedImageOp {
         this.premultiplyAlpha = premultiplyAlpha;
     }
 
+    @Override
+    public int getInputMargin() {
+        if (kernel == null || edgeAction == WRAP_EDGES) {
+            return MARGIN_UNKNOWN;
+        }
+        return Math.max(kernel.getWidth(), kernel.getHeight()) / 2;
+    }
+
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dst) {
         int width = src.getWidth();
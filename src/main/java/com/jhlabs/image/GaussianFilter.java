@@ -21,7 +21,6 @@ import pixelitor.utils.ProgressTracker;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.Kernel;
-import java.util.concurrent.Future;
 
 /**
  * A filter which applies Gaussian blur to an image. This is a subclass of ConvolveFilter
@@ -64,6 +63,12 @@ public class GaussianFilter extends ConvolveFilter {
         kernel = makeKernel(radius);
     }
 
+    @Override
+    public int getInputMargin() {
+        // the radius of the kernel, the edges are always clamped
+        return radius > 0 ? (int) Math.ceil(radius) : 0;
+    }
+
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dst) {
         int width = src.getWidth();
@@ -110,14 +115,11 @@ public class GaussianFilter extends ConvolveFilter {
         int cols = kernel.getWidth();
         int cols2 = cols / 2;
 
-        Future<?>[] rowFutures = new Future[height];
-        for (int y = 0; y < height; y++) {
-            int finalY = y;
-            Runnable rowTask = () -> convolveAndTransposeRow(inPixels, outPixels, width, height, premultiply, unpremultiply, edgeAction, matrix, cols2, finalY);
-            rowFutures[y] = ThreadPool.submit(rowTask);
-        }
-
-        ThreadPool.waitFor(rowFutures, pt);
+        ThreadPool.parallelFor(height, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
+                convolveAndTransposeRow(inPixels, outPixels, width, height, premultiply, unpremultiply, edgeAction, matrix, cols2, y);
+            }
+        }, pt);
     }
 
     private static void convolveAndTransposeRow(int[] inPixels, int[] outPixels, int width, int height, boolean premultiply, boolean unpremultiply, int edgeAction, float[] matrix, int cols2, int y) {
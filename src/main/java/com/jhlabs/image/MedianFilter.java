@@ -16,14 +16,30 @@ limitations under the License.
 
 package com.jhlabs.image;
 
+import pixelitor.ThreadPool;
+
+import java.util.Arrays;
+
 /**
- * A filter which performs a 3x3 median operation. Useful for removing dust and noise.
+ * A filter which performs a median operation. Useful for removing dust and noise.
+ * <p>
+ * With the default radius of 1, it selects the vector median of the 3x3
+ * neighborhood, which is always one of the original colors. For larger radii
+ * the cost of the vector median would grow with the square of the window area,
+ * so the median of each channel is calculated separately, with the constant-time
+ * histogram algorithm of Perreault and Hebert, replicating the edge pixels.
  */
 public class MedianFilter extends WholeImageFilter {
+    private int radius = 1;
+
     public MedianFilter(String filterName) {
         super(filterName);
     }
 
+    public void setRadius(int radius) {
+        this.radius = radius;
+    }
+
 //    private static int median(int[] array) {
 //        int max, maxIndex;
 //
@@ -67,6 +83,13 @@ public class MedianFilter extends WholeImageFilter {
 
     @Override
     protected int[] filterPixels(int width, int height, int[] inPixels) {
+        if (radius > 1) {
+            return filterChannels(width, height, inPixels);
+        }
+        return filter3x3(width, height, inPixels);
+    }
+
+    private int[] filter3x3(int width, int height, int[] inPixels) {
         int index = 0;
         int[] argb = new int[9];
         int[] r = new int[9];
@@ -109,6 +132,167 @@ public class MedianFilter extends WholeImageFilter {
         return outPixels;
     }
 
+    private int[] filterChannels(int width, int height, int[] inPixels) {
+        int[] outPixels = new int[width * height];
+
+        pt = createProgressTracker(height);
+        // each band of rows builds its own column histograms,
+        // so there are only as many bands as threads
+        int bandHeight = (height + ThreadPool.NUM_CORES - 1) / ThreadPool.NUM_CORES;
+        ThreadPool.parallelFor(height, bandHeight, (startY, endY) -> {
+            var histograms = new MedianHistograms(width, height, radius);
+            for (int shift = 0; shift <= 24; shift += 8) {
+                histograms.filterBand(inPixels, outPixels, startY, endY, shift);
+            }
+        }, pt);
+        finishProgressTracker();
+
+        return outPixels;
+    }
+
+    /**
+     * Calculates the median of one channel for a band of rows. It keeps
+     * a histogram of the vertical window for each column, and slides the
+     * histogram of the kernel along the row by adding and removing
+     * whole columns. The histograms have 16 coarse bins, which are
+     * always up to date, and 256 fine bins, which are updated only
+     * within the coarse bin of the median, when the median is searched.
+     * Not thread-safe, each band needs its own instance.
+     */
+    private static class MedianHistograms {
+        private static final int NUM_COARSE_BINS = 16;
+        private static final int FINE_BINS_PER_COARSE_BIN = 16;
+
+        // marks fine bins that must be recalculated
+        private static final int OUTDATED = Integer.MIN_VALUE;
+
+        private final int width;
+        private final int height;
+        private final int radius;
+
+        private final int[] columnFine;
+        private final int[] columnCoarse;
+        private final int[] kernelFine = new int[256];
+        private final int[] kernelCoarse = new int[NUM_COARSE_BINS];
+
+        // the x coordinate at which the fine bins
+        // of each coarse bin were last updated
+        private final int[] fineUpdateX = new int[NUM_COARSE_BINS];
+
+        MedianHistograms(int width, int height, int radius) {
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+
+            columnFine = new int[width * 256];
+            columnCoarse = new int[width * NUM_COARSE_BINS];
+        }
+
+        void filterBand(int[] inPixels, int[] outPixels, int startY, int endY, int shift) {
+            Arrays.fill(columnFine, 0);
+            Arrays.fill(columnCoarse, 0);
+            for (int dy = -radius; dy <= radius; dy++) {
+                addRow(inPixels, clampY(startY + dy), shift, 1);
+            }
+
+            int kernelSize = 2 * radius + 1;
+            int half = kernelSize * kernelSize / 2;
+            for (int y = startY; y < endY; y++) {
+                if (y > startY) {
+                    addRow(inPixels, clampY(y - radius - 1), shift, -1);
+                    addRow(inPixels, clampY(y + radius), shift, 1);
+                }
+                filterRow(outPixels, y, shift, half);
+            }
+        }
+
+        private void addRow(int[] inPixels, int y, int shift, int delta) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int value = (inPixels[offset + x] >>> shift) & 0xFF;
+                columnFine[x * 256 + value] += delta;
+                columnCoarse[x * NUM_COARSE_BINS + value / FINE_BINS_PER_COARSE_BIN] += delta;
+            }
+        }
+
+        private void filterRow(int[] outPixels, int y, int shift, int half) {
+            Arrays.fill(kernelCoarse, 0);
+            for (int dx = -radius; dx <= radius; dx++) {
+                addColumnCoarse(clampX(dx), 1);
+            }
+            Arrays.fill(fineUpdateX, OUTDATED);
+
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                if (x > 0) {
+                    addColumnCoarse(clampX(x - radius - 1), -1);
+                    addColumnCoarse(clampX(x + radius), 1);
+                }
+
+                // the median is the value at which the
+                // cumulated count first exceeds the half
+                int count = 0;
+                int coarseBin = 0;
+                while (count + kernelCoarse[coarseBin] <= half) {
+                    count += kernelCoarse[coarseBin];
+                    coarseBin++;
+                }
+                updateFineBins(coarseBin, x);
+                int value = coarseBin * FINE_BINS_PER_COARSE_BIN;
+                while (count + kernelFine[value] <= half) {
+                    count += kernelFine[value];
+                    value++;
+                }
+                outPixels[offset + x] |= value << shift;
+            }
+        }
+
+        private void addColumnCoarse(int x, int delta) {
+            int offset = x * NUM_COARSE_BINS;
+            for (int i = 0; i < NUM_COARSE_BINS; i++) {
+                kernelCoarse[i] += delta * columnCoarse[offset + i];
+            }
+        }
+
+        private void addColumnFine(int x, int coarseBin, int delta) {
+            int kernelOffset = coarseBin * FINE_BINS_PER_COARSE_BIN;
+            int columnOffset = x * 256 + kernelOffset;
+            for (int i = 0; i < FINE_BINS_PER_COARSE_BIN; i++) {
+                kernelFine[kernelOffset + i] += delta * columnFine[columnOffset + i];
+            }
+        }
+
+        private void updateFineBins(int coarseBin, int x) {
+            int lastX = fineUpdateX[coarseBin];
+            if (lastX == x) {
+                return;
+            }
+            int kernelSize = 2 * radius + 1;
+            if (lastX == OUTDATED || 2 * (x - lastX) > kernelSize) {
+                // recalculating is cheaper than sliding the fine bins
+                int offset = coarseBin * FINE_BINS_PER_COARSE_BIN;
+                Arrays.fill(kernelFine, offset, offset + FINE_BINS_PER_COARSE_BIN, 0);
+                for (int dx = -radius; dx <= radius; dx++) {
+                    addColumnFine(clampX(x + dx), coarseBin, 1);
+                }
+            } else {
+                for (int cx = lastX + 1; cx <= x; cx++) {
+                    addColumnFine(clampX(cx - radius - 1), coarseBin, -1);
+                    addColumnFine(clampX(cx + radius), coarseBin, 1);
+                }
+            }
+            fineUpdateX[coarseBin] = x;
+        }
+
+        private int clampX(int x) {
+            return ImageMath.clamp(x, 0, width - 1);
+        }
+
+        private int clampY(int y) {
+            return ImageMath.clamp(y, 0, height - 1);
+        }
+    }
+
     @Override
     public String toString() {
         return "Blur/Median";
@@ -20,7 +20,6 @@ import pixelitor.ThreadPool;
 import pixelitor.utils.ImageUtils;
 
 import java.awt.image.BufferedImage;
-import java.util.concurrent.Future;
 
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
 
@@ -50,19 +49,14 @@ public abstract class PointFilter extends AbstractBufferedImageOp {
         int[] outPixels = ImageUtils.getPixels(dst);
 
         pt = createProgressTracker(height);
-        Future<?>[] rowFutures = new Future[height];
-        for (int y = 0; y < height; y++) {
-            int finalY = y;
-            Runnable rowTask = () -> {
+        ThreadPool.parallelFor(height, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
                 for (int x = 0; x < width; x++) {
-                    int index = finalY * width + x;
-                    outPixels[index] = processPixel(x, finalY, inPixels[index]);
+                    int index = y * width + x;
+                    outPixels[index] = processPixel(x, y, inPixels[index]);
                 }
-            };
-            rowFutures[y] = ThreadPool.submit(rowTask);
-        }
-
-        ThreadPool.waitFor(rowFutures, pt);
+            }
+        }, pt);
         finishProgressTracker();
 
         return dst;
@@ -73,20 +67,16 @@ public abstract class PointFilter extends AbstractBufferedImageOp {
         int height = src.getHeight();
 
         pt = createProgressTracker(height);
-        Future<?>[] rowFutures = new Future[height];
-        for (int y = 0; y < height; y++) {
-            int finalY = y;
-            Runnable rowTask = () -> {
-                int[] inPixels = new int[width];
-                src.getRGB(0, finalY, width, 1, inPixels, 0, width);
+        ThreadPool.parallelFor(height, (startY, endY) -> {
+            int[] rowPixels = new int[width];
+            for (int y = startY; y < endY; y++) {
+                src.getRGB(0, y, width, 1, rowPixels, 0, width);
                 for (int x = 0; x < width; x++) {
-                    inPixels[x] = processPixel(x, finalY, inPixels[x]);
+                    rowPixels[x] = processPixel(x, y, rowPixels[x]);
                 }
-                dst.setRGB(0, finalY, width, 1, inPixels, 0, width);
-            };
-            rowFutures[y] = ThreadPool.submit(rowTask);
-        }
-        ThreadPool.waitFor(rowFutures, pt);
+                dst.setRGB(0, y, width, 1, rowPixels, 0, width);
+            }
+        }, pt);
         finishProgressTracker();
 
         return dst;
@@ -63,6 +63,16 @@ public abstract class TransferFilter extends PointFilter {
         return 0;
     }
 
+    /**
+     * Returns the red, green and blue lookup tables.
+     */
+    public int[][] getTables() {
+        if (!initialized) {
+            initialize();
+        }
+        return new int[][]{rTable, gTable, bTable};
+    }
+
     public int[] getLUT() {
         if (!initialized) {
             initialize();
@@ -19,10 +19,18 @@ package com.jhlabs.image;
 import net.jafama.FastMath;
 import pixelitor.ThreadPool;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
 
 /**
  * An abstract superclass for filters that transform images through
@@ -47,6 +55,22 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
     public static final int BILINEAR = 1;
     protected int interpolation = BILINEAR;
 
+    // the identity of the geometry, null if the mapping isn't cached
+    private Object mappingKey;
+
+    // The inverse mappings (x and y source coordinates for each destination
+    // pixel) in least-recently-used order, shared by all filter instances,
+    // including the copies used for the frames of the tween animations.
+    private static final Map<MappingId, CachedMapping> cachedMappings = new LinkedHashMap<>(16, 0.75f, true);
+    private static final long MAX_CACHED_VALUES = 32L * 1024 * 1024; // 128 MB of floats
+    private static long numCachedValues = 0;
+
+    private record MappingId(Class<?> filterClass, Object key, int width, int height) {
+    }
+
+    private record CachedMapping(SoftReference<float[]> ref, int length) {
+    }
+
     protected TransformFilter(String filterName) {
         super(filterName);
     }
@@ -78,6 +102,12 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
      */
     protected abstract void transformInverse(int x, int y, float[] out);
 
+    @Override
+    public int getInputMargin() {
+        // any destination pixel can come from anywhere in the source
+        return MARGIN_FULL_INPUT;
+    }
+
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dst) {
         srcWidth = src.getWidth();
@@ -91,70 +121,92 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
 
         int[] inPixels = getRGB(src, 0, 0, srcWidth, srcHeight, null);
 
-        return switch (interpolation) {
-            case BILINEAR -> filterPixelsBilinear(dst, srcWidth, srcHeight, inPixels);
-            case NEAREST_NEIGHBOUR -> filterPixelsNN(dst, srcWidth, srcHeight, inPixels);
+        Rectangle region = new Rectangle(0, 0, srcWidth, srcHeight);
+        if (destRegion != null) {
+            region = region.intersection(destRegion);
+            if (region.isEmpty()) {
+                return dst;
+            }
+        }
+
+        MappingId mappingId = null;
+        float[] mapping = null;
+        boolean fillMapping = false;
+        if (mappingKey != null) {
+            mappingId = new MappingId(getClass(), mappingKey, srcWidth, srcHeight);
+            mapping = getCachedMapping(mappingId);
+            // only a mapping for the whole image can be cached
+            long mappingSize = 2L * srcWidth * srcHeight;
+            if (mapping == null && destRegion == null && mappingSize <= MAX_CACHED_VALUES) {
+                mapping = new float[(int) mappingSize];
+                fillMapping = true;
+            }
+        }
+
+        int[] destPixels = getDirectPixels(dst, srcWidth, srcHeight);
+        MappedRows rows = new MappedRows(region, srcWidth, mapping, fillMapping, destPixels);
+        switch (interpolation) {
+            case BILINEAR -> filterPixelsBilinear(dst, rows, inPixels);
+            case NEAREST_NEIGHBOUR -> filterPixelsNN(dst, rows, inPixels);
             default -> throw new IllegalStateException("should not get here");
-        };
+        }
+
+        if (fillMapping) {
+            cacheMapping(mappingId, mapping);
+        }
+        return dst;
     }
 
     /**
      * Applies the transform using nearest-neighbor interpolation.
      */
-    private BufferedImage filterPixelsNN(BufferedImage dst, int width, int height, int[] inPixels) {
-        pt = createProgressTracker(height);
-
-        @SuppressWarnings("unchecked")
-        Future<int[]>[] rowFutures = new Future[height];
-
-        // process each output line in parallel
-        for (int y = 0; y < height; y++) {
+    private void filterPixelsNN(BufferedImage dst, MappedRows rows, int[] inPixels) {
+        Rectangle region = rows.region;
+        pt = createProgressTracker(region.height);
+
+        // process the output lines in parallel, each chunk
+        // of lines is written directly into the destination
+        ThreadPool.parallelFor(region.height, (startRow, endRow) -> {
+            int startY = region.y + startRow;
+            int endY = region.y + endRow;
             float[] out = new float[2];
-            int finalY = y;
-
-            Callable<int[]> rowTask = () -> {
-                int[] outLine = new int[width];
-
-                for (int x = 0; x < width; x++) {
-                    transformInverse(x, finalY, out);
+            int[] outLines = rows.getOutputArray(startY, endY);
+            for (int y = startY; y < endY; y++) {
+                int index = rows.getOutputIndex(y, startY);
+                for (int x = region.x; x < region.x + region.width; x++) {
+                    rows.inverse(this, x, y, out);
                     int srcX = (int) out[0];
                     int srcY = (int) out[1];
                     // int casting rounds towards zero, so we check out[0] < 0, not srcX < 0
-                    outLine[x] = sampleNN(inPixels, srcX, srcY, srcWidth, srcHeight, out);
+                    outLines[index++] = sampleNN(inPixels, srcX, srcY, srcWidth, srcHeight, out);
                 }
-
-                return outLine;
-            };
-
-            rowFutures[finalY] = ThreadPool.submit2(rowTask);
-        }
-
-        ThreadPool.waitFor2(rowFutures, dst, width, pt);
+            }
+            rows.finishRows(dst, startY, endY, outLines);
+        }, pt);
         finishProgressTracker();
-
-        return dst;
     }
 
     /**
      * Applies the transform using bilinear interpolation.
      */
-    private BufferedImage filterPixelsBilinear(BufferedImage dst, int width, int height, int[] inPixels) {
-        int maxSrcX = width - 1;
-        int maxSrcY = height - 1;
-
-        pt = createProgressTracker(height);
-        @SuppressWarnings("unchecked")
-        Future<int[]>[] rowFutures = new Future[height];
-
-        // process each output line in parallel
-        for (int y = 0; y < height; y++) {
+    private void filterPixelsBilinear(BufferedImage dst, MappedRows rows, int[] inPixels) {
+        Rectangle region = rows.region;
+        int maxSrcX = srcWidth - 1;
+        int maxSrcY = srcHeight - 1;
+
+        pt = createProgressTracker(region.height);
+
+        // process the output lines in parallel, each chunk
+        // of lines is written directly into the destination
+        ThreadPool.parallelFor(region.height, (startRow, endRow) -> {
+            int startY = region.y + startRow;
+            int endY = region.y + endRow;
             float[] out = new float[2];
-            int finalY = y;
-
-            Callable<int[]> rowTask = () -> {
-                int[] outLine = new int[width];
-                for (int x = 0; x < width; x++) {
-                    transformInverse(x, finalY, out);
+            int[] outLines = rows.getOutputArray(startY, endY);
+            for (int y = startY; y < endY; y++) {
+                int index = rows.getOutputIndex(y, startY);
+                for (int x = region.x; x < region.x + region.width; x++) {
+                    rows.inverse(this, x, y, out);
 
                     int srcX = (int) FastMath.floor(out[0]);
                     int srcY = (int) FastMath.floor(out[1]);
@@ -176,18 +228,149 @@ public abstract class TransformFilter extends AbstractBufferedImageOp {
                         sw = sampleBL(inPixels, srcX, srcY + 1, srcWidth, srcHeight);
                         se = sampleBL(inPixels, srcX + 1, srcY + 1, srcWidth, srcHeight);
                     }
-                    outLine[x] = ImageMath.bilinearInterpolate(xWeight, yWeight, nw, ne, sw, se);
+                    outLines[index++] = ImageMath.bilinearInterpolate(xWeight, yWeight, nw, ne, sw, se);
                 }
-                return outLine;
-            };
+            }
+            rows.finishRows(dst, startY, endY, outLines);
+        }, pt);
+        finishProgressTracker();
+    }
+
+    /**
+     * Returns the pixel array of the destination if the output rows
+     * can be written into it directly, or null otherwise.
+     */
+    private static int[] getDirectPixels(BufferedImage dst, int width, int height) {
+        int type = dst.getType();
+        if (type != TYPE_INT_ARGB && type != TYPE_INT_ARGB_PRE) {
+            return null;
+        }
+        WritableRaster raster = dst.getRaster();
+        if (raster.getWidth() != width || raster.getHeight() != height
+            || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+            || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)
+            || sampleModel.getScanlineStride() != width) {
+            return null;
+        }
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        if (dataBuffer.getNumBanks() != 1 || dataBuffer.getOffset() != 0) {
+            return null;
+        }
+        return dataBuffer.getData();
+    }
 
-            rowFutures[finalY] = ThreadPool.submit2(rowTask);
+    /**
+     * The destination rows of a run: where their source coordinates come
+     * from, and where their pixels go.
+     */
+    private static class MappedRows {
+        private final Rectangle region;
+        private final float[] mapping;
+        private final boolean fillMapping;
+        private final int[] destPixels;
+        private final int imageWidth;
+
+        // the mapping and the destination pixels cover the whole image
+        MappedRows(Rectangle region, int imageWidth, float[] mapping,
+                   boolean fillMapping, int[] destPixels) {
+            this.region = region;
+            this.imageWidth = imageWidth;
+            this.mapping = mapping;
+            this.fillMapping = fillMapping;
+            this.destPixels = destPixels;
         }
 
-        ThreadPool.waitFor2(rowFutures, dst, width, pt);
-        finishProgressTracker();
+        void inverse(TransformFilter filter, int x, int y, float[] out) {
+            if (mapping == null) {
+                filter.transformInverse(x, y, out);
+                return;
+            }
+            int i = 2 * (y * imageWidth + x);
+            if (fillMapping) {
+                filter.transformInverse(x, y, out);
+                mapping[i] = out[0];
+                mapping[i + 1] = out[1];
+            } else {
+                out[0] = mapping[i];
+                out[1] = mapping[i + 1];
+            }
+        }
 
-        return dst;
+        int[] getOutputArray(int startY, int endY) {
+            if (destPixels != null) {
+                return destPixels;
+            }
+            return new int[region.width * (endY - startY)];
+        }
+
+        int getOutputIndex(int y, int startY) {
+            if (destPixels != null) {
+                return y * imageWidth + region.x;
+            }
+            return (y - startY) * region.width;
+        }
+
+        void finishRows(BufferedImage dst, int startY, int endY, int[] outLines) {
+            if (destPixels == null) {
+                setRGB(dst, region.x, startY, region.width, endY - startY, outLines);
+            }
+        }
+    }
+
+    /**
+     * Sets an object that identifies the geometry of the transformation,
+     * and therefore the results of {@link #transformInverse(int, int, float[])}.
+     * If it's not null, then the computed source coordinates are cached,
+     * and reused while the key and the image size are the same, even
+     * if the edge action or the interpolation changes.
+     * The key must have value-based equals and hashCode.
+     */
+    public void setMappingKey(Object mappingKey) {
+        this.mappingKey = mappingKey;
+    }
+
+    /**
+     * Removes all cached inverse mappings.
+     */
+    public static void clearMappingCache() {
+        synchronized (cachedMappings) {
+            cachedMappings.clear();
+            numCachedValues = 0;
+        }
+    }
+
+    private static float[] getCachedMapping(MappingId id) {
+        synchronized (cachedMappings) {
+            CachedMapping cached = cachedMappings.get(id);
+            if (cached == null) {
+                return null;
+            }
+            float[] mapping = cached.ref().get();
+            if (mapping == null) { // collected under memory pressure
+                removeCachedMapping(id);
+            }
+            return mapping;
+        }
+    }
+
+    private static void cacheMapping(MappingId id, float[] mapping) {
+        synchronized (cachedMappings) {
+            removeCachedMapping(id);
+            var it = cachedMappings.entrySet().iterator();
+            while (numCachedValues + mapping.length > MAX_CACHED_VALUES && it.hasNext()) {
+                numCachedValues -= it.next().getValue().length();
+                it.remove();
+            }
+            cachedMappings.put(id, new CachedMapping(new SoftReference<>(mapping), mapping.length));
+            numCachedValues += mapping.length;
+        }
+    }
+
+    private static void removeCachedMapping(MappingId id) {
+        CachedMapping removed = cachedMappings.remove(id);
+        if (removed != null) {
+            numCachedValues -= removed.length();
+        }
     }
 
     /**
@@ -19,6 +19,7 @@ package com.jhlabs.math;
 import com.jhlabs.image.ImageMath;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Perlin Noise functions
@@ -26,11 +27,23 @@ import java.util.Random;
 public class Noise {
     private static final Random randomGenerator = new Random();
 
+    // incremented each time the noise tables are reinitialized,
+    // atomically, so that two reseeds can't result in the same version
+    private static final AtomicLong version = new AtomicLong();
+
     public static void reseed(long newSeed) {
         randomGenerator.setSeed(newSeed);
         init();
     }
 
+    /**
+     * Returns a number that changes whenever the noise is reseeded,
+     * so that results cached from the noise can be invalidated.
+     */
+    public static long getVersion() {
+        return version.get();
+    }
+
     private static final int B = 0x100; // 256
     private static final int BM = 0xff; // 255
     private static final int N = 0x1000; // 4096
@@ -298,5 +311,6 @@ public class Noise {
                 g3[B + i][j] = g3[i][j];
             }
         }
+        version.incrementAndGet();
     }
 }
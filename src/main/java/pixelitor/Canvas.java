@@ -88,6 +88,7 @@ public class Canvas implements Serializable, Debuggable {
 
     /**
      * Resizes the canvas using values given in image space.
+     * The view can be null if the composition isn't shown (batch processing).
      */
     public void resize(int newWidth, int newHeight, View view, boolean updateView) {
         validateNewSize(newWidth, newHeight);
@@ -95,8 +96,10 @@ public class Canvas implements Serializable, Debuggable {
         height = newHeight;
 
         thumbDimension = null; // invalidate cache
-        recalcCoSize(view, updateView);
-        activeCanvasSizeChanged(this);
+        if (view != null) {
+            recalcCoSize(view, updateView);
+            activeCanvasSizeChanged(this);
+        }
     }
 
     /**
@@ -41,6 +41,7 @@ import pixelitor.tools.pen.Paths;
 import pixelitor.tools.pen.history.ConvertSelectionToPathEdit;
 import pixelitor.tools.util.PPoint;
 import pixelitor.tools.util.PRectangle;
+import pixelitor.utils.ImagePyramid;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
 import pixelitor.utils.Shapes;
@@ -126,6 +127,29 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
     // cached rendering of all visible layers combined
     private transient BufferedImage compositeImage;
 
+    // The part of the cached composite image that is out of date,
+    // in image space and aligned to the dirty tile grid.
+    // If null, then the whole cached image is either valid or missing.
+    private transient Rectangle dirtyRegion;
+
+    // the size of the tiles used for tracking the dirty region
+    private static final int DIRTY_TILE_SIZE = 64;
+
+    // downscaled versions of the composite image for zoomed-out painting
+    private transient ImagePyramid compositePyramid;
+
+    // true while running an update that doesn't change the pixels of any layer,
+    // apart from the changes already recorded in the layers' pixel versions
+    private transient boolean pixelPreservingUpdate;
+
+    // Incremented whenever the pixels of some unknown layers might have
+    // changed. The cached outputs of the adjustment layers are valid only
+    // for this version and for the changes of the layers below them.
+    private transient long compositeVersion;
+
+    // the source of the stamps of the in-place layer changes
+    private transient long regionChangeCounter;
+
     // the View that shows this composition, if any
     private transient View view;
 
@@ -195,6 +219,8 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         // Initialize transient variables
         compositeImage = null; // will be set when needed
+        dirtyRegion = null;
+        compositePyramid = null;
         file = null; // will be set later
         fileTimestamp = 0;
         debugName = null; // will be set later
@@ -1191,12 +1217,17 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
         if (mode.movesLayer()) {
             Layer target = getActiveTarget();
             target.moveWhileDragging(imDx, imDy);
-            target.getHolder().invalidateImageCache();
+
+            // only the moved layers have to be repainted,
+            // the cached masked images of the others stay valid
+            target.invalidateDependentMaskedImages();
+            Layer movedLayer = target instanceof LayerMask mask ? mask.getOwner() : target;
+            runLayerUpdate(movedLayer, () -> target.getHolder().invalidateImageCache());
         }
         if (mode.movesSelection() && selection != null) {
             selection.moveWhileDragging(imDx, imDy);
         }
-        update();
+        runPixelPreservingUpdate(this::update);
     }
 
     /**
@@ -1275,7 +1306,23 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
     }
 
     public void repaintRegion(PPoint start, PPoint end, double thickness) {
-        invalidateImageCache();
+        repaintRegion(null, start, end, thickness);
+    }
+
+    /**
+     * Repaints the region of a stroke that changed the pixels of the given
+     * layer in place. The layer can be null if it isn't known.
+     */
+    public void repaintRegion(Layer changedLayer, PPoint start, PPoint end, double thickness) {
+        // the extra pixel accounts for antialiasing at the stroke's edges
+        double margin = thickness + 1.0;
+        double minX = Math.min(start.getImX(), end.getImX()) - margin;
+        double minY = Math.min(start.getImY(), end.getImY()) - margin;
+        double maxX = Math.max(start.getImX(), end.getImX()) + margin;
+        double maxY = Math.max(start.getImY(), end.getImY()) + margin;
+        invalidateImageRegion(new Rectangle2D.Double(
+            minX, minY, maxX - minX, maxY - minY).getBounds(), changedLayer);
+
         if (view != null) { // it might not be opened during image reloading
             view.repaintRegion(start, end, thickness);
             view.repaintNavigator(false);
@@ -1283,7 +1330,15 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
     }
 
     public void repaintRegion(PRectangle area) {
-        invalidateImageCache();
+        repaintRegion(null, area);
+    }
+
+    /**
+     * Repaints a region in which the pixels of the given layer were
+     * changed in place. The layer can be null if it isn't known.
+     */
+    public void repaintRegion(Layer changedLayer, PRectangle area) {
+        invalidateImageRegion(area.getIm().getBounds(), changedLayer);
         if (view != null) { // it might not be opened during image reloading
             view.repaintRegion(area);
             view.repaintNavigator(false);
@@ -1538,10 +1593,43 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
         if (compositeImage == null) {
             compositeImage = ImageUtils.calcComposite(layerList, canvas);
             assert compositeImage != null;
+        } else if (dirtyRegion != null) {
+            // only the dirty tiles are recomposited, the rest is kept
+            ImageUtils.recalcCompositeRegion(compositeImage, layerList, dirtyRegion);
         }
+        dirtyRegion = null;
         return compositeImage;
     }
 
+    /**
+     * Paints the composite image into the given image-space Graphics.
+     * When zoomed out, a downscaled version of the composite image
+     * is painted, so that the painting time doesn't depend on the image size.
+     */
+    public void paintCompositeImage(Graphics2D g) {
+        BufferedImage image = getCompositeImage();
+
+        // the device scale (including the HiDPI scaling) of the image pixels
+        AffineTransform at = g.getTransform();
+        double scale = Math.min(
+            Math.hypot(at.getScaleX(), at.getShearY()),
+            Math.hypot(at.getShearX(), at.getScaleY()));
+        if (scale > 0.5) {
+            g.drawImage(image, 0, 0, null);
+            return;
+        }
+
+        if (compositePyramid == null) {
+            compositePyramid = new ImagePyramid();
+        }
+        BufferedImage levelImage = compositePyramid.getImageForScale(image, scale);
+        if (levelImage == image) {
+            g.drawImage(image, 0, 0, null);
+        } else {
+            g.drawImage(levelImage, 0, 0, image.getWidth(), image.getHeight(), null);
+        }
+    }
+
     @Override
     public BufferedImage getImage() {
         BufferedImage image = getCompositeImage();
@@ -1558,10 +1646,85 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
      */
     @Override
     public void invalidateImageCache() {
+        layerPixelsChanged();
+        if (compositePyramid != null) {
+            compositePyramid.invalidate();
+        }
+        discardCompositeImage();
+    }
+
+    private void discardCompositeImage() {
         if (compositeImage != null) {
             compositeImage.flush();
         }
         compositeImage = null;
+        dirtyRegion = null;
+    }
+
+    /**
+     * Invalidates only the given image-space region of the cached composite
+     * image. If the layers can't be recomposited regionally, then
+     * the whole cache is invalidated.
+     */
+    private void invalidateImageRegion(Rectangle imRegion, Layer changedLayer) {
+        if (changedLayer == null) {
+            // any cached adjustment output might depend on the changed pixels
+            compositeVersion++;
+        } else {
+            changedLayer.regionChanged(++regionChangeCounter);
+        }
+
+        // the downscaled images can be partially updated even if the
+        // composite image itself has to be fully recalculated
+        if (compositePyramid != null) {
+            compositePyramid.invalidateRegion(imRegion);
+        }
+        // the changed layer isn't known, but it's enough
+        // to recalculate the region in the per-layer caches
+        forEachNestedLayer(layer -> layer.invalidateMaskedImageRegion(imRegion), false);
+
+        if (compositeImage == null) {
+            return; // everything will be recalculated anyway
+        }
+        if (!canRecompositeRegion()) {
+            discardCompositeImage();
+            return;
+        }
+
+        Rectangle tiles = canvas.intersect(alignToDirtyTiles(imRegion));
+        if (tiles.isEmpty()) {
+            return;
+        }
+        if (dirtyRegion == null) {
+            dirtyRegion = tiles;
+        } else {
+            dirtyRegion = dirtyRegion.union(tiles);
+        }
+    }
+
+    /**
+     * Returns true if the cached composite image can be partially updated.
+     */
+    private boolean canRecompositeRegion() {
+        // with a single layer, the composite image could be the
+        // layer's own image, which must never be painted over
+        if (layerList.size() < 2 || canvas.hasDifferentSizeThan(compositeImage)) {
+            return false;
+        }
+        for (Layer layer : layerList) {
+            if (layer.isVisible() && !layer.canRenderRegion()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Rectangle alignToDirtyTiles(Rectangle r) {
+        int minX = Math.floorDiv(r.x, DIRTY_TILE_SIZE) * DIRTY_TILE_SIZE;
+        int minY = Math.floorDiv(r.y, DIRTY_TILE_SIZE) * DIRTY_TILE_SIZE;
+        int maxX = (Math.floorDiv(r.x + r.width - 1, DIRTY_TILE_SIZE) + 1) * DIRTY_TILE_SIZE;
+        int maxY = (Math.floorDiv(r.y + r.height - 1, DIRTY_TILE_SIZE) + 1) * DIRTY_TILE_SIZE;
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
     }
 
     @Override
@@ -1569,6 +1732,71 @@ public class Composition implements Serializable, ImageSource, LayerHolder {
         update(true);
     }
 
+    /**
+     * Runs the given update for a change that affects only how the layers
+     * are combined (opacity, blending mode, visibility), so that the
+     * caches of the individual layers remain valid.
+     */
+    public void runPixelPreservingUpdate(Runnable update) {
+        boolean prevValue = pixelPreservingUpdate;
+        pixelPreservingUpdate = true;
+        try {
+            update.run();
+        } finally {
+            pixelPreservingUpdate = prevValue;
+        }
+    }
+
+    /**
+     * Runs the given update after a change of the given layer
+     * that doesn't change the pixels of the other layers. The change
+     * is recorded like an in-place change of the whole layer, so that
+     * only the cached adjustment outputs above the layer are discarded.
+     */
+    public void runLayerUpdate(Layer changedLayer, Runnable update) {
+        changedLayer.regionChanged(++regionChangeCounter);
+        runPixelPreservingUpdate(update);
+    }
+
+    /**
+     * Returns true while running an update that doesn't change
+     * the pixels of the layers, apart from the changes that the
+     * caller has already recorded in their pixel versions.
+     */
+    public boolean isPixelPreservingUpdate() {
+        return pixelPreservingUpdate;
+    }
+
+    /**
+     * Returns a number that changes whenever the pixels of some unknown
+     * layers might have changed. The changes of a known layer are
+     * tracked by {@link Layer#getRegionChangeStamp()} instead.
+     */
+    public long getCompositeVersion() {
+        return compositeVersion;
+    }
+
+    /**
+     * Signals that the pixels of some unknown layers might have
+     * changed, which makes all the per-layer caches out of date.
+     */
+    public void layerPixelsChanged() {
+        // the layer list is null while it's being deserialized
+        if (!pixelPreservingUpdate && layerList != null) {
+            forEachNestedLayer(Layer::pixelsChanged, false);
+            invalidateAdjustmentOutputs();
+        }
+    }
+
+    /**
+     * Discards the cached outputs of the adjustment layers, because
+     * their inputs might have changed in a way that isn't tracked
+     * by the stamps of the layers below them.
+     */
+    public void invalidateAdjustmentOutputs() {
+        compositeVersion++;
+    }
+
     @Override
     public void update(boolean updateHistogram) {
         update(updateHistogram, false);
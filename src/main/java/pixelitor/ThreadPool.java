@@ -17,19 +17,23 @@
 
 package pixelitor;
 
-import com.jhlabs.image.AbstractBufferedImageOp;
 import pixelitor.utils.Messages;
 import pixelitor.utils.ProgressTracker;
 
-import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * A thread pool for parallel execution on multiple CPU cores
  */
 public class ThreadPool {
-    private static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
+    public static final int NUM_CORES = Runtime.getRuntime().availableProcessors();
 
     private static final ExecutorService pool =
         Executors.newFixedThreadPool(NUM_CORES, new ThreadFactory() {
@@ -37,16 +41,43 @@ public class ThreadPool {
 
             @Override
             public Thread newThread(Runnable r) {
-                Thread thread = new Thread(r, "ImageProcessor-" + threadCount.getAndIncrement());
+                Thread thread = new PoolThread(r, "ImageProcessor-" + threadCount.getAndIncrement());
                 thread.setDaemon(true);
                 return thread;
             }
         });
 
+    // runs the parallelFor tasks, which can safely wait for
+    // each other, because the waiting workers steal work
+    private static final ForkJoinPool forkJoinPool = new ForkJoinPool(NUM_CORES, fjPool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fjPool);
+        thread.setName("ParallelFor-" + thread.getPoolIndex());
+        return thread;
+    }, null, false);
+
+    // how often the waiting thread reports the progress of a parallelFor
+    private static final long PROGRESS_INTERVAL_MS = 50;
+
+    // marks the threads of the pool
+    private static class PoolThread extends Thread {
+        PoolThread(Runnable task, String name) {
+            super(task, name);
+        }
+    }
+
     private ThreadPool() {
         throw new AssertionError("utility class");
     }
 
+    /**
+     * Returns true if called from one of the threads of the pool.
+     * Such tasks shouldn't wait for other tasks submitted to the pool,
+     * because that can deadlock if all threads are waiting.
+     */
+    public static boolean isPoolThread() {
+        return Thread.currentThread() instanceof PoolThread;
+    }
+
     /**
      * Submits a task that doesn't return anything.
      */
@@ -62,6 +93,47 @@ public class ThreadPool {
         return pool.submit(task);
     }
 
+    /**
+     * Submits a task that doesn't wait for other tasks of the pool.
+     * Its result can be obtained with {@link #getOrRun} even on a pool thread.
+     */
+    public static <T> FutureTask<T> submitLeaf(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        pool.execute(future);
+        return future;
+    }
+
+    /**
+     * Returns the result of a task submitted with {@link #submitLeaf}.
+     * If the task hasn't started yet, then it runs on the calling thread,
+     * therefore waiting for it can't deadlock when all threads are waiting.
+     */
+    public static <T> T getOrRun(FutureTask<T> future) throws InterruptedException, ExecutionException {
+        future.run(); // does nothing if it's already running, done or cancelled
+        return future.get();
+    }
+
+    /**
+     * Like {@link #getOrRun}, but for I/O tasks: their IOExceptions are
+     * rethrown, and an interruption or cancellation is reported
+     * as an {@link InterruptedIOException}.
+     */
+    public static <T> T getOrRunIO(FutureTask<T> future) throws IOException {
+        try {
+            return getOrRun(future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
     /**
      * Waits for all futures to complete while tracking progress.
      */
@@ -74,7 +146,9 @@ public class ThreadPool {
 
                 // not completely accurate to count here, but good enough in practice
                 pt.unitDone();
-            } catch (InterruptedException | ExecutionException e) {
+            } catch (InterruptedException e) {
+                throw cancel(futures);
+            } catch (ExecutionException e) {
                 Messages.showException(e);
             }
         }
@@ -88,31 +162,187 @@ public class ThreadPool {
             try {
                 future.get();
                 pt.unitDone();
-            } catch (InterruptedException | ExecutionException e) {
+            } catch (InterruptedException e) {
+                throw cancel(List.of(futures));
+            } catch (ExecutionException e) {
                 Messages.showException(e);
             }
         }
     }
 
     /**
-     * Similar to waitFor, but also updates given the destination image.
-     * Each future represents a processed line of pixels in the image.
+     * Processes a range of indices, such as the rows of an image.
+     */
+    @FunctionalInterface
+    public interface RangeTask {
+        /**
+         * Processes the indices from start (inclusive) to end (exclusive).
+         */
+        void run(int start, int end);
+    }
+
+    /**
+     * Runs the given task for the indices from 0 (inclusive) to
+     * size (exclusive) in parallel, with a chunk size that
+     * is adapted to the size and to the load of the threads.
+     */
+    public static void parallelFor(int size, RangeTask task, ProgressTracker pt) {
+        parallelFor(size, Math.max(1, size / (NUM_CORES * 16)), task, pt);
+    }
+
+    /**
+     * Runs the given task for the indices from 0 (inclusive) to size (exclusive)
+     * in parallel, and waits until all of them are processed.
+     * <p>
+     * The range is split in halves only while other workers could steal
+     * the work, so the chunks adapt to the load, but the task is never
+     * called with more than grain indices. The progress is counted by the
+     * workers, and reported by the calling thread, because the trackers
+     * aren't thread-safe. If the calling thread is interrupted, the
+     * chunks that haven't started yet are skipped, and a
+     * {@link CancellationException} is thrown.
      */
-    public static void waitFor2(Future<int[]>[] lineFutures,
-                                BufferedImage dst,
-                                int lineWidth,
-                                ProgressTracker pt) {
+    public static void parallelFor(int size, int grain, RangeTask task, ProgressTracker pt) {
         assert pt != null;
+        assert grain > 0 : "grain = " + grain;
+
+        if (size <= 0) {
+            return;
+        }
+        ParallelRange range = new ParallelRange(task, grain);
+        RangeAction root = new RangeAction(range, 0, size);
+
+        if (ForkJoinTask.getPool() == forkJoinPool) {
+            // nested call from a task of another parallelFor, the
+            // worker runs the chunks and steals work while it's waiting
+            root.invoke();
+            pt.unitsDone(size);
+            return;
+        }
 
+        forkJoinPool.execute(root);
+        boolean completed = false;
+        int reported = 0;
         try {
-            for (int y = 0; y < lineFutures.length; y++) {
-                int[] linePixels = lineFutures[y].get();
-                AbstractBufferedImageOp.setRGB(dst, 0, y, lineWidth, 1, linePixels);
-                pt.unitDone();
+            while (!completed) {
+                try {
+                    root.get(PROGRESS_INTERVAL_MS, MILLISECONDS);
+                    completed = true;
+                } catch (TimeoutException e) {
+                    // still running, only the progress is reported
+                }
+                int done = range.numDone();
+                if (done > reported) {
+                    pt.unitsDone(done - reported);
+                    reported = done;
+                }
             }
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while waiting");
+        } catch (ExecutionException e) {
             Messages.showException(e);
+        } finally {
+            if (!completed) {
+                range.cancel();
+            }
+        }
+    }
+
+    /**
+     * The state shared by the chunks of a parallelFor.
+     */
+    private static class ParallelRange {
+        private final RangeTask task;
+        private final int grain;
+
+        // a striped counter, so that the workers don't contend for it
+        private final LongAdder done = new LongAdder();
+
+        private volatile boolean cancelled = false;
+
+        ParallelRange(RangeTask task, int grain) {
+            this.task = task;
+            this.grain = grain;
+        }
+
+        void run(int start, int end) {
+            for (int chunkStart = start; chunkStart < end && !cancelled; chunkStart += grain) {
+                int chunkEnd = Math.min(end, chunkStart + grain);
+                task.run(chunkStart, chunkEnd);
+                done.add(chunkEnd - chunkStart);
+            }
+        }
+
+        int numDone() {
+            return done.intValue();
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * A part of a parallelFor range.
+     */
+    private static class RangeAction extends RecursiveAction {
+        private final ParallelRange range;
+        private final int start;
+        private final int end;
+
+        // the forked parts that must be completed before this one
+        private final RangeAction next;
+
+        RangeAction(ParallelRange range, int start, int end) {
+            this(range, start, end, null);
+        }
+
+        private RangeAction(ParallelRange range, int start, int end, RangeAction next) {
+            this.range = range;
+            this.start = start;
+            this.end = end;
+            this.next = next;
+        }
+
+        @Override
+        protected void compute() {
+            // forks the upper halves only while the other
+            // workers don't have enough queued work
+            int hi = end;
+            RangeAction forked = null;
+            while (hi - start > range.grain && getSurplusQueuedTaskCount() <= 3) {
+                int mid = (start + hi) >>> 1;
+                forked = new RangeAction(range, mid, hi, forked);
+                forked.fork();
+                hi = mid;
+            }
+            range.run(start, hi);
+
+            while (forked != null) {
+                if (forked.tryUnfork()) {
+                    // not stolen, run it here
+                    forked.invoke();
+                } else {
+                    forked.join();
+                }
+                forked = forked.next;
+            }
+        }
+    }
+
+    /**
+     * Called when the waiting thread was interrupted because its result
+     * is no longer needed (for example a superseded filter preview).
+     * Cancels the remaining work, and returns an exception that
+     * unwinds the interrupted computation.
+     */
+    private static CancellationException cancel(Iterable<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(false);
         }
+        Thread.currentThread().interrupt();
+        return new CancellationException("interrupted while waiting");
     }
 
     public static Executor getExecutor() {
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.automate;
+
+import pixelitor.utils.MessageHandler;
+import pixelitor.utils.ProgressHandler;
+
+import java.awt.Component;
+
+/**
+ * A {@link MessageHandler} that writes to the console,
+ * used by the batch processing without a GUI.
+ */
+public class ConsoleMessageHandler implements MessageHandler {
+    private static final ProgressHandler NO_PROGRESS = new ProgressHandler() {
+        @Override
+        public void updateProgress(int currentValue) {
+        }
+
+        @Override
+        public void stopProgress() {
+        }
+    };
+
+    @Override
+    public void showInStatusBar(String msg) {
+        // the batch processor reports its own progress
+    }
+
+    @Override
+    public ProgressHandler startProgress(String msg, int maxValue) {
+        return NO_PROGRESS;
+    }
+
+    @Override
+    public void showInfo(String title, String msg, Component parent) {
+        System.out.println(title + ": " + stripHTML(msg));
+    }
+
+    @Override
+    public void showWarning(String title, String msg, Component parent) {
+        System.err.println("Warning: " + title + ": " + stripHTML(msg));
+    }
+
+    @Override
+    public void showError(String title, String msg, Component parent) {
+        System.err.println("Error: " + title + ": " + stripHTML(msg));
+    }
+
+    @Override
+    public boolean showYesNoQuestion(String title, String msg) {
+        // nobody can answer, so take the safe choice
+        System.err.println(title + ": " + stripHTML(msg) + " => no");
+        return false;
+    }
+
+    @Override
+    public void showException(Throwable exception) {
+        exception.printStackTrace();
+    }
+
+    @Override
+    public void showException(Throwable exception, Thread srcThread) {
+        System.err.println("Exception in " + srcThread.getName() + ":");
+        exception.printStackTrace();
+    }
+
+    @Override
+    public void showExceptionOnEDT(Throwable exception) {
+        showException(exception);
+    }
+
+    private static String stripHTML(String msg) {
+        return msg.replaceAll("<[^>]*>", "");
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.automate;
+
+import pixelitor.Composition;
+import pixelitor.compactions.CompAction;
+import pixelitor.compactions.Resize;
+import pixelitor.filters.Filter;
+import pixelitor.filters.gui.UserPreset;
+import pixelitor.io.FileFormat;
+import pixelitor.io.FileIO;
+import pixelitor.io.FileUtils;
+import pixelitor.io.SaveSettings;
+import pixelitor.layers.Drawable;
+import pixelitor.utils.Messages;
+import pixelitor.utils.Texts;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static pixelitor.FilterContext.BATCH_AUTOMATE;
+
+/**
+ * Batch processing from the command line, without a GUI.
+ * <p>
+ * Unlike the {@link BatchProcessor}, it doesn't need a display, a
+ * {@link pixelitor.gui.View} or the EDT, and it processes several
+ * files in parallel. The number of files in progress is limited both
+ * by the number of workers and by the estimated memory needed for
+ * the images, and a throughput report is printed for each file.
+ * <p>
+ * Usage example:
+ * <pre>
+ * java -cp pixelitor.jar pixelitor.automate.HeadlessBatchProcessor \
+ *     --filter JHGaussianBlur --resize 1024x1024 --format jpg in/ out/
+ * </pre>
+ */
+public class HeadlessBatchProcessor {
+    private static final String USAGE = """
+        Usage: HeadlessBatchProcessor [options] <input dir> <output dir>
+          --filter <class>    the class name of a filter, for example JHGaussianBlur
+          --preset <file>     a preset file with the settings of the filter
+          --resize <W>x<H>    resize the images to fit within the given size
+          --format <ext>      the output format (default: png)
+          --threads <n>       the number of files processed in parallel
+          --overwrite         overwrite the existing output files""";
+
+    // the packages where filters are searched if a simple class name is given
+    private static final String[] FILTER_PACKAGES = {
+        "pixelitor.filters.", "pixelitor.filters.jhlabsproxies.",
+        "pixelitor.filters.convolve.", "pixelitor.filters.levels.",
+        "pixelitor.filters.curves.", "pixelitor.filters.lookup.",
+        "pixelitor.filters.gmic.", "pixelitor.filters.transitions."};
+
+    // the fraction of the max heap that the images in progress can use
+    private static final double MEMORY_BUDGET_FRACTION = 0.6;
+
+    // the estimated number of full-size image copies needed while
+    // processing a file (source, filtered, resized, composite)
+    private static final int IMAGE_COPIES_PER_FILE = 4;
+
+    private static final int BYTES_PER_MB = 1 << 20;
+
+    private final Supplier<CompAction> actionFactory;
+    private final File outputDir;
+    private final FileFormat outputFormat;
+    private final int numWorkers;
+    private final boolean overwrite;
+
+    // the estimated free memory for the images, in megabytes
+    private final Semaphore memoryBudget;
+    private final int memoryBudgetMB;
+
+    private final AtomicInteger numProcessed = new AtomicInteger();
+    private final AtomicInteger numFailed = new AtomicInteger();
+    private final AtomicInteger numSkipped = new AtomicInteger();
+    private final AtomicLong totalPixels = new AtomicLong();
+
+    /**
+     * Creates a batch processor. The action factory is called once for
+     * each file, because the filters can't be shared between threads.
+     */
+    public HeadlessBatchProcessor(Supplier<CompAction> actionFactory,
+                                  File outputDir,
+                                  FileFormat outputFormat,
+                                  int numWorkers,
+                                  boolean overwrite) {
+        assert numWorkers > 0;
+
+        this.actionFactory = actionFactory;
+        this.outputDir = outputDir;
+        this.outputFormat = outputFormat;
+        this.numWorkers = numWorkers;
+        this.overwrite = overwrite;
+
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        memoryBudgetMB = Math.max(1, (int) (maxMemory * MEMORY_BUDGET_FRACTION / BYTES_PER_MB));
+        memoryBudget = new Semaphore(memoryBudgetMB);
+    }
+
+    public static void main(String[] args) {
+        // must be set before any AWT class is initialized
+        System.setProperty("java.awt.headless", "true");
+        Messages.setHandler(new ConsoleMessageHandler());
+        Texts.init();
+
+        System.exit(run(args));
+    }
+
+    /**
+     * Parses the command line arguments and processes the files.
+     * Invalid arguments are reported together with the usage text.
+     *
+     * @return the exit code: 0 if all files were processed successfully,
+     * 1 if some files failed and 2 if the arguments are invalid
+     */
+    static int run(String[] args) {
+        HeadlessBatchProcessor processor;
+        File inputDir;
+        try {
+            Options options = Options.parse(args);
+            inputDir = options.inputDir();
+            processor = options.createProcessor();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        return processor.processDir(inputDir) ? 0 : 1;
+    }
+
+    /**
+     * The parsed command line arguments.
+     *
+     * @param resizeTo the size the images must fit within, or null if they aren't resized
+     */
+    record Options(String filterName, File presetFile, Dimension resizeTo,
+                   FileFormat format, int numWorkers, boolean overwrite,
+                   File inputDir, File outputDir) {
+        /**
+         * Parses the command line arguments.
+         *
+         * @throws IllegalArgumentException if the arguments are invalid
+         */
+        static Options parse(String[] args) {
+            String filterName = null;
+            File presetFile = null;
+            Dimension resizeTo = null;
+            FileFormat format = FileFormat.PNG;
+            int numWorkers = Runtime.getRuntime().availableProcessors();
+            boolean overwrite = false;
+            File inputDir = null;
+            File outputDir = null;
+
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--filter" -> filterName = nextArg(args, ++i, arg);
+                    case "--preset" -> presetFile = new File(nextArg(args, ++i, arg));
+                    case "--resize" -> resizeTo = parseSize(nextArg(args, ++i, arg));
+                    case "--format" -> format = parseFormat(nextArg(args, ++i, arg));
+                    case "--threads" -> numWorkers = parsePositiveInt(nextArg(args, ++i, arg));
+                    case "--overwrite" -> overwrite = true;
+                    default -> {
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        } else if (inputDir == null) {
+                            inputDir = new File(arg);
+                        } else if (outputDir == null) {
+                            outputDir = new File(arg);
+                        } else {
+                            throw new IllegalArgumentException("Unexpected argument: " + arg);
+                        }
+                    }
+                }
+            }
+            if (inputDir == null || outputDir == null) {
+                throw new IllegalArgumentException("The input and output directories must be given");
+            }
+            return new Options(filterName, presetFile, resizeTo,
+                format, numWorkers, overwrite, inputDir, outputDir);
+        }
+
+        /**
+         * Checks the directories, the filter and the preset,
+         * and creates a processor with these options.
+         *
+         * @throws IllegalArgumentException if the options can't be used
+         */
+        HeadlessBatchProcessor createProcessor() {
+            if (!inputDir.isDirectory()) {
+                throw new IllegalArgumentException(inputDir + " isn't a directory");
+            }
+            Resize resize = resizeTo != null
+                ? new Resize(resizeTo.width, resizeTo.height, true)
+                : null;
+            Supplier<CompAction> actionFactory = createActionFactory(filterName, presetFile, resize);
+
+            if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+                throw new IllegalArgumentException("Can't create " + outputDir);
+            }
+            return new HeadlessBatchProcessor(
+                actionFactory, outputDir, format, numWorkers, overwrite);
+        }
+    }
+
+    private static String nextArg(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static FileFormat parseFormat(String value) {
+        return FileFormat.fromExtension(value)
+            .orElseThrow(() -> new IllegalArgumentException("Unknown format: " + value));
+    }
+
+    private static Dimension parseSize(String value) {
+        String[] parts = value.toLowerCase(Locale.ROOT).split("x");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid size: " + value);
+        }
+        return new Dimension(parsePositiveInt(parts[0]), parsePositiveInt(parts[1]));
+    }
+
+    private static int parsePositiveInt(String value) {
+        try {
+            int i = Integer.parseInt(value.trim());
+            if (i > 0) {
+                return i;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid positive integer: " + value);
+    }
+
+    private static Supplier<CompAction> createActionFactory(String filterName,
+                                                            File presetFile,
+                                                            Resize resize) {
+        // checked here so that a typo is reported before processing any files
+        Class<? extends Filter> filterClass = filterName != null ? findFilterClass(filterName) : null;
+        String presetContent = presetFile != null ? readPreset(presetFile) : null;
+
+        return () -> {
+            CompAction action = CompletableFuture::completedFuture;
+            if (filterClass != null) {
+                action = createFilterAction(createFilter(filterClass, presetContent));
+            }
+            if (resize != null) {
+                action = action.andThen(resize);
+            }
+            return action;
+        };
+    }
+
+    private static Class<? extends Filter> findFilterClass(String name) {
+        String[] candidates = name.contains(".")
+            ? new String[]{name}
+            : prefixAll(FILTER_PACKAGES, name);
+        for (String className : candidates) {
+            try {
+                return Class.forName(className).asSubclass(Filter.class);
+            } catch (ClassNotFoundException | ClassCastException e) {
+                // try the next package
+            }
+        }
+        throw new IllegalArgumentException("Filter not found: " + name);
+    }
+
+    private static String[] prefixAll(String[] prefixes, String name) {
+        String[] retVal = new String[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            retVal[i] = prefixes[i] + name;
+        }
+        return retVal;
+    }
+
+    private static String readPreset(File presetFile) {
+        try {
+            return Files.readString(presetFile.toPath());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't read " + presetFile, e);
+        }
+    }
+
+    private static Filter createFilter(Class<? extends Filter> filterClass, String presetContent) {
+        Filter filter;
+        try {
+            filter = filterClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not instantiate " + filterClass.getName(), e);
+        }
+        if (presetContent != null && filter.canHaveUserPresets()) {
+            UserPreset preset = new UserPreset("batch", null);
+            preset.loadFromString(presetContent);
+            filter.loadUserPreset(preset);
+        }
+        return filter;
+    }
+
+    /**
+     * Returns an action that runs the given filter on the active layer,
+     * on the calling thread, and without an undo backup.
+     */
+    private static CompAction createFilterAction(Filter filter) {
+        return comp -> {
+            Drawable dr = comp.getActiveDrawable();
+            BufferedImage filtered = filter.transformImage(dr.getFilterSourceImage());
+            dr.filterWithoutDialogFinished(filtered, BATCH_AUTOMATE, filter.getName());
+            return CompletableFuture.completedFuture(comp);
+        };
+    }
+
+    /**
+     * Processes all supported files in the given directory.
+     *
+     * @return true if there were no failures
+     */
+    public boolean processDir(File inputDir) {
+        List<File> files = FileUtils.listSupportedInputFiles(inputDir);
+        if (files.isEmpty()) {
+            System.out.println("No supported files found in " + inputDir.getAbsolutePath());
+            return true;
+        }
+        System.out.printf("Processing %d files with %d workers and a %d MB image memory budget%n",
+            files.size(), numWorkers, memoryBudgetMB);
+
+        long startTime = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger(1);
+        ExecutorService workers = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread thread = new Thread(r, "BatchWorker-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // limits the submitted but not finished files, so that
+        // memory isn't reserved for files waiting in the queue
+        Semaphore freeWorkers = new Semaphore(numWorkers);
+        try {
+            for (File file : files) {
+                int memoryMB = estimateMemoryMB(file);
+                freeWorkers.acquire();
+                memoryBudget.acquire(memoryMB);
+                workers.execute(() -> {
+                    try {
+                        processFile(file, files.size());
+                    } finally {
+                        memoryBudget.release(memoryMB);
+                        freeWorkers.release();
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+
+        printSummary(System.nanoTime() - startTime);
+        return numFailed.get() == 0;
+    }
+
+    /**
+     * Estimates the memory needed for processing the given file
+     * from the image dimensions in the header, without decoding it.
+     */
+    private int estimateMemoryMB(File file) {
+        long numPixels = readNumPixels(file);
+        if (numPixels <= 0) {
+            // a layered format or an unknown header:
+            // assume a 10x compression of 4-byte pixels
+            numPixels = file.length() * 10 / 4;
+        }
+        long bytes = numPixels * 4 * IMAGE_COPIES_PER_FILE;
+        long mb = bytes / BYTES_PER_MB + 1;
+
+        // a file larger than the budget will be processed alone
+        return (int) Math.min(mb, memoryBudgetMB);
+    }
+
+    private static long readNumPixels(File file) {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            if (iis == null) {
+                return -1;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return -1;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private void processFile(File file, int numFiles) {
+        String outFileName = FileUtils.replaceExtension(file.getName(), outputFormat.toString());
+        File outFile = new File(outputDir, outFileName);
+        if (outFile.exists() && !overwrite) {
+            numSkipped.incrementAndGet();
+            System.out.printf("Skipped %s, because %s already exists%n", file.getName(), outFile);
+            return;
+        }
+
+        try {
+            long readStart = System.nanoTime();
+            Composition comp = FileIO.loadCompSync(file);
+            if (comp == null) {
+                throw new IllegalStateException("Could not read " + file);
+            }
+            int srcWidth = comp.getCanvasWidth();
+            int srcHeight = comp.getCanvasHeight();
+            long numPixels = (long) srcWidth * srcHeight;
+
+            long processStart = System.nanoTime();
+            comp = actionFactory.get().process(comp).join();
+
+            long writeStart = System.nanoTime();
+            outputFormat.createSaveTask(comp, new SaveSettings.Simple(outputFormat, outFile)).run();
+            long end = System.nanoTime();
+
+            totalPixels.addAndGet(numPixels);
+            int index = numProcessed.incrementAndGet();
+            System.out.printf("[%d/%d] %s (%dx%d => %dx%d): read %d ms, process %d ms, write %d ms, %.1f MP/s%n",
+                index, numFiles, file.getName(), srcWidth, srcHeight,
+                comp.getCanvasWidth(), comp.getCanvasHeight(),
+                toMillis(processStart - readStart),
+                toMillis(writeStart - processStart),
+                toMillis(end - writeStart),
+                megaPixelsPerSec(numPixels, end - readStart));
+        } catch (RuntimeException | Error e) {
+            numFailed.incrementAndGet();
+            System.err.printf("Failed to process %s: %s%n", file.getName(), describe(e));
+        }
+    }
+
+    private static String describe(Throwable e) {
+        // unwrap the exceptions of the completable futures
+        while ((e instanceof CompletionException
+            || e instanceof ExecutionException
+            || e instanceof UncheckedIOException)
+            && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.toString();
+    }
+
+    private void printSummary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1.0e9;
+        int processed = numProcessed.get();
+        System.out.println(format("Processed %d files (%d failed, %d skipped) in %.1f s, %.2f files/s, %.1f MP/s",
+            processed, numFailed.get(), numSkipped.get(), seconds,
+            processed / seconds, megaPixelsPerSec(totalPixels.get(), elapsedNanos)));
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static double megaPixelsPerSec(long numPixels, long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return numPixels / 1.0e6 / (nanos / 1.0e9);
+    }
+}
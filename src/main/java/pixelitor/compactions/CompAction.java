@@ -30,4 +30,11 @@ public interface CompAction {
      * instance, and the original instance is used as backup for the undo.
      */
     CompletableFuture<Composition> process(Composition srcComp);
+
+    /**
+     * Returns an action that runs the given action on the result of this one.
+     */
+    default CompAction andThen(CompAction next) {
+        return comp -> process(comp).thenCompose(next::process);
+    }
 }
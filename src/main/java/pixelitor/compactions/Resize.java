@@ -73,6 +73,16 @@ public class Resize implements CompAction {
 
         var targetSize = calcTargetSize(srcCanvas);
 
+        if (srcComp.getView() == null) {
+            // Batch processing without a GUI: there is no undo and nothing
+            // to repaint, so the composition can be resized in place.
+            return resizeLayersInParallel(srcComp, targetSize)
+                .thenApply(comp -> {
+                    comp.getCanvas().resize(targetSize.width, targetSize.height, null, false);
+                    return comp;
+                });
+        }
+
         // The resizing runs outside the EDT to allow the progress bar animation
         // to update, and to enable the parallel resizing of multiple layers.
         var progressHandler = Messages.startProgress("Resizing", -1);
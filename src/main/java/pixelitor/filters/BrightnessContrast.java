@@ -19,6 +19,8 @@ package pixelitor.filters;
 
 import com.jhlabs.image.PixelUtils;
 import pixelitor.filters.gui.RangeParam;
+import pixelitor.filters.lookup.PixelAdjustment;
+import pixelitor.filters.lookup.PixelAdjustmentFilter;
 import pixelitor.utils.ImageUtils;
 
 import java.awt.image.BufferedImage;
@@ -30,7 +32,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * The Brightness/Contrast filter
  */
-public class BrightnessContrast extends ParametrizedFilter {
+public class BrightnessContrast extends ParametrizedFilter implements PixelAdjustmentFilter {
     private static final String CONTRAST = i18n("contrast");
     public static final String NAME = BRIGHTNESS + "/" + CONTRAST;
 
@@ -54,10 +56,54 @@ public class BrightnessContrast extends ParametrizedFilter {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
-        if (brightnessParam.isZero() && contrastParam.isZero()) {
+        int[] lookup = createLookup();
+        if (lookup == null) {
             return src;
         }
 
+        // transform the image
+        int[] srcPixels = ImageUtils.getPixels(src);
+        int[] destPixels = ImageUtils.getPixels(dest);
+        for (int i = 0; i < destPixels.length; i++) {
+            int rgb = srcPixels[i];
+
+            int a = rgb & 0xFF_00_00_00; // not in the range 0..255!
+            if (a == 0) {
+                destPixels[i] = 0; // for premultiplied images
+            } else {
+                int r = (rgb >>> 16) & 0xFF;
+                int g = (rgb >>> 8) & 0xFF;
+                int b = rgb & 0xFF;
+
+                r = lookup[r];
+                g = lookup[g];
+                b = lookup[b];
+
+                destPixels[i] = a | r << 16 | g << 8 | b;
+            }
+        }
+
+        return dest;
+    }
+
+    @Override
+    public PixelAdjustment createPixelAdjustment() {
+        int[] lookup = createLookup();
+        if (lookup == null) {
+            return null;
+        }
+        return PixelAdjustment.fromChannelTables(lookup, lookup, lookup, true);
+    }
+
+    /**
+     * Returns the lookup table that is applied to all three channels,
+     * or null if the current settings don't change the image.
+     */
+    private int[] createLookup() {
+        if (brightnessParam.isZero() && contrastParam.isZero()) {
+            return null;
+        }
+
         // prepare brightness
         double brightnessValue = brightnessParam.getValue() / 10.0;
         double pow = -brightnessValue + 1;
@@ -83,30 +129,7 @@ public class BrightnessContrast extends ParametrizedFilter {
 
             lookup[i] = PixelUtils.clamp((int) lookupValue);
         }
-
-        // transform the image
-        int[] srcPixels = ImageUtils.getPixels(src);
-        int[] destPixels = ImageUtils.getPixels(dest);
-        for (int i = 0; i < destPixels.length; i++) {
-            int rgb = srcPixels[i];
-
-            int a = rgb & 0xFF_00_00_00; // not in the range 0..255!
-            if (a == 0) {
-                destPixels[i] = 0; // for premultiplied images
-            } else {
-                int r = (rgb >>> 16) & 0xFF;
-                int g = (rgb >>> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                r = lookup[r];
-                g = lookup[g];
-                b = lookup[b];
-
-                destPixels[i] = a | r << 16 | g << 8 | b;
-            }
-        }
-
-        return dest;
+        return lookup;
     }
 
     @Override
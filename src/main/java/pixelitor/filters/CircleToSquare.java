@@ -26,6 +26,7 @@ import pixelitor.gui.GUIText;
 
 import java.awt.image.BufferedImage;
 import java.io.Serial;
+import java.util.List;
 
 /**
  * "Circle to Square" filter
@@ -69,6 +70,8 @@ public class CircleToSquare extends ParametrizedFilter {
         filter.setAmount((float) amount.getPercentage());
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
+        filter.setMappingKey(List.of(center.getAbsolutePoint(src),
+            radius.getValueAsDouble(0), radius.getValueAsDouble(1), amount.getValueAsDouble()));
 
         dest = filter.filter(src, dest);
 //        setAffectedAreaShapes(filter.getAffectedAreaShapes());
@@ -54,10 +54,10 @@ public class Contours extends ParametrizedFilter {
         var luminosity = new Luminosity();
         dest = luminosity.transform(dest, dest);
 
-        int iterations = lineThickness.getValue();
-        if (iterations > 0) {
+        int thickness = lineThickness.getValue();
+        if (thickness > 0) {
             var morphology = new MorphologyFilter(NAME);
-            morphology.setIterations(iterations);
+            morphology.setRadius(thickness);
             morphology.setKernel(MorphologyFilter.KERNEL_DIAMOND);
             morphology.setOp(MorphologyFilter.OP_ERODE);
 
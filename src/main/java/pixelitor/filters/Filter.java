@@ -17,6 +17,7 @@
 
 package pixelitor.filters;
 
+import com.jhlabs.image.AbstractBufferedImageOp;
 import pixelitor.filters.gui.PresetOwner;
 import pixelitor.filters.gui.UserPreset;
 import pixelitor.utils.ImageUtils;
@@ -24,10 +25,15 @@ import pixelitor.utils.Messages;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.Debuggable;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.Serial;
 import java.io.Serializable;
 
+import static com.jhlabs.image.AbstractBufferedImageOp.MARGIN_FULL_INPUT;
+import static com.jhlabs.image.AbstractBufferedImageOp.MARGIN_UNKNOWN;
 import static pixelitor.utils.ImageUtils.isGrayscale;
 
 /**
@@ -51,11 +57,24 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
      */
     protected abstract BufferedImage transform(BufferedImage src, BufferedImage dest);
 
+    /**
+     * Transforms only the given output region if it isn't null.
+     * Filters whose region margin is {@link AbstractBufferedImageOp#MARGIN_FULL_INPUT}
+     * must override this to restrict their work to the region.
+     */
+    protected BufferedImage transform(BufferedImage src, BufferedImage dest, Rectangle region) {
+        return transform(src, dest);
+    }
+
     /**
      * Executes the filter transformation while handling
      * conversion for grayscale images if needed.
      */
     public BufferedImage transformImage(BufferedImage src) {
+        return runTransform(src, null);
+    }
+
+    private BufferedImage runTransform(BufferedImage src, Rectangle region) {
         boolean grayConversion = false;
 
         // handle grayscale images (in layer masks) if
@@ -71,7 +90,7 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
             ImageUtils.createImageWithSameCM(src) : null;
 
         // apply the actual filter transformation
-        dest = transform(src, dest);
+        dest = transform(src, dest, region);
 
         if (grayConversion) { // convert the result back
             dest = ImageUtils.convertToGrayscaleImage(dest);
@@ -84,6 +103,79 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
         return dest;
     }
 
+    /**
+     * Returns how many pixels of the source are needed around a region
+     * to compute the final result of that region, with the same meaning as
+     * {@link AbstractBufferedImageOp#getInputMargin()}. Filters that return
+     * {@link AbstractBufferedImageOp#MARGIN_FULL_INPUT} have to restrict
+     * their work to the region given to
+     * {@link #transform(BufferedImage, BufferedImage, Rectangle)} themselves.
+     * <p>
+     * It's called on the thread that runs the filter.
+     */
+    public int getRegionMargin() {
+        return MARGIN_UNKNOWN;
+    }
+
+    /**
+     * Whether this filter can compute a region of its output
+     * without computing the whole image.
+     */
+    public boolean supportsRegion() {
+        return getRegionMargin() != MARGIN_UNKNOWN;
+    }
+
+    /**
+     * Returns a copy of the source image in which only the given region
+     * is filtered, with the same pixels as in the result of
+     * {@link #transformImage(BufferedImage)}. Returns the source
+     * if the filter decides that no change is necessary,
+     * and null if the filter doesn't support regions.
+     */
+    public BufferedImage transformRegion(BufferedImage src, Rectangle region) {
+        int margin = getRegionMargin();
+        if (margin == MARGIN_UNKNOWN) {
+            return null;
+        }
+
+        Rectangle srcBounds = new Rectangle(0, 0, src.getWidth(), src.getHeight());
+        region = region.intersection(srcBounds);
+        if (region.isEmpty()) {
+            return src;
+        }
+
+        BufferedImage regionSrc;
+        BufferedImage regionDest;
+        int regionX; // the location of the region within regionDest
+        int regionY;
+        if (margin == MARGIN_FULL_INPUT) {
+            regionSrc = src;
+            regionDest = runTransform(src, region);
+            regionX = region.x;
+            regionY = region.y;
+        } else {
+            Rectangle inputBounds = new Rectangle(region);
+            inputBounds.grow(margin, margin);
+            inputBounds = inputBounds.intersection(srcBounds);
+
+            regionSrc = ImageUtils.copySubImage(src, inputBounds);
+            regionDest = transformImage(regionSrc);
+            regionX = region.x - inputBounds.x;
+            regionY = region.y - inputBounds.y;
+        }
+        if (regionDest == regionSrc) {
+            return src;
+        }
+
+        BufferedImage dest = ImageUtils.copyImage(src);
+        Graphics2D g = dest.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(regionDest.getSubimage(regionX, regionY, region.width, region.height),
+            region.x, region.y, null);
+        g.dispose();
+        return dest;
+    }
+
     /**
      * Determines if a default destination image should be created
      * before running the filter.
@@ -163,10 +255,19 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Loads the state of the filter being copied, which
+     * was saved as a preset. Unlike loading a user preset,
+     * it shouldn't have side effects outside the filter.
+     */
+    protected void loadCopiedState(UserPreset preset) {
+        loadUserPreset(preset);
+    }
+
     public Filter copy() {
         if (canHaveUserPresets()) {
             // the serialization proxy can also create deep copies
-            return (Filter) new SerializationProxy(this).readResolve();
+            return new SerializationProxy(this).createFilter(true);
         }
 
         // Stateless filters can be shared.
@@ -209,6 +310,10 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
          */
         @Serial
         protected Object readResolve() {
+            return createFilter(false);
+        }
+
+        private Filter createFilter(boolean copy) {
             Filter filter = null;
             try {
                 // serializable filters must have a no-argument constructor
@@ -223,7 +328,11 @@ public abstract class Filter implements Serializable, PresetOwner, Debuggable {
             if (filter.canHaveUserPresets() && filterState != null) {
                 UserPreset preset = new UserPreset("", null);
                 preset.loadFromString(filterState);
-                filter.loadUserPreset(preset);
+                if (copy) {
+                    filter.loadCopiedState(preset);
+                } else {
+                    filter.loadUserPreset(preset);
+                }
             }
             return filter;
         }
@@ -19,6 +19,8 @@ package pixelitor.filters;
 
 import com.jhlabs.image.PointFilter;
 import pixelitor.filters.gui.RangeParam;
+import pixelitor.filters.lookup.PixelAdjustment;
+import pixelitor.filters.lookup.PixelAdjustmentFilter;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
@@ -31,7 +33,7 @@ import static pixelitor.gui.GUIText.SATURATION;
 /**
  * Hue-Saturation filter
  */
-public class HueSat extends ParametrizedFilter {
+public class HueSat extends ParametrizedFilter implements PixelAdjustmentFilter {
     public static final String NAME = HUE + "/" + SATURATION;
 
     @Serial
@@ -69,21 +71,39 @@ public class HueSat extends ParametrizedFilter {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
+        Impl impl = createImpl();
+        if (impl == null) {
+            return src;
+        }
+
+        dest = impl.filter(src, dest);
+
+        return dest;
+    }
+
+    @Override
+    public PixelAdjustment createPixelAdjustment() {
+        Impl impl = createImpl();
+        if (impl == null) {
+            return null;
+        }
+        return rgb -> impl.processPixel(0, 0, rgb);
+    }
+
+    private Impl createImpl() {
         int hueP = hue.getValue();
         int satP = saturation.getValue();
         int briP = brightness.getValue();
 
         if (hueP == 0 && satP == 0 && briP == 0) {
-            return src;
+            return null;
         }
 
         float satShift = (float) saturation.getPercentage();
         float briShift = (float) brightness.getPercentage();
         float hueRot = hue.getValueAsFloat() / 360.0f;
 
-        dest = new Impl(hueRot, satShift, briShift).filter(src, dest);
-
-        return dest;
+        return new Impl(hueRot, satShift, briShift);
     }
 
     private static class Impl extends PointFilter {
@@ -17,6 +17,7 @@
 
 package pixelitor.filters;
 
+import pixelitor.ThreadPool;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.ProgressTracker;
@@ -25,7 +26,6 @@ import pixelitor.utils.StatusBarProgressTracker;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.Serial;
-import java.util.Arrays;
 
 /**
  * Kuwahara filter.
@@ -51,108 +51,130 @@ public class Kuwahara extends ParametrizedFilter {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
-        dest = ImageUtils.copyImage(src);
-
         int radius = radiusParam.getValue();
 
+        int[] srcPixels = ImageUtils.getPixels(src);
         int[] destPixels = ImageUtils.getPixels(dest);
-        filterKuwahara(destPixels, dest.getWidth(), dest.getHeight(), radius);
+        filterKuwahara(srcPixels, destPixels, src.getWidth(), src.getHeight(), radius);
         return dest;
     }
 
-    private static void filterKuwahara(int[] array, int imgWidth, int imgHeight, int radius) {
-        ProgressTracker pt = new StatusBarProgressTracker(NAME, imgHeight);
-
-        int[] result = new int[array.length]; // stores the filtered image
-        float[] hsv = new float[3];
-
-        for (int y = 0; y < imgHeight; y++) {
-            for (int x = 0; x < imgWidth; x++) {
-                int index = y * imgWidth + x; // the index of the current pixel
-                rgbToHsv(array[index], hsv);
-
-                // get the brightness values in the four
-                // sub-regions around the current pixel
-                float[][] subRegions = getSubRegions(array, imgWidth, imgHeight, x, y, radius);
-
-                // the central pixel will take the mean value of the sub-region
-                // that is most homogenous (has the smallest variance)
-                float minVariance = Float.MAX_VALUE;
-                float minVarianceMean = 0;
-                for (float[] subRegion : subRegions) {
-                    if (subRegion.length == 0) {
-                        continue; // skip empty subregions
-                    }
-                    float mean = calcMean(subRegion);
-                    float variance = calcVariance(subRegion, mean);
+    private static void filterKuwahara(int[] srcPixels, int[] destPixels,
+                                       int imgWidth, int imgHeight, int radius) {
+        var tables = new SummedAreaTables(srcPixels, imgWidth, imgHeight);
 
-                    if (variance < minVariance) {
-                        minVariance = variance;
-                        minVarianceMean = mean;
-                    }
+        ProgressTracker pt = new StatusBarProgressTracker(NAME, imgHeight);
+        ThreadPool.parallelFor(imgHeight, (startY, endY) -> {
+            float[] hsv = new float[3];
+            for (int y = startY; y < endY; y++) {
+                int minY = Math.max(0, y - radius);
+                int maxY = Math.min(imgHeight - 1, y + radius);
+                for (int x = 0; x < imgWidth; x++) {
+                    int index = y * imgWidth + x; // the index of the current pixel
+                    rgbToHsv(srcPixels[index], hsv);
+
+                    int minX = Math.max(0, x - radius);
+                    int maxX = Math.min(imgWidth - 1, x + radius);
+
+                    // the central pixel will take the mean value of the sub-region
+                    // that is most homogenous (has the smallest variance)
+                    hsv[2] = tables.calcMinVarianceMean(x, y, minX, minY, maxX, maxY);
+                    destPixels[index] = hsvToRgb(hsv);
                 }
-
-                hsv[2] = minVarianceMean;
-                result[index] = hsvToRgb(hsv);
             }
-            pt.unitDone();
-        }
-
-        // copy the filtered image back to the original array
-        System.arraycopy(result, 0, array, 0, array.length);
+        }, pt);
         pt.finished();
     }
 
-    private static float[][] getSubRegions(int[] array, int imgWidth, int imgHeight, int x, int y, int radius) {
-        float[][] regions = new float[4][];
-
-        int offsetArea = (radius + 1) * (radius + 1);
-
-        // starting coordinates for each sub-region
-        int[][] startCoords = {
-            {x - radius, y - radius}, {x, y - radius},
-            {x - radius, y}, {x, y}
-        };
-
-        // iterate through each sub-region
-        for (int regionIndex = 0; regionIndex < 4; regionIndex++) {
-            float[] regionValues = new float[offsetArea];
-            int validCount = 0;
-
-            for (int i = 0; i <= radius; i++) {
-                for (int j = 0; j <= radius; j++) {
-                    // the coordinates of the current pixel in the sub-region
-                    int currentX = startCoords[regionIndex][0] + i;
-                    int currentY = startCoords[regionIndex][1] + j;
-
-                    if (currentX >= 0 && currentX < imgWidth && currentY >= 0 && currentY < imgHeight) {
-                        int index = currentY * imgWidth + currentX;
-                        regionValues[validCount++] = rgbToBightness(array[index]);
+    /**
+     * Summed-area tables of the brightness values and of their squares,
+     * which give the mean and the variance of any rectangular region
+     * in constant time, independently of the radius.
+     * <p>
+     * The sums are stored in int arrays, and they can overflow for
+     * large images, but the region sums calculated from them are still
+     * correct, because the wrapped-around int arithmetic is exact
+     * modulo 2^32, and the real region sums are much smaller than that.
+     */
+    private static class SummedAreaTables {
+        private final int[] sums;
+        private final int[] squareSums;
+        private final int tableWidth;
+
+        SummedAreaTables(int[] pixels, int imgWidth, int imgHeight) {
+            // with an extra zero row and column at the top and left
+            tableWidth = imgWidth + 1;
+            sums = new int[tableWidth * (imgHeight + 1)];
+            squareSums = new int[sums.length];
+
+            // the sums within each row
+            ThreadPool.parallelFor(imgHeight, (startY, endY) -> {
+                for (int y = startY; y < endY; y++) {
+                    int rowSum = 0;
+                    int rowSquareSum = 0;
+                    int tableIndex = (y + 1) * tableWidth + 1;
+                    int pixelIndex = y * imgWidth;
+                    for (int x = 0; x < imgWidth; x++) {
+                        int value = rgbToBrightness(pixels[pixelIndex + x]);
+                        rowSum += value;
+                        rowSquareSum += value * value;
+                        sums[tableIndex + x] = rowSum;
+                        squareSums[tableIndex + x] = rowSquareSum;
                     }
                 }
-            }
-
-            // trim to actual size
-            regions[regionIndex] = Arrays.copyOf(regionValues, validCount);
+            }, ProgressTracker.NULL_TRACKER);
+
+            // accumulated downwards in column bands
+            ThreadPool.parallelFor(imgWidth, (startX, endX) -> {
+                for (int y = 2; y <= imgHeight; y++) {
+                    int tableIndex = y * tableWidth + 1;
+                    for (int x = startX; x < endX; x++) {
+                        sums[tableIndex + x] += sums[tableIndex + x - tableWidth];
+                        squareSums[tableIndex + x] += squareSums[tableIndex + x - tableWidth];
+                    }
+                }
+            }, ProgressTracker.NULL_TRACKER);
         }
-        return regions;
-    }
 
-    private static float calcMean(float[] values) {
-        float sum = 0;
-        for (float value : values) {
-            sum += value;
+        /**
+         * Returns the mean brightness (in the 0..1 range) of the one
+         * among the four sub-regions around the given pixel that has the
+         * smallest brightness variance. The sub-regions overlap in the
+         * row and column of the pixel, and they are clipped to the
+         * image bounds given by the other arguments.
+         */
+        float calcMinVarianceMean(int x, int y, int minX, int minY, int maxX, int maxY) {
+            double minVariance = Double.MAX_VALUE;
+            float minVarianceMean = 0;
+
+            // top left, top right, bottom left, bottom right
+            for (int region = 0; region < 4; region++) {
+                int left = (region & 1) == 0 ? minX : x;
+                int right = (region & 1) == 0 ? x : maxX;
+                int top = region < 2 ? minY : y;
+                int bottom = region < 2 ? y : maxY;
+
+                long count = (long) (right - left + 1) * (bottom - top + 1);
+                long sum = calcRegionSum(sums, left, top, right, bottom);
+                long squareSum = calcRegionSum(squareSums, left, top, right, bottom);
+
+                // the variance in the 0..255 range
+                double variance = (double) (count * squareSum - sum * sum) / (count * count);
+                if (variance < minVariance) {
+                    minVariance = variance;
+                    minVarianceMean = sum / (count * 255.0f);
+                }
+            }
+            return minVarianceMean;
         }
-        return values.length > 0 ? sum / values.length : 0;
-    }
 
-    private static float calcVariance(float[] values, float mean) {
-        float sumSquaredDifferences = 0;
-        for (float value : values) {
-            float diff = value - mean;
-            sumSquaredDifferences += diff * diff;
+        // the sum of the values between the given inclusive pixel coordinates
+        private int calcRegionSum(int[] table, int left, int top, int right, int bottom) {
+            int topRow = top * tableWidth;
+            int bottomRow = (bottom + 1) * tableWidth;
+            return table[bottomRow + right + 1] - table[topRow + right + 1]
+                - table[bottomRow + left] + table[topRow + left];
         }
-        return values.length > 0 ? sumSquaredDifferences / values.length : 0;
     }
 
     private static void rgbToHsv(int rgb, float[] hsv) {
@@ -162,17 +184,13 @@ public class Kuwahara extends ParametrizedFilter {
         Color.RGBtoHSB(red, green, blue, hsv);
     }
 
-    private static float rgbToBightness(int rgb) {
+    // returns the HSB brightness in the 0..255 range
+    private static int rgbToBrightness(int rgb) {
         int r = (rgb >> 16) & 0xFF;
         int g = (rgb >> 8) & 0xFF;
         int b = rgb & 0xFF;
 
-        int max = Math.max(r, g);
-        if (b > max) {
-            max = b;
-        }
-
-        return ((float) max) / 255.0f;
+        return Math.max(Math.max(r, g), b);
     }
 
     private static int hsvToRgb(float[] hsv) {
@@ -22,6 +22,7 @@ import pixelitor.filters.impl.LittlePlanetFilter;
 
 import java.awt.image.BufferedImage;
 import java.io.Serial;
+import java.util.List;
 
 import static pixelitor.gui.GUIText.ZOOM;
 import static pixelitor.utils.AngleUnit.INTUITIVE_DEGREES;
@@ -76,6 +77,8 @@ public class LittlePlanet extends ParametrizedFilter {
         filter.setCenter(center.getAbsolutePoint(src));
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
+        filter.setMappingKey(List.of(zoom.getValueAsDouble(), innerZoom.getValueAsDouble(),
+            rotateResult.getValueInRadians(), invert.isChecked(), center.getAbsolutePoint(src)));
 
         return filter.filter(src, dest);
     }
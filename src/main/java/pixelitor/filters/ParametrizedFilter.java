@@ -132,6 +132,11 @@ public abstract class ParametrizedFilter extends FilterWithGUI {
         paramSet.loadUserPreset(preset);
     }
 
+    @Override
+    protected void loadCopiedState(UserPreset preset) {
+        paramSet.loadUserPreset(preset, true);
+    }
+
     @Override
     public void loadFilterState(FilterState filterState, boolean reset) {
         paramSet.applyState(filterState, reset);
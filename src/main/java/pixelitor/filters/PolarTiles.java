@@ -17,12 +17,14 @@
 
 package pixelitor.filters;
 
+import com.jhlabs.math.Noise;
 import pixelitor.filters.gui.*;
 import pixelitor.filters.gui.IntChoiceParam.Item;
 import pixelitor.filters.impl.PolarTilesFilter;
 
 import java.awt.image.BufferedImage;
 import java.io.Serial;
+import java.util.List;
 
 /**
  * Polar Glass Tiles filter
@@ -89,6 +91,10 @@ public class PolarTiles extends ParametrizedFilter {
         filter.setNumRDivisions(numRadDivisions.getValue());
         filter.setCurvature(curvature.getValueAsDouble());
         filter.setRandomness(randomness.getPercentage());
+        filter.setMappingKey(List.of(modeParam.getValue(), center.getAbsolutePoint(src),
+            rotateImage.getValueInRadians(), zoom.getValueAsDouble(), rotateEffect.getValueAsDouble(),
+            numAngDivisions.getValue(), numRadDivisions.getValue(), curvature.getValueAsDouble(),
+            randomness.getValueAsDouble(), Noise.getVersion()));
 
         return filter.filter(src, dest);
     }
@@ -23,11 +23,15 @@ import pixelitor.filters.ParametrizedFilter;
 import pixelitor.filters.gui.FilterState;
 import pixelitor.gui.utils.GUIUtils;
 import pixelitor.layers.Drawable;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
 
 import javax.swing.*;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
+import java.lang.ref.SoftReference;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static java.lang.String.format;
 import static pixelitor.FilterContext.TWEEN_PREVIEW;
@@ -87,24 +91,62 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
 
         int totalFrames = calculateTotalFrameCount(baseFrameCount);
 
+        // in ping-pong mode the reverse phase repeats the forward frames,
+        // which are kept as long as there is enough memory for them
+        boolean pingPong = totalFrames > baseFrameCount;
+        @SuppressWarnings("unchecked")
+        SoftReference<BufferedImage>[] forwardFrames = pingPong ? new SoftReference[baseFrameCount] : null;
+
+        // the forward frames are filtered concurrently if the filter can be copied
+        TweenFrameFilter frameFilter = null;
+        if (TweenFrameFilter.canFilterConcurrently(filter)) {
+            List<Double> forwardTimes = IntStream.range(0, baseFrameCount)
+                .mapToObj(i -> calcInterpolationTime(i, baseFrameCount))
+                .toList();
+            frameFilter = new TweenFrameFilter(animation, drawable.getFilterSourceImage(), forwardTimes);
+        }
+
         boolean canceled = false;
-        for (int frameIndex = 0; frameIndex < totalFrames; frameIndex++) {
-            if (isCancelled()) {
-                canceled = true;
-                break;
+        try {
+            for (int frameIndex = 0; frameIndex < totalFrames; frameIndex++) {
+                if (isCancelled()) {
+                    canceled = true;
+                    break;
+                }
+                int percentProgress = (int) ((100.0 * frameIndex) / totalFrames);
+                setProgress(percentProgress);
+
+                double interpolationTime = calcInterpolationTime(frameIndex, baseFrameCount);
+
+                try {
+                    BufferedImage image = null;
+                    if (frameIndex >= baseFrameCount) {
+                        int forwardIndex = 2 * (baseFrameCount - 1) - frameIndex;
+                        image = forwardFrames[forwardIndex].get();
+                    }
+                    if (image == null) {
+                        if (frameFilter == null) {
+                            image = renderSingleFrame(filter, interpolationTime);
+                        } else if (frameIndex < baseFrameCount) {
+                            image = showFrame(frameFilter.next(), filter.getName());
+                        } else { // a reused frame was garbage collected
+                            image = showFrame(frameFilter.filterFrame(interpolationTime), filter.getName());
+                        }
+                    }
+                    if (pingPong && frameIndex > 0 && frameIndex < baseFrameCount - 1) {
+                        // copied, because the composite image could be updated in place
+                        forwardFrames[frameIndex] = new SoftReference<>(ImageUtils.copyImage(image));
+                    }
+                    animationWriter.addFrame(image);
+                } catch (Exception e) {
+                    canceled = true;
+                    Messages.showException(e);
+                    break;
+                }
             }
-            int percentProgress = (int) ((100.0 * frameIndex) / totalFrames);
-            setProgress(percentProgress);
-
-            double interpolationTime = calcInterpolationTime(frameIndex, baseFrameCount);
-
-            try {
-                BufferedImage image = renderSingleFrame(filter, interpolationTime);
-                animationWriter.addFrame(image);
-            } catch (Exception e) {
-                canceled = true;
-                Messages.showException(e);
-                break;
+        } finally {
+            if (frameFilter != null) {
+                frameFilter.close();
             }
         }
 
@@ -138,13 +180,8 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
             // Forward animation phase
             return ((double) frameIndex) / baseFrameCount;
         } else {
-            // Reverse animation phase (pong)
-
-            // Here the same frames are calculated again.
-            // They could be cached in an array of soft references
-            // or in the case of the file sequence output,
-            // the output files could be copied.
-            // However, "ping-pong" animations are probably uncommon.
+            // Reverse animation phase (pong).
+            // Only used if a forward frame has to be calculated again.
             int reverseIndex = 2 * (baseFrameCount - 1) - frameIndex;
             return ((double) reverseIndex) / baseFrameCount;
         }
@@ -167,6 +204,17 @@ class RenderTweenFramesTask extends SwingWorker<Void, Void> {
         return comp.getCompositeImage();
     }
 
+    // shows an already filtered image as the preview of
+    // the drawable, and returns the resulting frame
+    private BufferedImage showFrame(BufferedImage filtered, String filterName) {
+        GUIUtils.invokeAndWait(() ->
+            drawable.changePreviewImage(filtered, filterName, TWEEN_PREVIEW));
+
+        Composition comp = drawable.getComp();
+        comp.repaint();
+        return comp.getCompositeImage();
+    }
+
     private void finishOnEDT(AnimationWriter animationWriter, boolean canceled) {
         drawable.endTweening();
         if (canceled) {
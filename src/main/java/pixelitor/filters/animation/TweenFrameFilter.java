@@ -0,0 +1,136 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.animation;
+
+import pixelitor.ThreadPool;
+import pixelitor.filters.ParametrizedFilter;
+import pixelitor.utils.MemoryInfo;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the filter of a tweening animation for a sequence of frames
+ * concurrently, each frame on its own copy of the filter, and returns
+ * the filtered images in the frame order.
+ * <p>
+ * Only a limited number of frames are filtered ahead of the caller,
+ * depending on the available memory, which limits the memory used by
+ * the frames waiting for their turn. The frames don't run on the
+ * {@link ThreadPool}, because the filters themselves can wait for
+ * the tasks that they submit to the pool.
+ * <p>
+ * The filter copies are created on the calling thread, because
+ * creating them isn't necessarily thread-safe.
+ */
+class TweenFrameFilter implements AutoCloseable {
+    // the result of a frame and the intermediate images of the filter
+    private static final int IMAGES_PER_FRAME = 3;
+
+    private final TweenAnimation animation;
+    private final ParametrizedFilter filter;
+    private final BufferedImage src;
+
+    // the times of the frames that are filtered ahead
+    private final List<Double> times;
+    private int nextToSubmit = 0;
+
+    // the reorder buffer: the frames that are
+    // submitted, but not yet taken, in frame order
+    private final Deque<Future<BufferedImage>> pending = new ArrayDeque<>();
+    private final int maxAhead;
+
+    private final ExecutorService executor;
+
+    TweenFrameFilter(TweenAnimation animation, BufferedImage src, List<Double> times) {
+        this.animation = animation;
+        this.src = src;
+        this.times = times;
+        filter = animation.getFilter();
+
+        maxAhead = calcMaxAhead(src);
+        int numThreads = Math.min(ThreadPool.NUM_CORES, maxAhead);
+        AtomicInteger threadCount = new AtomicInteger(1);
+        executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "TweenFrame-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // the frames filtered ahead can use half of the available memory
+    private static int calcMaxAhead(BufferedImage src) {
+        long frameBytes = 4L * src.getWidth() * src.getHeight() * IMAGES_PER_FRAME;
+        long availableBytes = new MemoryInfo().getAvailableMemoryMB() * MemoryInfo.NUM_BYTES_IN_MEGABYTE;
+        long maxFrames = availableBytes / 2 / frameBytes;
+        return (int) Math.max(1, Math.min(maxFrames, ThreadPool.NUM_CORES + 1));
+    }
+
+    /**
+     * Returns true if the given filter can be copied for each frame.
+     * Filters without user presets return themselves as their copies,
+     * and such a shared instance can't render several states at the same time.
+     */
+    static boolean canFilterConcurrently(ParametrizedFilter filter) {
+        return filter.copy() != filter;
+    }
+
+    /**
+     * Returns the filtered image for the next time of the sequence.
+     */
+    BufferedImage next() throws ExecutionException, InterruptedException {
+        while (nextToSubmit < times.size() && pending.size() < maxAhead) {
+            ParametrizedFilter frameFilter = createFrameFilter(times.get(nextToSubmit++));
+            pending.addLast(executor.submit(() -> frameFilter.transformImage(src)));
+        }
+        if (pending.isEmpty()) {
+            throw new IllegalStateException("no more frames");
+        }
+        return pending.removeFirst().get();
+    }
+
+    /**
+     * Filters a frame for the given time on the calling thread,
+     * used for the frames that are not part of the sequence.
+     */
+    BufferedImage filterFrame(double time) {
+        return createFrameFilter(time).transformImage(src);
+    }
+
+    private ParametrizedFilter createFrameFilter(double time) {
+        ParametrizedFilter frameFilter = (ParametrizedFilter) filter.copy();
+        frameFilter.getParamSet().setState(animation.tween(time), true);
+        return frameFilter;
+    }
+
+    /**
+     * Cancels the frames that weren't taken, and stops the threads.
+     */
+    @Override
+    public void close() {
+        for (Future<BufferedImage> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+    }
+}
@@ -23,12 +23,12 @@ import pixelitor.filters.gui.FilterWithGUI;
 import pixelitor.filters.util.FilterAction;
 import pixelitor.layers.Filterable;
 import pixelitor.utils.Messages;
+import pixelitor.utils.Rnd;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ImagingOpException;
 import java.awt.image.Kernel;
-import java.util.Random;
 
 /**
  * A customizable convolution filter.
@@ -90,10 +90,9 @@ public class Convolve extends FilterWithGUI {
      * Returns a randomized array that is on average close to being normalized
      */
     public static float[] createRandomKernel(int size) {
-        Random rand = new Random();
         float[] kernelValues = new float[size * size];
         for (int i = 0; i < kernelValues.length; i++) {
-            int randomInt = rand.nextInt(10000);
+            int randomInt = Rnd.nextInt(10000);
             kernelValues[i] = (4 * randomInt / (10000.0f * kernelValues.length)) - (1.0f / kernelValues.length);
         }
 
@@ -22,6 +22,8 @@ import com.jhlabs.image.CurvesFilter;
 import pixelitor.filters.gui.FilterWithGUI;
 import pixelitor.filters.gui.UserPreset;
 import pixelitor.filters.levels.Channel;
+import pixelitor.filters.lookup.PixelAdjustment;
+import pixelitor.filters.lookup.PixelAdjustmentFilter;
 import pixelitor.layers.Filterable;
 
 import java.awt.image.BufferedImage;
@@ -34,7 +36,7 @@ import static pixelitor.utils.Texts.i18n;
  *
  * @author Łukasz Kurzaj lukaszkurzaj@gmail.com
  */
-public class ToneCurvesFilter extends FilterWithGUI {
+public class ToneCurvesFilter extends FilterWithGUI implements PixelAdjustmentFilter {
     public static final String NAME = i18n("curves");
 
     @Serial
@@ -67,12 +69,19 @@ public class ToneCurvesFilter extends FilterWithGUI {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
+        return getCurvesFilter().filter(src, dest);
+    }
+
+    @Override
+    public PixelAdjustment createPixelAdjustment() {
+        int[][] tables = getCurvesFilter().getTables();
+        return PixelAdjustment.fromChannelTables(tables[0], tables[1], tables[2], false);
+    }
+
+    private CurvesFilter getCurvesFilter() {
         if (filter == null) {
             filter = new CurvesFilter(NAME);
         }
-        if (curves == null) {
-            return src;
-        }
 
         filter.setCurves(
             curves.getCurve(Channel.RGB).curveData,
@@ -80,8 +89,7 @@ public class ToneCurvesFilter extends FilterWithGUI {
             curves.getCurve(Channel.GREEN).curveData,
             curves.getCurve(Channel.BLUE).curveData
         );
-
-        return filter.filter(src, dest);
+        return filter;
     }
 
     @Override
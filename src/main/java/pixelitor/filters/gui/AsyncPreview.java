@@ -0,0 +1,367 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters.gui;
+
+import pixelitor.AppMode;
+import pixelitor.Composition;
+import pixelitor.FilterContext;
+import pixelitor.filters.Filter;
+import pixelitor.filters.util.Filters;
+import pixelitor.gui.View;
+import pixelitor.gui.utils.GUIUtils;
+import pixelitor.layers.Drawable;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Messages;
+import pixelitor.utils.ProgressPanel;
+import pixelitor.utils.StatusBarProgressTracker;
+import pixelitor.utils.test.RandomGUITest;
+
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.jhlabs.image.AbstractBufferedImageOp.MARGIN_FULL_INPUT;
+import static com.jhlabs.image.AbstractBufferedImageOp.MARGIN_UNKNOWN;
+import static java.awt.image.BufferedImage.TYPE_CUSTOM;
+import static pixelitor.utils.Threads.calledOnEDT;
+import static pixelitor.utils.Threads.threadInfo;
+
+/**
+ * Computes the filter previews of a filter dialog outside the EDT,
+ * so that the dialog stays responsive while a slow filter is running.
+ * <p>
+ * A new preview interrupts the computation of the previous one, and
+ * the results of superseded previews are never shown. The settings
+ * changed while a preview stops are previewed together. If the previews
+ * of the filter are slow, then a quick preview is first calculated
+ * for the visible part of the image (if the filter supports regions)
+ * or from a reduced-resolution copy of the image, and then
+ * the whole image is filtered at full resolution.
+ */
+class AsyncPreview {
+    // a single thread, so that the superseded previews
+    // don't compete with the current one for the cores
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "FilterPreview");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // previews taking longer than this also get a reduced-resolution pass
+    private static final long REFINE_THRESHOLD_MS = 100;
+
+    private static final int MAX_REDUCTION = 4;
+
+    // the smaller dimension of the reduced-resolution image won't go below this
+    private static final int MIN_REDUCED_SIZE = 128;
+
+    private final Drawable dr;
+    private final ProgressPanel progressPanel;
+
+    // the following fields are only accessed on the EDT
+    private Filter filter;
+    private Component busyCursorTarget;
+    private Future<BufferedImage> pending;
+    private long pendingStartTime;
+
+    // set by the preview thread when the pending preview starts,
+    // or on the EDT if it's superseded before starting
+    private AtomicBoolean pendingClaimed;
+
+    // true if a new preview should be started when the
+    // interrupted one actually stops on the preview thread
+    private boolean restartRequested;
+    private long generation;
+    private long appliedGeneration;
+    private long lastDurationMs = -1;
+    private boolean closed;
+
+    AsyncPreview(Drawable dr, ProgressPanel progressPanel) {
+        this.dr = dr;
+        this.progressPanel = progressPanel;
+    }
+
+    /**
+     * Returns true if the previews should be computed outside the EDT.
+     */
+    static boolean isEnabled() {
+        // the tests rely on the synchronous previews
+        return !AppMode.isUnitTesting() && !RandomGUITest.isRunning();
+    }
+
+    /**
+     * Starts computing a new preview, superseding the previous one.
+     */
+    void start(Filter filter, Component busyCursorTarget) {
+        assert calledOnEDT() : threadInfo();
+
+        this.filter = filter;
+        this.busyCursorTarget = busyCursorTarget;
+        closed = false;
+        generation++;
+
+        if (restartRequested) {
+            // the latest settings are previewed when the interrupted preview stops
+            return;
+        }
+        if (pending != null && !pending.isDone() && !pendingClaimed.compareAndSet(false, true)) {
+            // use the time spent so far on the superseded
+            // preview as an estimate for the next one
+            long elapsedMs = (System.nanoTime() - pendingStartTime) / 1_000_000;
+            lastDurationMs = Math.max(lastDurationMs, elapsedMs);
+
+            // The filter is copied only after the running preview stops, so
+            // that the changes made in the meantime (for example while dragging
+            // a slider) don't copy the filter for previews that never start.
+            pending.cancel(true);
+            restartRequested = true;
+            return;
+        }
+        // if it was pending, then it's now claimed, and it won't start
+        startLatest();
+    }
+
+    private void startLatest() {
+        long gen = generation;
+        BufferedImage src = dr.getFilterSourceImage();
+        int reduction = calcReduction(src);
+        Rectangle visible = calcVisibleRegion(src);
+
+        // the preview thread works with a snapshot of the filter's
+        // settings, because they can be changed on the EDT meanwhile
+        Filter snapshot = filter.copy();
+
+        AtomicBoolean claimed = new AtomicBoolean();
+        pendingClaimed = claimed;
+        pendingStartTime = System.nanoTime();
+        pending = executor.submit(() -> claimed.compareAndSet(false, true)
+            ? compute(snapshot, src, gen, reduction, visible)
+            : null);
+    }
+
+    // called when a started preview stops on the preview thread
+    private void previewStopped() {
+        if (restartRequested) {
+            restartRequested = false;
+            if (!closed) {
+                startLatest();
+            }
+        }
+    }
+
+    /**
+     * Returns the part of the source image that is visible in
+     * the view, or null if it's not worth filtering it first.
+     */
+    private Rectangle calcVisibleRegion(BufferedImage src) {
+        if (lastDurationMs >= 0 && lastDurationMs < REFINE_THRESHOLD_MS) {
+            return null;
+        }
+        Composition comp = dr.getComp();
+        if (comp.hasSelection()) {
+            // the source image is only the selected area
+            return null;
+        }
+        View view = comp.getView();
+        if (view == null || view.isMock()) {
+            return null;
+        }
+
+        Rectangle visible = view.componentToImageSpace(view.getVisibleRegion()).getBounds();
+        visible.translate(-dr.getTx(), -dr.getTy());
+        visible = visible.intersection(new Rectangle(0, 0, src.getWidth(), src.getHeight()));
+        if (visible.isEmpty() || !isMuchSmaller(visible, src)) {
+            return null;
+        }
+        return visible;
+    }
+
+    private static boolean isMuchSmaller(Rectangle region, BufferedImage src) {
+        return 2L * region.width * region.height < (long) src.getWidth() * src.getHeight();
+    }
+
+    private int calcReduction(BufferedImage src) {
+        if (lastDurationMs < REFINE_THRESHOLD_MS || src.getType() == TYPE_CUSTOM) {
+            return 1;
+        }
+        int reduction = lastDurationMs < 4 * REFINE_THRESHOLD_MS ? 2 : MAX_REDUCTION;
+        int minSize = Math.min(src.getWidth(), src.getHeight());
+        while (reduction > 1 && minSize / reduction < MIN_REDUCED_SIZE) {
+            reduction /= 2;
+        }
+        return reduction;
+    }
+
+    // runs on the preview thread
+    private BufferedImage compute(Filter filter, BufferedImage src, long gen,
+                                  int reduction, Rectangle visible) {
+        StatusBarProgressTracker.startPreviewThread(progressPanel);
+        try {
+            boolean regionShown = visible != null && computeVisible(filter, src, gen, visible);
+            if (!regionShown && reduction > 1) {
+                computeReduced(filter, src, gen, reduction);
+            }
+            long startTime = System.nanoTime();
+            BufferedImage dest = filter.transformImage(src);
+            long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+
+            EventQueue.invokeLater(() -> previewFinished(gen, dest, durationMs));
+            return dest;
+        } catch (CancellationException e) {
+            throw e; // superseded, nothing to do
+        } catch (RuntimeException | Error e) {
+            EventQueue.invokeLater(() -> previewFailed(gen));
+            throw e;
+        } finally {
+            StatusBarProgressTracker.endPreviewThread();
+            EventQueue.invokeLater(this::previewStopped);
+        }
+    }
+
+    // returns true if the visible region was filtered
+    private boolean computeVisible(Filter filter, BufferedImage src, long gen, Rectangle visible) {
+        int margin = filter.getRegionMargin();
+        if (margin == MARGIN_UNKNOWN) {
+            return false;
+        }
+        if (margin != MARGIN_FULL_INPUT) {
+            Rectangle inputBounds = new Rectangle(visible);
+            inputBounds.grow(margin, margin);
+            if (!isMuchSmaller(inputBounds, src)) {
+                return false;
+            }
+        }
+
+        BufferedImage regionDest = filter.transformRegion(src, visible);
+        if (regionDest == null) {
+            return false;
+        }
+        EventQueue.invokeLater(() -> {
+            if (isCurrent(gen)) {
+                dr.changePreviewImage(regionDest, filter.getName(), FilterContext.PREVIEWING);
+            }
+        });
+        return true;
+    }
+
+    private void computeReduced(Filter filter, BufferedImage src, long gen, int reduction) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        BufferedImage approx;
+        try {
+            BufferedImage reduced = ImageUtils.resize(src, width / reduction, height / reduction);
+            BufferedImage reducedDest = filter.transformImage(reduced);
+            approx = ImageUtils.resize(reducedDest, width, height);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // some filters assume the canvas size, the
+            // full-resolution pass will report real errors
+            return;
+        }
+        EventQueue.invokeLater(() -> {
+            if (isCurrent(gen)) {
+                dr.changePreviewImage(approx, filter.getName(), FilterContext.PREVIEWING);
+            }
+        });
+    }
+
+    private boolean isCurrent(long gen) {
+        return !closed && gen == generation && appliedGeneration != gen;
+    }
+
+    private void previewFinished(long gen, BufferedImage dest, long durationMs) {
+        if (isCurrent(gen)) {
+            showResult(dest, durationMs);
+        }
+    }
+
+    private void showResult(BufferedImage dest, long durationMs) {
+        appliedGeneration = generation;
+        lastDurationMs = durationMs;
+        if (progressPanel != null) {
+            progressPanel.hideProgressBar();
+        }
+
+        dr.changePreviewImage(dest, filter.getName(), FilterContext.PREVIEWING);
+        Messages.showPerformanceMessage(filter.getName(), durationMs);
+        Filters.setLastFilter(filter);
+    }
+
+    private void previewFailed(long gen) {
+        if (isCurrent(gen)) {
+            runOnEDT();
+        }
+    }
+
+    // runs the filter synchronously, with the usual error reporting
+    private void runOnEDT() {
+        appliedGeneration = generation;
+        if (progressPanel != null) {
+            progressPanel.hideProgressBar();
+        }
+        dr.startPreview(filter, false, busyCursorTarget);
+    }
+
+    /**
+     * Waits for the latest preview to be finished at full resolution,
+     * so that the dialog can be accepted with the final result.
+     */
+    void finish() {
+        assert calledOnEDT() : threadInfo();
+
+        if (pending != null && appliedGeneration != generation) {
+            GUIUtils.runWithBusyCursor(this::waitForLatest, busyCursorTarget);
+        }
+        closed = true;
+    }
+
+    private void waitForLatest() {
+        try {
+            BufferedImage dest = pending.get();
+            long durationMs = (System.nanoTime() - pendingStartTime) / 1_000_000;
+            showResult(dest, durationMs);
+        } catch (ExecutionException | CancellationException e) {
+            runOnEDT();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Abandons the preview that is currently computed.
+     */
+    void cancel() {
+        assert calledOnEDT() : threadInfo();
+
+        closed = true;
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        if (progressPanel != null) {
+            progressPanel.hideProgressBar();
+        }
+    }
+}
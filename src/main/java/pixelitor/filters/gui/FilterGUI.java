@@ -19,7 +19,9 @@ package pixelitor.filters.gui;
 
 import pixelitor.filters.Filter;
 import pixelitor.gui.utils.GUIUtils;
+import pixelitor.layers.Drawable;
 import pixelitor.layers.Filterable;
+import pixelitor.utils.ProgressPanel;
 
 import javax.swing.*;
 import java.awt.Component;
@@ -33,6 +35,12 @@ public abstract class FilterGUI extends JPanel {
     protected Filter filter;
     private final Filterable layer;
 
+    // shows the progress of the previews computed outside the EDT,
+    // it's null if the subclass doesn't have a place for it
+    protected ProgressPanel progressPanel;
+
+    private AsyncPreview asyncPreview;
+
     protected FilterGUI(Filter filter, Filterable layer) {
         this.filter = filter;
         this.layer = layer;
@@ -42,6 +50,35 @@ public abstract class FilterGUI extends JPanel {
         Component busyCursorTarget = firstPreview
             ? GUIUtils.getTopmostContainer(this)
             : this;
-        layer.startPreview(filter, firstPreview, busyCursorTarget);
+
+        // image layers and masks can compute the preview outside the EDT,
+        // the other layers only update a few settings in their previews
+        if (layer instanceof Drawable dr && AsyncPreview.isEnabled()) {
+            if (asyncPreview == null) {
+                asyncPreview = new AsyncPreview(dr, progressPanel);
+            }
+            asyncPreview.start(filter, busyCursorTarget);
+        } else {
+            layer.startPreview(filter, firstPreview, busyCursorTarget);
+        }
+    }
+
+    /**
+     * Called before the dialog is accepted to make
+     * sure that the final preview is shown.
+     */
+    public void finishPreview() {
+        if (asyncPreview != null) {
+            asyncPreview.finish();
+        }
+    }
+
+    /**
+     * Called before the dialog is canceled.
+     */
+    public void cancelPreview() {
+        if (asyncPreview != null) {
+            asyncPreview.cancel();
+        }
     }
 }
@@ -18,6 +18,7 @@
 package pixelitor.filters.gui;
 
 import com.jhlabs.image.ImageMath;
+import pixelitor.utils.Rnd;
 
 import javax.swing.*;
 import java.awt.geom.Point2D;
@@ -62,7 +63,7 @@ public class ImagePositionParam extends AbstractFilterParam {
 
     @Override
     protected void doRandomize() {
-        setRelativePosition(Math.random(), Math.random(), true, false, false);
+        setRelativePosition(Rnd.nextDouble(), Rnd.nextDouble(), true, false, false);
     }
 
     public double getRelativeX() {
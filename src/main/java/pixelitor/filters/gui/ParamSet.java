@@ -54,6 +54,10 @@ public class ParamSet implements Debuggable {
     private boolean savesSeed;
     private LongConsumer seedChangedAction;
 
+    // true if the seed changed action reinitializes
+    // static random tables shared by all filters
+    private boolean seedActionIsShared;
+
     public ParamSet() {
     }
 
@@ -247,6 +251,17 @@ public class ParamSet implements Debuggable {
     }
 
     public void loadUserPreset(UserPreset preset) {
+        loadUserPreset(preset, false);
+    }
+
+    /**
+     * Loads the given preset. For copies of filters the shared random
+     * tables aren't reinitialized, because the copies should work
+     * like the original filter, which uses their current state,
+     * and because the copies might be created while other threads
+     * are reading these tables.
+     */
+    public void loadUserPreset(UserPreset preset, boolean forCopy) {
         long executionsBefore = Filter.executionCount;
 
         for (FilterParam param : params) {
@@ -255,7 +270,7 @@ public class ParamSet implements Debuggable {
         if (savesSeed) {
             seed = preset.getLong(SEED_KEY, seed);
             simplex = null; // make sure getLastSeedSimplex() is also reset
-            if (seedChangedAction != null) {
+            if (seedChangedAction != null && !(forCopy && seedActionIsShared)) {
                 seedChangedAction.accept(seed);
             }
         }
@@ -395,6 +410,7 @@ public class ParamSet implements Debuggable {
     public FilterButtonModel createReseedNoiseAction(String text, String toolTip) {
         initReseedSupport(false);
         seedChangedAction = Noise::reseed;
+        seedActionIsShared = true;
 
         return FilterButtonModel.createReseed(() -> {
             reseed();
@@ -410,6 +426,7 @@ public class ParamSet implements Debuggable {
             random.setSeed(newSeed);
             CachedFloatRandom.rebuildCache(random);
         };
+        seedActionIsShared = true;
 
         return FilterButtonModel.createReseed(() -> {
             reseed();
@@ -21,6 +21,7 @@ import pixelitor.Views;
 import pixelitor.filters.ParametrizedFilter;
 import pixelitor.gui.utils.GUIUtils;
 import pixelitor.layers.Filterable;
+import pixelitor.utils.ProgressPanel;
 
 import javax.swing.*;
 import java.awt.BorderLayout;
@@ -70,9 +71,14 @@ public class ParametrizedFilterGUI extends FilterGUI implements ParamAdjustmentL
         JPanel filterActionsPanel = createFilterActionsPanel(
             paramSet.getActions(), addShowOriginal, 3);
 
+        progressPanel = new ProgressPanel();
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(filterActionsPanel, CENTER);
+        southPanel.add(progressPanel, SOUTH);
+
         setLayout(new BorderLayout());
         add(filterParamsPanel, CENTER);
-        add(filterActionsPanel, SOUTH);
+        add(southPanel, SOUTH);
     }
 
     /**
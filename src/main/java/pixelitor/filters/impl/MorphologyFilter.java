@@ -14,17 +14,29 @@
  * You should have received a copy of the GNU General Public License
  * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
  */
-
 package pixelitor.filters.impl;
 
 import com.jhlabs.image.WholeImageFilter;
+import pixelitor.ThreadPool;
 import pixelitor.filters.Morphology;
 
+import java.util.Arrays;
+
+import static pixelitor.utils.ProgressTracker.NULL_TRACKER;
+
 /**
  * The implementation of the {@link Morphology} filter.
+ * <p>
+ * The result is the same as repeating a 3x3 minimum or maximum
+ * radius times, but the running time doesn't depend on the radius:
+ * the square kernel is separated into a horizontal and a vertical
+ * sliding window, and the diamond kernel into a diagonal and an
+ * anti-diagonal sliding window, followed by one or two 3x3 cross-shaped
+ * steps. The extrema in the sliding windows are calculated with the
+ * van Herk/Gil-Werman algorithm.
  */
 public class MorphologyFilter extends WholeImageFilter {
-    private int iterations = 1;
+    private int radius = 1;
 
     public static final int OP_ERODE = 1;  // reduces bright areas
     public static final int OP_DILATE = 2; // expands bright areas
@@ -46,101 +58,258 @@ public class MorphologyFilter extends WholeImageFilter {
         this.op = op;
     }
 
-    public void setIterations(int iterations) {
-        this.iterations = iterations;
+    public void setRadius(int radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * Returns the number of progress units of one filter call
+     * for the current kernel and radius.
+     */
+    public int getNumPasses() {
+        if (kernel == KERNEL_SQUARE) {
+            return 2;
+        }
+        int diagonalRadius = (radius - 1) / 2;
+        int numCrossPasses = radius - 2 * diagonalRadius;
+        return diagonalRadius > 0 ? 2 + numCrossPasses : numCrossPasses;
     }
 
     @Override
     protected int[] filterPixels(int width, int height, int[] inPixels) {
-        int numPixels = inPixels.length;
-        short[] inA = new short[numPixels];
-        short[] inR = new short[numPixels];
-        short[] inG = new short[numPixels];
-        short[] inB = new short[numPixels];
-        int[] outPixels = new int[width * height];
+        boolean erode = op == OP_ERODE;
+
+        pt = createProgressTracker(getNumPasses());
+        int[] outPixels = kernel == KERNEL_SQUARE
+            ? filterSquare(width, height, inPixels, erode)
+            : filterDiamond(width, height, inPixels, erode);
+        finishProgressTracker();
 
-        pt = createProgressTracker(iterations);
-        for (int it = 0; it < iterations; it++) {
-            if (it > 0) {
-                // use output pixels from previous iteration as input for this iteration
-                System.arraycopy(outPixels, 0, inPixels, 0, numPixels);
+        if (!erode) {
+            // as the original 3x3 implementation, the
+            // dilation always produces opaque pixels
+            for (int i = 0; i < outPixels.length; i++) {
+                outPixels[i] |= 0xFF_00_00_00;
             }
+        }
+        return outPixels;
+    }
+
+    // the square kernel is the sum of a horizontal and a vertical
+    // line, and because the image is also a rectangle, the pixels
+    // outside the image can be simply ignored in both passes
+    private int[] filterSquare(int width, int height, int[] pixels, boolean erode) {
+        int[] horizontal = new int[pixels.length];
+        ThreadPool.parallelFor(height, (startY, endY) -> {
+            var lineFilter = new LineFilter(erode, radius, width);
+            for (int y = startY; y < endY; y++) {
+                lineFilter.filter(pixels, horizontal, y * width, 1, width);
+            }
+        }, NULL_TRACKER);
+        pt.unitDone();
 
-            // extract the color channels
-            for (int i = 0; i < numPixels; i++) {
-                int rgb = inPixels[i];
-                inA[i] = (short) ((rgb >> 24) & 0xFF);
-                inR[i] = (short) ((rgb >> 16) & 0xFF);
-                inG[i] = (short) ((rgb >> 8) & 0xFF);
-                inB[i] = (short) (rgb & 0xFF);
+        int[] outPixels = new int[pixels.length];
+        ThreadPool.parallelFor(width, (startX, endX) -> {
+            var lineFilter = new LineFilter(erode, radius, height);
+            for (int x = startX; x < endX; x++) {
+                lineFilter.filter(horizontal, outPixels, x, width, height);
             }
+        }, NULL_TRACKER);
+        pt.unitDone();
+
+        return outPixels;
+    }
 
-            int index = 0; // the index of the processed pixel
-            for (int y = 0; y < height; y++) {
+    // The diamond kernel of radius 2k+1 is the sum of a diagonal and an
+    // anti-diagonal line of radius k (which together give the pixels with an
+    // even coordinate sum) and a cross, and for even radii there is
+    // an additional cross. The intermediate results are also needed
+    // outside the image, therefore they are calculated on a padded image.
+    private int[] filterDiamond(int width, int height, int[] pixels, boolean erode) {
+        int diagonalRadius = (radius - 1) / 2;
+        int numCrossPasses = radius - 2 * diagonalRadius;
+
+        // the first pass can read only the original pixels, but the
+        // later passes also read the results of the earlier passes
+        // within the reach of their own kernels
+        int pad = diagonalRadius > 0
+            ? diagonalRadius + numCrossPasses
+            : numCrossPasses - 1;
+        int paddedWidth = width + 2 * pad;
+        int paddedHeight = height + 2 * pad;
+
+        int[] current = pad(pixels, width, height, pad, neutralValue(erode));
+        int[] next = new int[current.length];
+
+        if (diagonalRadius > 0) {
+            diagonalPass(current, next, paddedWidth, paddedHeight, diagonalRadius, false, erode);
+            pt.unitDone();
+            diagonalPass(next, current, paddedWidth, paddedHeight, diagonalRadius, true, erode);
+            pt.unitDone();
+        }
+        for (int i = 0; i < numCrossPasses; i++) {
+            crossPass(current, next, paddedWidth, paddedHeight, erode);
+            int[] tmp = current;
+            current = next;
+            next = tmp;
+            pt.unitDone();
+        }
+
+        if (pad == 0) {
+            return current;
+        }
+        int[] outPixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(current, (y + pad) * paddedWidth + pad, outPixels, y * width, width);
+        }
+        return outPixels;
+    }
+
+    private static int[] pad(int[] pixels, int width, int height, int pad, int neutral) {
+        if (pad == 0) {
+            return pixels.clone();
+        }
+        int paddedWidth = width + 2 * pad;
+        int[] padded = new int[paddedWidth * (height + 2 * pad)];
+        Arrays.fill(padded, neutral);
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(pixels, y * width, padded, (y + pad) * paddedWidth + pad, width);
+        }
+        return padded;
+    }
+
+    private static void diagonalPass(int[] src, int[] dest, int width, int height,
+                                     int lineRadius, boolean antiDiagonal, boolean erode) {
+        // the lines start at the top edge, then continue down
+        // the left edge (diagonal) or the right edge (anti-diagonal)
+        int numLines = width + height - 1;
+        int stride = antiDiagonal ? width - 1 : width + 1;
+        int maxLength = Math.min(width, height);
+        ThreadPool.parallelFor(numLines, (startLine, endLine) -> {
+            var lineFilter = new LineFilter(erode, lineRadius, maxLength);
+            for (int line = startLine; line < endLine; line++) {
+                int x;
+                int y;
+                if (line < width) {
+                    x = line;
+                    y = 0;
+                } else {
+                    x = antiDiagonal ? width - 1 : 0;
+                    y = line - width + 1;
+                }
+                int length = antiDiagonal
+                    ? Math.min(x + 1, height - y)
+                    : Math.min(width - x, height - y);
+                lineFilter.filter(src, dest, y * width + x, stride, length);
+            }
+        }, NULL_TRACKER);
+    }
+
+    private static void crossPass(int[] src, int[] dest, int width, int height, boolean erode) {
+        ThreadPool.parallelFor(height, (startY, endY) -> {
+            for (int y = startY; y < endY; y++) {
+                int offset = y * width;
                 for (int x = 0; x < width; x++) {
-                    // the final alpha, red, green, blue values
-                    short a = 0xFF;
-                    short r = 0xFF;
-                    short g = 0xFF;
-                    short b = 0xFF;
-
-                    if (op == OP_DILATE) {
-                        // initialize them with 0
-                        r = 0;
-                        g = 0;
-                        b = 0;
+                    int i = offset + x;
+                    int value = src[i];
+                    if (x > 0) {
+                        value = combine(value, src[i - 1], erode);
                     }
-
-                    // examine neighboring pixels
-                    for (int dy = -1; dy <= 1; dy++) {
-                        int ny = y + dy;
-                        if (0 <= ny && ny < height) {
-                            int xOffset = ny * width;
-                            for (int dx = -1; dx <= 1; dx++) {
-                                if (kernel == KERNEL_DIAMOND) {
-                                    // ignore the corner neighbours
-                                    if (dx == dy && dx != 0) {
-                                        continue;
-                                    }
-                                    if (dx == -dy && dx != 0) {
-                                        continue;
-                                    }
-                                }
-
-                                int nx = x + dx;
-                                if (0 <= nx && nx < width) {
-                                    int neighborIndex = xOffset + nx;
-
-                                    if (op == OP_ERODE) {
-                                        a = min(a, inA[neighborIndex]);
-                                        r = min(r, inR[neighborIndex]);
-                                        g = min(g, inG[neighborIndex]);
-                                        b = min(b, inB[neighborIndex]);
-                                    } else {
-                                        a = max(a, inA[neighborIndex]);
-                                        r = max(r, inR[neighborIndex]);
-                                        g = max(g, inG[neighborIndex]);
-                                        b = max(b, inB[neighborIndex]);
-                                    }
-                                }
-                            }
-                        }
+                    if (x < width - 1) {
+                        value = combine(value, src[i + 1], erode);
                     }
-                    outPixels[index++] = a << 24 | r << 16 | g << 8 | b;
+                    if (y > 0) {
+                        value = combine(value, src[i - width], erode);
+                    }
+                    if (y < height - 1) {
+                        value = combine(value, src[i + width], erode);
+                    }
+                    dest[i] = value;
                 }
             }
-            pt.unitDone();
-        }
-        finishProgressTracker();
-        return outPixels;
+        }, NULL_TRACKER);
     }
 
-    private static short min(short a, short b) {
-        return (a <= b) ? a : b;
+    /**
+     * Returns the value that doesn't change the result
+     * of {@link #combine(int, int, boolean)}.
+     */
+    private static int neutralValue(boolean erode) {
+        return erode ? 0xFF_FF_FF_FF : 0;
     }
 
-    private static short max(short a, short b) {
-        return (a >= b) ? a : b;
+    /**
+     * Returns the channel-wise minimum (erode) or maximum (dilate) of two pixels.
+     */
+    private static int combine(int p, int q, boolean erode) {
+        if (erode) {
+            return Math.min(p >>> 24, q >>> 24) << 24
+                | Math.min((p >>> 16) & 0xFF, (q >>> 16) & 0xFF) << 16
+                | Math.min((p >>> 8) & 0xFF, (q >>> 8) & 0xFF) << 8
+                | Math.min(p & 0xFF, q & 0xFF);
+        }
+        return Math.max(p >>> 24, q >>> 24) << 24
+            | Math.max((p >>> 16) & 0xFF, (q >>> 16) & 0xFF) << 16
+            | Math.max((p >>> 8) & 0xFF, (q >>> 8) & 0xFF) << 8
+            | Math.max(p & 0xFF, q & 0xFF);
     }
-}
 
+    /**
+     * Calculates the minimum or maximum in a sliding window along
+     * a line of pixels with the van Herk/Gil-Werman algorithm:
+     * the line is split into blocks of the window size, and each window
+     * is covered by a suffix of one block and a prefix of the next one,
+     * so there are three operations per pixel for any window size.
+     * The pixels outside the line are ignored. Not thread-safe,
+     * each thread needs its own instance.
+     */
+    private static class LineFilter {
+        private final boolean erode;
+        private final int neutral;
+        private final int lineRadius;
+        private final int[] line;
+        private final int[] prefix;
+        private final int[] suffix;
+
+        LineFilter(boolean erode, int lineRadius, int maxLength) {
+            this.erode = erode;
+            this.lineRadius = lineRadius;
+            neutral = neutralValue(erode);
+
+            int size = maxLength + 2 * lineRadius;
+            line = new int[size];
+            prefix = new int[size];
+            suffix = new int[size];
+        }
+
+        void filter(int[] src, int[] dest, int start, int stride, int length) {
+            // copy the line with a neutral margin on both sides
+            int size = length + 2 * lineRadius;
+            Arrays.fill(line, 0, lineRadius, neutral);
+            for (int i = 0, si = start; i < length; i++, si += stride) {
+                line[lineRadius + i] = src[si];
+            }
+            Arrays.fill(line, lineRadius + length, size, neutral);
+
+            int windowSize = 2 * lineRadius + 1;
+            for (int blockStart = 0; blockStart < size; blockStart += windowSize) {
+                int blockEnd = Math.min(blockStart + windowSize, size);
+
+                prefix[blockStart] = line[blockStart];
+                for (int i = blockStart + 1; i < blockEnd; i++) {
+                    prefix[i] = combine(prefix[i - 1], line[i], erode);
+                }
+
+                suffix[blockEnd - 1] = line[blockEnd - 1];
+                for (int i = blockEnd - 2; i >= blockStart; i--) {
+                    suffix[i] = combine(suffix[i + 1], line[i], erode);
+                }
+            }
+
+            // the window of the i-th pixel is line[i..i + 2 * lineRadius]
+            for (int i = 0, di = start; i < length; i++, di += stride) {
+                dest[di] = combine(suffix[i], prefix[i + 2 * lineRadius], erode);
+            }
+        }
+    }
+}
@@ -55,12 +55,7 @@ public class JHGaussianBlur extends ParametrizedFilter {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
-        if (filter == null) {
-            filter = new GaussianFilter(NAME);
-        }
-
-        filter.setRadius(radius.getValueAsFloat());
-        filter.setPremultiplyAlpha(false);
+        configureFilter();
 
         dest = ImageUtils.filterPremultiplied(src, dest, filter);
 
@@ -71,6 +66,22 @@ public class JHGaussianBlur extends ParametrizedFilter {
         return dest;
     }
 
+    private void configureFilter() {
+        if (filter == null) {
+            filter = new GaussianFilter(NAME);
+        }
+
+        filter.setRadius(radius.getValueAsFloat());
+        filter.setPremultiplyAlpha(false);
+    }
+
+    @Override
+    public int getRegionMargin() {
+        // the high-pass sharpening works pixel by pixel
+        configureFilter();
+        return filter.getInputMargin();
+    }
+
     @Override
     public boolean supportsGray() {
         return !hpSharpening.isChecked();
@@ -25,9 +25,12 @@ import pixelitor.filters.gui.IntChoiceParam;
 import pixelitor.filters.gui.RangeParam;
 import pixelitor.gui.GUIText;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.Serial;
+import java.util.List;
 
+import static com.jhlabs.image.AbstractBufferedImageOp.MARGIN_FULL_INPUT;
 import static pixelitor.gui.GUIText.ZOOM;
 
 /**
@@ -69,6 +72,11 @@ public class JHSwirlPinchBulge extends ParametrizedFilter {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
+        return transform(src, dest, null);
+    }
+
+    @Override
+    protected BufferedImage transform(BufferedImage src, BufferedImage dest, Rectangle region) {
         if (filter == null) {
             filter = new PinchFilter();
         }
@@ -81,9 +89,18 @@ public class JHSwirlPinchBulge extends ParametrizedFilter {
         filter.setRotateResultAngle((float) rotateResult.getValueInIntuitiveRadians());
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
+        filter.setDestRegion(region);
+        filter.setMappingKey(List.of(pinchBulgeAmount.getValueAsDouble(),
+            swirlAmount.getValueInRadians(), radius.getValueAsDouble(), center.getRelativePoint(),
+            zoom.getValueAsDouble(), rotateResult.getValueInRadians()));
 
         dest = filter.filter(src, dest);
 //        setAffectedAreaShapes(filter.getAffectedAreaShapes());
         return dest;
     }
-}
\ No newline at end of file
+
+    @Override
+    public int getRegionMargin() {
+        return MARGIN_FULL_INPUT;
+    }
+}
@@ -58,6 +58,11 @@ public class JHUnsharpMask extends ParametrizedFilter {
             return src;
         }
 
+        configureFilter();
+        return filter.filter(src, dest);
+    }
+
+    private void configureFilter() {
         if (filter == null) {
             filter = new UnsharpFilter(NAME);
         }
@@ -65,7 +70,11 @@ public class JHUnsharpMask extends ParametrizedFilter {
         filter.setAmount((float) amount.getPercentage());
         filter.setThreshold(threshold.getValue());
         filter.setRadius(radius.getValueAsFloat());
+    }
 
-        return filter.filter(src, dest);
+    @Override
+    public int getRegionMargin() {
+        configureFilter();
+        return filter.getInputMargin();
     }
 }
\ No newline at end of file
@@ -18,6 +18,7 @@
 package pixelitor.filters.jhlabsproxies;
 
 import com.jhlabs.image.RippleFilter;
+import com.jhlabs.math.Noise;
 import pixelitor.filters.ParametrizedFilter;
 import pixelitor.filters.gui.AngleParam;
 import pixelitor.filters.gui.GroupedRangeParam;
@@ -25,6 +26,7 @@ import pixelitor.filters.gui.IntChoiceParam;
 
 import java.awt.image.BufferedImage;
 import java.io.Serial;
+import java.util.List;
 
 /**
  * Waves filter based on the JHLabs RippleFilter
@@ -86,6 +88,9 @@ public class JHWaves extends ParametrizedFilter {
 
         filter.setEdgeAction(edgeAction.getValue());
         filter.setInterpolation(interpolation.getValue());
+        filter.setMappingKey(List.of(xAmplitude, yAmplitude, xWavelength, yWavelength,
+            angleParam.getValueInRadians(), waveType.getValue(), phaseParam.getValueAsDouble(0),
+            phaseParam.getValueAsDouble(1), Noise.getVersion()));
 
         return filter.filter(src, dest);
     }
@@ -22,6 +22,8 @@ import pixelitor.filters.gui.FilterWithGUI;
 import pixelitor.filters.gui.UserPreset;
 import pixelitor.filters.levels.gui.LevelsGUI;
 import pixelitor.filters.lookup.FastLookupOp;
+import pixelitor.filters.lookup.PixelAdjustment;
+import pixelitor.filters.lookup.PixelAdjustmentFilter;
 import pixelitor.layers.Filterable;
 import pixelitor.utils.Rnd;
 
@@ -36,7 +38,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * The Levels filter
  */
-public class Levels extends FilterWithGUI {
+public class Levels extends FilterWithGUI implements PixelAdjustmentFilter {
     public static final String NAME = i18n("levels");
 
     @Serial
@@ -64,17 +66,24 @@ public class Levels extends FilterWithGUI {
 
     @Override
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
-        if (rgbLookup == null) {
-            throw new IllegalStateException("rgbLookup not initialized");
-        }
-
-        ShortLookupTable lut = (ShortLookupTable) rgbLookup.getLookupOp();
-        BufferedImageOp filterOp = new FastLookupOp(lut);
+        BufferedImageOp filterOp = new FastLookupOp(getLookupTable());
         dest = filterOp.filter(src, dest);
 
         return dest;
     }
 
+    @Override
+    public PixelAdjustment createPixelAdjustment() {
+        return PixelAdjustment.fromLookupOp(getLookupTable());
+    }
+
+    private ShortLookupTable getLookupTable() {
+        if (rgbLookup == null) {
+            throw new IllegalStateException("rgbLookup not initialized");
+        }
+        return (ShortLookupTable) rgbLookup.getLookupOp();
+    }
+
     @Override
     public void randomize() {
         int inputDark = Rnd.nextInt(255);
@@ -35,7 +35,7 @@ import static pixelitor.utils.Texts.i18n;
 /**
  * Color balance filter
  */
-public class ColorBalance extends ParametrizedFilter {
+public class ColorBalance extends ParametrizedFilter implements PixelAdjustmentFilter {
     public static final String NAME = i18n("color_balance");
 
     @Serial
@@ -84,23 +84,39 @@ public class ColorBalance extends ParametrizedFilter {
     public BufferedImage transform(BufferedImage src, BufferedImage dest) {
         assert dest == null;
 
+        ShortLookupTable lut = createLookupTable();
+        if (lut == null) {
+            return src;
+        }
+
+        var filterOp = new FastLookupOp(lut);
+        dest = filterOp.filter(src, null);
+
+        return dest;
+    }
+
+    @Override
+    public PixelAdjustment createPixelAdjustment() {
+        ShortLookupTable lut = createLookupTable();
+        return lut == null ? null : PixelAdjustment.fromLookupOp(lut);
+    }
+
+    /**
+     * Returns the lookup table for the current settings,
+     * or null if the current settings don't change the image.
+     */
+    private ShortLookupTable createLookupTable() {
         float cr = cyanRed.getValueAsFloat();
         float mg = magentaGreen.getValueAsFloat();
         float yb = yellowBlue.getValueAsFloat();
 
         if (cr == 0 && mg == 0 && yb == 0) {
-            return src;
+            return null;
         }
 
         var rgbLookup = new LookupHelper(cr, mg, yb, affect.getValue())
             .getLookup();
-
-        var filterOp = new FastLookupOp(
-            (ShortLookupTable) rgbLookup.getLookupOp());
-
-        dest = filterOp.filter(src, null);
-
-        return dest;
+        return (ShortLookupTable) rgbLookup.getLookupOp();
     }
 
     private static class LookupHelper {
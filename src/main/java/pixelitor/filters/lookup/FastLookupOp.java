@@ -58,53 +58,7 @@ public class FastLookupOp implements BufferedImageOp {
             short[][] table = lut.getTable();
 
             for (int i = 0; i < numPixels; i++) {
-                int rgb = srcPixels[i];
-                int a = (rgb >>> 24) & 0xFF;
-                int r = (rgb >>> 16) & 0xFF;
-                int g = (rgb >>> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                if (a == 255 || notPremultiplied) {
-                    r = table[0][r];
-                    g = table[1][g];
-                    b = table[2][b];
-                } else if (a == 0) {
-                    r = 0;
-                    g = 0;
-                    b = 0;
-                } else {
-                    // unpremultiply
-                    float f = 255.0f / a;
-                    int ur = (int) (r * f);
-                    int ug = (int) (g * f);
-                    int ub = (int) (b * f);
-
-                    if (ur > 255) {
-                        ur = 255;
-                    }
-                    if (ug > 255) {
-                        ug = 255;
-                    }
-                    if (ub > 255) {
-                        ub = 255;
-                    }
-
-                    // lookup
-                    ur = table[0][ur];
-                    ug = table[1][ug];
-                    ub = table[2][ub];
-
-                    // premultiply
-                    float f2 = a * (1.0f / 255.0f);
-                    r = (int) (ur * f2);
-                    g = (int) (ug * f2);
-                    b = (int) (ub * f2);
-
-                    r = PixelUtils.clamp(r);
-                    g = PixelUtils.clamp(g);
-                    b = PixelUtils.clamp(b);
-                }
-                destPixels[i] = a << 24 | r << 16 | g << 8 | b;
+                destPixels[i] = lookupPixel(srcPixels[i], table, notPremultiplied);
             }
         } else if (src.getColorModel() instanceof IndexColorModel) {
             short[][] table = lut.getTable();
@@ -133,6 +87,59 @@ public class FastLookupOp implements BufferedImageOp {
         return dst;
     }
 
+    /**
+     * Applies the lookup table to a single pixel. The translucent pixels
+     * of premultiplied images are unpremultiplied for the lookup.
+     */
+    static int lookupPixel(int rgb, short[][] table, boolean notPremultiplied) {
+        int a = (rgb >>> 24) & 0xFF;
+        int r = (rgb >>> 16) & 0xFF;
+        int g = (rgb >>> 8) & 0xFF;
+        int b = rgb & 0xFF;
+
+        if (a == 255 || notPremultiplied) {
+            r = table[0][r];
+            g = table[1][g];
+            b = table[2][b];
+        } else if (a == 0) {
+            r = 0;
+            g = 0;
+            b = 0;
+        } else {
+            // unpremultiply
+            float f = 255.0f / a;
+            int ur = (int) (r * f);
+            int ug = (int) (g * f);
+            int ub = (int) (b * f);
+
+            if (ur > 255) {
+                ur = 255;
+            }
+            if (ug > 255) {
+                ug = 255;
+            }
+            if (ub > 255) {
+                ub = 255;
+            }
+
+            // lookup
+            ur = table[0][ur];
+            ug = table[1][ug];
+            ub = table[2][ub];
+
+            // premultiply
+            float f2 = a * (1.0f / 255.0f);
+            r = (int) (ur * f2);
+            g = (int) (ug * f2);
+            b = (int) (ub * f2);
+
+            r = PixelUtils.clamp(r);
+            g = PixelUtils.clamp(g);
+            b = PixelUtils.clamp(b);
+        }
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
     @Override
     public Rectangle2D getBounds2D(BufferedImage src) {
         return null;
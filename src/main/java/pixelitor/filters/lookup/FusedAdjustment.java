@@ -0,0 +1,103 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.filters.lookup;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several {@link PixelAdjustment}s applied in a single pass over the pixels.
+ * <p>
+ * The translucent pixels go through every adjustment, so that the rounding
+ * of the (un)premultiplication is the same as with separate filters.
+ * For the opaque pixels the consecutive lookup tables are combined
+ * into a single table, because their alpha stays 255.
+ */
+public class FusedAdjustment {
+    private final PixelAdjustment[] adjustments;
+    private final PixelAdjustment[] opaqueAdjustments;
+
+    public FusedAdjustment(List<PixelAdjustment> adjustments) {
+        this.adjustments = adjustments.toArray(PixelAdjustment[]::new);
+        opaqueAdjustments = combineLookups(adjustments);
+    }
+
+    private static PixelAdjustment[] combineLookups(List<PixelAdjustment> adjustments) {
+        List<PixelAdjustment> combined = new ArrayList<>();
+        int[][] lookup = null;
+        for (PixelAdjustment adjustment : adjustments) {
+            int[][] next = adjustment.getOpaqueLookup();
+            if (next == null) {
+                if (lookup != null) {
+                    combined.add(PixelAdjustment.fromChannelTables(lookup[0], lookup[1], lookup[2], false));
+                    lookup = null;
+                }
+                combined.add(adjustment);
+            } else if (lookup == null) {
+                lookup = new int[3][];
+                for (int c = 0; c < 3; c++) {
+                    lookup[c] = next[c].clone();
+                }
+            } else {
+                for (int c = 0; c < 3; c++) {
+                    for (int i = 0; i < 256; i++) {
+                        lookup[c][i] = next[c][lookup[c][i]];
+                    }
+                }
+            }
+        }
+        if (lookup != null) {
+            combined.add(PixelAdjustment.fromChannelTables(lookup[0], lookup[1], lookup[2], false));
+        }
+        return combined.toArray(PixelAdjustment[]::new);
+    }
+
+    /**
+     * Adjusts a single premultiplied ARGB pixel.
+     */
+    public int adjust(int rgb) {
+        PixelAdjustment[] chain = (rgb >>> 24) == 0xFF ? opaqueAdjustments : adjustments;
+        for (PixelAdjustment adjustment : chain) {
+            rgb = adjustment.adjust(rgb);
+        }
+        return rgb;
+    }
+
+    /**
+     * Adjusts the pixels of the given premultiplied image into the given
+     * destination image, which can be the same as the source image.
+     */
+    public void apply(BufferedImage src, BufferedImage dest) {
+        assert src.isAlphaPremultiplied() && ImageUtils.hasPackedIntArray(src);
+        assert dest.isAlphaPremultiplied() && ImageUtils.hasPackedIntArray(dest);
+
+        int[] srcPixels = ImageUtils.getPixels(src);
+        int[] destPixels = ImageUtils.getPixels(dest);
+        int width = src.getWidth();
+        ThreadPool.parallelFor(src.getHeight(), (startY, endY) -> {
+            int end = endY * width;
+            for (int i = startY * width; i < end; i++) {
+                destPixels[i] = adjust(srcPixels[i]);
+            }
+        }, ProgressTracker.NULL_TRACKER);
+    }
+}
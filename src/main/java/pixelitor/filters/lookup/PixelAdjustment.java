@@ -0,0 +1,97 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.filters.lookup;
+
+import java.awt.image.ShortLookupTable;
+
+/**
+ * A color adjustment that changes each pixel independently of the others,
+ * which makes it possible to apply several adjustments in a single pass.
+ * The pixels are premultiplied, and their alpha isn't changed.
+ */
+@FunctionalInterface
+public interface PixelAdjustment {
+    /**
+     * Returns the adjusted value of the given premultiplied ARGB pixel,
+     * which must be the same as the result of the corresponding filter.
+     */
+    int adjust(int rgb);
+
+    /**
+     * Returns the red, green and blue lookup tables that give the
+     * same results for opaque pixels, or null if this adjustment
+     * can't be expressed with such tables.
+     */
+    default int[][] getOpaqueLookup() {
+        return null;
+    }
+
+    /**
+     * Returns an adjustment that works like a {@link FastLookupOp}
+     * with the given table, including the unpremultiplication
+     * of the translucent pixels.
+     */
+    static PixelAdjustment fromLookupOp(ShortLookupTable lut) {
+        short[][] table = lut.getTable();
+        int[][] opaqueLookup = new int[3][256];
+        for (int c = 0; c < 3; c++) {
+            for (int i = 0; i < 256; i++) {
+                opaqueLookup[c][i] = table[c][i];
+            }
+        }
+        return new PixelAdjustment() {
+            @Override
+            public int adjust(int rgb) {
+                return FastLookupOp.lookupPixel(rgb, table, false);
+            }
+
+            @Override
+            public int[][] getOpaqueLookup() {
+                return opaqueLookup;
+            }
+        };
+    }
+
+    /**
+     * Returns an adjustment that applies the given tables directly
+     * to the premultiplied channel values, like the jhlabs transfer filters.
+     * If clearTransparent is true, then the fully transparent pixels
+     * are set to zero instead of being looked up.
+     */
+    static PixelAdjustment fromChannelTables(int[] red, int[] green, int[] blue,
+                                             boolean clearTransparent) {
+        int[][] opaqueLookup = {red, green, blue};
+        return new PixelAdjustment() {
+            @Override
+            public int adjust(int rgb) {
+                int a = rgb & 0xFF_00_00_00;
+                if (a == 0 && clearTransparent) {
+                    return 0;
+                }
+                return a
+                    | red[(rgb >>> 16) & 0xFF] << 16
+                    | green[(rgb >>> 8) & 0xFF] << 8
+                    | blue[rgb & 0xFF];
+            }
+
+            @Override
+            public int[][] getOpaqueLookup() {
+                return opaqueLookup;
+            }
+        };
+    }
+}
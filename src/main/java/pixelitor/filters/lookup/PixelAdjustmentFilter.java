@@ -0,0 +1,29 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.filters.lookup;
+
+/**
+ * A filter whose effect can be described as a {@link PixelAdjustment}.
+ * Stacked adjustment layers with such filters are applied in a single pass.
+ */
+public interface PixelAdjustmentFilter {
+    /**
+     * Returns the per-pixel equivalent of the current settings,
+     * or null if the current settings don't change the pixels.
+     */
+    PixelAdjustment createPixelAdjustment();
+}
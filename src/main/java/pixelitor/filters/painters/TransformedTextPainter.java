@@ -30,6 +30,7 @@ import pixelitor.gui.utils.AlignmentSelector;
 import pixelitor.gui.utils.BoxAlignment;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.QuadrantAngle;
+import pixelitor.utils.RenderCache;
 import pixelitor.utils.Shapes;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.DebugNodes;
@@ -42,7 +43,6 @@ import java.awt.font.LineMetrics;
 import java.awt.font.TextAttribute;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
-import java.lang.ref.SoftReference;
 import java.util.Map;
 import java.util.Objects;
 
@@ -106,7 +106,7 @@ public class TransformedTextPainter implements Debuggable {
 
     private int origTextWidth;  // max width before rotation
 
-    private SoftReference<BufferedImage> renderCache;
+    private final RenderCache.Entry renderCache = RenderCache.createEntry("Text");
 
     private boolean invalidLayout = true;
     private boolean invalidShape = true;
@@ -147,7 +147,7 @@ public class TransformedTextPainter implements Debuggable {
             return;
         }
 
-        BufferedImage cachedImg = renderCache == null ? null : renderCache.get();
+        BufferedImage cachedImg = renderCache.get();
         if (cachedImg == null) {
             // Create the cached image containing the rendered text and effects
             cachedImg = GraphicsUtilities.createCompatibleTranslucentImage(bounds.width, bounds.height);
@@ -159,7 +159,7 @@ public class TransformedTextPainter implements Debuggable {
             paintText(cacheG, origTransform);
             cacheG.dispose();
 
-            renderCache = new SoftReference<>(cachedImg);
+            renderCache.set(cachedImg);
         }
 
         restoreDefaultRendering(g);
@@ -179,11 +179,7 @@ public class TransformedTextPainter implements Debuggable {
     }
 
     private void clearCache() {
-        BufferedImage cache = renderCache == null ? null : renderCache.get();
-        if (cache != null) {
-            cache.flush();
-        }
-        renderCache = null;
+        renderCache.clear();
     }
 
     /**
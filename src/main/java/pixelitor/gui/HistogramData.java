@@ -0,0 +1,137 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.gui;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+import static pixelitor.gui.HistogramsPanel.NUM_BINS;
+
+/**
+ * The red, green, blue and luminance histograms of an image.
+ */
+class HistogramData {
+    // images with more pixels are first sampled
+    private static final int SAMPLING_THRESHOLD = 4_000_000;
+
+    // the approximate number of the sampled pixels
+    private static final int NUM_SAMPLES = 1_000_000;
+
+    final int[] reds = new int[NUM_BINS];
+    final int[] greens = new int[NUM_BINS];
+    final int[] blues = new int[NUM_BINS];
+    final int[] luminances = new int[NUM_BINS];
+
+    // the distance between the sampled pixels, 1 if all pixels were counted
+    private final int step;
+
+    private HistogramData(int step) {
+        this.step = step;
+    }
+
+    boolean isApproximate() {
+        return step > 1;
+    }
+
+    /**
+     * Returns the distance between the sampled pixels (in both
+     * directions) that gives a fast approximation for the given image,
+     * or 1 if the image is small enough to count all its pixels.
+     */
+    static int calcSampleStep(BufferedImage image) {
+        long numPixels = (long) image.getWidth() * image.getHeight();
+        if (numPixels <= SAMPLING_THRESHOLD) {
+            return 1;
+        }
+        return (int) Math.ceil(Math.sqrt((double) numPixels / NUM_SAMPLES));
+    }
+
+    /**
+     * Counts every step-th pixel in every step-th row of the given image
+     * in parallel, and scales the counts to the size of the whole image.
+     * Each task counts into its own bins, which are merged at the end.
+     *
+     * @throws CancellationException if the given condition becomes true
+     */
+    static HistogramData calculate(BufferedImage image, int step, BooleanSupplier isCancelled) {
+        HistogramData data = new HistogramData(step);
+        int[] pixels = ImageUtils.getPixels(image);
+        int width = image.getWidth();
+        int numRows = (image.getHeight() + step - 1) / step;
+
+        ThreadPool.parallelFor(numRows, (startRow, endRow) -> {
+            if (isCancelled.getAsBoolean()) {
+                return;
+            }
+            HistogramData local = new HistogramData(step);
+            for (int row = startRow; row < endRow; row++) {
+                int offset = row * step * width;
+                for (int x = 0; x < width; x += step) {
+                    local.add(pixels[offset + x]);
+                }
+            }
+            data.merge(local);
+        }, ProgressTracker.NULL_TRACKER);
+
+        if (isCancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+        if (step > 1) {
+            data.scale(step * step);
+        }
+        return data;
+    }
+
+    private void add(int rgb) {
+        int a = (rgb >>> 24) & 0xFF;
+        if (a > 0) {
+            int r = (rgb >>> 16) & 0xFF;
+            int g = (rgb >>> 8) & 0xFF;
+            int b = rgb & 0xFF;
+
+            reds[r]++;
+            greens[g]++;
+            blues[b]++;
+
+            int lum = (int) (0.299 * r + 0.587 * g + 0.114 * b);
+            luminances[lum]++;
+        }
+    }
+
+    private synchronized void merge(HistogramData other) {
+        for (int i = 0; i < NUM_BINS; i++) {
+            reds[i] += other.reds[i];
+            greens[i] += other.greens[i];
+            blues[i] += other.blues[i];
+            luminances[i] += other.luminances[i];
+        }
+    }
+
+    private void scale(int factor) {
+        for (int i = 0; i < NUM_BINS; i++) {
+            reds[i] *= factor;
+            greens[i] *= factor;
+            blues[i] *= factor;
+            luminances[i] *= factor;
+        }
+    }
+}
@@ -19,7 +19,7 @@ package pixelitor.gui;
 
 import pixelitor.Composition;
 import pixelitor.Views;
-import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Messages;
 import pixelitor.utils.ViewActivationListener;
 
 import javax.swing.*;
@@ -27,6 +27,12 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.awt.BorderLayout.CENTER;
 import static java.awt.BorderLayout.NORTH;
@@ -36,9 +42,14 @@ import static java.awt.Color.RED;
 import static java.awt.FlowLayout.LEFT;
 import static javax.swing.BorderFactory.createTitledBorder;
 import static pixelitor.utils.Texts.i18n;
+import static pixelitor.utils.Threads.onEDT;
 
 /**
- * The panel that shows the histograms
+ * The panel that shows the histograms.
+ * <p>
+ * The histograms are calculated outside the EDT, after the updates
+ * stopped for a short time. Large images are first sampled, and
+ * all their pixels are counted only if there were no further updates.
  */
 public class HistogramsPanel extends JPanel implements ViewActivationListener {
     private static final HistogramsPanel INSTANCE = new HistogramsPanel();
@@ -72,6 +83,29 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
     private boolean isLogarithmic;
     private boolean isLuminance;
 
+    // the delay after the last update before the calculation starts
+    private static final int UPDATE_DELAY_MILLIS = 100;
+
+    // the delay after a sampled calculation before all pixels are counted
+    private static final int REFINE_DELAY_MILLIS = 400;
+
+    private final Timer updateTimer;
+    private final Timer refineTimer;
+    private Composition pendingComp;
+
+    // the image of the last calculation, if it was only sampled
+    private BufferedImage imageToRefine;
+
+    // Incremented for each calculation and when the views are closed.
+    // The calculations that are no longer current stop as soon as possible.
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ExecutorService calculator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Histograms");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private HistogramsPanel() {
         super(new BorderLayout());
 
@@ -85,6 +119,11 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
         add(paintersPanel, CENTER);
 
         setBorder(createTitledBorder(i18n("histograms")));
+
+        updateTimer = new Timer(UPDATE_DELAY_MILLIS, e -> startCalculation());
+        updateTimer.setRepeats(false);
+        refineTimer = new Timer(REFINE_DELAY_MILLIS, e -> startRefinement());
+        refineTimer.setRepeats(false);
     }
 
     private JPanel initControlPanel() {
@@ -160,6 +199,8 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
 
     @Override
     public void allViewsClosed() {
+        cancelCalculations();
+
         redPainter.clearData();
         greenPainter.clearData();
         bluePainter.clearData();
@@ -182,35 +223,68 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
         INSTANCE.updateHistograms(comp);
     }
 
-    // extracts the essential information from the image
-    private void calcBaseArrays(BufferedImage image) {
-        if (reds != null) {
-            Arrays.fill(reds, 0);
-            Arrays.fill(greens, 0);
-            Arrays.fill(blues, 0);
-            Arrays.fill(luminances, 0);
-        } else {
-            reds = new int[NUM_BINS];
-            greens = new int[NUM_BINS];
-            blues = new int[NUM_BINS];
-            luminances = new int[NUM_BINS];
+    private void cancelCalculations() {
+        updateTimer.stop();
+        refineTimer.stop();
+        pendingComp = null;
+        imageToRefine = null;
+        generation.incrementAndGet();
+    }
+
+    // starts the calculation for the last requested composition
+    private void startCalculation() {
+        Composition comp = pendingComp;
+        pendingComp = null;
+        if (comp == null) {
+            return;
+        }
+        BufferedImage image = comp.getCompositeImage();
+        int step = HistogramData.calcSampleStep(image);
+        imageToRefine = step > 1 ? image : null;
+        calculate(image, step);
+    }
+
+    // counts all pixels after a sampled calculation, if there were no updates
+    private void startRefinement() {
+        BufferedImage image = imageToRefine;
+        imageToRefine = null;
+        if (image != null) {
+            calculate(image, 1);
         }
+    }
 
-        int[] pixels = ImageUtils.getPixels(image);
-        for (int rgb : pixels) {
-            int a = (rgb >>> 24) & 0xFF;
-            if (a > 0) {
-                int r = (rgb >>> 16) & 0xFF;
-                int g = (rgb >>> 8) & 0xFF;
-                int b = rgb & 0xFF;
+    private void calculate(BufferedImage image, int step) {
+        long calcGeneration = generation.incrementAndGet();
+        CompletableFuture
+            .supplyAsync(() -> HistogramData.calculate(image, step,
+                () -> generation.get() != calcGeneration), calculator)
+            .whenCompleteAsync((data, e) -> {
+                if (e instanceof CompletionException) {
+                    e = e.getCause();
+                }
+                if (e != null) {
+                    if (!(e instanceof CancellationException)) {
+                        Messages.showException(e);
+                    }
+                } else if (generation.get() == calcGeneration) {
+                    changeData(data);
+                }
+            }, onEDT);
+    }
 
-                reds[r]++;
-                greens[g]++;
-                blues[b]++;
+    // called on the EDT with the result of a current calculation
+    private void changeData(HistogramData data) {
+        reds = data.reds;
+        greens = data.greens;
+        blues = data.blues;
+        luminances = data.luminances;
 
-                int lum = (int) (0.299 * r + 0.587 * g + 0.114 * b);
-                luminances[lum]++;
-            }
+        calcLazyData();
+        updatePainterData();
+        repaint();
+
+        if (data.isApproximate()) {
+            refineTimer.restart();
         }
     }
 
@@ -240,15 +314,10 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
         calcLog(luminances, logLuminances);
     }
 
-    // called when the image is first added or when the image is changed
-    private void changeImage(BufferedImage image) {
-        calcBaseArrays(image);
-        calcLazyData();
-
-        updatePainterData();
-    }
-
     private void calcLazyData() {
+        if (reds == null) {
+            return; // not calculated yet
+        }
         if (isLogarithmic) {
             if (isLuminance) {
                 calcLumLogs();
@@ -259,6 +328,9 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
     }
 
     private void updatePainterData() {
+        if (reds == null) {
+            return; // not calculated yet
+        }
         if (isLuminance) {
             if (isLogarithmic) {
                 calcLumLogs();
@@ -286,8 +358,10 @@ public class HistogramsPanel extends JPanel implements ViewActivationListener {
             return;
         }
 
-        changeImage(comp.getCompositeImage());
-        repaint();
+        // the calculation starts only when the updates stop for a while
+        cancelCalculations();
+        pendingComp = comp;
+        updateTimer.restart();
     }
 
     private static void calcLog(int[] input, int[] output) {
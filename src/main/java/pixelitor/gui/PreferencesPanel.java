@@ -56,10 +56,14 @@ public class PreferencesPanel extends JTabbedPane {
     private static final Border PANEL_PADDING =
         BorderFactory.createEmptyBorder(5, 10, 5, 0);
     private static final String UNDO_LEVELS_LABEL = "Minimum Undo Levels";
+    private static final String HISTORY_MEMORY_LABEL = "History Memory (MB)";
+    private static final String RENDER_CACHE_MEMORY_LABEL = "Render Cache Memory (MB)";
     private static final String IMAGEMAGICK_FOLDER_LABEL = "ImageMagick 7 Folder";
     private static final String GMIC_FOLDER_LABEL = "G'MIC Folder";
 
     private JTextField undoLevelsTF;
+    private JTextField historyMemoryTF;
+    private JTextField renderCacheMemoryTF;
     private JComboBox<Item> thumbSizeCB;
     private JComboBox<MouseZoomMethod> zoomMethodCB;
     private JComboBox<PanMethod> panMethodCB;
@@ -317,6 +321,8 @@ public class PreferencesPanel extends JTabbedPane {
 
         addNativeChoosersCB(gbh);
         addUndoLevelsChooser(gbh);
+        addHistoryMemoryChooser(gbh);
+        addRenderCacheMemoryChooser(gbh);
         addMagickDirField(gbh);
         addGmicDirField(gbh);
         addExperimentalCB(gbh);
@@ -340,6 +346,30 @@ public class PreferencesPanel extends JTabbedPane {
                 undoLevelsTF, true));
     }
 
+    private void addHistoryMemoryChooser(GridBagHelper gbh) {
+        historyMemoryTF = new JTextField(4);
+        historyMemoryTF.setName("historyMemoryTF");
+        historyMemoryTF.setText(String.valueOf(History.getMemoryLimitMb()));
+        historyMemoryTF.setToolTipText("<html>If the undo history uses more memory than this, " +
+            "<br>then the older image backups are compressed and then moved to the disk," +
+            "<br>and if they would take twice as much memory uncompressed," +
+            "<br>then the oldest edits are discarded.");
+        gbh.addLabelAndControl(HISTORY_MEMORY_LABEL + ": ",
+            TextFieldValidator.createPositiveIntLayer(HISTORY_MEMORY_LABEL,
+                historyMemoryTF, true));
+    }
+
+    private void addRenderCacheMemoryChooser(GridBagHelper gbh) {
+        renderCacheMemoryTF = new JTextField(4);
+        renderCacheMemoryTF.setName("renderCacheMemoryTF");
+        renderCacheMemoryTF.setText(String.valueOf(RenderCache.getMemoryBudgetMb()));
+        renderCacheMemoryTF.setToolTipText("<html>The memory used by the images that are cached " +
+            "<br>to speed up the rendering of layer groups, smart objects, etc.");
+        gbh.addLabelAndControl(RENDER_CACHE_MEMORY_LABEL + ": ",
+            TextFieldValidator.createPositiveIntLayer(RENDER_CACHE_MEMORY_LABEL,
+                renderCacheMemoryTF, true));
+    }
+
     private void addMagickDirField(GridBagHelper gbh) {
         magickDirTF = new JTextField(AppPreferences.magickDirName);
         magickDirTF.setColumns(10);
@@ -369,6 +399,22 @@ public class PreferencesPanel extends JTabbedPane {
             }
         }
 
+        switch (parseNonNegativeInt(historyMemoryTF, HISTORY_MEMORY_LABEL)) {
+            case Success<Integer, ?>(Integer megaBytes) -> History.setMemoryLimitMb(megaBytes);
+            case Error<?, String>(String errorMsg) -> {
+                Messages.showError("Error", errorMsg, d);
+                return false;
+            }
+        }
+
+        switch (parseNonNegativeInt(renderCacheMemoryTF, RENDER_CACHE_MEMORY_LABEL)) {
+            case Success<Integer, ?>(Integer megaBytes) -> RenderCache.setMemoryBudgetMb(megaBytes);
+            case Error<?, String>(String errorMsg) -> {
+                Messages.showError("Error", errorMsg, d);
+                return false;
+            }
+        }
+
         switch (checkDirectory(magickDirTF, IMAGEMAGICK_FOLDER_LABEL)) {
             case Success<String, ?>(String magickDir) -> AppPreferences.magickDirName = magickDir;
             case Error<?, String>(String errorMsg) -> {
@@ -412,18 +458,22 @@ public class PreferencesPanel extends JTabbedPane {
     }
 
     private Result<Integer, String> getUndoLevels() {
-        int undoLevels = 0;
+        return parseNonNegativeInt(undoLevelsTF, UNDO_LEVELS_LABEL);
+    }
+
+    private static Result<Integer, String> parseNonNegativeInt(JTextField textField, String label) {
+        int value = 0;
 
         try {
-            undoLevels = parseInt(undoLevelsTF.getText().trim());
-            if (undoLevels < 0) {
-                return Result.error("<html><b>" + UNDO_LEVELS_LABEL + "</b> must be positive.");
+            value = parseInt(textField.getText().trim());
+            if (value < 0) {
+                return Result.error("<html><b>" + label + "</b> must be positive.");
             }
         } catch (NumberFormatException ex) {
-            return Result.error("<html><b>" + UNDO_LEVELS_LABEL + "</b> must be an integer.");
+            return Result.error("<html><b>" + label + "</b> must be an integer.");
         }
 
-        return Result.success(undoLevels);
+        return Result.success(value);
     }
 
     private void updateThumbSize() {
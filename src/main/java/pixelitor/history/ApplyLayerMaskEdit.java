@@ -26,6 +26,7 @@ import pixelitor.utils.debug.DebugNodes;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import java.awt.image.BufferedImage;
+import java.util.Set;
 
 /**
  * A PixelitorEdit that represents the application of a layer mask.
@@ -78,6 +79,11 @@ public class ApplyLayerMaskEdit extends PixelitorEdit {
         }
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return calcImageFootprint(previousLayerImage) + calcImageFootprint(mask.getImage());
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
@@ -28,6 +28,7 @@ import javax.swing.undo.CannotUndoException;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.lang.ref.SoftReference;
+import java.util.Set;
 
 /**
  * Used when a composition is replaced either because
@@ -161,6 +162,17 @@ public class CompositionReplacedEdit extends PixelitorEdit {
         return !isReload;
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        Composition backupComp = backupCompRef.get();
+        if (backupComp == null) {
+            return 0;
+        }
+        long[] bytes = {0};
+        backupComp.forEachTopLevelLayer(layer -> bytes[0] += calcLayerFootprint(layer));
+        return bytes[0];
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
@@ -24,6 +24,7 @@ import pixelitor.utils.debug.DebugNode;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import java.awt.image.BufferedImage;
+import java.util.Set;
 
 /**
  * A PixelitorEdit representing the movement of a content layer.
@@ -91,6 +92,11 @@ public class ContentLayerMoveEdit extends PixelitorEdit {
         }
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return imageEdit == null ? 0 : imageEdit.getMemoryFootprint(countedTiles);
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
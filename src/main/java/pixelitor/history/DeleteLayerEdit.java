@@ -24,6 +24,8 @@ import pixelitor.utils.debug.DebugNode;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 
+import java.util.Set;
+
 /**
  * A PixelitorEdit that represents the deletion of a layer
  */
@@ -56,6 +58,11 @@ public class DeleteLayerEdit extends PixelitorEdit {
         holder.deleteLayer(layer, false);
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return calcLayerFootprint(layer);
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
@@ -27,6 +27,8 @@ import pixelitor.utils.debug.DebugNode;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 
+import java.util.Set;
+
 /**
  * A PixelitorEdit that represents the deletion of a layer mask
  */
@@ -63,6 +65,11 @@ public class DeleteLayerMaskEdit extends PixelitorEdit {
         layer.deleteMask(false);
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return calcImageFootprint(prevMask.getImage());
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
@@ -23,7 +23,9 @@ import pixelitor.ConsistencyChecks;
 import pixelitor.Views;
 import pixelitor.layers.Drawable;
 import pixelitor.utils.AppPreferences;
+import pixelitor.utils.MemoryInfo;
 import pixelitor.utils.Messages;
+import pixelitor.utils.TileStore;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.test.Events;
 import pixelitor.utils.test.RandomGUITest;
@@ -42,6 +44,11 @@ import static java.lang.String.format;
 public class History {
     private static final UndoableEditSupport editSupport = new UndoableEditSupport();
     private static final PixelitorUndoManager undoManager = new PixelitorUndoManager();
+
+    // the edits can keep more memory in backups than the memory limit,
+    // because the backups over the limit are compressed or moved to the disk
+    private static final int UNCOMPRESSED_MEMORY_FACTOR = 2;
+
     private static int numUndoneEdits = 0;
 
     // quietly ignores new edits if true
@@ -52,6 +59,7 @@ public class History {
 
     static {
         setUndoLevels(AppPreferences.loadUndoLevels());
+        setMemoryLimitMb(AppPreferences.loadHistoryMemoryMb());
     }
 
     private History() {
@@ -175,11 +183,35 @@ public class History {
     }
 
     public static void setUndoLevels(int undoLevels) {
-        undoManager.setLimit(undoLevels);
+        undoManager.setMinEdits(undoLevels);
     }
 
     public static int getUndoLevels() {
-        return undoManager.getHeavyEditLimit();
+        return undoManager.getMinEdits();
+    }
+
+    /**
+     * Returns the approximate memory in bytes used by the
+     * edits in the history, if their backups were uncompressed.
+     */
+    public static long getMemoryFootprint() {
+        return undoManager.getMemoryFootprint();
+    }
+
+    /**
+     * Sets the memory that the image backups can use before they are
+     * compressed and then moved to a temporary file. The least recently
+     * used edits are discarded if their backups would use more than
+     * twice this memory uncompressed.
+     */
+    public static void setMemoryLimitMb(int megaBytes) {
+        long bytes = (long) megaBytes * MemoryInfo.NUM_BYTES_IN_MEGABYTE;
+        TileStore.setMemoryBudget(bytes);
+        undoManager.setMemoryLimit(UNCOMPRESSED_MEMORY_FACTOR * bytes);
+    }
+
+    public static int getMemoryLimitMb() {
+        return (int) (TileStore.getMemoryBudget() / MemoryInfo.NUM_BYTES_IN_MEGABYTE);
     }
 
     /**
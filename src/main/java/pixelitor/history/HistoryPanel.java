@@ -19,14 +19,20 @@ package pixelitor.history;
 
 import pixelitor.AppMode;
 import pixelitor.utils.Icons;
+import pixelitor.utils.MemoryInfo;
+import pixelitor.utils.TileStore;
 import pixelitor.utils.debug.Debug;
 
 import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 
 import static java.awt.BorderLayout.CENTER;
+import static java.awt.BorderLayout.NORTH;
 import static java.awt.BorderLayout.SOUTH;
+import static java.lang.String.format;
 
 /**
  * The history panel.
@@ -34,6 +40,7 @@ import static java.awt.BorderLayout.SOUTH;
 public class HistoryPanel extends JPanel {
     private final JButton undoButton;
     private final JButton redoButton;
+    private final JLabel memoryLabel;
     private final PixelitorUndoManager pum;
 
     public HistoryPanel(PixelitorUndoManager pum) {
@@ -52,7 +59,26 @@ public class HistoryPanel extends JPanel {
         buttonsPanel.add(undoButton);
         buttonsPanel.add(redoButton);
 
+        memoryLabel = new JLabel();
+        memoryLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 0, 5));
+
         History.addUndoableEditListener(e -> updateHistoryButtons());
+        pum.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                updateMemoryLabel();
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                updateMemoryLabel();
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                updateMemoryLabel();
+            }
+        });
         updateHistoryButtons();
 
         if (AppMode.isDevelopment()) {
@@ -64,7 +90,10 @@ public class HistoryPanel extends JPanel {
             buttonsPanel.add(debugButton);
         }
 
-        add(buttonsPanel, SOUTH);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(memoryLabel, NORTH);
+        southPanel.add(buttonsPanel, CENTER);
+        add(southPanel, SOUTH);
     }
 
     private static JButton createButton(Icon icon, String name,
@@ -87,5 +116,17 @@ public class HistoryPanel extends JPanel {
 
         undoButton.setToolTipText(pum.getUndoPresentationName());
         redoButton.setToolTipText(pum.getRedoPresentationName());
+
+        updateMemoryLabel();
+    }
+
+    private void updateMemoryLabel() {
+        long footprint = pum.getMemoryFootprint();
+        memoryLabel.setText("Memory: " + MemoryInfo.bytesToString(footprint));
+        memoryLabel.setToolTipText(format("<html>Memory limit: %s<br>" +
+                "Image backups in memory: %s<br>Image backups on disk: %s",
+            MemoryInfo.bytesToString(pum.getMemoryLimit()),
+            MemoryInfo.bytesToString(TileStore.getMemoryUsed()),
+            MemoryInfo.bytesToString(TileStore.getSpilledBytes())));
     }
 }
@@ -23,6 +23,7 @@ import pixelitor.layers.ImageLayer;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import java.awt.image.BufferedImage;
+import java.util.Set;
 
 /**
  * A kind of compound edit used when an image
@@ -68,6 +69,11 @@ public class ImageAndMaskEdit extends ImageEdit {
         maskImageEdit.die();
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return super.getMemoryFootprint(countedTiles) + maskImageEdit.getMemoryFootprint(countedTiles);
+    }
+
     private void updateGUI() {
         // the two edits are set to embedded, so we update - except
         // if this edit is also embedded
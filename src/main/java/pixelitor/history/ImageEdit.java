@@ -19,12 +19,14 @@ package pixelitor.history;
 
 import pixelitor.Composition;
 import pixelitor.layers.Drawable;
+import pixelitor.utils.ImageTiles;
 import pixelitor.utils.debug.DebugNode;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.lang.ref.SoftReference;
+import java.util.Set;
 
 /**
  * A PixelitorEdit that represents the changes made to an image.
@@ -33,32 +35,90 @@ public class ImageEdit extends FadeableEdit {
     // selections are ignored for example when the image is enlarged by the move tool
     private final boolean ignoreSelection;
 
-    private SoftReference<BufferedImage> imgRef;
+    // The backup is stored either as tiles shared with the other
+    // snapshots of the same drawable, whose memory is managed by the
+    // TileStore, or, for images that can't be tiled, as an image.
+    private ImageTiles backupTiles;
+    private BufferedImage backupImage;
     protected Drawable dr;
 
+    // the area of the image changed by this edit, or null if it's unknown
+    private final Rectangle changedArea;
+
     public ImageEdit(String name, Composition comp, Drawable dr,
                      BufferedImage backupImage,
                      boolean ignoreSelection) {
+        this(name, comp, dr, backupImage, ignoreSelection, null);
+    }
+
+    /**
+     * The given changed area (relative to the image) is where the edit
+     * changed the pixels. If it's known, then the snapshots taken later
+     * can skip reading the tiles outside it.
+     */
+    public ImageEdit(String name, Composition comp, Drawable dr,
+                     BufferedImage backupImage,
+                     boolean ignoreSelection, Rectangle changedArea) {
         super(name, comp, dr);
         this.ignoreSelection = ignoreSelection;
+        this.changedArea = changedArea;
 
         assert dr != null;
         assert backupImage != null;
 
 //        Utils.debugImage(backupImage, "Backup for " + name);
 
-        // the backup image is stored in an SoftReference
-        imgRef = new SoftReference<>(backupImage);
         this.dr = dr;
+        ImageTiles lastSnapshot = dr.getLastHistorySnapshot();
+        storeBackup(backupImage, lastSnapshot, getKnownChanges(backupImage, lastSnapshot));
 
         checkBackupDifferentFromActive();
     }
 
+    /**
+     * Stores the given image as the backup. The tiled backups can't
+     * be lost, because instead of being garbage collected under
+     * memory pressure, they are compressed or moved to the disk.
+     */
+    private void storeBackup(BufferedImage img, ImageTiles shareWith, Rectangle knownChanges) {
+        if (ImageTiles.canStore(img)) {
+            backupTiles = ImageTiles.capture(img, shareWith, knownChanges);
+            backupImage = null;
+            // the current pixels differ from the new
+            // snapshot only where this edit changed them
+            dr.setLastHistorySnapshot(backupTiles, changedArea);
+        } else {
+            backupImage = img;
+            backupTiles = null;
+            dr.pixelsChangedInPlace(null);
+        }
+    }
+
+    /**
+     * Returns the area where the given backup can differ from the given
+     * snapshot, or null if this isn't known. It's known only if nothing
+     * else was snapshotted since, and the backup covers the whole image,
+     * because the tracked area is relative to the image.
+     */
+    private Rectangle getKnownChanges(BufferedImage backup, ImageTiles snapshot) {
+        if (snapshot == null || dr.getLastHistorySnapshot() != snapshot) {
+            return null;
+        }
+        BufferedImage current = dr.getImage();
+        if (backup.getWidth() != current.getWidth() || backup.getHeight() != current.getHeight()) {
+            return null;
+        }
+        return dr.getSnapshotChangedArea();
+    }
+
     // the backup should never be identical to the active image
     // otherwise the backup might be also edited
     private void checkBackupDifferentFromActive() {
+        if (backupImage == null) {
+            return; // the tiles are always a copy
+        }
         BufferedImage layerImage = dr.getImage();
-        if (layerImage == imgRef.get()) {
+        if (layerImage == backupImage) {
             throw new IllegalStateException("backup image is identical to the active one");
         }
     }
@@ -97,8 +157,9 @@ public class ImageEdit extends FadeableEdit {
      * Returns true if successful
      */
     private boolean swapImages() {
-        BufferedImage backupImage = imgRef.get();
-        if (backupImage == null) {
+        ImageTiles prevTiles = backupTiles;
+        BufferedImage restored = getBackupImage();
+        if (restored == null) {
             return false;
         }
 
@@ -108,10 +169,13 @@ public class ImageEdit extends FadeableEdit {
         } else {
             tmp = dr.getSelectedSubImage(false);
         }
-        dr.changeImageForUndoRedo(backupImage, ignoreSelection);
+        // must be queried before the image change resets it
+        Rectangle knownChanges = getKnownChanges(tmp, prevTiles);
+        dr.changeImageForUndoRedo(restored, ignoreSelection);
 
-        // create new backup image from tmp
-        imgRef = new SoftReference<>(tmp);
+        // create new backup from tmp, which differs from
+        // the restored backup only in the edited tiles
+        storeBackup(tmp, prevTiles, knownChanges);
 
         if (!embedded) {
             comp.update();
@@ -126,29 +190,39 @@ public class ImageEdit extends FadeableEdit {
     public void die() {
         super.die();
 
-        BufferedImage backupImage = imgRef.get();
         if (backupImage != null) {
             backupImage.flush();
         }
+        backupImage = null;
+        // the unshared tiles are released by the garbage collector
+        backupTiles = null;
     }
 
     @Override
     public BufferedImage getBackupImage() {
-        if (imgRef != null) {
-            // this still could be null
-            return imgRef.get();
+        if (backupTiles != null) {
+            return backupTiles.toImage();
         }
-        return null;
+        // null if the edit died
+        return backupImage;
+    }
+
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return backupTiles != null ? backupTiles.countMemory(countedTiles) : calcImageFootprint(backupImage);
     }
 
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
 
-        BufferedImage img = imgRef.get();
-        if (img != null) {
-            node.addInt("backup image width", img.getWidth());
-            node.addInt("backup image height", img.getHeight());
+        if (backupTiles != null) {
+            node.addInt("backup image width", backupTiles.getWidth());
+            node.addInt("backup image height", backupTiles.getHeight());
+            node.addInt("backup tiles", backupTiles.getNumTiles());
+        } else if (backupImage != null) {
+            node.addInt("backup image width", backupImage.getWidth());
+            node.addInt("backup image height", backupImage.getHeight());
         }
 
         node.addBoolean("ignoreSelection", ignoreSelection);
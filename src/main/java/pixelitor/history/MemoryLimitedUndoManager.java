@@ -0,0 +1,229 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.history;
+
+import pixelitor.utils.ImageTiles;
+
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An undo manager that limits the total memory used by its edits.
+ * <p>
+ * When the memory limit is exceeded, the least recently used edits are
+ * discarded, which are the ones farthest from the current state of the
+ * history, but a minimum number of edits is always kept, no matter
+ * how much memory they use. The number of edits also has an upper limit.
+ * <p>
+ * The backup tiles shared by several edits are counted only once,
+ * so the total stays correct after the edits sharing them are discarded.
+ * The total is updated as the edits are added, discarded, undone
+ * and redone, by keeping a reference count for each backup tile.
+ */
+public class MemoryLimitedUndoManager extends UndoManager {
+    private static final int DEFAULT_MIN_EDITS = 5;
+    private static final int DEFAULT_MAX_EXTRA_EDITS = 256;
+
+    // the number of edits that are kept regardless of their memory
+    private int minEdits;
+
+    // the number of edits that can be kept in addition to the minimum
+    private final int maxExtraEdits;
+
+    private long memoryLimit;
+
+    // the accounted memory of each edit in the history
+    private final Map<UndoableEdit, EditMemory> editMemories = new IdentityHashMap<>();
+
+    // the number of accounted edits that reference each backup tile
+    private final Map<Object, Integer> tileRefCounts = new IdentityHashMap<>();
+
+    private long memoryFootprint;
+
+    // the tiles of an edit, and its memory not used by the tiles
+    private record EditMemory(Set<Object> tiles, long otherBytes) {
+    }
+
+    public MemoryLimitedUndoManager() {
+        this(DEFAULT_MIN_EDITS, DEFAULT_MAX_EXTRA_EDITS, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    public MemoryLimitedUndoManager(int minEdits, int maxExtraEdits, long memoryLimit) {
+        this.minEdits = minEdits;
+        this.maxExtraEdits = maxExtraEdits;
+        this.memoryLimit = memoryLimit;
+
+        int limit = minEdits + maxExtraEdits;
+        edits.ensureCapacity(limit);
+        super.setLimit(limit);
+    }
+
+    public synchronized int getMinEdits() {
+        return minEdits;
+    }
+
+    /**
+     * Sets the number of edits that are kept even if they exceed the memory limit.
+     */
+    public synchronized void setMinEdits(int minEdits) {
+        this.minEdits = minEdits;
+        super.setLimit(minEdits + maxExtraEdits); // also trims
+    }
+
+    public synchronized long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public synchronized void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        trimForMemory();
+    }
+
+    @Override
+    protected void trimForLimit() {
+        // called by addEdit after the new edit was added
+        accountNewEdits();
+
+        super.trimForLimit();
+        trimForMemory();
+    }
+
+    @Override
+    protected void trimEdits(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            forget(edits.get(i));
+        }
+        super.trimEdits(from, to);
+    }
+
+    @Override
+    protected void undoTo(UndoableEdit edit) {
+        int prevNumUndoable = getNumUndoableEdits();
+        super.undoTo(edit);
+        reaccount(getNumUndoableEdits(), prevNumUndoable);
+    }
+
+    @Override
+    protected void redoTo(UndoableEdit edit) {
+        int prevNumUndoable = getNumUndoableEdits();
+        super.redoTo(edit);
+        reaccount(prevNumUndoable, getNumUndoableEdits());
+    }
+
+    @Override
+    public synchronized void discardAllEdits() {
+        super.discardAllEdits();
+
+        editMemories.clear();
+        tileRefCounts.clear();
+        memoryFootprint = 0;
+    }
+
+    private void trimForMemory() {
+        // the total is updated after each discarded edit, but the tiles
+        // shared with the remaining edits aren't freed by the trimming
+        while (edits.size() > minEdits && memoryFootprint > memoryLimit) {
+            // discard the edit that is farthest from the current state:
+            // the first one, or the last one if there are more redoable edits
+            int numUndoable = getNumUndoableEdits();
+            int numRedoable = edits.size() - numUndoable;
+            int index = numRedoable > numUndoable ? edits.size() - 1 : 0;
+
+            trimEdits(index, index);
+        }
+    }
+
+    /**
+     * Returns the number of edits before the current state of the history.
+     */
+    protected int getNumUndoableEdits() {
+        // all Pixelitor edits are significant
+        UndoableEdit edit = editToBeUndone();
+        return edit == null ? 0 : edits.indexOf(edit) + 1;
+    }
+
+    /**
+     * Returns the approximate memory in bytes used by all the edits.
+     */
+    public synchronized long getMemoryFootprint() {
+        return memoryFootprint;
+    }
+
+    private void accountNewEdits() {
+        for (UndoableEdit edit : edits) {
+            if (!editMemories.containsKey(edit)) {
+                account(edit);
+            }
+        }
+    }
+
+    private void account(UndoableEdit edit) {
+        Set<Object> tiles = ImageTiles.createCountedTilesSet();
+        long bytes = ((PixelitorEdit) edit).getMemoryFootprint(tiles);
+
+        long tileBytes = 0;
+        for (Object tile : tiles) {
+            long tileSize = ImageTiles.getTileSize(tile);
+            tileBytes += tileSize;
+            if (tileRefCounts.merge(tile, 1, Integer::sum) == 1) {
+                memoryFootprint += tileSize;
+            }
+        }
+        long otherBytes = bytes - tileBytes;
+        memoryFootprint += otherBytes;
+
+        editMemories.put(edit, new EditMemory(tiles, otherBytes));
+    }
+
+    // the image edits replace their backup tiles when they are
+    // undone or redone, so the given edits are accounted again, which
+    // also releases the references to the tiles they no longer use
+    private void reaccount(int from, int to) {
+        for (int i = from; i < to; i++) {
+            UndoableEdit edit = edits.get(i);
+            if (editMemories.containsKey(edit)) {
+                forget(edit);
+                account(edit);
+            }
+        }
+    }
+
+    private void forget(UndoableEdit edit) {
+        EditMemory memory = editMemories.remove(edit);
+        if (memory == null) {
+            return;
+        }
+        memoryFootprint -= memory.otherBytes();
+        for (Object tile : memory.tiles()) {
+            int refCount = tileRefCounts.get(tile);
+            if (refCount == 1) {
+                tileRefCounts.remove(tile);
+                memoryFootprint -= ImageTiles.getTileSize(tile);
+            } else {
+                tileRefCounts.put(tile, refCount - 1);
+            }
+        }
+    }
+
+    public int getSize() {
+        return edits.size();
+    }
+}
@@ -26,7 +26,9 @@ import pixelitor.utils.debug.DebugNode;
 
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.Set;
 
 /**
  * Represents a "merge down" operation
@@ -42,6 +44,7 @@ public class MergeDownEdit extends PixelitorEdit {
                          Layer layer,
                          ImageLayer belowLayer,
                          BufferedImage backupImage,
+                         Rectangle changedArea,
                          MaskViewMode maskViewMode,
                          int activeIndex) {
         super(GUIText.MERGE_DOWN, holder.getComp(), true);
@@ -50,7 +53,7 @@ public class MergeDownEdit extends PixelitorEdit {
         this.maskViewMode = maskViewMode;
         this.belowLayer = belowLayer;
 
-        imageEdit = new ImageEdit("", comp, belowLayer, backupImage, true);
+        imageEdit = new ImageEdit("", comp, belowLayer, backupImage, true, changedArea);
         imageEdit.setEmbedded(true);
         deleteLayerEdit = new DeleteLayerEdit(holder, layer, activeIndex);
         deleteLayerEdit.setEmbedded(true);
@@ -88,6 +91,11 @@ public class MergeDownEdit extends PixelitorEdit {
         imageEdit.die();
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return imageEdit.getMemoryFootprint(countedTiles) + deleteLayerEdit.getMemoryFootprint(countedTiles);
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
@@ -24,6 +24,7 @@ import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A PixelitorEdit that represents multiple edits
@@ -99,6 +100,15 @@ public class MultiEdit extends PixelitorEdit {
         }
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        long bytes = 0;
+        for (PixelitorEdit edit : edits) {
+            bytes += edit.getMemoryFootprint(countedTiles);
+        }
+        return bytes;
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
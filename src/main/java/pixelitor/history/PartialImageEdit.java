@@ -19,6 +19,7 @@ package pixelitor.history;
 
 import pixelitor.Composition;
 import pixelitor.layers.Drawable;
+import pixelitor.utils.ImageTiles;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.debug.Debug;
 import pixelitor.utils.debug.DebugNode;
@@ -31,7 +32,7 @@ import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
-import java.lang.ref.SoftReference;
+import java.util.Set;
 
 import static java.lang.String.format;
 
@@ -41,7 +42,11 @@ import static java.lang.String.format;
  */
 public class PartialImageEdit extends FadeableEdit {
     private final Rectangle saveRect;
-    private SoftReference<Raster> backupRasterRef;
+
+    // the affected pixels are stored as tiles managed by the
+    // TileStore, or as a raster, if the image can't be tiled
+    private ImageTiles backupTiles;
+    private Raster backupRaster;
 
     private final Drawable dr;
 
@@ -52,8 +57,33 @@ public class PartialImageEdit extends FadeableEdit {
         this.dr = dr;
         this.saveRect = saveRect;
 
-        Raster backupRaster = image.getData(this.saveRect);
-        backupRasterRef = new SoftReference<>(backupRaster);
+        storeBackup(image, null);
+    }
+
+    private void storeBackup(BufferedImage image, ImageTiles shareWith) {
+        if (ImageTiles.canStore(image)) {
+            BufferedImage affected = image.getSubimage(
+                saveRect.x, saveRect.y, saveRect.width, saveRect.height);
+            backupTiles = ImageTiles.capture(affected, shareWith);
+            backupRaster = null;
+        } else {
+            backupRaster = image.getData(saveRect);
+            backupTiles = null;
+        }
+    }
+
+    // writes the given backup into the given image
+    private void restore(BufferedImage image, ImageTiles tiles, Raster raster) {
+        if (tiles != null) {
+            Raster affected = tiles.toImage().getRaster();
+            image.getRaster().setDataElements(saveRect.x, saveRect.y, affected);
+        } else {
+            image.setData(raster);
+        }
+    }
+
+    private boolean hasBackup() {
+        return backupTiles != null || backupRaster != null;
     }
 
     /**
@@ -89,6 +119,9 @@ public class PartialImageEdit extends FadeableEdit {
         // we could also intersect with the selection bounds,
         // but typically the extra savings would be minimal
 
+        // the tiles of the next full snapshot have to be reread here
+        dr.pixelsChangedInPlace(affectedArea);
+
         return new PartialImageEdit(editName, dr.getComp(),
             dr, origImage, affectedArea);
     }
@@ -115,29 +148,29 @@ public class PartialImageEdit extends FadeableEdit {
      * Returns true if successful
      */
     private boolean swapRasters() {
-        Raster backupRaster = backupRasterRef.get();
-        if (backupRaster == null) {
+        if (!hasBackup()) {
             return false;
         }
 
         BufferedImage image = dr.getImage();
+        ImageTiles prevTiles = backupTiles;
+        Raster prevRaster = backupRaster;
 
-        Raster tmpRaster = null;
         try {
-            tmpRaster = image.getData(saveRect);
-            image.setData(backupRaster);
+            // the current pixels become the new backup, sharing
+            // the tiles that weren't changed by the edit
+            storeBackup(image, prevTiles);
+            restore(image, prevTiles, prevRaster);
+            dr.pixelsChangedInPlace(saveRect);
         } catch (ArrayIndexOutOfBoundsException e) {
             System.out.printf("PartialImageEdit.swapRasters saveRect = %s, width = %d, height = %d%n",
                 saveRect, image.getWidth(), image.getHeight());
 
-            debugRaster("tmpRaster", tmpRaster);
-            debugRaster("backupRaster", backupRaster);
+            debugRaster("backupRaster", prevRaster);
 
             throw e;
         }
 
-        backupRasterRef = new SoftReference<>(tmpRaster);
-
         dr.update();
         dr.updateIconImage();
 
@@ -166,13 +199,17 @@ public class PartialImageEdit extends FadeableEdit {
         System.out.println("PartialImageEdit::debugRaster debugging raster: " + name + ": " + msg);
     }
 
+    @Override
+    public void die() {
+        super.die();
+
+        backupTiles = null;
+        backupRaster = null;
+    }
+
     @Override
     public BufferedImage getBackupImage() {
-        if (backupRasterRef == null) { // died
-            return null;
-        }
-        Raster backupRaster = backupRasterRef.get();
-        if (backupRaster == null) { // soft reference lost
+        if (!hasBackup()) { // died
             return null;
         }
 
@@ -181,7 +218,7 @@ public class PartialImageEdit extends FadeableEdit {
         // TODO this is not the optimal solution  - Fade should fade only the changed area
         BufferedImage fullImage = dr.getImage();
         BufferedImage previousImage = ImageUtils.copyImage(fullImage);
-        previousImage.setData(backupRaster);
+        restore(previousImage, backupTiles, backupRaster);
 
         var selection = dr.getComp().getSelection();
         if (selection != null) {
@@ -193,12 +230,21 @@ public class PartialImageEdit extends FadeableEdit {
         return previousImage;
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return backupTiles != null ? backupTiles.countMemory(countedTiles) : calcRasterFootprint(backupRaster);
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
 
-        node.addNullableDebuggable("backup raster",
-            backupRasterRef.get(), DebugNodes::createRasterNode);
+        if (backupTiles != null) {
+            node.addInt("backup tiles", backupTiles.getNumTiles());
+        } else {
+            node.addNullableDebuggable("backup raster",
+                backupRaster, DebugNodes::createRasterNode);
+        }
         node.add(DebugNodes.createRectangleNode("saveRect", saveRect));
 
         return node;
@@ -20,12 +20,19 @@ package pixelitor.history;
 import pixelitor.AppMode;
 import pixelitor.Composition;
 import pixelitor.Views;
+import pixelitor.layers.ImageLayer;
+import pixelitor.layers.Layer;
+import pixelitor.utils.ImageTiles;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.Debuggable;
 
 import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.Set;
 
 /**
  * The abstract superclass for all edits in Pixelitor
@@ -34,8 +41,8 @@ public abstract class PixelitorEdit extends AbstractUndoableEdit implements Debu
     protected Composition comp;
     private final String name;
 
-    // heavy edits consume more memory, and therefore their
-    // number is limited by the "minimum undo levels" settings
+    // heavy edits can consume a lot of memory,
+    // their actual usage is given by getMemoryFootprint()
     private final boolean isHeavy;
 
     private final boolean wasDirty;
@@ -163,6 +170,50 @@ public abstract class PixelitorEdit extends AbstractUndoableEdit implements Debu
         return isHeavy;
     }
 
+    /**
+     * Returns the approximate memory in bytes kept alive by this edit,
+     * such as its image backups. The history discards the least recently
+     * used edits if the total footprint of the edits is too large.
+     */
+    public long getMemoryFootprint() {
+        return getMemoryFootprint(ImageTiles.createCountedTilesSet());
+    }
+
+    /**
+     * Returns the memory footprint without the backup tiles that are
+     * already in the given set, see {@link ImageTiles#countMemory(Set)}.
+     */
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return 0;
+    }
+
+    protected static long calcImageFootprint(BufferedImage img) {
+        return img == null ? 0 : calcRasterFootprint(img.getRaster());
+    }
+
+    protected static long calcRasterFootprint(Raster raster) {
+        if (raster == null) {
+            return 0;
+        }
+        DataBuffer buffer = raster.getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+            * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Returns the memory used by the images of the given layer,
+     * including its mask and the nested layers.
+     */
+    protected static long calcLayerFootprint(Layer layer) {
+        long[] bytes = {0};
+        layer.forEachNestedLayer(nested -> {
+            if (nested instanceof ImageLayer imageLayer) {
+                bytes[0] += calcImageFootprint(imageLayer.getImage());
+            }
+        }, true);
+        return bytes[0];
+    }
+
     @Override
     public String toString() {
         return name;
@@ -38,7 +38,7 @@ import static java.util.stream.Collectors.toList;
 /**
  * The undo manager, and also the list model for the history GUI.
  */
-public class PixelitorUndoManager extends TwoLimitsUndoManager implements ListModel<PixelitorEdit>, Debuggable {
+public class PixelitorUndoManager extends MemoryLimitedUndoManager implements ListModel<PixelitorEdit>, Debuggable {
     private final HistoryListSelectionModel selectionModel;
     private final EventListenerList listenerList = new EventListenerList();
     private JDialog historyDialog;
@@ -264,6 +264,32 @@ public class PixelitorUndoManager extends TwoLimitsUndoManager implements ListMo
         return (PixelitorEdit) super.editToBeRedone();
     }
 
+    // called when edits are discarded because of the limits,
+    // and when the redoable edits are discarded by a new edit
+    @Override
+    protected void trimEdits(int from, int to) {
+        super.trimEdits(from, to);
+        if (from > to) {
+            return;
+        }
+
+        // update the GUI
+        userInitiatedSelection = false;
+        fireIntervalRemoved(this, from, to);
+        int numUndoable = getNumUndoableEdits();
+        if (numUndoable > 0) {
+            int index = numUndoable - 1;
+            selectionModel.setSelectedIndex(index);
+            selectedEdit = (PixelitorEdit) edits.get(index);
+        } else {
+            selectionModel.setAllowDeselect(true);
+            selectionModel.clearSelection();
+            selectionModel.setAllowDeselect(false);
+            selectedEdit = null;
+        }
+        userInitiatedSelection = true;
+    }
+
     // called whenever a not undoable edit is added
     @Override
     public synchronized void discardAllEdits() {
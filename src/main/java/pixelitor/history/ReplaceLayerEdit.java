@@ -24,6 +24,8 @@ import pixelitor.utils.debug.DebugNode;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 
+import java.util.Set;
+
 /**
  * Represents the replacement of a layer with another
  */
@@ -64,6 +66,11 @@ public class ReplaceLayerEdit extends PixelitorEdit {
         assert after.hasUI();
     }
 
+    @Override
+    public long getMemoryFootprint(Set<Object> countedTiles) {
+        return calcLayerFootprint(before);
+    }
+
     @Override
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
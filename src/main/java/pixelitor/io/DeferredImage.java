@@ -0,0 +1,76 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import pixelitor.ThreadPool;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A deserialized image that is decoded only when it's first needed.
+ * If its decoding was already started on the {@link ThreadPool},
+ * then the first access waits for it.
+ */
+public final class DeferredImage {
+    // null after the decoding succeeded
+    private FutureTask<BufferedImage> decoding;
+    private BufferedImage image;
+
+    DeferredImage(FutureTask<BufferedImage> decoding) {
+        this.decoding = decoding;
+    }
+
+    /**
+     * Returns a deferred image that is already decoded.
+     */
+    static DeferredImage of(BufferedImage image) {
+        DeferredImage deferred = new DeferredImage(null);
+        deferred.image = image;
+        return deferred;
+    }
+
+    /**
+     * Returns the image, decoding it on the calling thread if necessary.
+     *
+     * @throws UncheckedIOException if the image data can't be decoded
+     */
+    public BufferedImage get() {
+        try {
+            return decode();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized BufferedImage decode() throws IOException {
+        if (image == null) {
+            image = ThreadPool.getOrRunIO(decoding);
+            decoding = null;
+        }
+        return image;
+    }
+
+    synchronized void cancel() {
+        if (decoding != null) {
+            decoding.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An external command-line program that exchanges images with
+ * Pixelitor through its standard input and output.
+ * <p>
+ * The standard input and the standard error are pumped by separate threads,
+ * while the standard output is read by the calling thread, therefore
+ * the program can't block on a full pipe while Pixelitor waits
+ * for it on another pipe, even if it starts writing its output
+ * before reading all its input.
+ */
+public class ExternalProcess {
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The image formats used in the pipes.
+     */
+    public enum PipeFormat {
+        /**
+         * Compressed, but understood by every program.
+         */
+        PNG("png") {
+            @Override
+            void write(BufferedImage img, OutputStream out) throws IOException {
+                // Explicitly setting a low compression level doesn't seem
+                // to make it faster (why?), so use the simple approach.
+                ImageIO.write(img, "png", out);
+            }
+
+            @Override
+            BufferedImage read(InputStream in) throws IOException {
+                return ImageIO.read(in);
+            }
+        },
+        /**
+         * Uncompressed, with the fastest transfer.
+         */
+        PAM("pam") {
+            @Override
+            void write(BufferedImage img, OutputStream out) throws IOException {
+                PAMFormat.write(img, out);
+            }
+
+            @Override
+            BufferedImage read(InputStream in) throws IOException {
+                return PAMFormat.read(in);
+            }
+        };
+
+        private final String extension;
+
+        PipeFormat(String extension) {
+            this.extension = extension;
+        }
+
+        abstract void write(BufferedImage img, OutputStream out) throws IOException;
+
+        abstract BufferedImage read(InputStream in) throws IOException;
+
+        /**
+         * Returns the ImageMagick specifier of the standard input or output in this format.
+         */
+        public String getMagickStdSpecifier() {
+            return extension + ":-";
+        }
+    }
+
+    private final Process process;
+    private final Thread errorPump;
+    private final ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+    private Thread inputPump;
+    private volatile IOException inputException;
+
+    private ExternalProcess(Process process) {
+        this.process = process;
+        errorPump = startPump("stderr", () -> {
+            try (InputStream err = process.getErrorStream()) {
+                err.transferTo(errorOutput);
+            } catch (IOException e) {
+                // only the error message is lost
+            }
+        });
+    }
+
+    /**
+     * Starts the given command with piped standard streams.
+     */
+    public static ExternalProcess start(List<String> command) throws IOException {
+        return new ExternalProcess(new ProcessBuilder(command).start());
+    }
+
+    /**
+     * Starts writing the given image into the standard input
+     * of the program on a separate thread, and closes the
+     * standard input when the whole image was written.
+     */
+    public void writeImage(BufferedImage img, PipeFormat format) {
+        assert inputPump == null;
+        inputPump = startPump("stdin", () -> {
+            try (OutputStream in = new BufferedOutputStream(process.getOutputStream(), PIPE_BUFFER_SIZE)) {
+                format.write(img, in);
+            } catch (IOException e) {
+                inputException = e;
+            }
+        });
+    }
+
+    /**
+     * Closes the standard input of a program that doesn't read anything.
+     */
+    public void closeInput() throws IOException {
+        process.getOutputStream().close();
+    }
+
+    /**
+     * Reads an image from the standard output of the program
+     * on the calling thread. Returns null if the program
+     * didn't write a valid image.
+     */
+    public BufferedImage readImage(PipeFormat format) throws IOException {
+        try (InputStream out = new BufferedInputStream(process.getInputStream(), PIPE_BUFFER_SIZE)) {
+            BufferedImage img = format.read(out);
+
+            // don't let the program block on unread extra output
+            out.transferTo(OutputStream.nullOutputStream());
+            return img;
+        }
+    }
+
+    /**
+     * Waits until the program exits and all pumps are finished,
+     * and returns the exit code of the program.
+     */
+    public int waitFor() throws InterruptedException {
+        int exitCode = process.waitFor();
+        if (inputPump != null) {
+            inputPump.join();
+        }
+        errorPump.join();
+        return exitCode;
+    }
+
+    /**
+     * Returns the error output of the program, can be called after {@link #waitFor()}.
+     */
+    public String getErrorOutput() {
+        return errorOutput.toString(UTF_8);
+    }
+
+    /**
+     * Returns the exception that happened while writing the
+     * standard input, or null if the input was written successfully.
+     * A program that exits without reading all its input
+     * can cause such errors, which might not be a real problem.
+     */
+    public IOException getInputException() {
+        return inputException;
+    }
+
+    /**
+     * Forcibly terminates the program, for example after an error.
+     */
+    public void destroy() {
+        process.destroyForcibly();
+    }
+
+    private static Thread startPump(String streamName, Runnable task) {
+        Thread thread = new Thread(task, "ExternalProcess-" + streamName);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -24,12 +24,12 @@ import pixelitor.automate.DirectoryChooser;
 import pixelitor.filters.gui.StrokeParam;
 import pixelitor.gui.GUIText;
 import pixelitor.gui.utils.Dialogs;
+import pixelitor.io.ExternalProcess.PipeFormat;
 import pixelitor.io.magick.ImageMagick;
 import pixelitor.layers.Layer;
 import pixelitor.utils.Error;
 import pixelitor.utils.*;
 
-import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.swing.*;
 import java.awt.EventQueue;
@@ -375,86 +375,46 @@ public class FileIO {
     }
 
     public static Result<BufferedImage, String> runCommandLineFilter(BufferedImage src, List<String> command) {
-        ProcessBuilder pb = new ProcessBuilder(command.toArray(String[]::new))
-            .redirectInput(ProcessBuilder.Redirect.PIPE)
-            .redirectOutput(ProcessBuilder.Redirect.PIPE);
+        return runCommandLineFilter(src, command, PipeFormat.PNG);
+    }
 
+    /**
+     * Runs an external program that reads the source image from its standard
+     * input and writes the result to its standard output in the given format.
+     */
+    public static Result<BufferedImage, String> runCommandLineFilter(BufferedImage src,
+                                                                     List<String> command,
+                                                                     PipeFormat format) {
         BufferedImage out;
-
         try {
-            Process process = pb.start();
-
-            writeToCommandLineProcess(src, process);
-            out = readFromCommandLineProcess(process);
+            ExternalProcess process = ExternalProcess.start(command);
+            process.writeImage(src, format);
+            try {
+                out = process.readImage(format);
+            } catch (IOException e) {
+                process.destroy();
+                throw e;
+            }
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw (InterruptedIOException) new InterruptedIOException(
+                    "interrupted while waiting for " + command.getFirst()).initCause(e);
+            }
 
-            String errorMsg = null;
             if (out == null) {
                 // There was an error. Try to get the error message.
-                try (InputStream processError = process.getErrorStream()) {
-                    errorMsg = new String(processError.readAllBytes(), UTF_8);
+                String errorMsg = process.getErrorOutput();
+                if (errorMsg.isBlank() && process.getInputException() != null) {
+                    throw process.getInputException();
                 }
-            }
-            process.waitFor();
-            if (errorMsg != null) {
                 return Result.error(errorMsg);
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
         }
         return Result.success(out);
     }
-
-    /**
-     * Reads an image from the standard output of an external process.
-     */
-    public static BufferedImage readFromCommandLineProcess(Process process) throws IOException {
-        BufferedImage image;
-        try (InputStream processOutput = process.getInputStream()) {
-            assert processOutput instanceof BufferedInputStream;
-
-            image = ImageIO.read(processOutput);
-        }
-        return image;
-    }
-
-    /**
-     * Writes an image to the standard input of an external process.
-     */
-    public static void writeToCommandLineProcess(BufferedImage src, Process process) throws IOException {
-        try (OutputStream processInput = process.getOutputStream()) {
-            assert processInput instanceof BufferedOutputStream;
-
-            writeToCommandLineInputStream(src, processInput);
-            processInput.flush();
-        }
-    }
-
-    /**
-     * Writes the given image to the standard input stream
-     * of an external command-line program in PNG format.
-     */
-    private static void writeToCommandLineInputStream(BufferedImage img, OutputStream commandLineInput) throws IOException {
-        // Write as png to ImageMagick and let it do
-        // the conversion to the final format.
-        // Explicitly setting a low compression level doesn't seem
-        // to make it faster (why?), so use the simple approach.
-        ImageIO.write(img, "png", commandLineInput);
-
-//        try (ImageOutputStream ios = ImageIO.createImageOutputStream(commandLineInput)) {
-//            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
-//            ImageWriter writer = writers.next();
-//            ImageWriteParam writeParam = writer.getDefaultWriteParam();
-//            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-//            writeParam.setCompressionQuality(1.0f); // 1 is no compression
-//            try {
-//                writer.setOutput(ios);
-//                writer.write(img);
-//            } finally {
-//                writer.dispose();
-//                ios.flush();
-//            }
-//        }
-    }
 }
@@ -25,6 +25,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import pixelitor.Composition;
 import pixelitor.ImageMode;
+import pixelitor.ThreadPool;
 import pixelitor.compactions.Outsets;
 import pixelitor.layers.*;
 import pixelitor.utils.*;
@@ -33,12 +34,11 @@ import javax.imageio.ImageIO;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.awt.Dimension;
+import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.FutureTask;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -82,34 +82,50 @@ public class OpenRaster {
     public static void write(Composition comp, File outputFile) throws IOException {
         var mainTracker = new StatusBarProgressTracker("Writing " + outputFile.getName(), 100);
 
-        try (var zipStream = new ZipOutputStream(new FileOutputStream(outputFile))) {
-            // +1 for the merged image, and +1 for the thumbnail
-            int totalImages = comp.getNumORAExportableImages() + 2;
-            double progressPerImage = 1.0 / totalImages;
+        // the index of each layer is its unique id
+        List<Layer> exportedLayers = new ArrayList<>();
+        collectExportedLayers(comp, exportedLayers);
+
+        // The layer images are followed by the merged image and the thumbnail.
+        // The layer images are requested only shortly before they are encoded,
+        // because some layers create a new image for the export.
+        int numLayerImages = exportedLayers.size();
+        Point[] offsets = new Point[numLayerImages];
+        var compositeImage = comp.getCompositeImage();
+        var thumbnail = createORAThumbnail(compositeImage);
+        int numImages = numLayerImages + 2;
+        double progressPerImage = 1.0 / numImages;
+
+        // the images are encoded in parallel, but written in the original order
+        try (var zipStream = new ZipOutputStream(new FileOutputStream(outputFile));
+             var encoder = new ParallelPNGEncoder(numImages, index -> {
+                 if (index < numLayerImages) {
+                     TranslatedImage translatedImage = exportedLayers.get(index).getTranslatedImage();
+                     offsets[index] = new Point(translatedImage.tx(), translatedImage.ty());
+                     return translatedImage.img();
+                 }
+                 return index == numLayerImages ? compositeImage : thumbnail;
+             })) {
+            for (int i = 0; i < numImages; i++) {
+                String path;
+                if (i < numLayerImages) {
+                    path = format("data/%d.png", i);
+                } else if (i == numLayerImages) {
+                    path = MERGED_IMAGE_PATH;
+                } else {
+                    path = THUMBNAIL_PATH;
+                }
+                writeImageEntry(zipStream, path, encoder.next(), progressPerImage, mainTracker);
+            }
 
-            // creates stack.xml and writes the layer images
+            // write the stack.xml file, which needs the offsets of the layer images
             StringBuilder stackXML = new StringBuilder(format("""
-            <?xml version='1.0' encoding='UTF-8'?>
-            <image w="%d" h="%d">
-            """, comp.getCanvasWidth(), comp.getCanvasHeight()));
-            writeLayerHierarchy(comp, mainTracker, zipStream, stackXML, progressPerImage, 0);
+                <?xml version='1.0' encoding='UTF-8'?>
+                <image w="%d" h="%d">
+                """, comp.getCanvasWidth(), comp.getCanvasHeight()));
+            appendStackXML(comp, stackXML, exportedLayers, offsets);
             stackXML.append("</image>");
 
-            // writes the merged image
-            zipStream.putNextEntry(new ZipEntry(MERGED_IMAGE_PATH));
-            var mergedTracker = new SubtaskProgressTracker(progressPerImage, mainTracker);
-            var img = comp.getCompositeImage();
-            TrackedIO.writeToStream(img, zipStream, "PNG", mergedTracker);
-            zipStream.closeEntry();
-
-            // writes the thumbnail image
-            zipStream.putNextEntry(new ZipEntry(THUMBNAIL_PATH));
-            var thumbTracker = new SubtaskProgressTracker(progressPerImage, mainTracker);
-            var thumb = createORAThumbnail(comp.getCompositeImage());
-            TrackedIO.writeToStream(thumb, zipStream, "PNG", thumbTracker);
-            zipStream.closeEntry();
-
-            // write the stack.xml file
             zipStream.putNextEntry(new ZipEntry(STACK_XML_PATH));
             zipStream.write(stackXML.toString().getBytes(UTF_8));
             zipStream.closeEntry();
@@ -122,39 +138,58 @@ public class OpenRaster {
         mainTracker.finished();
     }
 
-    // recursively writes the layers of the given holder
-    private static int writeLayerHierarchy(LayerHolder holder,
-                                           StatusBarProgressTracker mainTracker,
-                                           ZipOutputStream zipStream,
-                                           StringBuilder stackXML,
-                                           double progressPerImage,
-                                           int uniqueId) throws IOException {
+    private static void writeImageEntry(ZipOutputStream zipStream,
+                                        String path,
+                                        byte[] pngData,
+                                        double progressPerImage,
+                                        ProgressTracker mainTracker) throws IOException {
+        zipStream.putNextEntry(new ZipEntry(path));
+        zipStream.write(pngData);
+        zipStream.closeEntry();
+
+        // the same progress units as the image writers, one percent each
+        var tracker = new SubtaskProgressTracker(progressPerImage, mainTracker);
+        tracker.unitsDone(100);
+        tracker.finished();
+    }
+
+    // recursively collects the layers that have an image in the file,
+    // in the order of their appearance in stack.xml
+    private static void collectExportedLayers(LayerHolder holder, List<Layer> exportedLayers) {
+        // Reverse iteration: in stack.xml the first element in a stack is the uppermost.
+        for (int i = holder.getNumLayers() - 1; i >= 0; i--) {
+            Layer layer = holder.getLayer(i);
+            if (layer instanceof LayerGroup group) {
+                collectExportedLayers(group, exportedLayers);
+            } else if (layer.canExportORAImage()) {
+                exportedLayers.add(layer);
+            }
+        }
+    }
+
+    // recursively creates the stack element of the given holder
+    private static void appendStackXML(LayerHolder holder,
+                                       StringBuilder stackXML,
+                                       List<Layer> exportedLayers,
+                                       Point[] offsets) {
         stackXML.append(holder.getORAStackXML());
 
         int numLayers = holder.getNumLayers();
-        // Reverse iteration: in stack.xml the first element in a stack is the uppermost.
         for (int i = numLayers - 1; i >= 0; i--) {
             Layer layer = holder.getLayer(i);
             if (layer instanceof LayerGroup group) {
-                uniqueId = writeLayerHierarchy(group, mainTracker, zipStream, stackXML, progressPerImage, uniqueId);
+                appendStackXML(group, stackXML, exportedLayers, offsets);
             } else if (layer.canExportORAImage()) {
-                var subTracker = new SubtaskProgressTracker(progressPerImage, mainTracker);
-                writeLayer(layer, uniqueId, zipStream, subTracker, stackXML);
-                uniqueId++;
+                int uniqueId = exportedLayers.indexOf(layer);
+                appendLayerXML(layer, uniqueId, offsets[uniqueId], stackXML);
             }
         }
 
         stackXML.append("</stack>");
-        return uniqueId;
     }
 
-    private static void writeLayer(Layer layer,
-                                   int uniqueId,
-                                   ZipOutputStream zipStream,
-                                   ProgressTracker pt,
-                                   StringBuilder stackXML) throws IOException {
-        TranslatedImage translatedImage = layer.getTranslatedImage();
-
+    private static void appendLayerXML(Layer layer, int uniqueId,
+                                       Point offset, StringBuilder stackXML) {
         String xml = format(Locale.ENGLISH,
             "<layer name=\"%s\" visibility=\"%s\" composite-op=\"%s\" " +
                 "opacity=\"%f\" src=\"data/%d.png\" x=\"%d\" y=\"%d\"/>\n",
@@ -163,16 +198,9 @@ public class OpenRaster {
             layer.getBlendingMode().toSVGName(),
             layer.getOpacity(),
             uniqueId,
-            translatedImage.tx(),
-            translatedImage.ty());
+            offset.x,
+            offset.y);
         stackXML.append(xml);
-
-        var entry = new ZipEntry(format("data/%d.png", uniqueId));
-        zipStream.putNextEntry(entry);
-
-        TrackedIO.writeToStream(translatedImage.img(), zipStream, "PNG", pt);
-
-        zipStream.closeEntry();
     }
 
     /**
@@ -188,24 +216,43 @@ public class OpenRaster {
             int numImageFiles = countImageFiles(zipFile);
             double progressPerImage = 1.0 / numImageFiles;
 
-            // ...then iterate again to actually read the files
-            var fileEntries = zipFile.entries();
-            while (fileEntries.hasMoreElements()) {
-                ZipEntry entry = fileEntries.nextElement();
-                String name = entry.getName();
-
-                if (name.equalsIgnoreCase(STACK_XML_PATH)) {
-                    InputStream is = zipFile.getInputStream(entry);
-                    stackXML = new String(is.readAllBytes(), UTF_8);
-                } else if (name.equalsIgnoreCase(MERGED_IMAGE_PATH)) {
-                    // no need to read it
-                } else if (name.equalsIgnoreCase(THUMBNAIL_PATH)) {
-                    // no need to read it
-                } else if (FileUtils.hasPNGExtension(name)) {
+            // ...then iterate again to start decoding the images in parallel.
+            // The ZipFile supports concurrent entry streams, and the
+            // order of the layers is resolved later from stack.xml.
+            Map<String, FutureTask<BufferedImage>> decodedImages = new LinkedHashMap<>();
+            try {
+                var fileEntries = zipFile.entries();
+                while (fileEntries.hasMoreElements()) {
+                    ZipEntry entry = fileEntries.nextElement();
+                    String name = entry.getName();
+
+                    if (name.equalsIgnoreCase(STACK_XML_PATH)) {
+                        InputStream is = zipFile.getInputStream(entry);
+                        stackXML = new String(is.readAllBytes(), UTF_8);
+                    } else if (name.equalsIgnoreCase(MERGED_IMAGE_PATH)) {
+                        // no need to read it
+                    } else if (name.equalsIgnoreCase(THUMBNAIL_PATH)) {
+                        // no need to read it
+                    } else if (FileUtils.hasPNGExtension(name)) {
+                        decodedImages.put(name, ThreadPool.submitLeaf(
+                            () -> readLayerImage(zipFile, entry)));
+                    }
+                }
+
+                // The zip file must stay open until all images are decoded.
+                // Waiting can't deadlock even if the file is read on a pool thread,
+                // because the decoding tasks that didn't start yet run on this thread.
+                for (var decoded : decodedImages.entrySet()) {
+                    images.put(decoded.getKey(), ThreadPool.getOrRunIO(decoded.getValue()));
+
+                    // the same progress units as the image readers, one percent each
                     var subTracker = new SubtaskProgressTracker(progressPerImage, mainTracker);
-                    var stream = zipFile.getInputStream(entry);
-                    var image = TrackedIO.readFromStream(stream, subTracker);
-                    images.put(name, image);
+                    subTracker.unitsDone(100);
+                    subTracker.finished();
+                }
+            } finally {
+                for (FutureTask<BufferedImage> future : decodedImages.values()) {
+                    future.cancel(false);
                 }
             }
         }
@@ -243,6 +290,17 @@ public class OpenRaster {
         return comp;
     }
 
+    // decodes a layer image, called on the pool threads
+    private static BufferedImage readLayerImage(ZipFile zipFile, ZipEntry entry) throws IOException {
+        try (var stream = zipFile.getInputStream(entry)) {
+            BufferedImage image = TrackedIO.readFromStream(stream, ProgressTracker.NULL_TRACKER);
+            if (image == null) {
+                throw new IOException("Could not decode " + entry.getName());
+            }
+            return ImageUtils.toSysCompatibleImage(image);
+        }
+    }
+
     // reads a stack element
     private static void readHolder(Node stackNode, LayerHolder parent, Map<String, BufferedImage> images) {
         assert stackNode.getNodeName().equals("stack");
@@ -274,8 +332,8 @@ public class OpenRaster {
     }
 
     private static void readLayer(Map<String, BufferedImage> images, LayerHolder holder, Element element) {
+        // already converted to a compatible image while decoding
         BufferedImage image = images.get(element.getAttribute("src"));
-        image = ImageUtils.toSysCompatibleImage(image);
 
         int tx = Utils.parseInt(element.getAttribute("x"), 0);
         int ty = Utils.parseInt(element.getAttribute("y"), 0);
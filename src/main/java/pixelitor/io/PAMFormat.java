@@ -0,0 +1,185 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Support for the uncompressed PAM (portable arbitrary map) format.
+ * It's used to exchange images with external programs, because
+ * it avoids the costs of the PNG compression and decompression.
+ */
+public class PAMFormat {
+    private static final int MAX_HEADER_LINE_LENGTH = 1024;
+
+    private PAMFormat() {
+    }
+
+    /**
+     * Writes the given image as an 8-bit RGB_ALPHA PAM image.
+     */
+    public static void write(BufferedImage img, OutputStream out) throws IOException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        String header = "P7\nWIDTH " + width + "\nHEIGHT " + height
+            + "\nDEPTH 4\nMAXVAL 255\nTUPLTYPE RGB_ALPHA\nENDHDR\n";
+        out.write(header.getBytes(US_ASCII));
+
+        int[] argbRow = new int[width];
+        byte[] rgbaRow = new byte[width * 4];
+        for (int y = 0; y < height; y++) {
+            img.getRGB(0, y, width, 1, argbRow, 0, width);
+            for (int x = 0, i = 0; x < width; x++, i += 4) {
+                int argb = argbRow[x];
+                rgbaRow[i] = (byte) (argb >>> 16);
+                rgbaRow[i + 1] = (byte) (argb >>> 8);
+                rgbaRow[i + 2] = (byte) argb;
+                rgbaRow[i + 3] = (byte) (argb >>> 24);
+            }
+            out.write(rgbaRow);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a PAM image with 1-4 channels and 8 or 16 bits per sample
+     * directly into the pixel array of a new TYPE_INT_ARGB image.
+     * Returns null if the stream ends before the image starts,
+     * for example because an external program didn't write anything.
+     */
+    public static BufferedImage read(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        if (first != 'P' || in.read() != '7') {
+            throw new IOException("not a PAM image");
+        }
+        skipLine(in);
+
+        int width = -1;
+        int height = -1;
+        int depth = -1;
+        int maxVal = -1;
+        while (true) {
+            String line = readLine(in).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.equals("ENDHDR")) {
+                break;
+            }
+            String[] tokens = line.split("\\s+", 2);
+            switch (tokens[0]) {
+                case "WIDTH" -> width = parseHeaderValue(tokens);
+                case "HEIGHT" -> height = parseHeaderValue(tokens);
+                case "DEPTH" -> depth = parseHeaderValue(tokens);
+                case "MAXVAL" -> maxVal = parseHeaderValue(tokens);
+                default -> {
+                    // TUPLTYPE is implied by the depth
+                }
+            }
+        }
+        if (width <= 0 || height <= 0 || depth < 1 || depth > 4 || maxVal < 1 || maxVal > 65535) {
+            throw new IOException(String.format(
+                "unsupported PAM header: width = %d, height = %d, depth = %d, maxval = %d",
+                width, height, depth, maxVal));
+        }
+
+        int bytesPerSample = maxVal > 255 ? 2 : 1;
+        // checked before allocating, because the products could overflow
+        if ((long) width * height > Integer.MAX_VALUE
+            || (long) width * depth * bytesPerSample > Integer.MAX_VALUE) {
+            throw new IOException(String.format(
+                "PAM image is too large: width = %d, height = %d, depth = %d",
+                width, height, depth));
+        }
+
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        byte[] row = new byte[width * depth * bytesPerSample];
+        int[] samples = new int[4];
+        for (int y = 0; y < height; y++) {
+            if (in.readNBytes(row, 0, row.length) != row.length) {
+                throw new EOFException("unexpected end of PAM data at row " + y);
+            }
+            int offset = y * width;
+            int pos = 0;
+            for (int x = 0; x < width; x++) {
+                for (int c = 0; c < depth; c++) {
+                    int sample = row[pos++] & 0xFF;
+                    if (bytesPerSample == 2) {
+                        sample = (sample << 8) | (row[pos++] & 0xFF);
+                    }
+                    samples[c] = maxVal == 255 ? sample : (sample * 255 + maxVal / 2) / maxVal;
+                }
+                pixels[offset + x] = toARGB(samples, depth);
+            }
+        }
+        return img;
+    }
+
+    private static int toARGB(int[] samples, int depth) {
+        return switch (depth) {
+            case 1 -> 0xFF_00_00_00 | samples[0] << 16 | samples[0] << 8 | samples[0];
+            case 2 -> samples[1] << 24 | samples[0] << 16 | samples[0] << 8 | samples[0];
+            case 3 -> 0xFF_00_00_00 | samples[0] << 16 | samples[1] << 8 | samples[2];
+            default -> samples[3] << 24 | samples[0] << 16 | samples[1] << 8 | samples[2];
+        };
+    }
+
+    private static int parseHeaderValue(String[] tokens) throws IOException {
+        if (tokens.length < 2) {
+            throw new IOException("missing value for " + tokens[0] + " in the PAM header");
+        }
+        try {
+            return Integer.parseInt(tokens[1].trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid PAM header line: " + String.join(" ", tokens), e);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("unexpected end of the PAM header");
+            }
+            if (b == '\n') {
+                return sb.toString();
+            }
+            if (sb.length() >= MAX_HEADER_LINE_LENGTH) {
+                throw new IOException("PAM header line is too long");
+            }
+            sb.append((char) b);
+        }
+    }
+
+    private static void skipLine(InputStream in) throws IOException {
+        readLine(in);
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import pixelitor.Composition;
+import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
+import pixelitor.utils.SubtaskProgressTracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.FutureTask;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The chunked layout of the pxc files, used since pxc version 5.
+ * <p>
+ * After the header and the thumbnail, the file consists of chunks that
+ * can be read independently: one with the serialized composition
+ * (in which the images are only referenced by their chunk index),
+ * and one separately compressed PNG chunk for each layer or mask image.
+ * The chunk table is at the end of the file, and the last
+ * eight bytes of the file contain the position of the table.
+ * <p>
+ * When reading, the images of the visible layers are decoded in parallel
+ * while the composition is deserialized. The images of the hidden layers
+ * and the masks are only read from the file, and they are decoded when
+ * they are first needed (see {@link DeferredImage}).
+ * <p>
+ * When saving, the images that haven't changed since they were read
+ * from (or written to) a pxc file are copied from that file
+ * without encoding them again.
+ */
+class PXCContainer {
+    private static final byte METADATA_CHUNK = 1;
+    private static final byte IMAGE_CHUNK = 2;
+
+    // the size of a chunk table entry: type, offset and length
+    private static final int TABLE_ENTRY_SIZE = 1 + 8 + 8;
+
+    // the chunks from which the images were read or to which they were written
+    private static final Map<BufferedImage, ChunkOrigin> origins =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    // the reading or writing that is running on the current thread
+    private static final ThreadLocal<ChunkReader> currentReader = new ThreadLocal<>();
+    private static final ThreadLocal<ChunkWriter> currentWriter = new ThreadLocal<>();
+
+    private PXCContainer() {
+    }
+
+    /**
+     * Reads the composition from a chunked pxc file.
+     */
+    static Composition read(File file, ProgressTracker tracker)
+        throws IOException, ClassNotFoundException, BadPxcFormatException {
+
+        Path path = file.toPath();
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            FileStamp stamp = FileStamp.of(path);
+            List<Chunk> chunks = readTable(channel, file.getName());
+            if (chunks.isEmpty() || chunks.getFirst().type != METADATA_CHUNK) {
+                throw new BadPxcFormatException(file.getName() + " has no composition data.");
+            }
+
+            ChunkReader reader = new ChunkReader(channel, path, stamp, chunks, tracker);
+            byte[] metadata = readChunk(channel, chunks.getFirst());
+            tracker.unitsDone(toUnits(metadata.length));
+
+            Composition comp;
+            currentReader.set(reader);
+            try (ObjectInput ois = new ObjectInputStream(new ByteArrayInputStream(metadata))) {
+                comp = (Composition) ois.readObject();
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                reader.cancelStarted();
+                throw e;
+            } finally {
+                currentReader.remove();
+            }
+            reader.finishStarted();
+            return comp;
+        }
+    }
+
+    /**
+     * Returns true if the images are being deserialized from a chunked pxc file.
+     */
+    static boolean isReading() {
+        return currentReader.get() != null;
+    }
+
+    /**
+     * Reads the image chunk with the given index of the file that is being read.
+     * If decodeNow is true, then the image is decoded in the background,
+     * and the reading of the file finishes only after it's decoded.
+     * Otherwise, it's decoded only when it's first needed.
+     */
+    static DeferredImage readImage(int chunkIndex, boolean decodeNow) throws IOException {
+        return currentReader.get().readImage(chunkIndex, decodeNow);
+    }
+
+    /**
+     * Writes the composition into a chunked pxc file. The given
+     * header (including the thumbnail) is written before the chunks.
+     * The file is replaced only after everything was written,
+     * because the unchanged images could be copied from it.
+     */
+    static void write(Composition comp, File file, byte[] header,
+                      ProgressTracker tracker) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        if (Files.isSymbolicLink(target)) {
+            target = target.toRealPath(); // replace the linked file, not the link
+        }
+        // not created with Files.createTempFile, because
+        // the saved file should get the default permissions
+        Path tmpFile = target.resolveSibling(
+            "." + target.getFileName() + "." + System.nanoTime() + ".tmp");
+        try {
+            ChunkWriter writer = new ChunkWriter();
+            byte[] metadata = serializeMetadata(comp, writer);
+
+            List<ChunkOrigin> written;
+            try (FileChannel channel = FileChannel.open(tmpFile, CREATE_NEW, WRITE)) {
+                writeFully(channel, ByteBuffer.wrap(header));
+                written = writer.writeChunks(channel, metadata, tracker);
+            }
+
+            moveOver(tmpFile, target);
+
+            // the new file can be the source of the next save
+            FileStamp stamp = FileStamp.of(target);
+            for (int i = 0; i < writer.images.size(); i++) {
+                ChunkOrigin origin = written.get(i);
+                origins.put(writer.images.get(i), new ChunkOrigin(
+                    target, stamp, origin.offset, origin.length, origin.pixelsHash));
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Returns true if the images are being serialized for a chunked pxc file.
+     */
+    static boolean isWriting() {
+        return currentWriter.get() != null;
+    }
+
+    /**
+     * Registers an image to be written into its own chunk,
+     * and returns the index of that chunk.
+     */
+    static int addImage(BufferedImage image) {
+        return currentWriter.get().addImage(image);
+    }
+
+    private static byte[] serializeMetadata(Composition comp, ChunkWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        currentWriter.set(writer);
+        try (ObjectOutput oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(comp);
+            oos.flush();
+        } finally {
+            currentWriter.remove();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void moveOver(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static List<Chunk> readTable(FileChannel channel, String fileName)
+        throws IOException, BadPxcFormatException {
+
+        long fileSize = channel.size();
+        if (fileSize < 8 + 4) {
+            throw new BadPxcFormatException(fileName + " is truncated.");
+        }
+        ByteBuffer trailer = readFully(channel, fileSize - 8, 8);
+        long tableOffset = trailer.getLong();
+        if (tableOffset < 0 || tableOffset > fileSize - 8 - 4) {
+            throw new BadPxcFormatException(fileName + " has an invalid chunk table position.");
+        }
+
+        int numChunks = readFully(channel, tableOffset, 4).getInt();
+        if (numChunks < 0 || tableOffset + 4 + (long) numChunks * TABLE_ENTRY_SIZE > fileSize - 8) {
+            throw new BadPxcFormatException(fileName + " has an invalid chunk table.");
+        }
+        ByteBuffer table = readFully(channel, tableOffset + 4, numChunks * TABLE_ENTRY_SIZE);
+        List<Chunk> chunks = new ArrayList<>(numChunks);
+        for (int i = 0; i < numChunks; i++) {
+            byte type = table.get();
+            long offset = table.getLong();
+            long length = table.getLong();
+            if (offset < 0 || length < 0 || length > Integer.MAX_VALUE
+                || offset + length > tableOffset) {
+                throw new BadPxcFormatException(fileName + " has an invalid chunk at index " + i);
+            }
+            chunks.add(new Chunk(type, offset, length));
+        }
+        return chunks;
+    }
+
+    private static byte[] readChunk(FileChannel channel, Chunk chunk) throws IOException {
+        return readFully(channel, chunk.offset, (int) chunk.length).array();
+    }
+
+    // uses positional reads, so it can be called from several threads
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // the read progress is tracked in file bytes, but the trackers count ints
+    private static int toUnits(long numBytes) {
+        return (int) Math.min(numBytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Calculates a 64-bit hash of the pixels, for detecting in-place image changes.
+     * Returns 0 if the image can't be hashed.
+     */
+    static long hashPixels(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        long hash = mix(img.getType() * 31L + width * 0x9E3779B97F4A7C15L + height);
+
+        Raster raster = img.getRaster();
+        Object row = null;
+        for (int y = 0; y < height; y++) {
+            row = raster.getDataElements(0, y, width, 1, row);
+            switch (row) {
+                case int[] ints -> {
+                    for (int v : ints) {
+                        hash = (hash ^ v) * 0x100000001B3L;
+                    }
+                }
+                case byte[] bytes -> {
+                    for (byte v : bytes) {
+                        hash = (hash ^ v) * 0x100000001B3L;
+                    }
+                }
+                case short[] shorts -> {
+                    for (short v : shorts) {
+                        hash = (hash ^ v) * 0x100000001B3L;
+                    }
+                }
+                default -> {
+                    return 0;
+                }
+            }
+            hash = mix(hash);
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    // the finalizer of MurmurHash3
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private record Chunk(byte type, long offset, long length) {
+    }
+
+    /**
+     * Identifies a version of a file, so that chunks are copied
+     * from it only if it hasn't been modified since.
+     */
+    private record FileStamp(long size, long lastModified) {
+        static FileStamp of(Path path) throws IOException {
+            return new FileStamp(Files.size(path),
+                Files.getLastModifiedTime(path).toMillis());
+        }
+
+        boolean matches(Path path) {
+            try {
+                return equals(of(path));
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The location of an image chunk in a pxc file, and the
+     * hash of the image pixels that the chunk contains.
+     */
+    private record ChunkOrigin(Path file, FileStamp stamp,
+                               long offset, long length, long pixelsHash) {
+    }
+
+    /**
+     * Reads the image chunks of a file while the composition is deserialized.
+     * The compressed data is read right away, so that the file doesn't have
+     * to stay open for the images that are decoded later.
+     */
+    private static class ChunkReader {
+        private final FileChannel channel;
+        private final Path path;
+        private final FileStamp stamp;
+        private final List<Chunk> chunks;
+        private final ProgressTracker tracker;
+
+        // the images whose decoding was started on the thread pool
+        private final List<DeferredImage> started = new ArrayList<>();
+
+        ChunkReader(FileChannel channel, Path path, FileStamp stamp,
+                    List<Chunk> chunks, ProgressTracker tracker) {
+            this.channel = channel;
+            this.path = path;
+            this.stamp = stamp;
+            this.chunks = chunks;
+            this.tracker = tracker;
+        }
+
+        DeferredImage readImage(int chunkIndex, boolean decodeNow) throws IOException {
+            if (chunkIndex <= 0 || chunkIndex >= chunks.size()
+                || chunks.get(chunkIndex).type != IMAGE_CHUNK) {
+                throw new InvalidObjectException("invalid image chunk index " + chunkIndex);
+            }
+            Chunk chunk = chunks.get(chunkIndex);
+            byte[] data = readChunk(channel, chunk);
+            tracker.unitsDone(toUnits(chunk.length));
+
+            if (!decodeNow) {
+                return new DeferredImage(new FutureTask<>(() -> decode(chunk, data)));
+            }
+            DeferredImage image = new DeferredImage(
+                ThreadPool.submitLeaf(() -> decode(chunk, data)));
+            started.add(image);
+            return image;
+        }
+
+        private BufferedImage decode(Chunk chunk, byte[] data) throws IOException {
+            BufferedImage image = PXCFormat.decodePNG(new ByteArrayInputStream(data));
+            origins.put(image, new ChunkOrigin(path, stamp,
+                chunk.offset, chunk.length, hashPixels(image)));
+            return image;
+        }
+
+        // Waits for the started decodings, so that a broken image of a
+        // visible layer is reported while the file is opened. This also
+        // works when reading on a pool thread, because the decoding
+        // tasks that didn't start yet are run by the waiting thread.
+        void finishStarted() throws IOException {
+            try {
+                for (DeferredImage image : started) {
+                    image.decode();
+                }
+            } catch (IOException | RuntimeException e) {
+                cancelStarted();
+                throw e;
+            }
+        }
+
+        void cancelStarted() {
+            for (DeferredImage image : started) {
+                image.cancel();
+            }
+            started.clear();
+        }
+    }
+
+    /**
+     * Collects the images while the composition is serialized,
+     * and then writes them into chunks.
+     */
+    private static class ChunkWriter {
+        private final List<BufferedImage> images = new ArrayList<>();
+
+        int addImage(BufferedImage image) {
+            images.add(image);
+            return images.size(); // the chunk index, the composition is at 0
+        }
+
+        // writes the chunks, and returns where the images were written
+        List<ChunkOrigin> writeChunks(FileChannel channel, byte[] metadata,
+                                      ProgressTracker mainTracker) throws IOException {
+            List<Chunk> table = new ArrayList<>(images.size() + 1);
+            table.add(new Chunk(METADATA_CHUNK, channel.position(), metadata.length));
+            writeFully(channel, ByteBuffer.wrap(metadata));
+
+            // the unchanged images are copied, the others are
+            // encoded in parallel, while the chunks are written in order
+            int numImages = images.size();
+            long[] hashes = new long[numImages];
+            List<BufferedImage> toEncode = new ArrayList<>(numImages);
+            for (int i = 0; i < numImages; i++) {
+                BufferedImage image = images.get(i);
+                hashes[i] = hashPixels(image);
+                toEncode.add(canCopy(image, hashes[i]) ? null : image);
+            }
+
+            // the images can share their source files
+            Map<Path, FileChannel> sources = new HashMap<>();
+            List<ChunkOrigin> written = new ArrayList<>(numImages);
+            try (var encoder = new ParallelPNGEncoder(toEncode)) {
+                for (int i = 0; i < numImages; i++) {
+                    long offset = channel.position();
+                    byte[] encoded = encoder.next();
+                    if (encoded == null && !copyChunk(origins.get(images.get(i)), channel, sources)) {
+                        channel.position(offset); // in case a copy failed halfway
+                        channel.truncate(offset);
+                        encoded = ParallelPNGEncoder.encode(images.get(i));
+                    }
+                    if (encoded != null) {
+                        writeFully(channel, ByteBuffer.wrap(encoded));
+                    }
+
+                    // the same progress units as the image writers, one percent each
+                    var tracker = new SubtaskProgressTracker(1.0 / numImages, mainTracker);
+                    tracker.unitsDone(100);
+                    tracker.finished();
+
+                    long length = channel.position() - offset;
+                    table.add(new Chunk(IMAGE_CHUNK, offset, length));
+                    written.add(new ChunkOrigin(null, null, offset, length, hashes[i]));
+                }
+            } finally {
+                for (FileChannel source : sources.values()) {
+                    source.close();
+                }
+            }
+
+            writeTable(channel, table);
+            return written;
+        }
+
+        private static boolean canCopy(BufferedImage image, long hash) {
+            ChunkOrigin origin = origins.get(image);
+            return hash != 0 && origin != null && origin.pixelsHash == hash;
+        }
+
+        private static boolean copyChunk(ChunkOrigin origin, FileChannel target,
+                                         Map<Path, FileChannel> sources) {
+            try {
+                FileChannel source = sources.get(origin.file);
+                if (source == null) {
+                    if (!origin.stamp.matches(origin.file)) {
+                        return false; // the file was modified or deleted
+                    }
+                    source = FileChannel.open(origin.file, READ);
+                    sources.put(origin.file, source);
+                }
+                long copied = 0;
+                while (copied < origin.length) {
+                    long count = source.transferTo(origin.offset + copied,
+                        origin.length - copied, target);
+                    if (count <= 0) {
+                        return false;
+                    }
+                    copied += count;
+                }
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private static void writeTable(FileChannel channel, List<Chunk> table) throws IOException {
+            long tableOffset = channel.position();
+            ByteBuffer buffer = ByteBuffer.allocate(4 + table.size() * TABLE_ENTRY_SIZE + 8);
+            buffer.putInt(table.size());
+            for (Chunk chunk : table) {
+                buffer.put(chunk.type);
+                buffer.putLong(chunk.offset);
+                buffer.putLong(chunk.length);
+            }
+            buffer.putLong(tableOffset);
+            writeFully(channel, buffer.flip());
+        }
+    }
+}
@@ -33,15 +33,13 @@ import static pixelitor.utils.ImageUtils.getPixels;
  * PXC file format support.
  */
 public class PXCFormat {
-    private static final int CURRENT_PXC_VERSION_NUMBER = 0x04;
+    private static final int CURRENT_PXC_VERSION_NUMBER = 0x05;
 
     // the first version supporting a thumbnail
     private static final int THUMBNAIL_FORMAT_VERSION = 0x04;
 
-    // tracks the writing of the whole file
-    private static ProgressTracker mainPT;
-
-    private static double workRatioForOneImage;
+    // the first version storing the images in separate chunks, see PXCContainer
+    private static final int CHUNKED_FORMAT_VERSION = 0x05;
 
     private PXCFormat() {
     }
@@ -84,24 +82,11 @@ public class PXCFormat {
                     + " has unknown version byte " + versionByte);
             }
 
-            // Skip thumbnail data
-            if (versionByte >= THUMBNAIL_FORMAT_VERSION) {
-                // Read thumbnail length (4 bytes)
-                int thumbnailLength = readInt(is);
-                // Skip the thumbnail data
-                is.skip(thumbnailLength);
-            }
-
-            if (versionByte == 3) { // gzipped stream in old pxc files
-                try (GZIPInputStream gs = new GZIPInputStream(is)) {
-                    try (ObjectInput ois = new ObjectInputStream(gs)) {
-                        comp = (Composition) ois.readObject();
-                    }
-                }
+            if (versionByte >= CHUNKED_FORMAT_VERSION) {
+                // the chunks are read with random access
+                comp = PXCContainer.read(file, tracker);
             } else {
-                try (ObjectInput ois = new ObjectInputStream(is)) {
-                    comp = (Composition) ois.readObject();
-                }
+                comp = readSerialized(is, versionByte);
             }
             // file is transient in Composition because the pxc file can be renamed
             comp.setFile(file);
@@ -114,18 +99,38 @@ public class PXCFormat {
         return comp;
     }
 
-    public static void write(Composition comp, File file) {
-        mainPT = new StatusBarProgressTracker(
-            "Writing " + file.getName(), 100);
-        int numImages = comp.calcNumImages();
-        if (numImages > 0) {
-            workRatioForOneImage = 1.0 / numImages;
+    // reads the composition from the single serialized stream of the older versions
+    private static Composition readSerialized(InputStream is, int versionByte)
+        throws IOException, ClassNotFoundException {
+        // Skip thumbnail data
+        if (versionByte >= THUMBNAIL_FORMAT_VERSION) {
+            // Read thumbnail length (4 bytes)
+            int thumbnailLength = readInt(is);
+            // Skip the thumbnail data
+            is.skip(thumbnailLength);
+        }
+
+        if (versionByte == 3) { // gzipped stream in old pxc files
+            try (GZIPInputStream gs = new GZIPInputStream(is)) {
+                try (ObjectInput ois = new ObjectInputStream(gs)) {
+                    return (Composition) ois.readObject();
+                }
+            }
         } else {
-            workRatioForOneImage = -1;
+            try (ObjectInput ois = new ObjectInputStream(is)) {
+                return (Composition) ois.readObject();
+            }
         }
-        try (FileOutputStream fos = new FileOutputStream(file)) {
+    }
+
+    public static void write(Composition comp, File file) {
+        // tracks the writing of the whole file
+        ProgressTracker mainPT = new StatusBarProgressTracker(
+            "Writing " + file.getName(), 100);
+        try {
             // write header bytes and version
-            fos.write(new byte[]{(byte) 0xAB, (byte) 0xC4, CURRENT_PXC_VERSION_NUMBER});
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            header.write(new byte[]{(byte) 0xAB, (byte) 0xC4, CURRENT_PXC_VERSION_NUMBER});
 
             // write thumbnail
             BufferedImage thumbnail = OpenRaster.createORAThumbnail(comp.getCompositeImage());
@@ -133,26 +138,16 @@ public class PXCFormat {
             ByteArrayOutputStream thumbnailBytes = new ByteArrayOutputStream();
             ImageIO.write(thumbnail, "PNG", thumbnailBytes);
             byte[] thumbnailData = thumbnailBytes.toByteArray();
-            writeInt(fos, thumbnailData.length); // write thumbnail length
-            fos.write(thumbnailData); // write thumbnail data
-
-//            try (GZIPOutputStream gz = new GZIPOutputStream(fos)) {
-//                try (ObjectOutput oos = new ObjectOutputStream(gz)) {
-//                    oos.writeObject(comp);
-//                    oos.flush();
-//                }
-//            }
-
-            // since pxc version 4, the stream isn't gzipped
-            try (ObjectOutput oos = new ObjectOutputStream(fos)) {
-                oos.writeObject(comp);
-                oos.flush();
-            }
+            writeInt(header, thumbnailData.length); // write thumbnail length
+            header.write(thumbnailData); // write thumbnail data
+
+            // since pxc version 5, the composition and
+            // the images are written in separate chunks
+            PXCContainer.write(comp, file, header.toByteArray(), mainPT);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
         mainPT.finished();
-        mainPT = null;
     }
 
     /**
@@ -167,8 +162,8 @@ public class PXCFormat {
             }
 
             int versionByte = is.read();
-            if (versionByte != THUMBNAIL_FORMAT_VERSION) {
-                return null; // old version, no thumbnail
+            if (versionByte < THUMBNAIL_FORMAT_VERSION || versionByte > CURRENT_PXC_VERSION_NUMBER) {
+                return null; // old version without thumbnail, or unknown version
             }
 
             int thumbnailLength = readInt(is);
@@ -186,6 +181,12 @@ public class PXCFormat {
     public static void serializeImage(ObjectOutputStream out,
                                       BufferedImage img) throws IOException {
         assert img != null;
+        if (PXCContainer.isWriting()) {
+            // the image will be written into its own chunk
+            out.writeInt(PXCContainer.addImage(img));
+            return;
+        }
+
         int imgWidth = img.getWidth();
         int imgHeight = img.getHeight();
 
@@ -198,7 +199,8 @@ public class PXCFormat {
         out.writeInt(imgHeight);
         out.writeInt(imgType);
 
-        ProgressTracker pt = getImageTracker();
+        // this inline format isn't used for the pxc files since version 5
+        ProgressTracker pt = ProgressTracker.NULL_TRACKER;
 
         if (imgType == TYPE_BYTE_GRAY) {
             TrackedIO.writeToStream(img, out, "PNG", pt);
@@ -220,20 +222,29 @@ public class PXCFormat {
         }
     }
 
+    /**
+     * Deserializes an image. If it's read from its own chunk of a pxc file,
+     * then it's decoded in the background only if decodeNow is true,
+     * otherwise only when it's first needed. The images
+     * of the older pxc versions are decoded right away.
+     */
+    public static DeferredImage deserializeImage(ObjectInputStream in,
+                                                 boolean decodeNow) throws IOException {
+        if (PXCContainer.isReading()) {
+            return PXCContainer.readImage(in.readInt(), decodeNow);
+        }
+        return DeferredImage.of(deserializeInlineImage(in));
+    }
+
     // when deserializing, the progress tracking
     // is done at the InputStream level, not here
-    public static BufferedImage deserializeImage(ObjectInputStream in) throws IOException {
+    private static BufferedImage deserializeInlineImage(ObjectInputStream in) throws IOException {
         int width = in.readInt();
         int height = in.readInt();
         int type = in.readInt();
 
         if (type == TYPE_BYTE_GRAY) {
-            BufferedImage img = ImageIO.read(in);
-            int imgType = img.getType();
-            if (imgType != TYPE_BYTE_GRAY && imgType != BufferedImage.TYPE_INT_ARGB) {
-                img = ImageUtils.toSysCompatibleImage(img);
-            }
-            return img;
+            return decodePNG(in);
         } else {
             // this branch is executed only for legacy (version 3) pxc files
             BufferedImage img = new BufferedImage(width, height, type);
@@ -247,13 +258,16 @@ public class PXCFormat {
         }
     }
 
-    private static ProgressTracker getImageTracker() {
-        if (workRatioForOneImage == -1) {
-            // a pxc without images
-            return ProgressTracker.NULL_TRACKER;
-        } else {
-            return new SubtaskProgressTracker(workRatioForOneImage, mainPT);
+    static BufferedImage decodePNG(InputStream in) throws IOException {
+        BufferedImage img = ImageIO.read(in);
+        if (img == null) {
+            throw new IOException("invalid image data");
+        }
+        int imgType = img.getType();
+        if (imgType != TYPE_BYTE_GRAY && imgType != BufferedImage.TYPE_INT_ARGB) {
+            img = ImageUtils.toSysCompatibleImage(img);
         }
+        return img;
     }
 
     // Reads 4 bytes as an int
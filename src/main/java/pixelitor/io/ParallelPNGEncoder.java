@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import pixelitor.ThreadPool;
+import pixelitor.utils.ProgressTracker;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.function.IntFunction;
+
+/**
+ * Encodes a sequence of images to PNG on the {@link ThreadPool},
+ * while the caller takes the encoded bytes in the original order
+ * and writes them into a file.
+ * <p>
+ * Only a limited number of images are encoded ahead of the caller,
+ * which limits the memory used by the encoded but not yet written data.
+ * The bytes are the same as the ones written directly into the file.
+ */
+class ParallelPNGEncoder implements AutoCloseable {
+    private final int numImages;
+    private final IntFunction<BufferedImage> imageSource;
+    private final List<FutureTask<byte[]>> futures;
+    private final int maxAhead;
+
+    private int numSubmitted = 0;
+    private int nextIndex = 0;
+
+    /**
+     * The images can contain null elements for the images
+     * that the caller writes without encoding them.
+     */
+    ParallelPNGEncoder(List<BufferedImage> images) {
+        this(images.size(), images::get);
+    }
+
+    /**
+     * The images are requested from the given source on the calling
+     * thread, only shortly before they are encoded, so that images
+     * created only for the export don't have to exist at the same time.
+     * The source can return null for the images that the caller
+     * writes without encoding them.
+     */
+    ParallelPNGEncoder(int numImages, IntFunction<BufferedImage> imageSource) {
+        this.numImages = numImages;
+        this.imageSource = imageSource;
+        futures = new ArrayList<>(numImages);
+        maxAhead = ThreadPool.NUM_CORES;
+    }
+
+    /**
+     * Returns the encoded bytes of the next image,
+     * or null if the next image is null.
+     */
+    byte[] next() throws IOException {
+        if (nextIndex >= numImages) {
+            throw new IllegalStateException("no more images");
+        }
+        submitUntil(nextIndex + maxAhead);
+
+        FutureTask<byte[]> future = futures.set(nextIndex++, null);
+        return future == null ? null : ThreadPool.getOrRunIO(future);
+    }
+
+    private void submitUntil(int lastIndex) {
+        int end = Math.min(lastIndex, numImages - 1);
+        while (numSubmitted <= end) {
+            BufferedImage image = imageSource.apply(numSubmitted);
+            futures.add(image == null ? null : ThreadPool.submitLeaf(() -> encode(image)));
+            numSubmitted++;
+        }
+    }
+
+    /**
+     * Encodes the given image to PNG in memory.
+     */
+    static byte[] encode(BufferedImage image) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        TrackedIO.writeToStream(image, bytes, "PNG", ProgressTracker.NULL_TRACKER);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Cancels the encoding of the images that weren't taken,
+     * for example because writing the file failed.
+     */
+    @Override
+    public void close() {
+        for (FutureTask<byte[]> future : futures) {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+        futures.clear();
+    }
+}
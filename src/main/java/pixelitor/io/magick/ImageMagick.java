@@ -23,6 +23,7 @@ import pixelitor.Views;
 import pixelitor.gui.GUIText;
 import pixelitor.gui.utils.Dialogs;
 import pixelitor.io.*;
+import pixelitor.io.ExternalProcess.PipeFormat;
 import pixelitor.io.FileChooserConfig.SelectableFormats;
 import pixelitor.utils.Messages;
 import pixelitor.utils.Utils;
@@ -54,6 +55,9 @@ public class ImageMagick {
     private static final boolean installed = checkImageMagickInstalled();
     private static File magickExecutable;
 
+    // uncompressed, so that the transfer isn't slowed down by the PNG codecs
+    private static final PipeFormat PIPE_FORMAT = PipeFormat.PAM;
+
     /**
      * Exports the given composition using ImageMagick.
      */
@@ -155,22 +159,40 @@ public class ImageMagick {
                                    ExportSettings settings) {
         List<String> command = createExportCommand(outFile, settings);
 
-        // a process that reads a png file from the standard input,
-        // and converts it to the given file
-        ProcessBuilder pb = new ProcessBuilder(command.toArray(String[]::new));
-        pb.redirectInput(ProcessBuilder.Redirect.PIPE);
-
+        // a process that reads an uncompressed image from
+        // the standard input, and converts it to the given file
         try {
-            Process process = pb.start();
-            FileIO.writeToCommandLineProcess(img, process);
-            process.waitFor();
+            ExternalProcess process = ExternalProcess.start(command);
+            process.writeImage(img, PIPE_FORMAT);
+            int exitCode = process.waitFor();
+            if (exitCode != 0 || process.getInputException() != null) {
+                throw createExportException(process, exitCode, outFile);
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(createInterruptedException(e));
         }
     }
 
+    // the error output of ImageMagick becomes the message of the exception
+    private static IOException createExportException(ExternalProcess process, int exitCode, File outFile) {
+        String errorOutput = process.getErrorOutput().strip();
+        String msg = "ImageMagick couldn't export " + outFile.getName()
+            + " (exit code " + exitCode + ")";
+        if (!errorOutput.isEmpty()) {
+            msg += ": " + errorOutput;
+        }
+        return new IOException(msg, process.getInputException());
+    }
+
+    private static InterruptedIOException createInterruptedException(InterruptedException cause) {
+        var e = new InterruptedIOException("interrupted while waiting for ImageMagick");
+        e.initCause(cause);
+        return e;
+    }
+
     private static List<String> createExportCommand(File outFile, ExportSettings settings) {
         List<String> command = new ArrayList<>();
         command.add(magickExecutable.getAbsolutePath());
@@ -180,7 +202,7 @@ public class ImageMagick {
 //        command.add("-define");
 //        command.add("stream:buffer-size=0");
 
-        command.add("png:-"); // read png from stdin
+        command.add(PIPE_FORMAT.getMagickStdSpecifier()); // read from stdin
 
         settings.addMagickOptions(command);
         command.add(settings.getFormatSpecifier() + outFile.getAbsolutePath());
@@ -189,21 +211,25 @@ public class ImageMagick {
     }
 
     private static BufferedImage importImage(File file) {
-        // a process that reads the given file,
-        // and writes it as png (depth=8 bit) to the standard output
-        ProcessBuilder pb = new ProcessBuilder(
+        // a process that reads the given file, and writes it
+        // uncompressed (depth=8 bit) to the standard output
+        List<String> command = List.of(
             magickExecutable.getAbsolutePath(), "convert", file.getAbsolutePath(),
             "-depth", "8", // don't send 16-bit data
-            "-quality", "1", // importing is faster with minimal compression
-            "png:-");
+            PIPE_FORMAT.getMagickStdSpecifier());
         BufferedImage img;
         try {
-            Process process = pb.start();
+            ExternalProcess process = ExternalProcess.start(command);
+            process.closeInput();
 
-            // read the image as png after ImageMagick did the conversion
-            img = FileIO.readFromCommandLineProcess(process);
+            // read the image after ImageMagick did the conversion
+            img = process.readImage(PIPE_FORMAT);
+            process.waitFor();
         } catch (IOException e) {
             throw DecodingException.forMagickImport(file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw DecodingException.forMagickImport(file, createInterruptedException(e));
         }
         if (img == null) {
             throw DecodingException.forMagickImport(file, null);
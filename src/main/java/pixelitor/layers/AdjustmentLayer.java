@@ -23,9 +23,14 @@ import pixelitor.FilterContext;
 import pixelitor.filters.Filter;
 import pixelitor.filters.ParametrizedFilter;
 import pixelitor.filters.gui.FilterWithGUI;
+import pixelitor.filters.lookup.FusedAdjustment;
+import pixelitor.filters.lookup.PixelAdjustment;
+import pixelitor.filters.lookup.PixelAdjustmentFilter;
 import pixelitor.history.FilterChangedEdit;
 import pixelitor.history.History;
 import pixelitor.io.TranslatedImage;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.RenderCache;
 import pixelitor.utils.debug.DebugNode;
 
 import java.awt.Component;
@@ -36,6 +41,8 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -54,6 +61,11 @@ public class AdjustmentLayer extends Layer implements Filterable {
 
     private transient boolean tentative = false;
 
+    // the output of the filter (or of a fused run of adjustments
+    // ending with this layer) for the input described by the key
+    private transient RenderCache.Entry cachedOutput = createOutputCacheEntry();
+    private transient OutputKey cachedOutputKey;
+
     public AdjustmentLayer(Composition comp, String name, Filter filter) {
         super(comp, name);
         this.filter = filter;
@@ -67,6 +79,11 @@ public class AdjustmentLayer extends Layer implements Filterable {
         origFilter = null;
         showOriginal = false;
         tentative = false;
+        cachedOutput = createOutputCacheEntry();
+    }
+
+    private static RenderCache.Entry createOutputCacheEntry() {
+        return RenderCache.createEntry("Adjustment Layer");
     }
 
     @Override
@@ -91,6 +108,137 @@ public class AdjustmentLayer extends Layer implements Filterable {
         return filter.transformImage(src);
     }
 
+    /**
+     * Returns true if the effect of this layer can be combined with
+     * the effects of the neighboring adjustment layers into a single pass.
+     */
+    public boolean canFuse() {
+        return filter instanceof PixelAdjustmentFilter
+            && !usesMask() && isNormalAndOpaque();
+    }
+
+    /**
+     * Returns the end index (exclusive) of the run of visible fusable
+     * adjustment layers that starts at the given index, or the start index
+     * if there are less than two such layers. Hidden layers don't break a run.
+     */
+    public static int findFusableRunEnd(List<Layer> layers, int start) {
+        int numFusable = 0;
+        int end = start;
+        for (int i = start; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            if (!layer.isVisible()) {
+                continue;
+            }
+            if (!(layer instanceof AdjustmentLayer adj && adj.canFuse())) {
+                break;
+            }
+            numFusable++;
+            end = i + 1;
+        }
+        return numFusable >= 2 ? end : start;
+    }
+
+    /**
+     * Applies the visible adjustment layers between the given indexes
+     * (found by {@link #findFusableRunEnd}) to the given composite image
+     * in a single pass. The result is written into the composite itself
+     * if inPlace is true, otherwise into a new image. The result is cached
+     * in the last layer of the run, like in {@link #renderCached}.
+     */
+    public static BufferedImage applyFused(List<Layer> layers, int start, int end,
+                                           BufferedImage composite, boolean inPlace,
+                                           long inputStamp) {
+        var lastLayer = (AdjustmentLayer) layers.get(end - 1);
+        var key = new OutputKey(lastLayer.comp.getCompositeVersion(),
+            inputStamp, lastLayer.filter, end - start);
+        BufferedImage cached = key.equals(lastLayer.cachedOutputKey)
+            ? lastLayer.cachedOutput.get()
+            : null;
+        if (cached != null) {
+            if (inPlace) {
+                cached.copyData(composite.getRaster());
+                return composite;
+            }
+            return ImageUtils.copyImage(cached);
+        }
+
+        List<PixelAdjustment> adjustments = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            Layer layer = layers.get(i);
+            if (layer.isVisible()) {
+                Filter layerFilter = ((AdjustmentLayer) layer).filter;
+                PixelAdjustment adjustment = ((PixelAdjustmentFilter) layerFilter).createPixelAdjustment();
+                if (adjustment != null) {
+                    adjustments.add(adjustment);
+                }
+            }
+        }
+        if (adjustments.isEmpty()) {
+            return composite;
+        }
+
+        BufferedImage dest = inPlace ? composite : ImageUtils.createImageWithSameCM(composite);
+        new FusedAdjustment(adjustments).apply(composite, dest);
+        lastLayer.invalidateOutputCache();
+        lastLayer.setCachedOutput(key, ImageUtils.copyImage(dest));
+        return dest;
+    }
+
+    /**
+     * Applies this layer to the composite of the layers below it, like
+     * {@link #render}, but reuses the filter output calculated for the
+     * same input, which is described by the given stamp and the version
+     * of the composition. Must not be called for the first visible layer.
+     */
+    public BufferedImage renderCached(BufferedImage currentComposite, long inputStamp) {
+        var key = new OutputKey(comp.getCompositeVersion(), inputStamp, filter, 1);
+        BufferedImage transformed = getCachedOutput(key);
+        if (transformed == null) {
+            transformed = transformImage(currentComposite);
+            if (transformed != currentComposite) {
+                // the transformed image will be modified by the layers above
+                setCachedOutput(key, ImageUtils.copyImage(transformed));
+            }
+        }
+        return combineAdjusted(currentComposite, transformed);
+    }
+
+    /**
+     * Returns a modifiable copy of the cached output
+     * if it was created for the given input, otherwise null.
+     */
+    private BufferedImage getCachedOutput(OutputKey key) {
+        if (!key.equals(cachedOutputKey)) {
+            invalidateOutputCache();
+            return null;
+        }
+        BufferedImage cached = cachedOutput.get();
+        return cached == null ? null : ImageUtils.copyImage(cached);
+    }
+
+    private void setCachedOutput(OutputKey key, BufferedImage output) {
+        cachedOutput.set(output);
+        cachedOutputKey = key;
+    }
+
+    /**
+     * Discards the cached filter output.
+     */
+    public void invalidateOutputCache() {
+        cachedOutput.clear();
+        cachedOutputKey = null;
+    }
+
+    /**
+     * The input of the cached output: the version of the composition,
+     * the stamp of the in-place changes below, the filter, and the
+     * number of the fused adjustment layers that produced the output.
+     */
+    private record OutputKey(long compositeVersion, long inputStamp,
+                             Filter filter, int numFusedLayers) {
+    }
+
     @Override
     public void paint(Graphics2D g, boolean firstVisibleLayer) {
         throw new UnsupportedOperationException();
@@ -106,6 +254,14 @@ public class AdjustmentLayer extends Layer implements Filterable {
         return false;
     }
 
+    @Override
+    public void update(boolean updateHistogram) {
+        // the changes of the filter settings aren't tracked by the
+        // stamps, so all the cached adjustment outputs are discarded
+        comp.invalidateAdjustmentOutputs();
+        super.update(updateHistogram);
+    }
+
     @Override
     public void updateIconImage() {
         // do nothing
@@ -22,11 +22,13 @@ import pixelitor.filters.Filter;
 import pixelitor.gui.utils.Dialogs;
 import pixelitor.tools.util.PPoint;
 import pixelitor.tools.util.PRectangle;
+import pixelitor.utils.ImageTiles;
 import pixelitor.utils.Messages;
 import pixelitor.utils.test.RandomGUITest;
 
 import java.awt.Component;
 import java.awt.Composite;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -47,6 +49,31 @@ public interface Drawable extends Filterable {
 
     void changeImageForUndoRedo(BufferedImage img, boolean ignoreSelection);
 
+    /**
+     * Returns the most recent tiled history snapshot of this drawable's
+     * pixels, or null. A new snapshot can share its unchanged tiles.
+     */
+    ImageTiles getLastHistorySnapshot();
+
+    /**
+     * Sets the last history snapshot. The given area (relative to the image)
+     * is where the current pixels can differ from the snapshot,
+     * or null if this is unknown.
+     */
+    void setLastHistorySnapshot(ImageTiles snapshot, Rectangle changedArea);
+
+    /**
+     * Returns the area (relative to the image) where the pixels can differ
+     * from the last history snapshot, or null if this is unknown.
+     */
+    Rectangle getSnapshotChangedArea();
+
+    /**
+     * Records that the pixels were changed in place within the given area
+     * (relative to the image), or anywhere, if the area is null.
+     */
+    void pixelsChangedInPlace(Rectangle area);
+
     TmpLayer createTmpLayer(Composite c, boolean softSelection);
 
     void mergeTmpDrawingLayerDown();
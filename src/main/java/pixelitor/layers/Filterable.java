@@ -121,8 +121,14 @@ public interface Filterable {
                 .withScrollbars()
                 .enableCopyShortcuts()
                 .onVisibleAction(() -> gui.startPreview(true))
-                .okAction(() -> onFilterDialogAccepted(filter.getName()))
-                .cancelAction(this::onFilterDialogCanceled);
+                .okAction(() -> {
+                    gui.finishPreview();
+                    onFilterDialogAccepted(filter.getName());
+                })
+                .cancelAction(() -> {
+                    gui.cancelPreview();
+                    onFilterDialogCanceled();
+                });
             JDialog dialog = dialogBuilder.build();
 
             PixelitorWindow.get().setCursor(Cursors.DEFAULT);
@@ -29,11 +29,14 @@ import pixelitor.tools.Tools;
 import pixelitor.tools.gradient.Gradient;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.QuadrantAngle;
+import pixelitor.utils.RenderCache;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.util.concurrent.CompletableFuture;
 
@@ -46,7 +49,7 @@ public class GradientFillLayer extends ContentLayer {
 
     private Gradient gradient;
     private transient Gradient backupGradient;
-    private transient BufferedImage cachedImage;
+    private transient RenderCache.Entry imageCache = createImageCache();
 
     private static int count;
 
@@ -54,6 +57,16 @@ public class GradientFillLayer extends ContentLayer {
         super(comp, name);
     }
 
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        imageCache = createImageCache();
+    }
+
+    private static RenderCache.Entry createImageCache() {
+        return RenderCache.createEntry("Gradient Fill Layer");
+    }
+
     public static void createNew(Composition comp) {
         var layer = new GradientFillLayer(comp, generateName());
         comp.getHolderForNewLayers()
@@ -93,11 +106,13 @@ public class GradientFillLayer extends ContentLayer {
                 // and custom gradients using transparency also have a problem
                 || gradient.hasCustomTransparency();
             if (useCachedImage) {
+                BufferedImage cachedImage = imageCache.get();
                 if (cachedImage == null) {
                     cachedImage = ImageUtils.createSysCompatibleImage(width, height);
                     Graphics2D imgG = cachedImage.createGraphics();
                     gradient.paintOnGraphics(imgG, width, height);
                     imgG.dispose();
+                    imageCache.set(cachedImage);
                 }
                 g.drawImage(cachedImage, 0, 0, null);
             } else {
@@ -135,7 +150,7 @@ public class GradientFillLayer extends ContentLayer {
         if (gradient != null) {
             AffineTransform at = comp.getCanvas().createImTransformToFit(newSize);
             gradient.imTransform(at);
-            cachedImage = null;
+            imageCache.clear();
         }
         return CompletableFuture.completedFuture(null);
     }
@@ -144,7 +159,7 @@ public class GradientFillLayer extends ContentLayer {
     public void crop(Rectangle2D cropRect, boolean deleteCropped, boolean allowGrowing) {
         if (gradient != null) {
             gradient.crop(cropRect);
-            cachedImage = null;
+            imageCache.clear();
         }
     }
 
@@ -152,7 +167,7 @@ public class GradientFillLayer extends ContentLayer {
     public void flip(Flip.Direction direction) {
         if (gradient != null) {
             gradient.imTransform(direction.createCanvasTransform(comp.getCanvas()));
-            cachedImage = null;
+            imageCache.clear();
         }
     }
 
@@ -160,7 +175,7 @@ public class GradientFillLayer extends ContentLayer {
     public void rotate(QuadrantAngle angle) {
         if (gradient != null) {
             gradient.imTransform(angle.createCanvasTransform(comp.getCanvas()));
-            cachedImage = null;
+            imageCache.clear();
         }
     }
 
@@ -168,7 +183,7 @@ public class GradientFillLayer extends ContentLayer {
     public void enlargeCanvas(Outsets out) {
         if (gradient != null) {
             gradient.enlargeCanvas(out);
-            cachedImage = null;
+            imageCache.clear();
         }
     }
 
@@ -183,7 +198,7 @@ public class GradientFillLayer extends ContentLayer {
         Gradient prevGradient = this.gradient;
 
         this.gradient = gradient;
-        cachedImage = null;
+        imageCache.clear();
         holder.update();
         updateIconImage();
 
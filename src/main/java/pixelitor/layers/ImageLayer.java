@@ -24,11 +24,13 @@ import pixelitor.compactions.Flip;
 import pixelitor.compactions.Outsets;
 import pixelitor.gui.utils.Dialogs;
 import pixelitor.history.*;
+import pixelitor.io.DeferredImage;
 import pixelitor.io.PXCFormat;
 import pixelitor.io.TranslatedImage;
 import pixelitor.tools.Tools;
 import pixelitor.tools.util.PPoint;
 import pixelitor.tools.util.PRectangle;
+import pixelitor.utils.ImageTiles;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
 import pixelitor.utils.QuadrantAngle;
@@ -44,6 +46,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.CompletableFuture;
 
 import static java.awt.RenderingHints.KEY_INTERPOLATION;
@@ -89,6 +93,12 @@ public class ImageLayer extends ContentLayer implements Drawable {
      */
     protected transient BufferedImage image = null;
 
+    /**
+     * The image read from a pxc file that isn't decoded yet,
+     * or null. It replaces the image when it's first needed.
+     */
+    private transient volatile DeferredImage deferredImage;
+
     /**
      * The image shown during filter previews.
      */
@@ -106,6 +116,18 @@ public class ImageLayer extends ContentLayer implements Drawable {
      */
     private transient boolean imageContentChanged = false;
 
+    /**
+     * The last tiled snapshot taken for the history. Weakly
+     * referenced, because it's only needed for sharing tiles
+     * with the next snapshot while the history still uses it.
+     */
+    private transient WeakReference<ImageTiles> lastHistorySnapshot;
+
+    // The area of the image where the pixels can differ from the
+    // last history snapshot, or null if it's unknown. The tiles
+    // outside it are shared if only their hash matches.
+    private transient Rectangle snapshotChangedArea;
+
     private ImageLayer(Composition comp, String name) {
         super(comp, name);
     }
@@ -210,7 +232,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     @Serial
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.defaultWriteObject();
-        PXCFormat.serializeImage(out, image);
+        PXCFormat.serializeImage(out, getImage());
     }
 
     @Serial
@@ -221,12 +243,21 @@ public class ImageLayer extends ContentLayer implements Drawable {
         previewImage = null;
         filterSourceImage = null;
         image = null;
+        deferredImage = null;
 
         in.defaultReadObject();
-        setImage(PXCFormat.deserializeImage(in));
+        deferredImage = PXCFormat.deserializeImage(in, !defersImageDecoding());
         imageContentChanged = false;
     }
 
+    /**
+     * Returns true if the image read from a pxc file can be decoded when
+     * it's first needed, instead of while the file is opened.
+     */
+    protected boolean defersImageDecoding() {
+        return !isVisible();
+    }
+
     public State getState() {
         return state;
     }
@@ -264,7 +295,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     protected ImageLayer createTypeSpecificCopy(CopyType copyType, Composition newComp) {
-        BufferedImage imageCopy = copyImage(image);
+        BufferedImage imageCopy = copyImage(getImage());
         if (imageCopy == null) {
             // there was an out of memory error
             return null;
@@ -276,9 +307,34 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public BufferedImage getImage() {
+        if (deferredImage != null) {
+            UncheckedIOException decodingError = loadDeferredImage();
+            if (decodingError != null) {
+                // reported outside the lock, because it could wait for the EDT
+                Messages.showException(decodingError);
+            }
+        }
         return image;
     }
 
+    // returns the decoding error, if there was one
+    private synchronized UncheckedIOException loadDeferredImage() {
+        DeferredImage deferred = deferredImage;
+        if (deferred == null) {
+            return null; // loaded by another thread
+        }
+        UncheckedIOException decodingError = null;
+        try {
+            image = deferred.get();
+        } catch (UncheckedIOException e) {
+            // the layer stays usable even if its data in the file is broken
+            decodingError = e;
+            image = createEmptyLayerImage(comp.getCanvasWidth(), comp.getCanvasHeight());
+        }
+        deferredImage = null;
+        return decodingError;
+    }
+
     @Override
     public BufferedImage getFilterSourceImage() {
         if (filterSourceImage == null) {
@@ -292,13 +348,13 @@ public class ImageLayer extends ContentLayer implements Drawable {
         var selection = comp.getSelection();
         if (selection == null) { // no selection => return full image
             if (copyIfNoSelection) {
-                return copyImage(image);
+                return copyImage(getImage());
             }
-            return image;
+            return getImage();
         }
 
         // there is selection
-        return ImageUtils.extractSelectedRegion(image,
+        return ImageUtils.extractSelectedRegion(getImage(),
             selection, getTx(), getTy());
     }
 
@@ -306,16 +362,16 @@ public class ImageLayer extends ContentLayer implements Drawable {
     public BufferedImage getImageForFilterDialogs() {
         var selection = comp.getSelection();
         if (selection == null) {
-            return image;
+            return getImage();
         }
 
         Rectangle selBounds = selection.getShapeBounds();
 
-        assert image.getRaster().getBounds().contains(selBounds) :
-            "image bounds = " + image.getRaster().getBounds()
+        assert getImage().getRaster().getBounds().contains(selBounds) :
+            "image bounds = " + getImage().getRaster().getBounds()
                 + ", selection bounds = " + selBounds;
 
-        return image.getSubimage(
+        return getImage().getSubimage(
             selBounds.x, selBounds.y,
             selBounds.width, selBounds.height);
     }
@@ -323,10 +379,10 @@ public class ImageLayer extends ContentLayer implements Drawable {
     @Override
     public BufferedImage getCanvasSizedSubImage() {
         if (!isBigLayer()) {
-            return image;
+            return getImage();
         }
 
-        return image.getSubimage(-getTx(), -getTy(),
+        return getImage().getSubimage(-getTx(), -getTy(),
             comp.getCanvasWidth(), comp.getCanvasHeight());
     }
 
@@ -345,7 +401,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
      */
     public BufferedImage getVisibleImage() {
         BufferedImage visibleImage = switch (state) {
-            case NORMAL, SHOW_ORIGINAL -> image;
+            case NORMAL, SHOW_ORIGINAL -> getImage();
             case PREVIEW -> previewImage;
         };
 
@@ -371,7 +427,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public TranslatedImage getTranslatedImage() {
-        return new TranslatedImage(image, getTx(), getTy());
+        return new TranslatedImage(getImage(), getTx(), getTy());
     }
 
     @Override
@@ -388,7 +444,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
     }
 
     private void setImageWithSelection(BufferedImage newImage, boolean isUndoRedo) {
-        image = replaceSelectedRegion(image, newImage, isUndoRedo, this);
+        image = replaceSelectedRegion(getImage(), newImage, isUndoRedo, this);
+        snapshotChangedArea = null;
         imageRefChanged();
 
         comp.invalidateImageCache();
@@ -397,7 +454,9 @@ public class ImageLayer extends ContentLayer implements Drawable {
     @Override
     public void setImage(BufferedImage newImage) {
         BufferedImage prevRef = image;
+        deferredImage = null;
         image = requireNonNull(newImage);
+        snapshotChangedArea = null;
 
         imageRefChanged();
 
@@ -414,7 +473,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
      * Replaces the image with history and icon update
      */
     public void replaceImage(BufferedImage newImage, String editName) {
-        BufferedImage prevImage = image;
+        BufferedImage prevImage = getImage();
         setImage(newImage);
 
         History.add(new ImageEdit(editName, comp, this, prevImage, true));
@@ -431,11 +490,11 @@ public class ImageLayer extends ContentLayer implements Drawable {
             // the image reference, because when we draw into the preview image, we would
             // also draw on the real image, and after cancel we would still have the
             // changed version.
-            previewImage = copyImage(image);
+            previewImage = copyImage(getImage());
         } else {
             // if there is no selection, then there is no problem, because
             // the previewImage reference will be overwritten
-            previewImage = image;
+            previewImage = getImage();
         }
         setState(PREVIEW);
     }
@@ -509,7 +568,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 filterName, context, getClass().getSimpleName());
         assert newPreview != null;
 
-        if (newPreview == image) {
+        if (newPreview == getImage()) {
             // this can happen if a filter with preview decides that no
             // change is necessary and returns the src
 
@@ -518,8 +577,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
             // it still can happen that the image needs to be repainted
             // because the preview image can be different from the image
             // (the user does something, but then resets the params to a do-nothing state)
-            boolean shouldRefresh = image != previewImage;
-            previewImage = image;
+            boolean shouldRefresh = getImage() != previewImage;
+            previewImage = getImage();
 
             if (shouldRefresh) {
                 imageRefChanged();
@@ -539,7 +598,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         comp.setDirty(true);
 
         // A filter without dialog should never return the original image...
-        if (filteredImage == image) {
+        if (filteredImage == getImage()) {
             // ...unless "Repeat Last" or "Batch Filter" starts a filter
             // with settings without its dialog
             if (context != REPEAT_LAST && context != BATCH_AUTOMATE) {
@@ -562,7 +621,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
         // at this point we are sure that the image changed,
         // considering that a filter without dialog was running
-        if (imageForUndo == image) {
+        if (imageForUndo == getImage()) {
             throw new IllegalStateException("imageForUndo == image");
         }
         assert imageForUndo != null;
@@ -581,7 +640,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
     @Override
     public void changeImageForUndoRedo(BufferedImage img, boolean ignoreSelection) {
         requireNonNull(img);
-        assert img != image;
+        assert img != getImage();
         assert state == NORMAL;
 
         if (ignoreSelection) {
@@ -591,29 +650,63 @@ public class ImageLayer extends ContentLayer implements Drawable {
         }
     }
 
+    @Override
+    public ImageTiles getLastHistorySnapshot() {
+        return lastHistorySnapshot == null ? null : lastHistorySnapshot.get();
+    }
+
+    @Override
+    public void setLastHistorySnapshot(ImageTiles snapshot, Rectangle changedArea) {
+        lastHistorySnapshot = snapshot == null ? null : new WeakReference<>(snapshot);
+        snapshotChangedArea = changedArea == null ? null : new Rectangle(changedArea);
+    }
+
+    @Override
+    public Rectangle getSnapshotChangedArea() {
+        return snapshotChangedArea == null ? null : new Rectangle(snapshotChangedArea);
+    }
+
+    @Override
+    public void pixelsChangedInPlace(Rectangle area) {
+        if (area == null) {
+            snapshotChangedArea = null;
+        } else if (snapshotChangedArea != null) {
+            snapshotChangedArea.add(area);
+        }
+    }
+
     /**
      * Returns the image bounds relative to the canvas
      */
     @Override
     public Rectangle getContentBounds(boolean includeTransparent) {
         if (includeTransparent) {
-            return new Rectangle(getTx(), getTy(), image.getWidth(), image.getHeight());
+            return new Rectangle(getTx(), getTy(), getImage().getWidth(), getImage().getHeight());
         } else {
-            Rectangle rect = ImageUtils.calcOpaqueBounds(image);
+            Rectangle rect = ImageUtils.calcOpaqueBounds(getImage());
             rect.translate(getTx(), getTy());
             return rect;
         }
     }
 
+    @Override
+    protected Rectangle getPaintBounds() {
+        if (tmpLayer != null || paintsShapes()) {
+            // the brush strokes and shapes are painted on the whole canvas
+            return null;
+        }
+        return getContentBounds(true);
+    }
+
     @Override
     public int getPixelAtPoint(Point p) {
         int x = p.x - getTx();
         int y = p.y - getTy();
-        if (isWithinBounds(x, y, image)) {
+        if (isWithinBounds(x, y, getImage())) {
             if (hasMask() && isMaskEnabled()) {
                 int maskPixel = getMask().getPixelAtPoint(p);
                 if (maskPixel != 0) {
-                    int imagePixel = image.getRGB(x, y);
+                    int imagePixel = getImage().getRGB(x, y);
                     float maskAlpha = (maskPixel & 0xFF) / 255.0f;
                     int imageAlpha = (imagePixel >> 24) & 0xFF;
                     int effectiveAlpha = (int) (imageAlpha * maskAlpha);
@@ -621,7 +714,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 }
             }
 
-            return image.getRGB(x, y);
+            return getImage().getRGB(x, y);
         }
 
         return 0x00_00_00_00;
@@ -645,7 +738,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
             Graphics2D g = bi.createGraphics();
             int drawX = current.x - target.x;
             int drawY = current.y - target.y;
-            g.drawImage(image, drawX, drawY, null);
+            g.drawImage(getImage(), drawX, drawY, null);
             g.dispose();
 
             setTranslation(target.x - canvasBounds.x, target.y - canvasBounds.y);
@@ -661,18 +754,18 @@ public class ImageLayer extends ContentLayer implements Drawable {
         int newTx;
         int newTy;
         if (direction == HORIZONTAL) {
-            newTx = comp.getCanvasWidth() - image.getWidth() - getTx();
+            newTx = comp.getCanvasWidth() - getImage().getWidth() - getTx();
             newTy = getTy();
         } else {
             newTx = getTx();
-            newTy = comp.getCanvasHeight() - image.getHeight() - getTy();
+            newTy = comp.getCanvasHeight() - getImage().getHeight() - getTy();
         }
 
-        BufferedImage dest = ImageUtils.createImageWithSameCM(image);
+        BufferedImage dest = ImageUtils.createImageWithSameCM(getImage());
         Graphics2D g2 = dest.createGraphics();
 
-        g2.setTransform(direction.createImageTransform(image));
-        g2.drawImage(image, 0, 0, image.getWidth(), image.getHeight(), null);
+        g2.setTransform(direction.createImageTransform(getImage()));
+        g2.drawImage(getImage(), 0, 0, getImage().getWidth(), getImage().getHeight(), null);
         g2.dispose();
 
         setTranslation(newTx, newTy);
@@ -686,27 +779,27 @@ public class ImageLayer extends ContentLayer implements Drawable {
         int newTy;
         switch (angle.getAngleDegree()) {
             case 90 -> {
-                newTx = comp.getCanvasHeight() - image.getHeight() - getTy();
+                newTx = comp.getCanvasHeight() - getImage().getHeight() - getTy();
                 newTy = getTx();
             }
             case 270 -> {
                 newTx = getTy();
-                newTy = comp.getCanvasWidth() - image.getWidth() - getTx();
+                newTy = comp.getCanvasWidth() - getImage().getWidth() - getTx();
             }
             case 180 -> {
-                newTx = comp.getCanvasWidth() - image.getWidth() - getTx();
-                newTy = comp.getCanvasHeight() - image.getHeight() - getTy();
+                newTx = comp.getCanvasWidth() - getImage().getWidth() - getTx();
+                newTy = comp.getCanvasHeight() - getImage().getHeight() - getTy();
             }
             default -> throw new IllegalStateException("angleDegree = " + angle.getAngleDegree());
         }
 
-        BufferedImage dest = angle.createDestImage(image);
+        BufferedImage dest = angle.createDestImage(getImage());
 
         Graphics2D g2 = dest.createGraphics();
         // nearest neighbor should be ok for 90, 180, 270 degrees
         g2.setRenderingHint(KEY_INTERPOLATION, VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-        g2.setTransform(angle.createImageTransform(image));
-        g2.drawImage(image, 0, 0, image.getWidth(), image.getHeight(), null);
+        g2.setTransform(angle.createImageTransform(getImage()));
+        g2.drawImage(getImage(), 0, 0, getImage().getWidth(), getImage().getHeight(), null);
         g2.dispose();
 
         setTranslation(newTx, newTy);
@@ -754,8 +847,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
             assert allowGrowing;
 
             boolean imageCoversNewCanvas = cropX >= 0 && cropY >= 0
-                && cropX + cropWidth <= image.getWidth()
-                && cropY + cropHeight <= image.getHeight();
+                && cropX + cropWidth <= getImage().getWidth()
+                && cropY + cropHeight <= getImage().getHeight();
             if (imageCoversNewCanvas) {
                 // no need to change the image, just set the translation
                 super.crop(cropRect, false, allowGrowing);
@@ -763,12 +856,12 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 // the image still has to be enlarged, but the translation will not be zero
                 int westEnlargement = Math.max(0, -cropX);
                 int newWidth = westEnlargement + Math.max(
-                    image.getWidth(), cropX + cropWidth);
+                    getImage().getWidth(), cropX + cropWidth);
                 int northEnlargement = Math.max(0, -cropY);
                 int newHeight = northEnlargement + Math.max(
-                    image.getHeight(), cropY + cropHeight);
+                    getImage().getHeight(), cropY + cropHeight);
 
-                BufferedImage newImage = ImageUtils.crop(image,
+                BufferedImage newImage = ImageUtils.crop(getImage(),
                     -westEnlargement, -northEnlargement, newWidth, newHeight);
                 setImage(newImage);
                 setTranslation(Math.min(-cropX, 0), Math.min(-cropY, 0));
@@ -781,7 +874,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         // and the translation must be 0, 0
 
         // this method call can also grow the image
-        BufferedImage newImage = ImageUtils.crop(image, cropX, cropY, cropWidth, cropHeight);
+        BufferedImage newImage = ImageUtils.crop(getImage(), cropX, cropY, cropWidth, cropHeight);
         setImage(newImage);
         setTranslation(0, 0);
     }
@@ -826,10 +919,10 @@ public class ImageLayer extends ContentLayer implements Drawable {
      */
     public boolean toCanvasSize() {
         if (isBigLayer()) {
-            BufferedImage newImage = ImageUtils.crop(image,
+            BufferedImage newImage = ImageUtils.crop(getImage(),
                 -getTx(), -getTy(), comp.getCanvasWidth(), comp.getCanvasHeight());
 
-            BufferedImage tmp = image;
+            BufferedImage tmp = getImage();
             setImage(newImage);
             tmp.flush();
 
@@ -872,7 +965,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
             return;
         }
 
-        Graphics2D g = image.createGraphics();
+        Graphics2D g = getImage().createGraphics();
         tmpLayer.paintOn(g, -getTx(), -getTy());
         g.dispose();
 
@@ -914,8 +1007,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
         if (bigLayer) {
             double horRatio = newSize.getWidth() / comp.getCanvasWidth();
             double verRatio = newSize.getHeight() / comp.getCanvasHeight();
-            imgTargetWidth = (int) (image.getWidth() * horRatio);
-            imgTargetHeight = (int) (image.getHeight() * verRatio);
+            imgTargetWidth = (int) (getImage().getWidth() * horRatio);
+            imgTargetHeight = (int) (getImage().getHeight() * verRatio);
 
             newTx = (int) (getTx() * horRatio);
             newTy = (int) (getTy() * verRatio);
@@ -933,7 +1026,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
                 ", tx = " + getTx() + ", ty = " + getTy()
                     + ", imgTargetWidth = " + imgTargetWidth + ", imgTargetHeight = " + imgTargetHeight
                     + ", newWidth = " + newSize.getWidth() + ", newHeight() = " + newSize.getHeight()
-                    + ", imgWidth = " + image.getWidth() + ", imgHeight = " + image.getHeight()
+                    + ", imgWidth = " + getImage().getWidth() + ", imgHeight = " + getImage().getHeight()
                     + ", canvasWidth = " + comp.getCanvasWidth() + ", canvasHeight = " + comp.getCanvasHeight()
                     + ", horRatio = " + horRatio + ", verRatio = " + verRatio;
         }
@@ -941,7 +1034,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         int finalTx = newTx;
         int finalTy = newTy;
         return ImageUtils
-            .resizeAsync(image, imgTargetWidth, imgTargetHeight)
+            .resizeAsync(getImage(), imgTargetWidth, imgTargetHeight)
             .thenAcceptAsync(resizedImg -> {
                 setImage(resizedImg);
                 if (bigLayer) {
@@ -954,8 +1047,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
      * Returns true if the layer image is bigger than the canvas
      */
     public boolean isBigLayer() {
-        return image.getWidth() > comp.getCanvasWidth()
-            || image.getHeight() > comp.getCanvasHeight();
+        return getImage().getWidth() > comp.getCanvasWidth()
+            || getImage().getHeight() > comp.getCanvasHeight();
     }
 
     @Override
@@ -969,10 +1062,15 @@ public class ImageLayer extends ContentLayer implements Drawable {
         }
     }
 
+    // true if the shape that is being drawn is painted over this layer
+    protected boolean paintsShapes() {
+        return Tools.isShapesDrawing() && isActive() && !isMaskEditing();
+    }
+
     protected void paintWithoutTmpLayer(Graphics2D g,
                                         BufferedImage visibleImage,
                                         boolean firstVisibleLayer) {
-        if (Tools.isShapesDrawing() && isActive() && !isMaskEditing()) {
+        if (paintsShapes()) {
             paintLayerWithShapes(g, visibleImage, firstVisibleLayer);
         } else { // the simple case
             g.drawImage(visibleImage, getTx(), getTy(), null);
@@ -1040,7 +1138,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public void debugImages() {
-        Debug.debugImage(image, "image");
+        Debug.debugImage(getImage(), "image");
         if (previewImage != null) {
             Debug.debugImage(previewImage, "previewImage");
         } else {
@@ -1066,11 +1164,12 @@ public class ImageLayer extends ContentLayer implements Drawable {
      * to the transparency of the layer
      */
     public BufferedImage applyLayerMask(boolean addToHistory) {
-        BufferedImage previousLayerImage = copyImage(image);
+        BufferedImage previousLayerImage = copyImage(getImage());
         LayerMask previousMask = mask;
         MaskViewMode previousMaskViewMode = comp.getView().getMaskViewMode();
 
-        mask.applyTo(image);
+        mask.applyTo(getImage());
+        pixelsChangedInPlace(null);
         deleteMask(false);
 
         if (addToHistory) {
@@ -1092,7 +1191,8 @@ public class ImageLayer extends ContentLayer implements Drawable {
     }
 
     public void convertMode(ImageMode mode) {
-        image = mode.convert(image);
+        image = mode.convert(getImage());
+        snapshotChangedArea = null;
     }
 
     @Override
@@ -1102,12 +1202,12 @@ public class ImageLayer extends ContentLayer implements Drawable {
 
     @Override
     public void repaintRegion(PPoint start, PPoint end, double thickness) {
-        comp.repaintRegion(start, end, thickness);
+        comp.repaintRegion(this, start, end, thickness);
     }
 
     @Override
     public void repaintRegion(PRectangle area) {
-        comp.repaintRegion(area);
+        comp.repaintRegion(this, area);
     }
 
     @Override
@@ -1115,7 +1215,7 @@ public class ImageLayer extends ContentLayer implements Drawable {
         DebugNode node = super.createDebugNode(key);
 
         node.addAsString("state", state);
-        node.add(DebugNodes.createBufferedImageNode("image", image));
+        node.add(DebugNodes.createBufferedImageNode("image", getImage()));
 
         return node;
     }
@@ -19,11 +19,14 @@ package pixelitor.layers;
 
 import pixelitor.Composition;
 import pixelitor.utils.ImageUtils;
+import pixelitor.utils.RenderCache;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.DebugNodes;
 
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
 
@@ -40,7 +43,7 @@ public class ImageTransformer implements ImageSource, Serializable {
     private int targetWidth;
     private int targetHeight;
 
-    private transient BufferedImage cachedImage;
+    private transient RenderCache.Entry imageCache = createImageCache();
 
     public ImageTransformer(Composition content, AffineTransform transform,
                             int targetWidth, int targetHeight) {
@@ -56,11 +59,21 @@ public class ImageTransformer implements ImageSource, Serializable {
 
         // should be safe to share because the new content
         // is either identical to the old one or a copy of it
-        copy.cachedImage = cachedImage;
+        copy.imageCache.set(imageCache.peek());
 
         return copy;
     }
 
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        imageCache = createImageCache();
+    }
+
+    private static RenderCache.Entry createImageCache() {
+        return RenderCache.createEntry("Smart Object Transformer");
+    }
+
     public void setContent(Composition content) {
         this.content = content;
         invalidateCache();
@@ -73,11 +86,13 @@ public class ImageTransformer implements ImageSource, Serializable {
 
     @Override
     public BufferedImage getImage() {
+        BufferedImage cachedImage = imageCache.get();
         if (cachedImage != null) {
             return cachedImage;
         }
         cachedImage = ImageUtils.applyTransform(content.getCompositeImage(),
             transform, targetWidth, targetHeight);
+        imageCache.set(cachedImage);
         return cachedImage;
     }
 
@@ -88,11 +103,11 @@ public class ImageTransformer implements ImageSource, Serializable {
     }
 
     public BufferedImage getCachedImage() {
-        return cachedImage;
+        return imageCache.peek();
     }
 
     public void invalidateCache() {
-        cachedImage = null;
+        imageCache.clear();
     }
 
     @Override
@@ -102,6 +117,7 @@ public class ImageTransformer implements ImageSource, Serializable {
         node.addInt("target width", targetWidth);
         node.addInt("target height", targetHeight);
 
+        BufferedImage cachedImage = imageCache.peek();
         node.addBoolean("cached", cachedImage != null);
         if (cachedImage != null) {
             node.addString("cached image size", cachedImage.getWidth() + "x" + cachedImage.getHeight());
@@ -33,6 +33,7 @@ import pixelitor.tools.Tool;
 import pixelitor.tools.Tools;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
+import pixelitor.utils.RenderCache;
 import pixelitor.utils.Utils;
 import pixelitor.utils.debug.DebugNode;
 import pixelitor.utils.debug.Debuggable;
@@ -101,6 +102,24 @@ public abstract class Layer implements Serializable, Debuggable {
 
     private transient List<LayerListener> listeners;
 
+    // The cached result of painting this layer through its mask,
+    // covering only the canvas area where the layer can have pixels.
+    private transient RenderCache.Entry maskedImageCache = createMaskedImageCache();
+    private transient Rectangle maskedImageBounds;
+    private transient MaskedImageKey maskedImageKey;
+
+    // the out-of-date part of the masked image, in canvas coordinates
+    private transient Rectangle maskedImageDirtyRegion;
+
+    // changes whenever the pixels of this layer, or of its nested
+    // layers, are changed in place, see Composition.repaintRegion
+    private transient long regionChangeStamp;
+
+    // Incremented whenever the rendered pixels of this layer might have
+    // changed, including the changes of its nested layers.
+    // The cached masked image is valid only for the version it was made for.
+    private transient long pixelsVersion;
+
     // unit tests use a different LayerUI implementation
     // by assigning a different UI factory
     public static Function<Layer, LayerUI> uiFactory = LayerGUI::new;
@@ -131,6 +150,7 @@ public abstract class Layer implements Serializable, Debuggable {
 
         in.defaultReadObject();
         listeners = new ArrayList<>();
+        maskedImageCache = createMaskedImageCache();
 
         if (mask != null) {
             // necessary for pre-4.2.4 pxc files, which store
@@ -248,9 +268,12 @@ public abstract class Layer implements Serializable, Debuggable {
         }
 
         visible = newVisibility;
+        if (!visible) {
+            invalidateMaskedImage(); // free the memory
+        }
 
         if (update) {
-            holder.update();
+            updateWithoutPixelChanges();
         }
 
         if (hasUI()) {
@@ -293,7 +316,7 @@ public abstract class Layer implements Serializable, Debuggable {
         }
 
         if (update) {
-            holder.update();
+            updateWithoutPixelChanges();
         }
 
         if (addToHistory) {
@@ -324,7 +347,7 @@ public abstract class Layer implements Serializable, Debuggable {
         }
 
         if (update) {
-            holder.update();
+            updateWithoutPixelChanges();
         }
 
         if (addToHistory) {
@@ -563,6 +586,7 @@ public abstract class Layer implements Serializable, Debuggable {
         View view = comp.getView();
         MaskViewMode prevMode = view.getMaskViewMode();
         mask = null;
+        invalidateMaskedImage();
 
         ui.removeMaskIcon();
         Layers.maskDeleted(this);
@@ -639,6 +663,7 @@ public abstract class Layer implements Serializable, Debuggable {
         g.setColor(Color.BLACK);
         g.fill(unselectedPart);
         g.dispose();
+        mask.pixelsChangedInPlace(null);
 
         mask.updateTransparencyImage();
 
@@ -717,6 +742,16 @@ public abstract class Layer implements Serializable, Debuggable {
         return null;
     }
 
+    /**
+     * Returns true if rendering this layer onto a clipped Graphics2D
+     * produces the same pixels within the clip as a full render.
+     * This is false for the layers that transform the whole
+     * composite image instead of painting on it.
+     */
+    public boolean canRenderRegion() {
+        return !isAdjustment;
+    }
+
     /**
      * Paints the layer content on the given Graphics2D.
      * Called by non-adjustment layers.
@@ -726,19 +761,170 @@ public abstract class Layer implements Serializable, Debuggable {
     public abstract void paint(Graphics2D g, boolean firstVisibleLayer);
 
     private void paintWithMask(Graphics2D g, boolean firstVisibleLayer) {
-        // 1. create the masked image
-        // TODO the masked image should be cached
-        var maskedImage = new BufferedImage(
-            comp.getCanvasWidth(), comp.getCanvasHeight(), TYPE_INT_ARGB);
-        Graphics2D mig = maskedImage.createGraphics();
+        BufferedImage transparencyImage = mask.getTransparencyImage();
+
+        Rectangle bounds = calcMaskedImageBounds();
+        if (bounds.isEmpty()) {
+            return;
+        }
+
+        var key = new MaskedImageKey(pixelsVersion,
+            transparencyImage, mask.getTx(), mask.getTy(), firstVisibleLayer);
+        BufferedImage maskedImage = maskedImageCache.get();
+        if (maskedImage == null || !bounds.equals(maskedImageBounds)) {
+            invalidateMaskedImage();
+            maskedImage = new BufferedImage(bounds.width, bounds.height, TYPE_INT_ARGB);
+            maskedImageBounds = bounds;
+            renderMasked(maskedImage, bounds, null, transparencyImage, firstVisibleLayer);
+            maskedImageCache.set(maskedImage);
+        } else if (!key.equals(maskedImageKey)) {
+            renderMasked(maskedImage, bounds, bounds, transparencyImage, firstVisibleLayer);
+        } else if (maskedImageDirtyRegion != null) {
+            Rectangle dirty = bounds.intersection(maskedImageDirtyRegion);
+            if (!dirty.isEmpty()) {
+                renderMasked(maskedImage, bounds, dirty, transparencyImage, firstVisibleLayer);
+            }
+        }
+        maskedImageKey = key;
+        maskedImageDirtyRegion = null;
+
+        g.drawImage(maskedImage, bounds.x, bounds.y, null);
+    }
+
+    // Renders the layer through the mask into the given image, which
+    // covers the given canvas bounds. If the region isn't null, then
+    // only that region is cleared and rendered again.
+    private void renderMasked(BufferedImage target, Rectangle bounds, Rectangle region,
+                              BufferedImage transparencyImage, boolean firstVisibleLayer) {
+        Graphics2D mig = target.createGraphics();
+        mig.translate(-bounds.x, -bounds.y);
+        if (region != null) {
+            mig.clip(region);
+            mig.setComposite(AlphaComposite.Clear);
+            mig.fill(region);
+            mig.setComposite(AlphaComposite.SrcOver);
+        }
         paint(mig, firstVisibleLayer);
         mig.setComposite(DstIn);
-        mig.drawImage(mask.getTransparencyImage(),
-            mask.getTx(), mask.getTy(), null);
+        mig.drawImage(transparencyImage, mask.getTx(), mask.getTy(), null);
         mig.dispose();
+    }
+
+    private static RenderCache.Entry createMaskedImageCache() {
+        return RenderCache.createEntry("Masked Layer");
+    }
+
+    private Rectangle calcMaskedImageBounds() {
+        Rectangle paintBounds = getPaintBounds();
+        if (paintBounds == null) {
+            return comp.getCanvas().getBounds();
+        }
+        return comp.getCanvas().intersect(paintBounds);
+    }
+
+    /**
+     * Returns the canvas area outside which painting this layer
+     * has no effect, or null if it's not known.
+     */
+    protected Rectangle getPaintBounds() {
+        return null;
+    }
+
+    /**
+     * Signals that the pixels of this layer in the given canvas
+     * region might have changed, without changing its image reference.
+     */
+    public void invalidateMaskedImageRegion(Rectangle region) {
+        if (maskedImageCache.isEmpty()) {
+            return;
+        }
+        if (maskedImageDirtyRegion == null) {
+            maskedImageDirtyRegion = new Rectangle(region);
+        } else {
+            maskedImageDirtyRegion.add(region);
+        }
+    }
+
+    /**
+     * Records an in-place change of this layer's pixels with the given
+     * stamp, which is also recorded for the enclosing layer groups.
+     */
+    public void regionChanged(long stamp) {
+        regionChangeStamp = stamp;
+        if (holder instanceof Layer parent) {
+            parent.regionChanged(stamp);
+        }
+    }
+
+    /**
+     * Returns the stamp of the last in-place change of this layer's pixels.
+     */
+    public long getRegionChangeStamp() {
+        return regionChangeStamp;
+    }
+
+    /**
+     * Discards the cached masked images that include
+     * the pixels of this layer or of its nested layers.
+     */
+    public void invalidateDependentMaskedImages() {
+        forEachNestedLayer(Layer::invalidateMaskedImage, false);
+        enclosingGroupsChanged();
+    }
+
+    /**
+     * Signals that the pixels of this layer might have changed,
+     * which makes its cached masked image out of date.
+     */
+    public void pixelsChanged() {
+        pixelsVersion++;
+    }
+
+    long getPixelsVersion() {
+        return pixelsVersion;
+    }
 
-        // 2. paint the masked image onto the graphics
-        g.drawImage(maskedImage, 0, 0, null);
+    // The enclosing layer groups include this layer in their
+    // pixels, even if this layer's own pixels haven't changed.
+    private void enclosingGroupsChanged() {
+        LayerHolder current = holder;
+        while (current instanceof Layer parent) {
+            parent.pixelsChanged();
+            current = parent.getHolder();
+        }
+    }
+
+    // updates after a change in how this layer is combined with the others
+    private void updateWithoutPixelChanges() {
+        updateHolder(true);
+    }
+
+    /**
+     * Updates the holder after a change of this layer that doesn't change
+     * the pixels of the other layers. The caller must have already called
+     * {@link #pixelsChanged()} if the pixels of this layer have changed.
+     */
+    protected void updateHolder(boolean updateHistogram) {
+        enclosingGroupsChanged();
+        comp.runLayerUpdate(this, () -> holder.update(updateHistogram));
+    }
+
+    /**
+     * Discards the cached masked image of this layer.
+     */
+    public void invalidateMaskedImage() {
+        maskedImageCache.clear();
+        maskedImageBounds = null;
+        maskedImageKey = null;
+        maskedImageDirtyRegion = null;
+    }
+
+    /**
+     * The state on which the cached masked image depends,
+     * apart from the in-place changes tracked as dirty regions.
+     */
+    private record MaskedImageKey(long pixelsVersion, BufferedImage transparencyImage,
+                                  int maskTx, int maskTy, boolean firstVisibleLayer) {
     }
 
     /**
@@ -750,7 +936,17 @@ public abstract class Layer implements Serializable, Debuggable {
         if (firstVisibleLayer) {
             return currentComposite; // there's nothing to transform
         }
-        BufferedImage transformed = transformImage(currentComposite);
+        return combineAdjusted(currentComposite, transformImage(currentComposite));
+    }
+
+    /**
+     * Combines the transformed version of the current composite
+     * with the current composite according to the mask, the blending
+     * mode and the opacity of this layer. The transformed image
+     * can be modified, and it can become the new composite.
+     */
+    protected BufferedImage combineAdjusted(BufferedImage currentComposite,
+                                            BufferedImage transformed) {
         boolean useMask = usesMask();
         if (useMask) {
             mask.applyTo(transformed);
@@ -759,7 +955,7 @@ public abstract class Layer implements Serializable, Debuggable {
             return transformed;
         } else {
             Graphics2D g = currentComposite.createGraphics();
-            setupComposite(g, firstVisibleLayer);
+            setupComposite(g, false);
             g.drawImage(transformed, 0, 0, null);
             g.dispose();
             return currentComposite;
@@ -1057,7 +1253,8 @@ public abstract class Layer implements Serializable, Debuggable {
     }
 
     public void update(boolean updateHistogram) {
-        holder.update(updateHistogram);
+        pixelsChanged();
+        updateHolder(updateHistogram);
     }
 
     public void update() {
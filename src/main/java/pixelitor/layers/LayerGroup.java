@@ -27,6 +27,7 @@ import pixelitor.history.*;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.Messages;
 import pixelitor.utils.QuadrantAngle;
+import pixelitor.utils.RenderCache;
 import pixelitor.utils.Utils;
 import pixelitor.utils.debug.DebugNode;
 
@@ -59,7 +60,7 @@ public class LayerGroup extends CompositeLayer {
     private transient boolean needsIconUpdate = false;
 
     // used only for isolated (non-passthrough) groups
-    private transient BufferedImage cachedImage;
+    private transient RenderCache.Entry imageCache = createImageCache();
 
     private static int groupCounter = 0;
 
@@ -77,11 +78,15 @@ public class LayerGroup extends CompositeLayer {
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
 
-        cachedImage = null;
+        imageCache = createImageCache();
         thumb = null;
         needsIconUpdate = false;
     }
 
+    private static RenderCache.Entry createImageCache() {
+        return RenderCache.createEntry("Layer Group");
+    }
+
     public static String generateName() {
         return "layer group " + (++groupCounter);
     }
@@ -149,6 +154,20 @@ public class LayerGroup extends CompositeLayer {
         return currentComposite;
     }
 
+    @Override
+    public boolean canRenderRegion() {
+        if (!isPassThrough()) {
+            // the isolated content is painted from the cached image
+            return true;
+        }
+        for (Layer layer : layers) {
+            if (layer.isVisible() && !layer.canRenderRegion()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private BufferedImage renderPassThrough(Graphics2D g, BufferedImage currentComposite, boolean firstVisibleLayer) {
         // Apply the layers as if they were directly in the parent holder.
         // The algorithm is similar to ImageUtils.calcComposite(),
@@ -170,28 +189,40 @@ public class LayerGroup extends CompositeLayer {
 
     @Override
     public void update(boolean updateHistogram) {
+        if (comp.isPixelPreservingUpdate()) {
+            // called as the holder of a changed layer, which
+            // has already recorded the change in the pixel versions
+            recalcCachedImage();
+            holder.update(updateHistogram);
+            return;
+        }
+
+        // called directly after a change of some nested layers, so the
+        // cached images of all nested layers must not be reused,
+        // and neither must the outputs of the nested adjustment layers
+        forEachNestedLayer(Layer::pixelsChanged, false);
+        comp.invalidateAdjustmentOutputs();
         recalcCachedImage();
-        holder.update(updateHistogram);
+        updateHolder(updateHistogram);
     }
 
-    private void recalcCachedImage() {
+    private BufferedImage recalcCachedImage() {
         if (isPassThrough()) {
-            cachedImage = null;
-        } else {
-            cachedImage = ImageUtils.calcComposite(layers, comp.getCanvas());
-            if (needsIconUpdate) {
-                updateIconImage();
-                needsIconUpdate = false;
-            }
+            imageCache.clear();
+            return null;
+        }
+        BufferedImage cachedImage = ImageUtils.calcComposite(layers, comp.getCanvas());
+        imageCache.set(cachedImage);
+        if (needsIconUpdate) {
+            updateIconImage();
+            needsIconUpdate = false;
         }
+        return cachedImage;
     }
 
     @Override
     public void invalidateImageCache() {
-        if (cachedImage != null) {
-            cachedImage.flush();
-            cachedImage = null;
-        }
+        imageCache.clear();
         holder.invalidateImageCache();
     }
 
@@ -208,8 +239,9 @@ public class LayerGroup extends CompositeLayer {
     }
 
     private BufferedImage getCachedImage() {
+        BufferedImage cachedImage = imageCache.get();
         if (cachedImage == null) {
-            recalcCachedImage();
+            cachedImage = recalcCachedImage();
         }
         return cachedImage;
     }
@@ -402,7 +434,7 @@ public class LayerGroup extends CompositeLayer {
 
     @Override
     public void smartObjectChanged(boolean linked) {
-        cachedImage = null;
+        imageCache.clear();
         holder.smartObjectChanged(linked);
     }
 
@@ -431,7 +463,7 @@ public class LayerGroup extends CompositeLayer {
     @Override
     public void updateIconImage() {
         if (!isPassThrough()) {
-            if (cachedImage == null) {
+            if (imageCache.isEmpty()) {
                 needsIconUpdate = true; // postpone
                 return;
             }
@@ -448,12 +480,9 @@ public class LayerGroup extends CompositeLayer {
 
         if (isPassThrough()) {
             thumb = ImageUtils.createCircleThumb(new Color(0, 138, 0));
-        } else if (cachedImage != null) {
-            thumb = createThumbnail(cachedImage, thumbSize, thumbCheckerBoardPainter);
         } else {
-            // isolated groups should always have a cached image
-            throw new IllegalStateException();
-//            thumb = ImageUtils.createCircleThumb(new Color(0, 0, 203));
+            // recalculated if it was evicted from the render cache
+            thumb = createThumbnail(getCachedImage(), thumbSize, thumbCheckerBoardPainter);
         }
 
         return thumb;
@@ -618,7 +647,7 @@ public class LayerGroup extends CompositeLayer {
     public DebugNode createDebugNode(String key) {
         DebugNode node = super.createDebugNode(key);
 
-        node.addBoolean("has cached image", cachedImage != null);
+        node.addBoolean("has cached image", !imageCache.isEmpty());
         node.addBoolean("has thumb", thumb != null);
         for (Layer layer : layers) {
             node.add(layer.createDebugNode());
@@ -24,6 +24,7 @@ import pixelitor.utils.ImageUtils;
 import pixelitor.utils.debug.Debuggable;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
@@ -313,12 +314,19 @@ public interface LayerHolder extends Debuggable {
         }
         g.dispose();
 
+        // an image layer changes only the pixels under it
+        Rectangle changedArea = null;
+        if (result == null && layer instanceof ImageLayer imageLayer) {
+            changedArea = imageLayer.getContentBounds();
+            changedArea.translate(-belowLayer.getTx(), -belowLayer.getTy());
+        }
+
         belowLayer.updateIconImage();
 
         deleteLayer(layer, false);
 
-        History.add(new MergeDownEdit(this, layer,
-            belowLayer, imageBefore, maskViewModeBefore, layerIndex));
+        History.add(new MergeDownEdit(this, layer, belowLayer,
+            imageBefore, changedArea, maskViewModeBefore, layerIndex));
     }
 
     /**
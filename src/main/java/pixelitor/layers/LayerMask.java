@@ -118,8 +118,8 @@ public class LayerMask extends ImageLayer {
      * Updates the cached transparency image to reflect changes in the mask.
      */
     public void updateTransparencyImage() {
-        assert isGrayscale(image);
-        assert image.getColorModel() != TRANSPARENCY_COLOR_MODEL;
+        assert isGrayscale(getImage());
+        assert getImage().getColorModel() != TRANSPARENCY_COLOR_MODEL;
 
         // The transparency image shares the raster data with the BW image,
         // but interprets the bytes differently.
@@ -143,6 +143,12 @@ public class LayerMask extends ImageLayer {
         g.setComposite(origComposite);
     }
 
+    @Override
+    protected boolean defersImageDecoding() {
+        // decoded when the owner is first painted, or for the thumbnail
+        return true;
+    }
+
     @Override
     protected BufferedImage createEmptyLayerImage(int width, int height) {
         var empty = new BufferedImage(width, height, TYPE_BYTE_GRAY);
@@ -168,7 +174,7 @@ public class LayerMask extends ImageLayer {
      * to the given layer
      */
     public LayerMask duplicate(Layer owner, Composition newComp) {
-        BufferedImage maskImageCopy = ImageUtils.copyImage(image);
+        BufferedImage maskImageCopy = ImageUtils.copyImage(getImage());
         return new LayerMask(newComp, maskImageCopy, owner, getTx(), getTy());
     }
 
@@ -191,14 +197,8 @@ public class LayerMask extends ImageLayer {
     }
 
     @Override
-    protected void paintWithoutTmpLayer(Graphics2D g,
-                                        BufferedImage visibleImage,
-                                        boolean firstVisibleLayer) {
-        if (Tools.isShapesDrawing()) {
-            paintLayerWithShapes(g, visibleImage, firstVisibleLayer);
-        } else { // the simple case
-            g.drawImage(visibleImage, getTx(), getTy(), null);
-        }
+    protected boolean paintsShapes() {
+        return Tools.isShapesDrawing();
     }
 
     @Override
@@ -212,15 +212,19 @@ public class LayerMask extends ImageLayer {
     public BufferedImage getTransparencyImage() {
         if (!owner.isMaskEditing() || !Tools.isShapesDrawing()) {
             // simple case
+            if (transparencyImage == null) {
+                // the mask image was read from a pxc file, but not decoded yet
+                updateTransparencyImage();
+            }
             return transparencyImage;
         } else { // drawing with the shapes tool while editing the mask
 
             // Create a temporary image that shows how the image would look like
             // if the shapes tool would draw directly into the mask image
             var tmpImg = new BufferedImage(
-                image.getWidth(), image.getHeight(), TYPE_BYTE_GRAY);
+                getImage().getWidth(), getImage().getHeight(), TYPE_BYTE_GRAY);
             Graphics2D tmpG = tmpImg.createGraphics();
-            tmpG.drawImage(image, 0, 0, null);
+            tmpG.drawImage(getImage(), 0, 0, null);
             Tools.SHAPES.paintOverActiveLayer(tmpG);
             tmpG.dispose();
 
@@ -248,6 +252,12 @@ public class LayerMask extends ImageLayer {
         return owner;
     }
 
+    @Override
+    public void invalidateDependentMaskedImages() {
+        // the mask itself is never masked, but it's part of its owner's masked image
+        owner.invalidateDependentMaskedImages();
+    }
+
     @Override
     public String getName() {
         return "mask of " + owner.getName();
@@ -265,7 +275,9 @@ public class LayerMask extends ImageLayer {
         if (owner instanceof SmartFilter sf) {
             sf.layerLevelSettingsChanged(false);
         }
-        holder.update(updateHistogram);
+        // the mask changes only the rendered pixels of its owner
+        owner.pixelsChanged();
+        owner.updateHolder(updateHistogram);
     }
 
     @Override
@@ -273,7 +285,7 @@ public class LayerMask extends ImageLayer {
         if (owner instanceof SmartFilter sf) {
             sf.layerLevelSettingsChanged(false);
         }
-        comp.repaintRegion(start, end, thickness);
+        comp.repaintRegion(owner, start, end, thickness);
     }
 
     @Override
@@ -281,7 +293,7 @@ public class LayerMask extends ImageLayer {
         if (owner instanceof SmartFilter sf) {
             sf.layerLevelSettingsChanged(false);
         }
-        comp.repaintRegion(area);
+        comp.repaintRegion(owner, area);
     }
 
     @Override
@@ -32,12 +32,15 @@ import pixelitor.tools.shapes.StyledShape;
 import pixelitor.tools.transform.TransformBox;
 import pixelitor.utils.ImageUtils;
 import pixelitor.utils.QuadrantAngle;
+import pixelitor.utils.RenderCache;
 import pixelitor.utils.debug.DebugNode;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.util.concurrent.CompletableFuture;
 
@@ -58,12 +61,22 @@ public class ShapesLayer extends ContentLayer {
     // it from the styled shape is currently not possible.
     private TransformBox transformBox;
 
-    private transient BufferedImage cachedImage;
+    private transient RenderCache.Entry imageCache = createImageCache();
 
     public ShapesLayer(Composition comp, String name) {
         super(comp, name);
     }
 
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        imageCache = createImageCache();
+    }
+
+    private static RenderCache.Entry createImageCache() {
+        return RenderCache.createEntry("Shapes Layer");
+    }
+
     public static void createNew(Composition comp) {
         var layer = new ShapesLayer(comp, "shape layer " + (++count));
         comp.getHolderForNewLayers()
@@ -103,6 +116,7 @@ public class ShapesLayer extends ContentLayer {
             boolean useCachedImage = g.getComposite().getClass() != AlphaComposite.class
                 && styledShape.hasBlendingIssue();
             if (useCachedImage) {
+                BufferedImage cachedImage = imageCache.get();
                 if (cachedImage == null) {
                     int width = comp.getCanvasWidth();
                     int height = comp.getCanvasHeight();
@@ -110,6 +124,7 @@ public class ShapesLayer extends ContentLayer {
                     Graphics2D imgG = cachedImage.createGraphics();
                     styledShape.paint(imgG);
                     imgG.dispose();
+                    imageCache.set(cachedImage);
                 }
                 g.drawImage(cachedImage, 0, 0, null);
             } else {
@@ -209,7 +224,7 @@ public class ShapesLayer extends ContentLayer {
     public void setStyledShape(StyledShape styledShape) {
         assert styledShape != null;
         this.styledShape = styledShape;
-        styledShape.setChangeListener(() -> cachedImage = null);
+        styledShape.setChangeListener(() -> imageCache.clear());
     }
 
     @Override
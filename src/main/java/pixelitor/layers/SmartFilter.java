@@ -29,6 +29,7 @@ import pixelitor.history.FilterChangedEdit;
 import pixelitor.history.History;
 import pixelitor.utils.Icons;
 import pixelitor.utils.ImageUtils;
+import pixelitor.utils.RenderCache;
 import pixelitor.utils.debug.DebugNode;
 
 import javax.swing.*;
@@ -59,7 +60,7 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
     // smart filter in the chain or the composition if this is the first
     private ImageSource imageSource;
 
-    private transient BufferedImage outputCache;
+    private transient RenderCache.Entry outputCache = createCacheEntry();
     private SmartObject smartObject; // the parent
 
     // the next smart filter in the chain (null if this is the last filter)
@@ -82,13 +83,13 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         this.smartObject = orig.smartObject;
 
         holder = smartObject;
-        outputCache = orig.outputCache; // safe to share
+        outputCache.set(orig.outputCache.peek()); // safe to share
     }
 
     @Serial
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         // defaults for transient fields
-        outputCache = null;
+        outputCache = createCacheEntry();
 
         in.defaultReadObject();
 
@@ -96,6 +97,10 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         holder = smartObject;
     }
 
+    private static RenderCache.Entry createCacheEntry() {
+        return RenderCache.createEntry("Smart Filter");
+    }
+
     @Override
     protected SmartFilter createTypeSpecificCopy(CopyType copyType, Composition newComp) {
         return new SmartFilter(this, newComp, copyType.createLayerCopyName(name));
@@ -109,6 +114,12 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         throw new IllegalStateException();
     }
 
+    @Override
+    public boolean canFuse() {
+        // smart filters are applied through their image sources
+        return false;
+    }
+
     @Override
     public BufferedImage getImage() {
         BufferedImage prevImage = imageSource.getImage();
@@ -142,26 +153,27 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
 
     @Override
     public BufferedImage transformImage(BufferedImage src) {
-        if (outputCache != null) {
-            return outputCache;
+        BufferedImage output = outputCache.get();
+        if (output != null) {
+            return output;
         }
         assert src != null;
-        createOutputCache(src);
-
-        return outputCache;
+        return createOutputCache(src);
     }
 
     public void evaluateNow() {
-        if (outputCache == null) {
+        if (outputCache.isEmpty()) {
             createOutputCache(imageSource.getImage());
         }
     }
 
-    private void createOutputCache(BufferedImage src) {
-        outputCache = filter.transformImage(src);
-        if (outputCache == src) {
-            outputCache = ImageUtils.copyImage(outputCache);
+    private BufferedImage createOutputCache(BufferedImage src) {
+        BufferedImage output = filter.transformImage(src);
+        if (output == src) {
+            output = ImageUtils.copyImage(output);
         }
+        outputCache.set(output);
+        return output;
     }
 
     @Override
@@ -223,10 +235,7 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
      * Clears the cached filtered image, forcing recomputation on next access.
      */
     public void invalidateCache() {
-        if (outputCache != null) {
-            outputCache.flush();
-            outputCache = null;
-        }
+        outputCache.clear();
     }
 
     @Override
@@ -291,7 +300,7 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         if (!firstPreview) {
             invalidateAll();
         }
-        if (outputCache != null) {
+        if (!outputCache.isEmpty()) {
             // the painting thread already calculated it
             return;
         }
@@ -414,11 +423,11 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
     }
 
     public boolean hasCachedImage() {
-        return outputCache != null;
+        return !outputCache.isEmpty();
     }
 
     public BufferedImage getOutputCache() {
-        return outputCache;
+        return outputCache.peek();
     }
 
     @Override
@@ -458,7 +467,7 @@ public class SmartFilter extends AdjustmentLayer implements ImageSource {
         node.addString("imageSource class", imageSource.getClass().getSimpleName());
         node.add(imageSource.createDebugNode("imageSource"));
         node.addString("next", String.valueOf(next));
-        node.addBoolean("cached", (outputCache != null));
+        node.addBoolean("cached", !outputCache.isEmpty());
 
         return node;
     }
@@ -319,7 +319,8 @@ public class SmartObject extends CompositeLayer {
         if (imageNeedsRefresh) {
             recalculateImage();
         }
-        holder.update(updateHistogram);
+        pixelsChanged();
+        updateHolder(updateHistogram);
     }
 
     @Override
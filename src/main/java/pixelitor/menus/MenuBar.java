@@ -143,6 +143,18 @@ public class MenuBar extends JMenuBar {
         Filters.finishedAdding();
     }
 
+    /**
+     * Registers the filters of the menus without creating
+     * the main window, used by the benchmarks.
+     */
+    public static void registerFilters() {
+        ResourceBundle texts = Texts.getResources();
+        createColorMenu();
+        createFilterMenu(texts);
+
+        Filters.finishedAdding();
+    }
+
     private static JMenu createFileMenu(PixelitorWindow pw, ResourceBundle texts) {
         // TODO localize the mnemonic
         PMenu fileMenu = new PMenu(texts.getString("file"), 'F');
@@ -1032,6 +1044,7 @@ public class MenuBar extends JMenuBar {
         String medianFilterName = "3x3 Median Filter";
         sub.addForwardingFilter(medianFilterName,
             () -> new MedianFilter(medianFilterName));
+        sub.addFilter(JHMedian.NAME, JHMedian::new);
 
         sub.addSeparator();
 
@@ -1353,6 +1366,9 @@ public class MenuBar extends JMenuBar {
         sub.add(new TaskAction("Debug All Comp Names",
             Debug::debugAllDebugNames));
 
+        sub.add(new TaskAction("Show Render Cache", () ->
+            RenderCache.createDebugNode("render cache").showInDialog("Render Cache")));
+
         return sub;
     }
 
@@ -54,5 +54,7 @@ class SystemInfoPanel extends JPanel {
         gbh.addTwoLabels("Used Memory:", mi.getUsedMemory());
         gbh.addTwoLabels("Free Memory:", mi.getFreeMemory());
         gbh.addTwoLabels("Max Memory:", mi.getMaxMemory());
+        gbh.addTwoLabels("History Memory:", mi.getHistoryMemory());
+        gbh.addTwoLabels("Render Cache Memory:", mi.getRenderCacheMemory());
     }
 }
@@ -17,25 +17,18 @@
 
 package pixelitor.selection;
 
-import pixelitor.Composition;
-import pixelitor.gui.View;
-import pixelitor.layers.Drawable;
 import pixelitor.tools.Tools;
 import pixelitor.tools.util.Drag;
 import pixelitor.tools.util.PMouseEvent;
+import pixelitor.utils.FloodFill;
 import pixelitor.utils.ImageUtils;
 
-import java.awt.Color;
-import java.awt.Point;
 import java.awt.Shape;
 import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
-import java.util.Stack;
-
-import static pixelitor.utils.ImageUtils.isGrayscale;
 
 /**
  * The different ways a selection shape can be created or updated interactively.
@@ -138,147 +131,38 @@ public enum SelectionType {
          * Selects contiguous pixels within a color tolerance using a scanline fill algorithm.
          */
         private static Area selectPixelsInColorRange(PMouseEvent pm) {
-            Area selectedArea = new Area();
-
-            int imX = (int) pm.getImX();
-            int imY = (int) pm.getImY();
+            int x = (int) pm.getImX();
+            int y = (int) pm.getImY();
 
-            Composition comp = pm.getComp();
-            Drawable dr = comp.getActiveDrawableOrThrow();
-            BufferedImage image = dr.getImage();
-            int imgHeight = image.getHeight();
+            // the colors are picked from the composite image, as that's what the user sees
+            BufferedImage image = pm.getComp().getCompositeImage();
             int imgWidth = image.getWidth();
+            int imgHeight = image.getHeight();
 
-            // adjust click coordinates to be relative to the drawable's image
-            int x = imX - dr.getTx();
-            int y = imY - dr.getTy();
-
-            // check if the click is outside the drawable's bounds
+            // check if the click is outside the canvas
             if (x < 0 || x >= imgWidth || y < 0 || y >= imgHeight) {
                 return new Area();
             }
 
+            int[] pixels = getARGBPixels(image);
             int colorTolerance = Tools.MAGIC_WAND.getTolerance();
+            int targetColor = pixels[x + y * imgWidth];
 
-            boolean hasSelection = comp.hasSelection();
-            boolean grayScale = isGrayscale(image);
-
-            // TODO optionally we should use the composite image
-            //   for color picking, as that's what the user sees
-            BufferedImage workingImage;
-            if (grayScale) {
-                workingImage = ImageUtils.toSysCompatibleImage(image);
-            } else if (hasSelection) {
-                workingImage = ImageUtils.copyImage(image);
-            } else {
-                workingImage = image;
-            }
-
-            // tracks pixels already processed or added to the selection
-            boolean [][] visited = new boolean[workingImage.getWidth()][workingImage.getHeight()];
-
-            int targetColor = getColorAtPoint(new Point(x, y), pm);
-
-            int finalX = x;
-            int finalY = y;
-
-            selectArea(workingImage, finalX, finalY, colorTolerance, targetColor, selectedArea, pm, visited, 1);
-            selectArea(workingImage, finalX, finalY, colorTolerance, targetColor, selectedArea, pm, visited, -1);
-
-            return selectedArea;
-        }
-
-        private static void selectArea(BufferedImage img, int x, int y, int tolerance,
-                                       int rgbAtMouse, Area selectedArea, PMouseEvent pm,
-                                       boolean[][] visited, int yOffset) {
-
-            Stack<Point> pixelsToProcess = new Stack<>();
-            pixelsToProcess.push(new Point(x, y));
-
-            while (!pixelsToProcess.isEmpty()) {
-                Point currentPixel = pixelsToProcess.pop();
-
-                int startX = currentPixel.x;
-                int startY = currentPixel.y;
-
-                if (canBeSelected(currentPixel, img, rgbAtMouse, tolerance, visited, pm)) {
-
-                    int leftX = walkDirection(currentPixel, img, rgbAtMouse, tolerance, visited, -1, pixelsToProcess, pm); // Walk left
-                    int lineEndX = walkDirection(currentPixel, img, rgbAtMouse, tolerance, visited, 1, pixelsToProcess, pm); // Walk right
-
-                    // Create an area based on the line segment
-                    int lineStartX = leftX + 1;
-                    int lineLength = lineEndX - lineStartX;
-
-                    if (lineLength > 0) {
-                        Area lineSegment = new Area(new Rectangle2D.Double(lineStartX, startY, lineLength, 1));
-                        selectedArea.add(lineSegment);
-                    }
-
-                    pixelsToProcess.push(new Point(startX, startY + yOffset));
-                }
-            }
-        }
-
-        private static int walkDirection(Point currentPixel, BufferedImage img, int rgbAtMouse, int tolerance, boolean[][] visited,
-                                         int xStep, Stack<Point> pixelsToProcess, PMouseEvent pm) {
-
-            int startX = currentPixel.x;
-            int startY = currentPixel.y;
-            int currentX = startX + xStep;
-
-            while (canBeSelected(new Point(currentX, startY), img, rgbAtMouse, tolerance, visited, pm)) {
-                visited[currentX][startY] = true;
-
-                Point pointAbove = new Point(currentX, startY - 1);
-                boolean canBeSelectedAbove = canBeSelected(pointAbove, img, rgbAtMouse, tolerance, visited, pm);
-
-                Point pointBelow = new Point(currentX, startY + 1);
-                boolean canBeSelectedBelow = canBeSelected(pointBelow, img, rgbAtMouse, tolerance, visited, pm);
-
-                selectPixelIfPossible(canBeSelectedAbove, pixelsToProcess, pointAbove);
-                selectPixelIfPossible(canBeSelectedBelow, pixelsToProcess, pointBelow);
-
-                currentX += xStep;
-            }
-            return currentX;
+            FloodFill fill = FloodFill.run(pixels, imgWidth, imgHeight,
+                x, y, targetColor, colorTolerance);
+            return fill.toArea(0, 0);
         }
 
-        private static void selectPixelIfPossible(boolean canBeSelected, Stack<Point> pixelsToProcess, Point pointToSelect) {
-            if (canBeSelected) {
-                pixelsToProcess.push(pointToSelect);
-            }
-        }
-
-        private static boolean canBeSelected(Point currentPixel, BufferedImage img,
-                                             int rgbAtMouse, int tolerance, boolean[][] visited, PMouseEvent pm) {
-            int imgHeight = img.getHeight();
-            int imgWidth = img.getWidth();
-
-            int currentX = currentPixel.x;
-            int currentY = currentPixel.y;
-
-            int targetColor = getColorAtPoint(currentPixel, pm);
-
-            return currentX >= 0 && currentX < imgWidth && currentY >= 0 && currentY < imgHeight &&
-                ImageUtils.isSimilar(rgbAtMouse, targetColor, tolerance) &&
-                !visited[currentX][currentY];
-        }
-
-        private static int getColorAtPoint(Point p, PMouseEvent pm) {
-            int x = p.x;
-            int y = p.y;
-
-            View view = pm.getView();
-            BufferedImage img;
-            Composition comp = view.getComp();
-            img = comp.getCompositeImage();
-
-            if (x >= 0 && x < img.getWidth() && y >= 0 && y < img.getHeight()) {
-                return img.getRGB(x, y);
-            } else {
-                return Color.BLACK.getRGB();
+        /**
+         * Returns the non-premultiplied ARGB pixels of the given image,
+         * which are only read, so the data array can be shared with the image.
+         */
+        private static int[] getARGBPixels(BufferedImage image) {
+            if (image.getType() == BufferedImage.TYPE_INT_ARGB && !ImageUtils.isSubImage(image)) {
+                return ImageUtils.getPixels(image);
             }
+            int width = image.getWidth();
+            return image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
         }
     };
 
@@ -146,6 +146,7 @@ public class Gradient implements Serializable, Debuggable {
 
         g.dispose();
         dr.mergeTmpDrawingLayerDown();
+        dr.pixelsChangedInPlace(null);
         dr.updateIconImage();
     }
 
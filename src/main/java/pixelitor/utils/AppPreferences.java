@@ -91,6 +91,8 @@ public final class AppPreferences {
     private static final String LAST_SAVE_FORMAT_KEY = "last_save_fmt";
 
     private static final String UNDO_LEVELS_KEY = "undo_levels";
+    private static final String HISTORY_MEMORY_KEY = "history_memory_mb";
+    private static final String RENDER_CACHE_MEMORY_KEY = "render_cache_memory_mb";
     private static final String THUMB_SIZE_KEY = "thumb_size";
     private static final String LAST_TOOL_KEY = "last_tool";
     private static final String THEME_KEY = "theme";
@@ -345,6 +347,39 @@ public final class AppPreferences {
         mainPrefs.putInt(UNDO_LEVELS_KEY, History.getUndoLevels());
     }
 
+    /**
+     * Returns the memory in megabytes that the history can use
+     * before it starts compressing and swapping out the backups,
+     * and later discarding the oldest edits.
+     */
+    public static int loadHistoryMemoryMb() {
+        int retVal = mainPrefs.getInt(HISTORY_MEMORY_KEY, -1);
+        if (retVal == -1) {
+            return MemoryInfo.getMaxHeapMb() / 4;
+        }
+        return retVal;
+    }
+
+    private static void saveHistoryMemory() {
+        mainPrefs.putInt(HISTORY_MEMORY_KEY, History.getMemoryLimitMb());
+    }
+
+    /**
+     * Returns the memory in megabytes that the images
+     * cached for the rendering can use.
+     */
+    public static int loadRenderCacheMemoryMb() {
+        int retVal = mainPrefs.getInt(RENDER_CACHE_MEMORY_KEY, -1);
+        if (retVal == -1) {
+            return MemoryInfo.getMaxHeapMb() / 4;
+        }
+        return retVal;
+    }
+
+    private static void saveRenderCacheMemory() {
+        mainPrefs.putInt(RENDER_CACHE_MEMORY_KEY, RenderCache.getMemoryBudgetMb());
+    }
+
     public static int loadThumbSize() {
         return mainPrefs.getInt(THUMB_SIZE_KEY, LayerGUILayout.SMALL_THUMB_SIZE);
     }
@@ -399,6 +434,8 @@ public final class AppPreferences {
         saveFgBgColors();
         PixelitorWindow.get().getWorkSpace().savePreferences();
         saveUndoLevels();
+        saveHistoryMemory();
+        saveRenderCacheMemory();
         saveThumbSize();
         TipsOfTheDay.saveNextTipIndex();
         saveNewImageSize();
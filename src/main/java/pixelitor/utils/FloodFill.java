@@ -0,0 +1,281 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A scanline flood fill over packed ARGB int pixels, used by the
+ * Magic Wand selection and the Paint Bucket Tool.
+ * <p>
+ * The filled pixels are recorded in a bitset, without modifying the
+ * pixels, and they can be read back as horizontal runs, sorted by rows.
+ */
+public final class FloodFill {
+    private final int width;
+    private final int height;
+    private final BitSet filled;
+
+    // the bounds of the filled pixels
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    /**
+     * Receives the horizontal runs of filled pixels.
+     */
+    @FunctionalInterface
+    public interface RunConsumer {
+        /**
+         * Called for each run of filled pixels in the given row,
+         * from startX (inclusive) to endX (exclusive).
+         */
+        void accept(int y, int startX, int endX);
+    }
+
+    private FloodFill(int width, int height, int x, int y) {
+        this.width = width;
+        this.height = height;
+        filled = new BitSet(width * height);
+        minX = maxX = x;
+        minY = maxY = y;
+    }
+
+    /**
+     * Fills the contiguous region of the pixels around the given start point
+     * whose colors are within the given tolerance of the given target color
+     * (see {@link ImageUtils#isSimilar(int, int, int)}).
+     */
+    public static FloodFill run(int[] pixels, int width, int height,
+                                int startX, int startY,
+                                int targetRGB, int tolerance) {
+        assert pixels.length >= width * height;
+        assert startX >= 0 && startX < width && startY >= 0 && startY < height;
+
+        var fill = new FloodFill(width, height, startX, startY);
+        if (isSimilar(pixels[startX + startY * width], targetRGB, tolerance)) {
+            fill.fillFrom(pixels, startX, startY, targetRGB, tolerance);
+        }
+        return fill;
+    }
+
+    private void fillFrom(int[] pixels, int startX, int startY, int targetRGB, int tolerance) {
+        // a stack of packed (x, y) pairs, without allocating Points
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = startX;
+        stack[stackSize++] = startY;
+
+        while (stackSize > 0) {
+            int y = stack[--stackSize];
+            int x = stack[--stackSize];
+            int offset = y * width;
+            if (filled.get(offset + x)) {
+                continue; // filled since it was pushed
+            }
+
+            // find the extent of the run containing (x, y)
+            int runStart = x;
+            while (runStart > 0 && canFill(pixels, offset + runStart - 1, targetRGB, tolerance)) {
+                runStart--;
+            }
+            int runEnd = x + 1; // exclusive
+            while (runEnd < width && canFill(pixels, offset + runEnd, targetRGB, tolerance)) {
+                runEnd++;
+            }
+            filled.set(offset + runStart, offset + runEnd);
+
+            minX = Math.min(minX, runStart);
+            maxX = Math.max(maxX, runEnd - 1);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+
+            // push one seed for each fillable run in the neighboring rows
+            for (int ny = y - 1; ny <= y + 1; ny += 2) {
+                if (ny < 0 || ny >= height) {
+                    continue;
+                }
+                int nOffset = ny * width;
+                boolean inRun = false;
+                for (int nx = runStart; nx < runEnd; nx++) {
+                    boolean fillable = canFill(pixels, nOffset + nx, targetRGB, tolerance);
+                    if (fillable && !inRun) {
+                        if (stackSize + 2 > stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[stackSize++] = nx;
+                        stack[stackSize++] = ny;
+                    }
+                    inRun = fillable;
+                }
+            }
+        }
+    }
+
+    private boolean canFill(int[] pixels, int index, int targetRGB, int tolerance) {
+        return !filled.get(index) && isSimilar(pixels[index], targetRGB, tolerance);
+    }
+
+    // same as ImageUtils.isSimilar, but it doesn't depend on
+    // the initialization of ImageUtils, and it can be inlined
+    private static boolean isSimilar(int rgb, int targetRGB, int tolerance) {
+        if (rgb == targetRGB) {
+            return true;
+        }
+        return Math.abs(((rgb >>> 24) & 0xFF) - ((targetRGB >>> 24) & 0xFF)) <= tolerance
+            && Math.abs(((rgb >>> 16) & 0xFF) - ((targetRGB >>> 16) & 0xFF)) <= tolerance
+            && Math.abs(((rgb >>> 8) & 0xFF) - ((targetRGB >>> 8) & 0xFF)) <= tolerance
+            && Math.abs((rgb & 0xFF) - (targetRGB & 0xFF)) <= tolerance;
+    }
+
+    public boolean isEmpty() {
+        return filled.isEmpty();
+    }
+
+    public boolean isFilled(int x, int y) {
+        return filled.get(x + y * width);
+    }
+
+    /**
+     * Returns the bounds of the filled pixels, or null if nothing was filled.
+     */
+    public Rectangle getBounds() {
+        if (isEmpty()) {
+            return null;
+        }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * Passes the runs of filled pixels to the given consumer,
+     * row by row, and from left to right within a row.
+     */
+    public void forEachRun(RunConsumer consumer) {
+        if (isEmpty()) {
+            return;
+        }
+        for (int y = minY; y <= maxY; y++) {
+            int[] runs = getRuns(y);
+            for (int i = 0; i < runs.length; i += 2) {
+                consumer.accept(y, runs[i], runs[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * Sets all filled pixels in the given array to the given color.
+     */
+    public void fillPixels(int[] pixels, int rgb) {
+        forEachRun((y, startX, endX) -> {
+            int offset = y * width;
+            Arrays.fill(pixels, offset + startX, offset + endX, rgb);
+        });
+    }
+
+    /**
+     * Converts the filled pixels into an area, translated by the given offset.
+     * Runs that repeat with the same extent in consecutive rows are merged
+     * into rectangles, and the area is built from them in a single pass.
+     */
+    public Area toArea(int dx, int dy) {
+        if (isEmpty()) {
+            return new Area();
+        }
+        Path2D path = new Path2D.Float(Path2D.WIND_NON_ZERO);
+
+        // the start row of the rectangle that is open at a given start x
+        int[] openStartY = new int[width];
+
+        // every run of the previous row is the bottom of an open rectangle
+        int[] prevRuns = new int[0];
+        for (int y = minY; y <= maxY + 1; y++) {
+            int[] runs = y <= maxY ? getRuns(y) : new int[0];
+
+            // close the rectangles that don't continue in this row
+            for (int i = 0; i < prevRuns.length; i += 2) {
+                int startX = prevRuns[i];
+                int endX = prevRuns[i + 1];
+                if (!containsRun(runs, startX, endX)) {
+                    appendRect(path, startX + dx, openStartY[startX] + dy,
+                        endX - startX, y - openStartY[startX]);
+                }
+            }
+            // open rectangles for the runs that don't continue one
+            for (int i = 0; i < runs.length; i += 2) {
+                if (!containsRun(prevRuns, runs[i], runs[i + 1])) {
+                    openStartY[runs[i]] = y;
+                }
+            }
+            prevRuns = runs;
+        }
+
+        return new Area(path);
+    }
+
+    // returns the runs of the given row as (startX, endX) pairs
+    private int[] getRuns(int y) {
+        int[] runs = new int[8];
+        int count = 0;
+        int rowStart = y * width;
+        int rowEnd = rowStart + maxX + 1;
+        int i = filled.nextSetBit(rowStart + minX);
+        while (i != -1 && i < rowEnd) {
+            int runEnd = Math.min(filled.nextClearBit(i), rowEnd);
+            if (count + 2 > runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[count++] = i - rowStart;
+            runs[count++] = runEnd - rowStart;
+            i = filled.nextSetBit(runEnd);
+        }
+        return Arrays.copyOf(runs, count);
+    }
+
+    // the runs are sorted, so the start x can be binary-searched among the pairs
+    private static boolean containsRun(int[] runs, int startX, int endX) {
+        int low = 0;
+        int high = runs.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midStart = runs[2 * mid];
+            if (midStart < startX) {
+                low = mid + 1;
+            } else if (midStart > startX) {
+                high = mid - 1;
+            } else {
+                return runs[2 * mid + 1] == endX;
+            }
+        }
+        return false;
+    }
+
+    private static void appendRect(Path2D path, int x, int y, int w, int h) {
+        // all rectangles have the same orientation, and they
+        // don't overlap, so the non-zero winding rule unites them
+        path.moveTo(x, y);
+        path.lineTo(x + w, y);
+        path.lineTo(x + w, y + h);
+        path.lineTo(x, y + h);
+        path.closePath();
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Future;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+
+/**
+ * A lazily built mipmap pyramid of an image, where each level
+ * has half the width and height of the previous one.
+ * Painting a zoomed-out image from the nearest level costs time
+ * proportional to the painted area instead of the image size.
+ * <p>
+ * The levels are only built when requested, and changed regions
+ * are only recalculated in the levels that were already built.
+ * Not thread-safe, it's intended to be used on the EDT.
+ */
+public class ImagePyramid {
+    // levels with fewer pixels are calculated on the calling thread
+    private static final int MIN_PARALLEL_PIXELS = 256 * 256;
+    private static final int MIN_BAND_HEIGHT = 16;
+
+    // the levels stop when the image gets smaller than this
+    private static final int MIN_LEVEL_SIZE = 16;
+
+    private int baseWidth;
+    private int baseHeight;
+
+    // index 0 corresponds to the half-sized level
+    private BufferedImage[] levels = new BufferedImage[0];
+
+    // the out-of-date part of each built level, in base image coordinates
+    private Rectangle[] dirtyRegions = new Rectangle[0];
+
+    /**
+     * Returns the image that should be painted at the given scale:
+     * the smallest level that still has at least the needed resolution,
+     * or the base image itself if the scale isn't small enough.
+     */
+    public BufferedImage getImageForScale(BufferedImage base, double scale) {
+        if (base.getWidth() != baseWidth || base.getHeight() != baseHeight) {
+            reset(base.getWidth(), base.getHeight());
+        }
+        int levelIndex = calcLevelIndex(scale);
+        if (levelIndex < 0) {
+            return base;
+        }
+        return getLevel(base, levelIndex);
+    }
+
+    // returns -1 for the base image
+    private int calcLevelIndex(double scale) {
+        int index = -1;
+        double levelScale = 0.5;
+        while (scale <= levelScale && index + 1 < levels.length) {
+            index++;
+            levelScale /= 2;
+        }
+        return index;
+    }
+
+    private void reset(int width, int height) {
+        invalidate();
+        baseWidth = width;
+        baseHeight = height;
+
+        int numLevels = 0;
+        int w = width;
+        int h = height;
+        while (w / 2 >= MIN_LEVEL_SIZE && h / 2 >= MIN_LEVEL_SIZE) {
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+            numLevels++;
+        }
+        levels = new BufferedImage[numLevels];
+        dirtyRegions = new Rectangle[numLevels];
+    }
+
+    private BufferedImage getLevel(BufferedImage base, int index) {
+        BufferedImage src = index == 0 ? base : getLevel(base, index - 1);
+        BufferedImage level = levels[index];
+        if (level == null) {
+            level = new BufferedImage(
+                (src.getWidth() + 1) / 2, (src.getHeight() + 1) / 2, TYPE_INT_ARGB);
+            downsample(src, level, 0, level.getHeight());
+            levels[index] = level;
+        } else if (dirtyRegions[index] != null) {
+            // the dirty rows of this level, rounded outwards
+            Rectangle dirty = dirtyRegions[index];
+            int shift = index + 1;
+            int startRow = Math.max(0, dirty.y >> shift);
+            int endRow = Math.min(level.getHeight(),
+                ((dirty.y + dirty.height - 1) >> shift) + 1);
+            if (startRow < endRow) {
+                downsample(src, level, startRow, endRow);
+            }
+        }
+        dirtyRegions[index] = null;
+        return level;
+    }
+
+    /**
+     * Marks the given region of the base image as changed.
+     */
+    public void invalidateRegion(Rectangle region) {
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] == null) {
+                continue; // it will be built from scratch anyway
+            }
+            if (dirtyRegions[i] == null) {
+                dirtyRegions[i] = new Rectangle(region);
+            } else {
+                dirtyRegions[i].add(region);
+            }
+        }
+    }
+
+    /**
+     * Discards all levels, for example after the base image was replaced.
+     */
+    public void invalidate() {
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null) {
+                levels[i].flush();
+                levels[i] = null;
+            }
+            dirtyRegions[i] = null;
+        }
+    }
+
+    // calculates the given rows of dest from src,
+    // in parallel bands for the larger levels
+    private static void downsample(BufferedImage src, BufferedImage dest, int startRow, int endRow) {
+        int numRows = endRow - startRow;
+        long numPixels = (long) dest.getWidth() * numRows;
+        int numBands = 1;
+        if (numPixels >= MIN_PARALLEL_PIXELS && !ThreadPool.isPoolThread()) {
+            numBands = Math.max(1, Math.min(ThreadPool.NUM_CORES, numRows / MIN_BAND_HEIGHT));
+        }
+        if (numBands == 1) {
+            downsampleRows(src, dest, startRow, endRow);
+            return;
+        }
+
+        Future<?>[] futures = new Future<?>[numBands];
+        for (int i = 0; i < numBands; i++) {
+            int bandStart = startRow + (int) ((long) numRows * i / numBands);
+            int bandEnd = startRow + (int) ((long) numRows * (i + 1) / numBands);
+            futures[i] = ThreadPool.submit(() -> downsampleRows(src, dest, bandStart, bandEnd));
+        }
+        ThreadPool.waitFor(futures, ProgressTracker.NULL_TRACKER);
+    }
+
+    // averages 2x2 source pixel blocks, weighting the colors
+    // with the alpha so that transparent pixels don't darken the edges
+    private static void downsampleRows(BufferedImage src, BufferedImage dest, int startRow, int endRow) {
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int destWidth = dest.getWidth();
+        int[] row1 = new int[srcWidth];
+        int[] row2 = new int[srcWidth];
+        int[] destRow = new int[destWidth];
+
+        for (int y = startRow; y < endRow; y++) {
+            int srcY = 2 * y;
+            boolean hasRow2 = srcY + 1 < srcHeight;
+            readRow(src, srcY, row1);
+            if (hasRow2) {
+                readRow(src, srcY + 1, row2);
+            }
+
+            for (int x = 0; x < destWidth; x++) {
+                int srcX = 2 * x;
+                boolean hasCol2 = srcX + 1 < srcWidth;
+
+                int sumA = 0;
+                int sumR = 0;
+                int sumG = 0;
+                int sumB = 0;
+                int count = 0;
+                for (int i = 0; i < 4; i++) {
+                    boolean secondCol = (i & 1) != 0;
+                    boolean secondRow = i >= 2;
+                    if ((secondCol && !hasCol2) || (secondRow && !hasRow2)) {
+                        continue;
+                    }
+                    int p = (secondRow ? row2 : row1)[secondCol ? srcX + 1 : srcX];
+                    int a = p >>> 24;
+                    sumA += a;
+                    sumR += a * ((p >> 16) & 0xFF);
+                    sumG += a * ((p >> 8) & 0xFF);
+                    sumB += a * (p & 0xFF);
+                    count++;
+                }
+
+                if (sumA == 0) {
+                    destRow[x] = 0;
+                } else {
+                    int a = (sumA + count / 2) / count;
+                    int half = sumA / 2;
+                    int r = (sumR + half) / sumA;
+                    int g = (sumG + half) / sumA;
+                    int b = (sumB + half) / sumA;
+                    destRow[x] = a << 24 | r << 16 | g << 8 | b;
+                }
+            }
+            dest.getRaster().setDataElements(0, y, destWidth, 1, destRow);
+        }
+    }
+
+    private static void readRow(BufferedImage src, int y, int[] row) {
+        if (src.getType() == TYPE_INT_ARGB) {
+            // also works for sub-images, without a color model conversion
+            src.getRaster().getDataElements(0, y, src.getWidth(), 1, row);
+        } else {
+            src.getRGB(0, y, src.getWidth(), 1, row, 0, src.getWidth());
+        }
+    }
+}
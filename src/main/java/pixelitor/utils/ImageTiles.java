@@ -0,0 +1,269 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import pixelitor.ThreadPool;
+
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the pixels of an image, stored as
+ * fixed-size tiles of packed int pixels or gray byte pixels.
+ * <p>
+ * The tiles are never modified after their creation, which
+ * makes them copy-on-write: a new snapshot of an image can share all
+ * the tiles that didn't change since a previous snapshot, and the
+ * memory cost of a snapshot is proportional to the changed tiles.
+ * Shared tiles are freed by the garbage collector when the last
+ * snapshot that references them is gone. While they are alive,
+ * the {@link TileStore} keeps their memory usage within a budget.
+ */
+public final class ImageTiles {
+    public static final int TILE_SIZE = 256;
+
+    // below this number of tile rows the capturing isn't parallelized
+    private static final int MIN_PARALLEL_TILE_ROWS = 4;
+
+    private final ColorModel colorModel;
+    private final int width;
+    private final int height;
+    private final int numTilesX;
+    private final int numTilesY;
+
+    // the tiles in row-major order, possibly shared with other snapshots
+    private final TileStore.Tile[] tiles;
+
+    private ImageTiles(ColorModel colorModel, int width, int height) {
+        this.colorModel = colorModel;
+        this.width = width;
+        this.height = height;
+        numTilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        numTilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        tiles = new TileStore.Tile[numTilesX * numTilesY];
+    }
+
+    /**
+     * Returns true if the given image uses packed int pixels or
+     * single-band byte pixels (like the layer masks),
+     * and therefore it can be stored as tiles.
+     */
+    public static boolean canStore(BufferedImage img) {
+        Raster raster = img.getRaster();
+        if (raster.getNumDataElements() != 1) {
+            return false;
+        }
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        SampleModel sampleModel = raster.getSampleModel();
+        if (dataBuffer instanceof DataBufferInt) {
+            return sampleModel instanceof SinglePixelPackedSampleModel;
+        }
+        return dataBuffer instanceof DataBufferByte
+            && sampleModel instanceof ComponentSampleModel csm
+            && csm.getPixelStride() == 1;
+    }
+
+    /**
+     * Captures the pixels of the given image. The tiles that are identical
+     * to the corresponding tiles of the given previous snapshot are shared
+     * instead of copied. The previous snapshot can be null, or it can have
+     * a different size, in which case nothing is shared.
+     */
+    public static ImageTiles capture(BufferedImage img, ImageTiles previous) {
+        return capture(img, previous, null);
+    }
+
+    /**
+     * Captures the pixels of the given image like {@link #capture(BufferedImage, ImageTiles)},
+     * but if the changed area isn't null, then the image is expected to differ from
+     * the previous snapshot only within it. The tiles outside the area are still read,
+     * but they are shared if only their hash matches, without decompressing or
+     * loading back the previous tiles, and a change that wasn't reported
+     * in the area is still captured, unless the hash collides.
+     */
+    public static ImageTiles capture(BufferedImage img, ImageTiles previous, Rectangle changedArea) {
+        assert canStore(img) : "type = " + img.getType();
+
+        ImageTiles snapshot = new ImageTiles(img.getColorModel(), img.getWidth(), img.getHeight());
+        if (previous != null && !previous.hasSameLayoutAs(snapshot)) {
+            previous = null;
+        }
+        Rectangle changed = previous == null ? null : changedArea;
+
+        Raster raster = img.getRaster();
+        int numTilesY = snapshot.numTilesY;
+        if (numTilesY < MIN_PARALLEL_TILE_ROWS) {
+            for (int ty = 0; ty < numTilesY; ty++) {
+                snapshot.captureTileRow(raster, ty, previous, changed);
+            }
+            return snapshot;
+        }
+
+        // parallelFor can be also called from the pool threads
+        ImageTiles prev = previous;
+        ThreadPool.parallelFor(numTilesY, 1, (start, end) -> {
+            for (int ty = start; ty < end; ty++) {
+                snapshot.captureTileRow(raster, ty, prev, changed);
+            }
+        }, ProgressTracker.NULL_TRACKER);
+        return snapshot;
+    }
+
+    private void captureTileRow(Raster raster, int ty, ImageTiles previous, Rectangle changed) {
+        int y = ty * TILE_SIZE;
+        int tileHeight = Math.min(TILE_SIZE, height - y);
+        int minX = raster.getMinX();
+        int minY = raster.getMinY();
+        boolean bytePixels = raster.getDataBuffer() instanceof DataBufferByte;
+        Object pixels = null; // the int[] or byte[] scratch array
+        int scratchLength = 0;
+        for (int tx = 0; tx < numTilesX; tx++) {
+            int x = tx * TILE_SIZE;
+            int tileWidth = Math.min(TILE_SIZE, width - x);
+            int index = ty * numTilesX + tx;
+            int numPixels = tileWidth * tileHeight;
+            if (pixels == null || scratchLength != numPixels) {
+                pixels = bytePixels ? new byte[numPixels] : new int[numPixels];
+                scratchLength = numPixels;
+            }
+            raster.getDataElements(minX + x, minY + y, tileWidth, tileHeight, pixels);
+
+            int hash = TileStore.hashPixels(pixels);
+            if (previous != null && isUnchanged(previous.tiles[index], pixels, hash,
+                changed, x, y, tileWidth, tileHeight)) {
+                tiles[index] = previous.tiles[index];
+                // the scratch array can be reused for the next tile
+            } else {
+                tiles[index] = TileStore.createTile(pixels, hash);
+                pixels = null;
+            }
+        }
+    }
+
+    private static boolean isUnchanged(TileStore.Tile prevTile, Object pixels, int hash,
+                                       Rectangle changed, int x, int y, int tileWidth, int tileHeight) {
+        if (changed != null && !changed.intersects(x, y, tileWidth, tileHeight)) {
+            // not expected to change since the previous snapshot
+            return prevTile.hasHash(hash);
+        }
+        return prevTile.hasPixels(pixels, hash);
+    }
+
+    private boolean hasSameLayoutAs(ImageTiles other) {
+        return width == other.width
+            && height == other.height
+            && colorModel.equals(other.colorModel);
+    }
+
+    /**
+     * Creates a new image with the pixels and color model of this snapshot.
+     */
+    public BufferedImage toImage() {
+        WritableRaster raster = colorModel.createCompatibleWritableRaster(width, height);
+        for (int ty = 0; ty < numTilesY; ty++) {
+            int y = ty * TILE_SIZE;
+            int tileHeight = Math.min(TILE_SIZE, height - y);
+            for (int tx = 0; tx < numTilesX; tx++) {
+                int x = tx * TILE_SIZE;
+                int tileWidth = Math.min(TILE_SIZE, width - x);
+                raster.setDataElements(x, y, tileWidth, tileHeight, tiles[ty * numTilesX + tx].getPixels());
+            }
+        }
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumTiles() {
+        return tiles.length;
+    }
+
+    /**
+     * Returns the number of tiles that are shared with the given snapshot.
+     */
+    public int countSharedTiles(ImageTiles other) {
+        if (other == null || !hasSameLayoutAs(other)) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] == other.tiles[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the memory used by the pixels of all the tiles in bytes,
+     * including the tiles that might be shared with other snapshots.
+     */
+    public long getMemoryFootprint() {
+        long bytes = 0;
+        for (TileStore.Tile tile : tiles) {
+            bytes += tile.getSizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the memory in bytes used by the uncompressed pixels of the
+     * tiles that aren't yet in the given set, and adds them to the set.
+     * This way the tiles that are shared by several snapshots are counted
+     * only once, as long as they are referenced by any of them.
+     */
+    public long countMemory(Set<Object> countedTiles) {
+        long bytes = 0;
+        for (TileStore.Tile tile : tiles) {
+            if (countedTiles.add(tile)) {
+                bytes += tile.getSizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the memory in bytes used by the uncompressed pixels
+     * of a tile that was added to a set by {@link #countMemory(Set)}.
+     */
+    public static long getTileSize(Object tile) {
+        return ((TileStore.Tile) tile).getSizeInBytes();
+    }
+
+    /**
+     * Creates an empty set for {@link #countMemory(Set)},
+     * which compares the tiles by identity.
+     */
+    public static Set<Object> createCountedTilesSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    @Override
+    public String toString() {
+        return "ImageTiles[%dx%d, %d tiles]".formatted(width, height, tiles.length);
+    }
+}
@@ -30,9 +30,11 @@ import pixelitor.Canvas;
 import pixelitor.colors.Colors;
 import pixelitor.filters.Invert;
 import pixelitor.gui.utils.Dialogs;
+import pixelitor.layers.AdjustmentLayer;
 import pixelitor.layers.ImageLayer;
 import pixelitor.layers.Layer;
 import pixelitor.selection.Selection;
+import pixelitor.tools.Tool;
 import pixelitor.tools.Tools;
 import pixelitor.utils.debug.Debug;
 import pixelitor.utils.test.Assertions;
@@ -83,15 +85,32 @@ public class ImageUtils {
     private static final double DEG_315_IN_RADIANS = Math.PI / 4;
     private static final Color CHECKERBOARD_GRAY = new Color(200, 200, 200);
 
-    private static final GraphicsConfiguration graphicsConfig = GraphicsEnvironment
-        .getLocalGraphicsEnvironment()
-        .getDefaultScreenDevice()
-        .getDefaultConfiguration();
-    private static final ColorModel defaultColorModel = graphicsConfig.getColorModel();
+    // null in headless mode (batch processing without a GUI)
+    private static final GraphicsConfiguration graphicsConfig = findGraphicsConfig();
+    private static final ColorModel defaultColorModel = graphicsConfig != null
+        ? graphicsConfig.getColorModel()
+        : ColorModel.getRGBdefault();
 
     private ImageUtils() {
     }
 
+    private static GraphicsConfiguration findGraphicsConfig() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+        return GraphicsEnvironment
+            .getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice()
+            .getDefaultConfiguration();
+    }
+
+    private static BufferedImage createTranslucentImage(int width, int height) {
+        if (graphicsConfig == null) {
+            return new BufferedImage(width, height, TYPE_INT_ARGB);
+        }
+        return graphicsConfig.createCompatibleImage(width, height, TRANSLUCENT);
+    }
+
     public static CheckerboardPainter createCheckerboardPainter() {
         // return a different instance for each painting
         // scenario, because the painters use cached images
@@ -108,8 +127,8 @@ public class ImageUtils {
             }
         }
 
-        BufferedImage output = graphicsConfig.createCompatibleImage(
-            input.getWidth(), input.getHeight(), TRANSLUCENT);
+        BufferedImage output = createTranslucentImage(
+            input.getWidth(), input.getHeight());
         Graphics2D g = output.createGraphics();
         g.drawImage(input, 0, 0, null);
         g.dispose();
@@ -124,7 +143,7 @@ public class ImageUtils {
     public static BufferedImage createSysCompatibleImage(int width, int height) {
         assert width > 0 && height > 0;
 
-        return graphicsConfig.createCompatibleImage(width, height, TRANSLUCENT);
+        return createTranslucentImage(width, height);
     }
 
     public static VolatileImage createSysCompatibleVolatileImage(Canvas canvas) {
@@ -1421,7 +1440,9 @@ public class ImageUtils {
     public static BufferedImage calcComposite(List<Layer> layers, Canvas canvas) {
         if (layers.size() == 1) { // optimization for single-layer compositions
             Layer layer = layers.getFirst();
-            if (Tools.activeTool.isDirectDrawing() && layer.isVisible()) {
+            // there is no active tool when running without a GUI
+            Tool tool = Tools.activeTool;
+            if ((tool == null || tool.isDirectDrawing()) && layer.isVisible()) {
                 BufferedImage layerImg = layer.toImage(true, true);
 
                 // it can be null if there's a single adjustment layer
@@ -1433,20 +1454,49 @@ public class ImageUtils {
 
         var compositeImg = new BufferedImage(
             canvas.getWidth(), canvas.getHeight(), TYPE_INT_ARGB_PRE);
+        BufferedImage createdImg = compositeImg;
         Graphics2D g = compositeImg.createGraphics();
 
         // the first visible layer is always applied with normal blending mode
         boolean firstVisibleLayer = true;
-        for (Layer layer : layers) {
+
+        // the last in-place change of the layers below the current one,
+        // which together with the composition's version identifies
+        // the input of the cached adjustment layer outputs
+        long inputStamp = 0;
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
             if (!layer.isVisible()) {
                 continue;
             }
-            BufferedImage result = layer.render(g, compositeImg, firstVisibleLayer);
+            if (!firstVisibleLayer && compositeImg.getType() == TYPE_INT_ARGB_PRE) {
+                // apply the stacked color adjustments in a single pass
+                int fusedEnd = AdjustmentLayer.findFusableRunEnd(layers, i);
+                if (fusedEnd > i) {
+                    // only the image created here can be safely overwritten
+                    compositeImg = AdjustmentLayer.applyFused(layers, i, fusedEnd,
+                        compositeImg, compositeImg == createdImg, inputStamp);
+                    g.dispose();
+                    g = compositeImg.createGraphics();
+                    for (int j = i; j < fusedEnd; j++) {
+                        inputStamp = Math.max(inputStamp, layers.get(j).getRegionChangeStamp());
+                    }
+                    i = fusedEnd - 1;
+                    continue;
+                }
+            }
+            BufferedImage result;
+            if (!firstVisibleLayer && layer instanceof AdjustmentLayer adjLayer) {
+                result = adjLayer.renderCached(compositeImg, inputStamp);
+            } else {
+                result = layer.render(g, compositeImg, firstVisibleLayer);
+            }
             if (result != null) { // adjustment layer or watermarking text layer
                 compositeImg = result;
                 g.dispose();
                 g = compositeImg.createGraphics();
             }
+            inputStamp = Math.max(inputStamp, layer.getRegionChangeStamp());
             firstVisibleLayer = false;
         }
 
@@ -1454,6 +1504,34 @@ public class ImageUtils {
         return compositeImg;
     }
 
+    /**
+     * Recalculates only the given region of a composite image
+     * that was previously created by {@link #calcComposite(List, Canvas)}.
+     * The layers must all be able to render a region,
+     * see {@link Layer#canRenderRegion()}.
+     */
+    public static void recalcCompositeRegion(BufferedImage compositeImg,
+                                             List<Layer> layers,
+                                             Rectangle region) {
+        Graphics2D g = compositeImg.createGraphics();
+        g.setClip(region);
+
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(region.x, region.y, region.width, region.height);
+
+        boolean firstVisibleLayer = true;
+        for (Layer layer : layers) {
+            if (!layer.isVisible()) {
+                continue;
+            }
+            BufferedImage result = layer.render(g, compositeImg, firstVisibleLayer);
+            assert result == null || result == compositeImg : "layer = " + layer.getName();
+            firstVisibleLayer = false;
+        }
+
+        g.dispose();
+    }
+
     public static BufferedImage createCircleThumb(Color color) {
         BufferedImage img = createSysCompatibleImage(thumbSize, thumbSize);
         Graphics2D g2 = img.createGraphics();
@@ -17,6 +17,8 @@
 
 package pixelitor.utils;
 
+import pixelitor.history.History;
+
 import static java.lang.String.format;
 
 public class MemoryInfo {
@@ -26,6 +28,10 @@ public class MemoryInfo {
     private final long totalMemoryMB;
     private final long usedMemoryMB;
     private final long maxMemoryMB;
+    private final long historyMemoryMB;
+    private final long historyInMemoryMB;
+    private final long historyOnDiskMB;
+    private final long renderCacheMB;
 
     public MemoryInfo() {
         Runtime runtime = Runtime.getRuntime();
@@ -39,9 +45,14 @@ public class MemoryInfo {
         totalMemoryMB = totalMemory / NUM_BYTES_IN_MEGABYTE;
         usedMemoryMB = usedMemory / NUM_BYTES_IN_MEGABYTE;
         maxMemoryMB = maxMemory / NUM_BYTES_IN_MEGABYTE;
+
+        historyMemoryMB = History.getMemoryFootprint() / NUM_BYTES_IN_MEGABYTE;
+        historyInMemoryMB = TileStore.getMemoryUsed() / NUM_BYTES_IN_MEGABYTE;
+        historyOnDiskMB = TileStore.getSpilledBytes() / NUM_BYTES_IN_MEGABYTE;
+        renderCacheMB = RenderCache.getMemoryUsed() / NUM_BYTES_IN_MEGABYTE;
     }
 
-    public static String bytesToString(int bytes) {
+    public static String bytesToString(long bytes) {
         if (bytes < NUM_BYTES_IN_KILOBYTE) {
             return bytes + " bytes";
         } else if (bytes < NUM_BYTES_IN_MEGABYTE) {
@@ -79,13 +90,31 @@ public class MemoryInfo {
         return maxMemoryMB + " megabytes";
     }
 
+    /**
+     * Returns the memory used by the undo history, as if the image backups
+     * were uncompressed, and how much of the backups are actually
+     * kept in memory and in the temporary file.
+     */
+    public String getHistoryMemory() {
+        return format("%d megabytes (backups: %d in memory, %d on disk)",
+            historyMemoryMB, historyInMemoryMB, historyOnDiskMB);
+    }
+
+    /**
+     * Returns the memory used by the images cached for the rendering.
+     */
+    public String getRenderCacheMemory() {
+        return format("%d megabytes (budget: %d)",
+            renderCacheMB, RenderCache.getMemoryBudgetMb());
+    }
+
     public long getAvailableMemoryMB() {
         return maxMemoryMB - usedMemoryMB;
     }
 
     @Override
     public String toString() {
-        return format("allocated = %d, used = %d, free = %d, max = %d",
-            totalMemoryMB, usedMemoryMB, freeMemoryMB, maxMemoryMB);
+        return format("allocated = %d, used = %d, free = %d, max = %d, history = %d, render cache = %d",
+            totalMemoryMB, usedMemoryMB, freeMemoryMB, maxMemoryMB, historyMemoryMB, renderCacheMB);
     }
 }
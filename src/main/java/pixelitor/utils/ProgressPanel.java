@@ -45,7 +45,7 @@ public class ProgressPanel extends JPanel {
     }
 
     public void showProgressBar() {
-        cardLayout.next(this);
+        cardLayout.last(this);
     }
 
     public void hideProgressBar() {
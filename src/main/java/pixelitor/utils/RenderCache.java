@@ -0,0 +1,300 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.utils;
+
+import pixelitor.utils.debug.DebugNode;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Keeps the images that are cached only to speed up the rendering
+ * (for example the composite images of the isolated layer groups
+ * or the outputs of the smart filters) within a memory budget.
+ * <p>
+ * The owners of such images keep them in {@link Entry} objects.
+ * When the budget is exceeded, the least recently used images
+ * are evicted, and the owners recalculate them when they need them
+ * again. The cache doesn't keep the entries alive, it tracks
+ * them with weak references, so that their images can be garbage
+ * collected together with their owners. An image shared by several
+ * entries (for example by a layer and its copies) is counted only once.
+ */
+public final class RenderCache {
+    // guards all the mutable state of the cache and of the entries
+    private static final Object lock = new Object();
+
+    private static final ReferenceQueue<Entry> deadEntries = new ReferenceQueue<>();
+
+    // the entries with an image in least recently used order
+    private static final Set<EntryRef> usedEntries = new LinkedHashSet<>();
+
+    // the number of entries using each image
+    private static final Map<BufferedImage, Integer> imageUsers = new IdentityHashMap<>();
+
+    private static long bytesUsed;
+    private static long memoryBudget = (long) AppPreferences.loadRenderCacheMemoryMb()
+        * MemoryInfo.NUM_BYTES_IN_MEGABYTE;
+
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+
+    private RenderCache() {
+        throw new AssertionError("utility class");
+    }
+
+    /**
+     * A cached image owned by a layer or some other rendering object.
+     * The image can disappear at any time between two calls,
+     * therefore the callers must keep the returned image in a
+     * local variable, and recalculate it if it's null.
+     */
+    public static final class Entry {
+        private final EntryRef ref;
+
+        private Entry(String type) {
+            ref = new EntryRef(this, type);
+        }
+
+        /**
+         * Returns the cached image, or null if there is no cached image.
+         */
+        public BufferedImage get() {
+            synchronized (lock) {
+                expungeDeadEntries();
+                if (ref.image == null) {
+                    misses++;
+                    return null;
+                }
+                hits++;
+                // move it to the end, the most recently used position
+                usedEntries.remove(ref);
+                usedEntries.add(ref);
+                return ref.image;
+            }
+        }
+
+        /**
+         * Returns the cached image without counting it as a use.
+         */
+        public BufferedImage peek() {
+            synchronized (lock) {
+                return ref.image;
+            }
+        }
+
+        public boolean isEmpty() {
+            return peek() == null;
+        }
+
+        /**
+         * Replaces the cached image, which can also be null.
+         * The least recently used images of the other entries
+         * are evicted if the new image doesn't fit into the budget.
+         */
+        public void set(BufferedImage image) {
+            synchronized (lock) {
+                expungeDeadEntries();
+                if (image == ref.image) {
+                    return;
+                }
+                release(ref);
+                if (image != null) {
+                    ref.image = image;
+                    acquire(image);
+                    usedEntries.add(ref);
+                    evictIfNeeded(ref);
+                }
+            }
+        }
+
+        /**
+         * Discards the cached image.
+         */
+        public void clear() {
+            set(null);
+        }
+    }
+
+    // tracks an entry without keeping it alive, and it also keeps
+    // its image, so that it can be released after the entry is gone
+    private static final class EntryRef extends WeakReference<Entry> {
+        private final String type;
+        private BufferedImage image;
+
+        private EntryRef(Entry entry, String type) {
+            super(entry, deadEntries);
+            this.type = type;
+        }
+    }
+
+    /**
+     * Creates an empty entry. The type describes
+     * the owner of the entry in the debug information.
+     */
+    public static Entry createEntry(String type) {
+        return new Entry(type);
+    }
+
+    private static void acquire(BufferedImage image) {
+        if (imageUsers.merge(image, 1, Integer::sum) == 1) {
+            bytesUsed += calcImageBytes(image);
+        }
+    }
+
+    // removes the image from the entry, and releases
+    // the image if no other entry uses it
+    private static void release(EntryRef ref) {
+        BufferedImage image = ref.image;
+        if (image == null) {
+            return;
+        }
+        ref.image = null;
+        usedEntries.remove(ref);
+        int numUsers = imageUsers.merge(image, -1, Integer::sum);
+        if (numUsers == 0) {
+            imageUsers.remove(image);
+            bytesUsed -= calcImageBytes(image);
+        }
+    }
+
+    // the entry that was just set is never evicted, even if
+    // its image is larger than the whole budget
+    private static void evictIfNeeded(EntryRef keep) {
+        while (bytesUsed > memoryBudget) {
+            EntryRef leastRecentlyUsed = null;
+            for (EntryRef ref : usedEntries) {
+                if (ref != keep) {
+                    leastRecentlyUsed = ref;
+                    break;
+                }
+            }
+            if (leastRecentlyUsed == null) {
+                return;
+            }
+            release(leastRecentlyUsed);
+            evictions++;
+        }
+    }
+
+    // releases the images of the entries that were garbage collected
+    private static void expungeDeadEntries() {
+        EntryRef ref;
+        while ((ref = (EntryRef) deadEntries.poll()) != null) {
+            release(ref);
+        }
+    }
+
+    private static long calcImageBytes(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks()
+            * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Sets the maximum memory in megabytes used by the cached images.
+     */
+    public static void setMemoryBudgetMb(int megaBytes) {
+        synchronized (lock) {
+            memoryBudget = (long) megaBytes * MemoryInfo.NUM_BYTES_IN_MEGABYTE;
+            expungeDeadEntries();
+            evictIfNeeded(null);
+        }
+    }
+
+    public static int getMemoryBudgetMb() {
+        synchronized (lock) {
+            return (int) (memoryBudget / MemoryInfo.NUM_BYTES_IN_MEGABYTE);
+        }
+    }
+
+    /**
+     * Returns the memory in bytes used by the cached images.
+     */
+    public static long getMemoryUsed() {
+        synchronized (lock) {
+            expungeDeadEntries();
+            return bytesUsed;
+        }
+    }
+
+    public static long getNumHits() {
+        synchronized (lock) {
+            return hits;
+        }
+    }
+
+    public static long getNumMisses() {
+        synchronized (lock) {
+            return misses;
+        }
+    }
+
+    public static long getNumEvictions() {
+        synchronized (lock) {
+            return evictions;
+        }
+    }
+
+    /**
+     * Discards all cached images and resets the counters.
+     */
+    public static void clear() {
+        synchronized (lock) {
+            expungeDeadEntries();
+            for (EntryRef ref : new ArrayList<>(usedEntries)) {
+                release(ref);
+            }
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
+
+    public static DebugNode createDebugNode(String key) {
+        synchronized (lock) {
+            expungeDeadEntries();
+            DebugNode node = new DebugNode(key, RenderCache.class);
+
+            node.addString("memory used", MemoryInfo.bytesToString(bytesUsed));
+            node.addString("memory budget", MemoryInfo.bytesToString(memoryBudget));
+            node.addInt("cached images", imageUsers.size());
+            node.addString("hits", String.valueOf(hits));
+            node.addString("misses", String.valueOf(misses));
+            node.addString("evictions", String.valueOf(evictions));
+
+            // the entries grouped by their types, each
+            // group in least recently used order
+            Map<String, DebugNode> typeNodes = new TreeMap<>();
+            for (EntryRef ref : usedEntries) {
+                DebugNode typeNode = typeNodes.computeIfAbsent(ref.type,
+                    type -> new DebugNode(type, type));
+                BufferedImage image = ref.image;
+                typeNode.addString("entry " + typeNode.getChildCount(),
+                    image.getWidth() + "x" + image.getHeight() + ", "
+                        + MemoryInfo.bytesToString(calcImageBytes(image)));
+            }
+            typeNodes.values().forEach(node::add);
+
+            return node;
+        }
+    }
+}
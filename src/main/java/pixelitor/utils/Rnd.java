@@ -45,6 +45,14 @@ public class Rnd {
         // do not instantiate
     }
 
+    /**
+     * Makes the following random values reproducible,
+     * for example in tests and benchmarks.
+     */
+    public static void setSeed(long seed) {
+        rand.setSeed(seed);
+    }
+
     public static int chooseFrom(int[] items) {
         return items[rand.nextInt(items.length)];
     }
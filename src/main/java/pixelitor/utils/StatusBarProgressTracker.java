@@ -17,30 +17,91 @@
 
 package pixelitor.utils;
 
+import java.util.concurrent.CancellationException;
+
 /**
  * Tracks the progress of some operation and shows a
  * status bar update if it takes a long time.
+ * <p>
+ * Filter previews that are computed outside the EDT can redirect
+ * the progress of the trackers created by their thread
+ * to a progress panel in the filter dialog, and the
+ * interruption of such a thread cancels the operation.
  */
 public class StatusBarProgressTracker extends ThresholdProgressTracker {
+    private static final ThreadLocal<PreviewThread> previewThread = new ThreadLocal<>();
+
+    // the progress panel can be null even for preview threads
+    private record PreviewThread(ProgressPanel progressPanel) {
+    }
+
+    // if not null, the progress is shown here instead of the status bar
+    private final ProgressPanel progressPanel;
+
+    // true if the tracker was created by a preview thread
+    private final boolean cancelOnInterrupt;
+
     private ProgressHandler progressHandler;
 
     public StatusBarProgressTracker(String opName, int numTotalUnits) {
         super(opName, numTotalUnits);
         assert opName != null;
+
+        PreviewThread preview = previewThread.get();
+        progressPanel = preview == null ? null : preview.progressPanel();
+        cancelOnInterrupt = preview != null;
+    }
+
+    /**
+     * Marks the current thread as a filter preview thread. The progress
+     * of the trackers created later by it is shown in the given panel,
+     * if it's not null, and their operations are canceled when the thread
+     * is interrupted, because a newer preview made them unnecessary.
+     */
+    public static void startPreviewThread(ProgressPanel panel) {
+        previewThread.set(new PreviewThread(panel));
+    }
+
+    /**
+     * Reverts the effect of {@link #startPreviewThread(ProgressPanel)}.
+     */
+    public static void endPreviewThread() {
+        previewThread.remove();
+    }
+
+    @Override
+    protected void checkCanceled() {
+        if (cancelOnInterrupt && Thread.currentThread().isInterrupted()) {
+            finished();
+            throw new CancellationException(opName + " was interrupted");
+        }
     }
 
     @Override
     protected void onProgressStart() {
+        if (progressPanel != null) {
+            progressPanel.setProgress(0);
+            progressPanel.showProgressBar();
+            return;
+        }
         progressHandler = Messages.startProgress(opName, 100);
     }
 
     @Override
     protected void onProgressUpdate(int percentComplete) {
+        if (progressPanel != null) {
+            progressPanel.setProgress(percentComplete);
+            return;
+        }
         progressHandler.updateProgress(percentComplete);
     }
 
     @Override
     protected void onProgressComplete() {
+        if (progressPanel != null) {
+            progressPanel.hideProgressBar();
+            return;
+        }
         progressHandler.stopProgress();
         progressHandler = null;
     }
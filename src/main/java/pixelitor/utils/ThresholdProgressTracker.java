@@ -18,6 +18,7 @@
 package pixelitor.utils;
 
 import java.awt.EventQueue;
+import java.util.concurrent.CancellationException;
 
 /**
  * Base class for progress trackers that only show visual feedback
@@ -63,6 +64,8 @@ public abstract class ThresholdProgressTracker implements ProgressTracker {
     }
 
     private void update() {
+        checkCanceled();
+
         // Check if we should start showing progress
         if (!isTrackingVisible) {
             double elapsedTime = System.currentTimeMillis() - startTimeMillis;
@@ -103,6 +106,13 @@ public abstract class ThresholdProgressTracker implements ProgressTracker {
         }
     }
 
+    /**
+     * Called before each progress update. Subclasses can throw a
+     * {@link CancellationException} here if the result is no longer needed.
+     */
+    protected void checkCanceled() {
+    }
+
     /**
      * Called when progress tracking should become visible.
      * This is called on the EDT after the time threshold is exceeded.
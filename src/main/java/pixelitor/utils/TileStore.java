@@ -0,0 +1,632 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.nio.file.StandardOpenOption.DELETE_ON_CLOSE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Keeps the pixels of the {@link ImageTiles} history snapshots
+ * within a memory budget.
+ * <p>
+ * When the budget is exceeded, the least recently used tiles are
+ * compressed in the background, and if that isn't enough, then the
+ * oldest compressed tiles are moved into a temporary file. The tiles
+ * are decompressed or loaded back transparently when they are needed.
+ * <p>
+ * The store doesn't keep the tiles alive: they are owned by the snapshots,
+ * and the store only tracks them with weak references, so that their memory
+ * and file space is reclaimed after the snapshots are gone.
+ */
+public final class TileStore {
+    // guards all the mutable state of the store and of the tiles,
+    // except for the spill file, and it's never held during file I/O
+    private static final Object lock = new Object();
+
+    // guards the spill file and the file offsets of the tiles, and it's held
+    // during file I/O. The lock can be acquired while holding it, but not the
+    // other way around, so that the users of the in-memory tiles never wait for the disk.
+    private static final Object fileLock = new Object();
+
+    private static final ReferenceQueue<Tile> deadTiles = new ReferenceQueue<>();
+
+    // the tracked tiles in least recently used order
+    private static final Set<TileRef> uncompressedTiles = new LinkedHashSet<>();
+    private static final Set<TileRef> compressedTiles = new LinkedHashSet<>();
+    private static final Set<TileRef> spilledTiles = new HashSet<>();
+
+    private static long uncompressedBytes;
+    private static long compressedBytes;
+    private static long spilledBytes;
+
+    private static long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+
+    // the spill file, created only when it's first needed
+    private static FileChannel spillFile;
+    private static boolean spillingFailed;
+
+    // changed while holding both locks, so it can be read while holding either
+    private static long spillFileEnd;
+
+    // the spill file is compacted if its unused space is larger than this
+    // and also larger than the space used by the tiles
+    private static final long MIN_COMPACTED_GARBAGE = 64L * 1024 * 1024;
+
+    // a single background thread that compresses and spills the tiles
+    private static final ExecutorService trimmer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "HistoryTileStore");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private static boolean trimScheduled;
+    private static boolean compactionScheduled;
+
+    private enum State {UNCOMPRESSED, COMPRESSED, SPILLED, REMOVED}
+
+    private TileStore() {
+        throw new AssertionError("utility class");
+    }
+
+    /**
+     * The immutable pixels of a tile, stored as packed int or
+     * gray byte pixels, in memory, compressed or in the spill file.
+     */
+    static final class Tile {
+        private final int length;
+        private final boolean bytePixels;
+        private final int hash;
+        private final TileRef ref;
+
+        // exactly one of these is non-null, unless the tile is spilled
+        private Object pixels;
+        private byte[] compressed;
+
+        private Tile(Object pixels, int hash) {
+            this.pixels = pixels;
+            this.hash = hash;
+            if (pixels instanceof int[] intPixels) {
+                length = intPixels.length;
+                bytePixels = false;
+            } else {
+                length = ((byte[]) pixels).length;
+                bytePixels = true;
+            }
+            ref = new TileRef(this, getSizeInBytes());
+        }
+
+        /**
+         * Returns the pixels as an int[] or byte[] array,
+         * which must not be modified by the caller.
+         * A compressed or spilled tile is kept in memory again.
+         */
+        Object getPixels() {
+            byte[] data;
+            synchronized (lock) {
+                expungeDeadTiles();
+                if (ref.state == State.UNCOMPRESSED) {
+                    touch(uncompressedTiles, ref);
+                    return pixels;
+                }
+                data = compressed; // null if the tile is spilled
+            }
+            if (data == null) {
+                data = readSpilled(this);
+                if (data == null) {
+                    // restored by another thread in the meantime
+                    return getPixels();
+                }
+            }
+
+            // decompress without holding the lock
+            Object decompressed = decompress(this, data);
+
+            synchronized (lock) {
+                if (ref.state == State.UNCOMPRESSED) {
+                    // restored by another thread in the meantime
+                    touch(uncompressedTiles, ref);
+                    return pixels;
+                }
+                removeFromCurrentState(ref);
+                pixels = decompressed;
+                compressed = null;
+                ref.state = State.UNCOMPRESSED;
+                uncompressedTiles.add(ref);
+                uncompressedBytes += ref.size;
+                scheduleTrimIfNeeded();
+                return pixels;
+            }
+        }
+
+        /**
+         * Returns true if the tile contains exactly the given int[] or byte[] pixels.
+         * A compressed or spilled tile is compared with a temporary copy of its
+         * pixels, and it isn't kept in memory again.
+         */
+        boolean hasPixels(Object otherPixels, int otherHash) {
+            if (otherHash != hash) {
+                return false;
+            }
+            Object ownPixels;
+            byte[] data;
+            synchronized (lock) {
+                expungeDeadTiles();
+                ownPixels = ref.state == State.UNCOMPRESSED ? pixels : null;
+                data = compressed; // null if the tile is spilled
+            }
+            if (ownPixels == null) {
+                if (data == null) {
+                    data = readSpilled(this);
+                    if (data == null) {
+                        // restored by another thread in the meantime
+                        return hasPixels(otherPixels, otherHash);
+                    }
+                }
+                ownPixels = decompress(this, data);
+            }
+
+            if (ownPixels instanceof int[] intPixels) {
+                return otherPixels instanceof int[] other && Arrays.equals(intPixels, other);
+            }
+            return otherPixels instanceof byte[] other && Arrays.equals((byte[]) ownPixels, other);
+        }
+
+        /**
+         * Returns true if the tile's pixels have the given hash, which
+         * can be checked without restoring a compressed or spilled tile.
+         */
+        boolean hasHash(int otherHash) {
+            return otherHash == hash;
+        }
+
+        long getSizeInBytes() {
+            return bytePixels ? length : 4L * length;
+        }
+    }
+
+    // tracks a tile without keeping it alive, and it also remembers
+    // the accounted sizes after the tile has been garbage collected
+    private static final class TileRef extends WeakReference<Tile> {
+        private final long size;
+        private State state = State.UNCOMPRESSED;
+        private int storedSize; // the compressed size
+        private long fileOffset; // guarded by the file lock
+
+        private TileRef(Tile tile, long size) {
+            super(tile, deadTiles);
+            this.size = size;
+        }
+    }
+
+    /**
+     * Creates a tile from the given int[] or byte[] pixels, which must
+     * not be modified afterward. The hash must be calculated by {@link #hashPixels(Object)}.
+     */
+    static Tile createTile(Object pixels, int hash) {
+        Tile tile = new Tile(pixels, hash);
+        synchronized (lock) {
+            expungeDeadTiles();
+            uncompressedTiles.add(tile.ref);
+            uncompressedBytes += tile.ref.size;
+            scheduleTrimIfNeeded();
+        }
+        return tile;
+    }
+
+    /**
+     * Returns the hash code of the given int[] or byte[] pixels,
+     * as it's used by {@link Tile#hasPixels(Object, int)}.
+     */
+    static int hashPixels(Object pixels) {
+        if (pixels instanceof int[] intPixels) {
+            return Arrays.hashCode(intPixels);
+        }
+        return Arrays.hashCode((byte[]) pixels);
+    }
+
+    private static void touch(Set<TileRef> lruSet, TileRef ref) {
+        // move it to the end, the most recently used position
+        lruSet.remove(ref);
+        lruSet.add(ref);
+    }
+
+    // can be called on several threads at the same time, without holding the lock
+    private static Object decompress(Tile tile, byte[] data) {
+        Inflater inflater = new Inflater();
+        byte[] bytes = new byte[(int) tile.getSizeInBytes()];
+        try {
+            inflater.setInput(data);
+            int offset = 0;
+            while (offset < bytes.length) {
+                int count = inflater.inflate(bytes, offset, bytes.length - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("truncated tile data");
+                }
+                offset += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+
+        if (tile.bytePixels) {
+            return bytes;
+        }
+        int[] intPixels = new int[tile.length];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(intPixels);
+        return intPixels;
+    }
+
+    private static byte[] compress(Object pixels, Deflater deflater) {
+        byte[] bytes;
+        if (pixels instanceof int[] intPixels) {
+            bytes = new byte[intPixels.length * 4];
+            ByteBuffer.wrap(bytes).asIntBuffer().put(intPixels);
+        } else {
+            bytes = (byte[]) pixels;
+        }
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        var out = new ByteArrayOutputStream(bytes.length / 4);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    // releases the accounting of the tiles that were garbage collected
+    private static void expungeDeadTiles() {
+        TileRef ref;
+        while ((ref = (TileRef) deadTiles.poll()) != null) {
+            removeFromCurrentState(ref);
+        }
+    }
+
+    private static void removeFromCurrentState(TileRef ref) {
+        switch (ref.state) {
+            case UNCOMPRESSED -> {
+                uncompressedTiles.remove(ref);
+                uncompressedBytes -= ref.size;
+            }
+            case COMPRESSED -> {
+                compressedTiles.remove(ref);
+                compressedBytes -= ref.storedSize;
+            }
+            case SPILLED -> {
+                spilledTiles.remove(ref);
+                spilledBytes -= ref.storedSize;
+                scheduleCompactionIfNeeded();
+            }
+            case REMOVED -> {
+                // already removed
+            }
+        }
+        ref.state = State.REMOVED;
+    }
+
+    private static void scheduleTrimIfNeeded() {
+        if (!trimScheduled && getMemoryUsed() > memoryBudget) {
+            trimScheduled = true;
+            trimmer.execute(() -> {
+                synchronized (lock) {
+                    trimScheduled = false;
+                }
+                trim();
+            });
+        }
+    }
+
+    /**
+     * Compresses and spills the least recently used tiles until the
+     * memory used by the tiles is well within the budget. Normally
+     * this runs in the background, but it can be also called directly.
+     */
+    public static void trim() {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            while (trimStep(deflater)) {
+                // continue until within the budget
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // compresses or spills a single tile, and
+    // returns false if nothing more should be done
+    private static boolean trimStep(Deflater deflater) {
+        Tile tile;
+        Object pixels;
+        synchronized (lock) {
+            expungeDeadTiles();
+            // trim to a lower level to avoid frequent trimming
+            if (getMemoryUsed() <= memoryBudget / 4 * 3) {
+                return false;
+            }
+            if (uncompressedTiles.isEmpty()) {
+                tile = null;
+                pixels = null;
+            } else {
+                TileRef oldest = uncompressedTiles.iterator().next();
+                tile = oldest.get();
+                if (tile == null) { // not yet enqueued
+                    removeFromCurrentState(oldest);
+                    return true;
+                }
+                pixels = tile.pixels;
+            }
+        }
+        if (tile == null) {
+            return spillOldest();
+        }
+
+        // compress without holding the lock
+        byte[] compressed = compress(pixels, deflater);
+
+        synchronized (lock) {
+            TileRef ref = tile.ref;
+            if (ref.state == State.UNCOMPRESSED && tile.pixels == pixels) {
+                removeFromCurrentState(ref);
+                tile.pixels = null;
+                tile.compressed = compressed;
+                ref.state = State.COMPRESSED;
+                ref.storedSize = compressed.length;
+                compressedTiles.add(ref);
+                compressedBytes += compressed.length;
+            }
+        }
+        return true;
+    }
+
+    // moves the oldest compressed tile into the spill file
+    private static boolean spillOldest() {
+        synchronized (fileLock) {
+            Tile tile;
+            byte[] data;
+            synchronized (lock) {
+                if (compressedTiles.isEmpty() || spillingFailed) {
+                    return false;
+                }
+                TileRef oldest = compressedTiles.iterator().next();
+                tile = oldest.get();
+                if (tile == null) {
+                    removeFromCurrentState(oldest);
+                    return true;
+                }
+                data = tile.compressed;
+            }
+
+            // write at the end of the file without holding the lock,
+            // the tile remains readable from memory in the meantime
+            long offset = spillFileEnd;
+            try {
+                if (spillFile == null) {
+                    Path path = Files.createTempFile("pixelitor-history", ".tiles");
+                    // on most systems the file is deleted right away, and
+                    // the space is reclaimed when the channel is closed
+                    spillFile = FileChannel.open(path, READ, WRITE, DELETE_ON_CLOSE);
+                }
+                writeFully(data, offset);
+            } catch (IOException e) {
+                spillingFailed = true;
+                Messages.showException(e);
+                return false;
+            }
+
+            synchronized (lock) {
+                TileRef ref = tile.ref;
+                if (ref.state == State.COMPRESSED && tile.compressed == data) {
+                    removeFromCurrentState(ref);
+                    tile.compressed = null;
+                    ref.state = State.SPILLED;
+                    ref.storedSize = data.length;
+                    ref.fileOffset = offset;
+                    spillFileEnd = offset + data.length;
+                    spilledTiles.add(ref);
+                    spilledBytes += data.length;
+                }
+                // otherwise it was restored in the meantime, and
+                // the written data is overwritten by the next tile
+            }
+            return true;
+        }
+    }
+
+    // returns the compressed data of a spilled tile,
+    // or null if it's no longer spilled
+    private static byte[] readSpilled(Tile tile) {
+        synchronized (fileLock) {
+            int size;
+            synchronized (lock) {
+                if (tile.ref.state != State.SPILLED) {
+                    return null;
+                }
+                size = tile.ref.storedSize;
+            }
+            // the tile can be restored by another thread while it's read,
+            // but its data isn't overwritten without holding the file lock
+            try {
+                return readFully(size, tile.ref.fileOffset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static byte[] readFully(int size, long position) throws IOException {
+        assert Thread.holdsLock(fileLock);
+
+        byte[] data = new byte[size];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            int count = spillFile.read(buffer, position + buffer.position());
+            if (count < 0) {
+                throw new IOException("unexpected end of the spill file");
+            }
+        }
+        return data;
+    }
+
+    private static void writeFully(byte[] data, long position) throws IOException {
+        assert Thread.holdsLock(fileLock);
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            spillFile.write(buffer, position + buffer.position());
+        }
+    }
+
+    // called after a spilled tile was removed from the file,
+    // the compaction itself runs on the background thread
+    private static void scheduleCompactionIfNeeded() {
+        assert Thread.holdsLock(lock);
+
+        if (!compactionScheduled && isCompactionNeeded()) {
+            compactionScheduled = true;
+            trimmer.execute(TileStore::compactSpillFile);
+        }
+    }
+
+    private static boolean isCompactionNeeded() {
+        if (spilledTiles.isEmpty()) {
+            return spillFileEnd > 0;
+        }
+        long garbage = spillFileEnd - spilledBytes;
+        return garbage > MIN_COMPACTED_GARBAGE && garbage > spilledBytes;
+    }
+
+    private record SpilledData(TileRef ref, int size) {
+    }
+
+    // moves the spilled tiles to the beginning of the file, in their file order
+    private static void compactSpillFile() {
+        synchronized (fileLock) {
+            // the sizes are copied, because a tile can be restored
+            // and compressed again while the file is compacted
+            List<SpilledData> spilled = new ArrayList<>();
+            synchronized (lock) {
+                compactionScheduled = false;
+                if (!isCompactionNeeded()) {
+                    return;
+                }
+                for (TileRef ref : spilledTiles) {
+                    spilled.add(new SpilledData(ref, ref.storedSize));
+                }
+            }
+            spilled.sort(Comparator.comparingLong(data -> data.ref().fileOffset));
+
+            // the tiles removed in the meantime are also moved, but
+            // the space they use is released by the next compaction
+            try {
+                long writePos = 0;
+                for (SpilledData data : spilled) {
+                    TileRef ref = data.ref();
+                    if (ref.fileOffset != writePos) {
+                        // the tile is never moved forward, so it can't overwrite unread tiles
+                        writeFully(readFully(data.size(), ref.fileOffset), writePos);
+                        ref.fileOffset = writePos;
+                    }
+                    writePos += data.size();
+                }
+                spillFile.truncate(writePos);
+                synchronized (lock) {
+                    spillFileEnd = writePos;
+                }
+            } catch (IOException e) {
+                spillingFailed = true;
+                Messages.showException(e);
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum memory in bytes used by the uncompressed
+     * and compressed tiles that are kept in memory.
+     */
+    public static void setMemoryBudget(long bytes) {
+        synchronized (lock) {
+            memoryBudget = bytes;
+            scheduleTrimIfNeeded();
+        }
+    }
+
+    public static long getMemoryBudget() {
+        synchronized (lock) {
+            return memoryBudget;
+        }
+    }
+
+    /**
+     * Returns the memory in bytes used by the tiles that are kept in memory.
+     */
+    public static long getMemoryUsed() {
+        synchronized (lock) {
+            return uncompressedBytes + compressedBytes;
+        }
+    }
+
+    public static long getUncompressedBytes() {
+        synchronized (lock) {
+            return uncompressedBytes;
+        }
+    }
+
+    public static long getCompressedBytes() {
+        synchronized (lock) {
+            return compressedBytes;
+        }
+    }
+
+    /**
+     * Returns the bytes used by the tiles that were moved into the spill file.
+     */
+    public static long getSpilledBytes() {
+        synchronized (lock) {
+            return spilledBytes;
+        }
+    }
+
+    public static int getNumTiles() {
+        synchronized (lock) {
+            expungeDeadTiles();
+            return uncompressedTiles.size() + compressedTiles.size() + spilledTiles.size();
+        }
+    }
+}
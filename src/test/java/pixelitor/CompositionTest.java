@@ -20,8 +20,13 @@ package pixelitor;
 import org.junit.jupiter.api.*;
 import pixelitor.compactions.Crop;
 import pixelitor.history.History;
+import pixelitor.layers.ImageLayer;
 import pixelitor.layers.Layer;
+import pixelitor.tools.util.PRectangle;
+import pixelitor.utils.ImageUtils;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 
@@ -575,6 +580,23 @@ class CompositionTest {
             .thirdLayerIsActive();
     }
 
+    @Test
+    void repaintRegionUpdatesComposite() {
+        // make sure that there is a cached composite image
+        comp.getCompositeImage();
+
+        var layer = (ImageLayer) comp.getLayer(1);
+        Graphics2D g = layer.getImage().createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(2, 3, 5, 4);
+        g.dispose();
+        comp.repaintRegion(PRectangle.fromIm(2, 3, 5, 4, comp.getView()));
+        var regionallyUpdated = ImageUtils.copyImage(comp.getCompositeImage());
+
+        comp.invalidateImageCache();
+        assertThat(regionallyUpdated).hasSamePixelsAs(comp.getCompositeImage());
+    }
+
     @Test
     void isActive() {
         Layer layer1 = comp.getLayer(0);
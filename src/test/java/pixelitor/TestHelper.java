@@ -404,6 +404,14 @@ public class TestHelper {
     }
 
     public static void setUnitTestingMode() {
+        setUnitTestingMode(true);
+    }
+
+    /**
+     * Sets up the unit testing environment. The benchmarks also
+     * use it, but they don't require enabled assertions.
+     */
+    public static void setUnitTestingMode(boolean requireAssertions) {
         if (Texts.getResources() == null) {
             Texts.init(); // needed for the views initialization
         }
@@ -415,7 +423,9 @@ public class TestHelper {
         }
         AppMode.setUnitTestingMode();
 
-        Utils.ensureAssertionsEnabled();
+        if (requireAssertions) {
+            Utils.ensureAssertionsEnabled();
+        }
         Utils.preloadUnitTestFontNames();
 
         Language.setActive(Language.ENGLISH);
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import pixelitor.utils.ProgressTracker;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ThreadPool tests")
+@Timeout(60)
+class ThreadPoolTest {
+    @Test
+    void parallelForRunsEachIndexOnce() {
+        int size = 10_007;
+        int grain = 13;
+        var counts = new AtomicIntegerArray(size);
+        var maxChunk = new AtomicInteger();
+        var pt = new CountingTracker();
+
+        ThreadPool.parallelFor(size, grain, (start, end) -> {
+            maxChunk.accumulateAndGet(end - start, Math::max);
+            for (int i = start; i < end; i++) {
+                counts.incrementAndGet(i);
+            }
+        }, pt);
+
+        for (int i = 0; i < size; i++) {
+            assertThat(counts.get(i)).as("index " + i).isEqualTo(1);
+        }
+        assertThat(maxChunk.get()).isLessThanOrEqualTo(grain);
+        assertThat(pt.units).isEqualTo(size);
+    }
+
+    @Test
+    void nestedParallelFor() {
+        int rows = 50;
+        int cols = 300;
+        var counts = new AtomicIntegerArray(rows * cols);
+
+        ThreadPool.parallelFor(rows, 1, (startRow, endRow) -> {
+            for (int row = startRow; row < endRow; row++) {
+                int offset = row * cols;
+                ThreadPool.parallelFor(cols, 7, (start, end) -> {
+                    for (int col = start; col < end; col++) {
+                        counts.incrementAndGet(offset + col);
+                    }
+                }, ProgressTracker.NULL_TRACKER);
+            }
+        }, ProgressTracker.NULL_TRACKER);
+
+        for (int i = 0; i < counts.length(); i++) {
+            assertThat(counts.get(i)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void interruptionCancelsTheRemainingChunks() throws InterruptedException {
+        int size = 1000;
+        var processed = new AtomicInteger();
+
+        Thread.currentThread().interrupt();
+        assertThatThrownBy(() -> ThreadPool.parallelFor(size, 1, (start, end) -> {
+            sleep(5);
+            processed.incrementAndGet();
+        }, ProgressTracker.NULL_TRACKER)).isInstanceOf(CancellationException.class);
+
+        // the interrupted status is kept for the caller
+        assertThat(Thread.interrupted()).isTrue();
+
+        // the chunks that were already running can still finish
+        Thread.sleep(200);
+        assertThat(processed.get()).isLessThan(size);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // progress trackers are called only from the waiting thread
+    private static class CountingTracker implements ProgressTracker {
+        int units = 0;
+
+        @Override
+        public void unitDone() {
+            units++;
+        }
+
+        @Override
+        public void unitsDone(int completedUnits) {
+            units += completedUnits;
+        }
+
+        @Override
+        public void finished() {
+        }
+    }
+}
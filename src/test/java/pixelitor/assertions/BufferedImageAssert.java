@@ -62,4 +62,25 @@ public class BufferedImageAssert extends AbstractAssert<BufferedImageAssert, Buf
 
         return this;
     }
+
+    public BufferedImageAssert hasSamePixelsAs(BufferedImage img) {
+        hasSameSizeAs(img);
+
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int expected = img.getRGB(x, y);
+                int found = actual.getRGB(x, y);
+                if (found != expected) {
+                    failWithMessage("""
+
+                        Expecting the pixel at (%d, %d) to be:
+                          <%08X>
+                        but was:
+                          <%08X>""", x, y, expected, found);
+                }
+            }
+        }
+
+        return this;
+    }
 }
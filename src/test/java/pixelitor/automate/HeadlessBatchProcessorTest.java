@@ -0,0 +1,200 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.automate;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import pixelitor.TestHelper;
+import pixelitor.automate.HeadlessBatchProcessor.Options;
+import pixelitor.io.FileFormat;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("HeadlessBatchProcessor tests")
+class HeadlessBatchProcessorTest {
+    private static final int WIDTH = 20;
+    private static final int HEIGHT = 10;
+    private static final int COLOR = 0xFF_20_40_80;
+
+    @TempDir
+    Path tempDir;
+
+    private File inputDir;
+    private File outputDir;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @BeforeEach
+    void beforeEachTest() throws IOException {
+        inputDir = tempDir.resolve("in").toFile();
+        outputDir = tempDir.resolve("out").toFile();
+        assertThat(inputDir.mkdir()).isTrue();
+
+        writeImage(new File(inputDir, "a.png"), WIDTH, HEIGHT);
+        writeImage(new File(inputDir, "b.png"), WIDTH, HEIGHT);
+    }
+
+    @Test
+    void parsesAllOptions() {
+        Options options = Options.parse(new String[]{
+            "--filter", "Invert", "--preset", "invert.txt", "--resize", "30X15",
+            "--format", "jpg", "--threads", "3", "--overwrite", "in", "out"});
+
+        assertThat(options.filterName()).isEqualTo("Invert");
+        assertThat(options.presetFile()).isEqualTo(new File("invert.txt"));
+        assertThat(options.resizeTo()).isEqualTo(new Dimension(30, 15));
+        assertThat(options.format()).isEqualTo(FileFormat.JPG);
+        assertThat(options.numWorkers()).isEqualTo(3);
+        assertThat(options.overwrite()).isTrue();
+        assertThat(options.inputDir()).isEqualTo(new File("in"));
+        assertThat(options.outputDir()).isEqualTo(new File("out"));
+    }
+
+    @Test
+    void defaultOptions() {
+        Options options = Options.parse(new String[]{"in", "out"});
+
+        assertThat(options.filterName()).isNull();
+        assertThat(options.presetFile()).isNull();
+        assertThat(options.resizeTo()).isNull();
+        assertThat(options.format()).isEqualTo(FileFormat.PNG);
+        assertThat(options.numWorkers()).isEqualTo(Runtime.getRuntime().availableProcessors());
+        assertThat(options.overwrite()).isFalse();
+    }
+
+    static Stream<Arguments> invalidArgs() {
+        return Stream.<Object>of(
+            new String[]{},
+            new String[]{"in"},
+            new String[]{"in", "out", "extra"},
+            new String[]{"--unknown", "in", "out"},
+            new String[]{"in", "out", "--filter"},
+            new String[]{"--threads", "0", "in", "out"},
+            new String[]{"--threads", "many", "in", "out"},
+            new String[]{"--resize", "100", "in", "out"},
+            new String[]{"--resize", "0x100", "in", "out"},
+            new String[]{"--format", "xyz", "in", "out"})
+            .map(Arguments::of);
+    }
+
+    @ParameterizedTest
+    @MethodSource("invalidArgs")
+    void invalidArgsPrintUsage(String[] args) {
+        assertPrintsUsage(args);
+    }
+
+    @Test
+    void unusableOptionsPrintUsage() {
+        String out = outputDir.getPath();
+
+        assertPrintsUsage(tempDir.resolve("missing").toString(), out);
+        assertPrintsUsage("--filter", "NoSuchFilter", inputDir.getPath(), out);
+        assertPrintsUsage("--filter", "Invert",
+            "--preset", tempDir.resolve("missing.txt").toString(), inputDir.getPath(), out);
+
+        assertThat(outputDir).doesNotExist();
+    }
+
+    @Test
+    void processesAllFiles() throws IOException {
+        int exitCode = HeadlessBatchProcessor.run(new String[]{
+            "--filter", "Invert", "--resize", "10x10", "--threads", "2",
+            inputDir.getPath(), outputDir.getPath()});
+        assertThat(exitCode).isZero();
+
+        for (String name : new String[]{"a.png", "b.png"}) {
+            BufferedImage result = ImageIO.read(new File(outputDir, name));
+            // the aspect ratio is preserved
+            assertThat(result.getWidth()).isEqualTo(10);
+            assertThat(result.getHeight()).isEqualTo(5);
+            assertThat(result.getRGB(5, 2) & 0xFF_FF_FF).isEqualTo(~COLOR & 0xFF_FF_FF);
+        }
+    }
+
+    @Test
+    void convertsToTheGivenFormat() {
+        int exitCode = HeadlessBatchProcessor.run(new String[]{
+            "--format", "jpg", inputDir.getPath(), outputDir.getPath()});
+
+        assertThat(exitCode).isZero();
+        assertThat(outputDir.list()).containsExactlyInAnyOrder("a.jpg", "b.jpg");
+    }
+
+    @Test
+    void existingFilesAreSkippedUnlessOverwritten() throws IOException {
+        assertThat(outputDir.mkdir()).isTrue();
+        File existing = new File(outputDir, "a.png");
+        writeImage(existing, 3, 3);
+
+        int exitCode = HeadlessBatchProcessor.run(new String[]{
+            inputDir.getPath(), outputDir.getPath()});
+        assertThat(exitCode).isZero();
+        assertThat(ImageIO.read(existing).getWidth()).isEqualTo(3);
+        assertThat(ImageIO.read(new File(outputDir, "b.png")).getWidth()).isEqualTo(WIDTH);
+
+        exitCode = HeadlessBatchProcessor.run(new String[]{
+            "--overwrite", inputDir.getPath(), outputDir.getPath()});
+        assertThat(exitCode).isZero();
+        assertThat(ImageIO.read(existing).getWidth()).isEqualTo(WIDTH);
+    }
+
+    private static void assertPrintsUsage(String... args) {
+        PrintStream origErr = System.err;
+        var errBytes = new ByteArrayOutputStream();
+        int exitCode;
+        try {
+            System.setErr(new PrintStream(errBytes, true));
+            exitCode = HeadlessBatchProcessor.run(args);
+        } finally {
+            System.setErr(origErr);
+        }
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(errBytes.toString()).contains("Usage: HeadlessBatchProcessor");
+    }
+
+    private static void writeImage(File file, int width, int height) throws IOException {
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, COLOR);
+            }
+        }
+        assertThat(ImageIO.write(img, "png", file)).isTrue();
+    }
+}
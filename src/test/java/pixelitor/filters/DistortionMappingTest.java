@@ -0,0 +1,126 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import com.jhlabs.image.TransformFilter;
+import com.jhlabs.math.Noise;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import pixelitor.TestHelper;
+import pixelitor.filters.gui.FilterParam;
+import pixelitor.filters.jhlabsproxies.JHSwirlPinchBulge;
+import pixelitor.filters.jhlabsproxies.JHWaves;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Distortion mapping cache tests")
+class DistortionMappingTest {
+    private static final int WIDTH = 71;
+    private static final int HEIGHT = 53;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @AfterEach
+    void afterEachTest() {
+        TransformFilter.clearMappingCache();
+    }
+
+    static Stream<Supplier<ParametrizedFilter>> distortions() {
+        return Stream.of(JHSwirlPinchBulge::new, LittlePlanet::new,
+            PolarTiles::new, CircleToSquare::new, JHWaves::new);
+    }
+
+    @ParameterizedTest
+    @MethodSource("distortions")
+    void cachedMappingGivesSameResult(Supplier<ParametrizedFilter> factory) {
+        ParametrizedFilter filter = factory.get();
+        BufferedImage src = createRandomImage();
+        for (int i = 0; i < 5; i++) {
+            filter.randomize();
+            TransformFilter.clearMappingCache();
+            int[] fresh = ImageUtils.getPixels(filter.transformImage(src));
+            int[] cached = ImageUtils.getPixels(filter.transformImage(src));
+            assertThat(cached).as("%s, run %d", filter.getName(), i).isEqualTo(fresh);
+
+            // the mapping doesn't depend on these
+            randomizeParam(filter, "Edge Action");
+            randomizeParam(filter, "Interpolation");
+            cached = ImageUtils.getPixels(filter.transformImage(src));
+            TransformFilter.clearMappingCache();
+            fresh = ImageUtils.getPixels(filter.transformImage(src));
+            assertThat(cached).as("%s, run %d after edge change", filter.getName(), i).isEqualTo(fresh);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("distortions")
+    void reseedingTheNoiseInvalidatesTheMapping(Supplier<ParametrizedFilter> factory) {
+        ParametrizedFilter filter = factory.get();
+        BufferedImage src = createRandomImage();
+        Noise.reseed(1);
+        filter.transformImage(src); // caches the mapping
+
+        Noise.reseed(2);
+        int[] afterReseed = ImageUtils.getPixels(filter.transformImage(src));
+        TransformFilter.clearMappingCache();
+        int[] fresh = ImageUtils.getPixels(filter.transformImage(src));
+        assertThat(afterReseed).as(filter.getName()).isEqualTo(fresh);
+    }
+
+    @ParameterizedTest
+    @MethodSource("distortions")
+    void copyingDoesntChangeTheNoise(Supplier<ParametrizedFilter> factory) {
+        ParametrizedFilter filter = factory.get();
+        long version = Noise.getVersion();
+
+        Filter copy = filter.copy();
+
+        assertThat(copy).isNotSameAs(filter);
+        assertThat(Noise.getVersion()).isEqualTo(version);
+    }
+
+    private static void randomizeParam(ParametrizedFilter filter, String name) {
+        filter.getParamSet().getParams().stream()
+            .filter(param -> param.getName().equals(name))
+            .forEach(FilterParam::randomize);
+    }
+
+    private static BufferedImage createRandomImage() {
+        Random rand = new Random(WIDTH * 31L + HEIGHT);
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, rand.nextInt());
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import pixelitor.TestHelper;
+import pixelitor.filters.jhlabsproxies.JHGaussianBlur;
+import pixelitor.filters.jhlabsproxies.JHSwirlPinchBulge;
+import pixelitor.filters.jhlabsproxies.JHUnsharpMask;
+import pixelitor.utils.Rnd;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Filter region tests")
+class FilterRegionTest {
+    private static final int WIDTH = 83;
+    private static final int HEIGHT = 61;
+    private static final int NUM_RANDOM_SETTINGS = 5;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    static Stream<Arguments> regionFilters() {
+        List<Supplier<ParametrizedFilter>> filters = List.of(
+            JHGaussianBlur::new, JHUnsharpMask::new, JHSwirlPinchBulge::new);
+        List<Rectangle> regions = List.of(
+            new Rectangle(20, 15, 30, 25), // inside
+            new Rectangle(0, 0, 25, 20), // at the corner
+            new Rectangle(60, 40, 50, 50)); // partly outside
+        return filters.stream().flatMap(filter -> regions.stream()
+            .map(region -> Arguments.of(filter.get(), region)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("regionFilters")
+    void regionMatchesWholeImage(ParametrizedFilter filter, Rectangle region) {
+        assertThat(filter.supportsRegion()).isTrue();
+
+        BufferedImage src = createRandomImage();
+        assertRegionMatches(filter, src, region, "default settings");
+
+        for (int seed = 0; seed < NUM_RANDOM_SETTINGS; seed++) {
+            Rnd.setSeed(seed);
+            filter.randomize();
+            assertRegionMatches(filter, src, region, "seed " + seed);
+        }
+    }
+
+    @Test
+    void unsupportedFilterReturnsNull() {
+        Filter filter = new Invert();
+        assertThat(filter.supportsRegion()).isFalse();
+
+        BufferedImage src = createRandomImage();
+        assertThat(filter.transformRegion(src, new Rectangle(10, 10, 20, 20))).isNull();
+    }
+
+    private static void assertRegionMatches(Filter filter, BufferedImage src,
+                                            Rectangle region, String settings) {
+        BufferedImage whole = filter.transformImage(src);
+        BufferedImage regionDest = filter.transformRegion(src, region);
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                BufferedImage expected = region.contains(x, y) ? whole : src;
+                assertThat(regionDest.getRGB(x, y))
+                    .as("%s (%s) at (%d, %d)", filter.getName(), settings, x, y)
+                    .isEqualTo(expected.getRGB(x, y));
+            }
+        }
+    }
+
+    private static BufferedImage createRandomImage() {
+        Random rand = new Random(WIDTH * 31L + HEIGHT);
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, rand.nextInt());
+            }
+        }
+        return img;
+    }
+}
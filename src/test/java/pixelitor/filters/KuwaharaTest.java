@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.filters;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import pixelitor.TestHelper;
+import pixelitor.utils.ImageUtils;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Kuwahara tests")
+class KuwaharaTest {
+    // the height is smaller than the largest window (2 * 10 + 1),
+    // so most pixels are near an edge for the large radii
+    private static final int WIDTH = 29;
+    private static final int HEIGHT = 19;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 8, 10})
+    void matchesBruteForceImplementation(int radius) {
+        // random colors and a few repeated colors with tied variances
+        for (boolean fewColors : new boolean[]{false, true}) {
+            BufferedImage src = createRandomImage(fewColors);
+            var filter = new Kuwahara();
+            filter.getParamSet().set("Radius", String.valueOf(radius));
+
+            BufferedImage dest = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+            int[] result = ImageUtils.getPixels(filter.transform(src, dest));
+            int[] expected = filterBruteForce(ImageUtils.getPixels(src), radius);
+
+            assertThat(result)
+                .as("radius = %d, few colors = %b", radius, fewColors)
+                .isEqualTo(expected);
+        }
+    }
+
+    private static BufferedImage createRandomImage(boolean fewColors) {
+        Random rand = new Random(fewColors ? 7 : 42);
+        int[] palette = {0xFF_10_20_30, 0xFF_80_40_20, 0xFF_20_C0_60, 0xFF_FF_FF_FF};
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = fewColors
+                    ? palette[rand.nextInt(palette.length)]
+                    : 0xFF_00_00_00 | rand.nextInt(0x1_00_00_00);
+                img.setRGB(x, y, rgb);
+            }
+        }
+        return img;
+    }
+
+    // visits every pixel of the four clipped sub-regions around each pixel
+    private static int[] filterBruteForce(int[] pixels, int radius) {
+        int[] out = new int[pixels.length];
+        float[] hsv = new float[3];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double minVariance = Double.MAX_VALUE;
+                float minVarianceMean = 0;
+
+                // top left, top right, bottom left, bottom right
+                for (int region = 0; region < 4; region++) {
+                    int left = (region & 1) == 0 ? x - radius : x;
+                    int top = region < 2 ? y - radius : y;
+
+                    long count = 0;
+                    long sum = 0;
+                    long squareSum = 0;
+                    for (int ry = top; ry <= top + radius; ry++) {
+                        for (int rx = left; rx <= left + radius; rx++) {
+                            if (rx < 0 || rx >= WIDTH || ry < 0 || ry >= HEIGHT) {
+                                continue;
+                            }
+                            int rgb = pixels[ry * WIDTH + rx];
+                            int value = Math.max(Math.max((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF), rgb & 0xFF);
+                            count++;
+                            sum += value;
+                            squareSum += (long) value * value;
+                        }
+                    }
+
+                    double variance = (double) (count * squareSum - sum * sum) / (count * count);
+                    if (variance < minVariance) {
+                        minVariance = variance;
+                        minVarianceMean = sum / (count * 255.0f);
+                    }
+                }
+
+                int rgb = pixels[y * WIDTH + x];
+                Color.RGBtoHSB((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, hsv);
+                out[y * WIDTH + x] = Color.HSBtoRGB(hsv[0], hsv[1], minVarianceMean);
+            }
+        }
+        return out;
+    }
+}
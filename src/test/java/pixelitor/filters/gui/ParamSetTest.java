@@ -17,6 +17,7 @@
 
 package pixelitor.filters.gui;
 
+import com.jhlabs.math.Noise;
 import org.junit.jupiter.api.*;
 import org.mockito.verification.VerificationMode;
 import pixelitor.Composition;
@@ -168,6 +169,21 @@ class ParamSetTest {
         verifyFilterNotExecuted();
     }
 
+    @Test
+    void loadingForCopyDoesntReseedSharedNoise() {
+        ParamSet noiseParams = new ParamSet();
+        noiseParams.withAction(noiseParams.createReseedNoiseAction());
+        UserPreset preset = new UserPreset("test");
+        noiseParams.saveStateTo(preset);
+
+        long versionBefore = Noise.getVersion();
+        noiseParams.loadUserPreset(preset, true);
+        assertThat(Noise.getVersion()).isEqualTo(versionBefore);
+
+        noiseParams.loadUserPreset(preset);
+        assertThat(Noise.getVersion()).isNotEqualTo(versionBefore);
+    }
+
     private void verifyFilterExecuted(VerificationMode times) {
         verify(mockAdjustmentListener, times).paramAdjusted();
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.filters.impl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import pixelitor.TestHelper;
+
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.filters.impl.MorphologyFilter.KERNEL_DIAMOND;
+import static pixelitor.filters.impl.MorphologyFilter.KERNEL_SQUARE;
+import static pixelitor.filters.impl.MorphologyFilter.OP_DILATE;
+import static pixelitor.filters.impl.MorphologyFilter.OP_ERODE;
+
+@DisplayName("MorphologyFilter tests")
+class MorphologyFilterTest {
+    private static final int WIDTH = 23;
+    private static final int HEIGHT = 17;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    static Stream<Arguments> opsAndKernels() {
+        return Stream.of(
+            Arguments.of(OP_ERODE, KERNEL_DIAMOND),
+            Arguments.of(OP_ERODE, KERNEL_SQUARE),
+            Arguments.of(OP_DILATE, KERNEL_DIAMOND),
+            Arguments.of(OP_DILATE, KERNEL_SQUARE)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("opsAndKernels")
+    void matchesRepeated3x3Filtering(int op, int kernel) {
+        int[] pixels = createRandomPixels();
+        for (int radius = 1; radius <= 7; radius++) {
+            var filter = new MorphologyFilter("test");
+            filter.setOp(op);
+            filter.setKernel(kernel);
+            filter.setRadius(radius);
+
+            int[] result = filter.filterPixels(WIDTH, HEIGHT, pixels.clone());
+            int[] expected = filterRepeatedly(pixels, op, kernel, radius);
+            assertThat(result).as("radius = " + radius).isEqualTo(expected);
+        }
+    }
+
+    private static int[] createRandomPixels() {
+        Random rand = new Random(42);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = rand.nextInt();
+        }
+        return pixels;
+    }
+
+    // the original implementation, which repeated a 3x3 step radius times
+    private static int[] filterRepeatedly(int[] pixels, int op, int kernel, int radius) {
+        int[] in = pixels.clone();
+        int[] out = new int[in.length];
+        for (int it = 0; it < radius; it++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int[] channels = op == OP_ERODE
+                        ? new int[]{255, 255, 255, 255}
+                        : new int[]{255, 0, 0, 0};
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dx = -1; dx <= 1; dx++) {
+                            if (kernel == KERNEL_DIAMOND && dx != 0 && dy != 0) {
+                                continue;
+                            }
+                            int nx = x + dx;
+                            int ny = y + dy;
+                            if (nx < 0 || nx >= WIDTH || ny < 0 || ny >= HEIGHT) {
+                                continue;
+                            }
+                            int rgb = in[ny * WIDTH + nx];
+                            for (int c = 0; c < 4; c++) {
+                                int value = (rgb >>> (24 - 8 * c)) & 0xFF;
+                                channels[c] = op == OP_ERODE
+                                    ? Math.min(channels[c], value)
+                                    : Math.max(channels[c], value);
+                            }
+                        }
+                    }
+                    out[y * WIDTH + x] = channels[0] << 24 | channels[1] << 16 | channels[2] << 8 | channels[3];
+                }
+            }
+            System.arraycopy(out, 0, in, 0, in.length);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.filters.lookup;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.filters.BrightnessContrast;
+import pixelitor.filters.Filter;
+import pixelitor.filters.HueSat;
+import pixelitor.filters.curves.ToneCurvesFilter;
+import pixelitor.filters.levels.Channel;
+import pixelitor.filters.levels.Levels;
+import pixelitor.layers.AdjustmentLayer;
+import pixelitor.layers.Layer;
+import pixelitor.utils.ImageUtils;
+import pixelitor.utils.Rnd;
+
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("FusedAdjustment tests")
+class FusedAdjustmentTest {
+    private static final int WIDTH = 67;
+    private static final int HEIGHT = 43;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @Test
+    void sameResultAsSeparateFilters() {
+        for (long seed = 0; seed < 10; seed++) {
+            List<Filter> filters = createRandomFilters();
+            BufferedImage src = toPremultiplied(createRandomImage(seed));
+
+            BufferedImage expected = src;
+            List<PixelAdjustment> adjustments = new ArrayList<>();
+            for (Filter filter : filters) {
+                expected = filter.transformImage(expected);
+                PixelAdjustment adjustment = ((PixelAdjustmentFilter) filter).createPixelAdjustment();
+                if (adjustment != null) {
+                    adjustments.add(adjustment);
+                }
+            }
+
+            BufferedImage actual = ImageUtils.createImageWithSameCM(src);
+            new FusedAdjustment(adjustments).apply(src, actual);
+
+            assertThat(ImageUtils.getPixels(actual))
+                .as("seed = " + seed)
+                .isEqualTo(ImageUtils.getPixels(expected));
+        }
+    }
+
+    @Test
+    void compositeWithStackedAdjustmentLayers() {
+        BufferedImage img = createRandomImage(42);
+        Composition comp = Composition.fromImage(img, null, "FusedAdjustmentTest");
+        TestHelper.setupMockViewFor(comp);
+
+        List<Filter> filters = createRandomFilters();
+        BufferedImage expected = toPremultiplied(img);
+        for (Filter filter : filters) {
+            expected = filter.transformImage(expected);
+            comp.addLayerWithoutUI(new AdjustmentLayer(comp, filter.getName(), filter));
+        }
+        List<Layer> layers = IntStream.range(0, comp.getNumLayers())
+            .mapToObj(comp::getLayer)
+            .toList();
+        assertThat(AdjustmentLayer.findFusableRunEnd(layers, 1))
+            .isEqualTo(filters.size() + 1);
+
+        BufferedImage composite = comp.getCompositeImage();
+        assertThat(ImageUtils.getPixels(composite))
+            .isEqualTo(ImageUtils.getPixels(expected));
+    }
+
+    private static List<Filter> createRandomFilters() {
+        var brightnessContrast = new BrightnessContrast();
+        brightnessContrast.randomize();
+
+        var colorBalance = new ColorBalance();
+        colorBalance.randomize();
+
+        var hueSat = new HueSat();
+        hueSat.randomize();
+
+        var levels = new Levels();
+        levels.randomize();
+
+        var curves = new ToneCurvesFilter();
+        curves.getCurves().getCurve(Channel.RGB).addKnot(
+            new Point2D.Float(0.4f, 0.3f + Rnd.nextFloat() * 0.4f), false);
+        curves.getCurves().getCurve(Channel.RED).addKnot(
+            new Point2D.Float(0.6f, 0.3f + Rnd.nextFloat() * 0.4f), false);
+
+        // the hue/saturation in the middle separates the lookup tables
+        return List.of(levels, brightnessContrast, hueSat, curves, colorBalance);
+    }
+
+    private static BufferedImage createRandomImage(long seed) {
+        Random rand = new Random(seed);
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // half of the pixels are opaque
+                int rgb = rand.nextInt();
+                img.setRGB(x, y, rand.nextBoolean() ? rgb | 0xFF_00_00_00 : rgb);
+            }
+        }
+        return img;
+    }
+
+    private static BufferedImage toPremultiplied(BufferedImage img) {
+        BufferedImage pre = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB_PRE);
+        var g = pre.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return pre;
+    }
+}
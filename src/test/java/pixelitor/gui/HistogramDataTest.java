@@ -0,0 +1,98 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.gui;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("HistogramData tests")
+class HistogramDataTest {
+    @Test
+    void countsAllPixels() {
+        int width = 123;
+        int height = 97;
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB_PRE);
+        Random rand = new Random(width);
+        int[] expectedReds = new int[HistogramsPanel.NUM_BINS];
+        int[] expectedBlues = new int[HistogramsPanel.NUM_BINS];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // the transparent pixels aren't counted
+                boolean transparent = rand.nextInt(10) == 0;
+                int r = rand.nextInt(256);
+                int b = rand.nextInt(256);
+                img.setRGB(x, y, transparent ? 0 : 0xFF_00_00_00 | r << 16 | b);
+                if (!transparent) {
+                    expectedReds[r]++;
+                    expectedBlues[b]++;
+                }
+            }
+        }
+
+        HistogramData data = HistogramData.calculate(img, 1, () -> false);
+
+        assertThat(data.isApproximate()).isFalse();
+        assertThat(data.reds).isEqualTo(expectedReds);
+        assertThat(data.blues).isEqualTo(expectedBlues);
+        assertThat(data.greens[0]).isEqualTo(sum(expectedReds));
+    }
+
+    @Test
+    void samplingScalesTheCounts() {
+        BufferedImage img = new BufferedImage(100, 60, TYPE_INT_ARGB_PRE);
+        for (int y = 0; y < 60; y++) {
+            for (int x = 0; x < 100; x++) {
+                img.setRGB(x, y, y < 30 ? 0xFF_FF_FF_FF : 0xFF_00_00_00);
+            }
+        }
+
+        HistogramData data = HistogramData.calculate(img, 3, () -> false);
+
+        assertThat(data.isApproximate()).isTrue();
+        assertThat(data.luminances[255]).isEqualTo(34 * 10 * 9);
+        assertThat(data.luminances[0]).isEqualTo(34 * 10 * 9);
+    }
+
+    @Test
+    void sampleStep() {
+        assertThat(HistogramData.calcSampleStep(new BufferedImage(1000, 1000, TYPE_INT_ARGB_PRE))).isEqualTo(1);
+        assertThat(HistogramData.calcSampleStep(new BufferedImage(10_000, 1000, TYPE_INT_ARGB_PRE))).isEqualTo(4);
+    }
+
+    @Test
+    void cancelled() {
+        BufferedImage img = new BufferedImage(10, 10, TYPE_INT_ARGB_PRE);
+        assertThatThrownBy(() -> HistogramData.calculate(img, 1, () -> true))
+            .isInstanceOf(CancellationException.class);
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
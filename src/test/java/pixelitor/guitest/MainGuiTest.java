@@ -1675,6 +1675,7 @@ public class MainGuiTest {
         testFilterWithDialog("Kuwahara", Randomize.YES, Reseed.NO, ShowOriginal.YES);
         testNoDialogFilter("Reduce Single Pixel Noise");
         testNoDialogFilter("3x3 Median Filter");
+        testFilterWithDialog("Median", Randomize.YES, Reseed.NO, ShowOriginal.YES);
         testFilterWithDialog("Add Noise", Randomize.YES, Reseed.NO, ShowOriginal.YES);
         testFilterWithDialog("Pixelate", Randomize.YES, Reseed.NO, ShowOriginal.YES);
     }
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.history;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import pixelitor.TestHelper;
+import pixelitor.utils.ImageTiles;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Set;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MemoryLimitedUndoManagerTest {
+    private static final int MIN_EDITS = 2;
+    private static final int MAX_EXTRA_EDITS = 8;
+    private static final long MEMORY_LIMIT = 1000;
+
+    private final MemoryLimitedUndoManager undoManager =
+        new MemoryLimitedUndoManager(MIN_EDITS, MAX_EXTRA_EDITS, MEMORY_LIMIT);
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @Test
+    void limits() {
+        assertThat(undoManager.getMinEdits()).isEqualTo(MIN_EDITS);
+        assertThat(undoManager.getMemoryLimit()).isEqualTo(MEMORY_LIMIT);
+        assertThat(undoManager.getLimit()).isEqualTo(MIN_EDITS + MAX_EXTRA_EDITS);
+    }
+
+    @Test
+    void lightEditsAreLimitedByCount() {
+        addEdits(20, 0);
+
+        assertThat(undoManager.getSize()).isEqualTo(MIN_EDITS + MAX_EXTRA_EDITS);
+        assertThat(undoManager.getMemoryFootprint()).isZero();
+    }
+
+    @Test
+    void oldestEditsAreDiscardedAboveTheMemoryLimit() {
+        addEdits(4, 300);
+        assertThat(undoManager.getSize()).isEqualTo(3);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(900);
+
+        addEdits(1, 100);
+        assertThat(undoManager.getSize()).isEqualTo(4);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(1000);
+
+        addEdits(1, 700);
+        assertThat(undoManager.getSize()).isEqualTo(2);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(800);
+        assertThat(undoManager.getNumUndoableEdits()).isEqualTo(2);
+    }
+
+    @Test
+    void lightEditsDontCountTowardTheMemoryLimit() {
+        addEdits(1, 900);
+        addEdits(5, 0);
+
+        assertThat(undoManager.getSize()).isEqualTo(6);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(900);
+    }
+
+    @Test
+    void minEditsAreKeptRegardlessOfMemory() {
+        addEdits(MIN_EDITS, 2 * MEMORY_LIMIT);
+
+        assertThat(undoManager.getSize()).isEqualTo(MIN_EDITS);
+
+        addEdits(1, 2 * MEMORY_LIMIT);
+        assertThat(undoManager.getSize()).isEqualTo(MIN_EDITS);
+    }
+
+    @Test
+    void editsFarthestFromTheCurrentStateAreDiscarded() {
+        addEdits(4, 200);
+        undoManager.undo();
+        undoManager.undo();
+        undoManager.undo();
+
+        // there are more redoable edits, so they are discarded first
+        undoManager.setMemoryLimit(450);
+
+        assertThat(undoManager.getSize()).isEqualTo(2);
+        assertThat(undoManager.getNumUndoableEdits()).isEqualTo(1);
+        assertThat(undoManager.canRedo()).isTrue();
+    }
+
+    @Test
+    void overFillingWithMixedEdits() {
+        addEdits(3, 300);
+        addEdits(5, 0);
+        assertThat(undoManager.getSize()).isEqualTo(8);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(900);
+
+        // the oldest heavy edit is discarded, the light ones are kept
+        addEdits(1, 300);
+        assertThat(undoManager.getSize()).isEqualTo(8);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(900);
+
+        addEdits(2, 300);
+        assertThat(undoManager.getSize()).isEqualTo(8);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(900);
+
+        // now the light edits are the oldest ones, and they are
+        // discarded together with the heavy edit after them
+        addEdits(1, 300);
+        assertThat(undoManager.getSize()).isEqualTo(3);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(900);
+    }
+
+    @Test
+    void overFillingWithLightEdits() {
+        addEdits(2, 400);
+        addEdits(MAX_EXTRA_EDITS, 0);
+
+        // the light edits push out the oldest edits only because of the count limit
+        addEdits(1, 0);
+        assertThat(undoManager.getSize()).isEqualTo(MIN_EDITS + MAX_EXTRA_EDITS);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(400);
+
+        addEdits(1, 0);
+        assertThat(undoManager.getSize()).isEqualTo(MIN_EDITS + MAX_EXTRA_EDITS);
+        assertThat(undoManager.getMemoryFootprint()).isZero();
+    }
+
+    @Test
+    void footprintFollowsDiscardedEdits() {
+        addEdits(3, 200);
+        undoManager.undo();
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(600);
+
+        // adding an edit discards the redoable one
+        addEdits(1, 100);
+        assertThat(undoManager.getSize()).isEqualTo(3);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(500);
+
+        undoManager.discardAllEdits();
+        assertThat(undoManager.getMemoryFootprint()).isZero();
+
+        addEdits(1, 300);
+        assertThat(undoManager.getMemoryFootprint()).isEqualTo(300);
+    }
+
+    @Test
+    void settingMinEdits() {
+        addEdits(4, 2 * MEMORY_LIMIT);
+        assertThat(undoManager.getSize()).isEqualTo(MIN_EDITS);
+
+        undoManager.setMinEdits(4);
+        assertThat(undoManager.getLimit()).isEqualTo(4 + MAX_EXTRA_EDITS);
+        addEdits(4, 2 * MEMORY_LIMIT);
+        assertThat(undoManager.getSize()).isEqualTo(4);
+
+        undoManager.setMinEdits(1);
+        undoManager.setMemoryLimit(MEMORY_LIMIT); // triggers the trimming
+        assertThat(undoManager.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    void sharedTilesAreCountedOnce() {
+        BufferedImage img = new BufferedImage(600, 600, TYPE_INT_ARGB);
+        ImageTiles first = ImageTiles.capture(img, null);
+        long imageBytes = first.countMemory(ImageTiles.createCountedTilesSet());
+
+        // only one tile is changed, the rest is shared with the first snapshot
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(10, 10, 5, 5);
+        g.dispose();
+        ImageTiles second = ImageTiles.capture(img, first);
+        long secondBytes = second.countMemory(ImageTiles.createCountedTilesSet());
+        assertThat(secondBytes).isEqualTo(imageBytes);
+
+        long limit = imageBytes + imageBytes / 2;
+        MemoryLimitedUndoManager um = new MemoryLimitedUndoManager(0, MAX_EXTRA_EDITS, limit);
+        um.addEdit(createTilesEdit(first));
+        um.addEdit(createTilesEdit(second));
+
+        // the second snapshot adds only one tile to the total
+        long total = um.getMemoryFootprint();
+        assertThat(um.getSize()).isEqualTo(2);
+        assertThat(total).isGreaterThan(imageBytes).isLessThan(limit);
+
+        // after the first edit is discarded, the tiles it shared
+        // are still counted, because the second edit keeps them alive
+        um.setMemoryLimit(imageBytes);
+        assertThat(um.getSize()).isEqualTo(1);
+        assertThat(um.getMemoryFootprint()).isEqualTo(secondBytes);
+    }
+
+    @Test
+    void undoAndRedoFollowTheReplacedTiles() {
+        ImageTiles large = ImageTiles.capture(new BufferedImage(600, 600, TYPE_INT_ARGB), null);
+        ImageTiles small = ImageTiles.capture(new BufferedImage(100, 100, TYPE_INT_ARGB), null);
+        long largeBytes = large.countMemory(ImageTiles.createCountedTilesSet());
+        long smallBytes = small.countMemory(ImageTiles.createCountedTilesSet());
+
+        // like an image edit, the edit swaps its backup on undo and redo
+        ImageTiles[] backup = {large};
+        PixelitorEdit edit = createTilesEdit(backup);
+        doAnswer(invocation -> backup[0] = small).when(edit).undo();
+        doAnswer(invocation -> backup[0] = large).when(edit).redo();
+
+        MemoryLimitedUndoManager um = new MemoryLimitedUndoManager(0, MAX_EXTRA_EDITS, 2 * largeBytes);
+        um.addEdit(edit);
+        assertThat(um.getMemoryFootprint()).isEqualTo(largeBytes);
+
+        um.undo();
+        assertThat(um.getMemoryFootprint()).isEqualTo(smallBytes);
+
+        um.redo();
+        assertThat(um.getMemoryFootprint()).isEqualTo(largeBytes);
+    }
+
+    private void addEdits(int num, long footprint) {
+        for (int i = 0; i < num; i++) {
+            PixelitorEdit edit = createMockEdit(footprint);
+            undoManager.addEdit(edit);
+        }
+    }
+
+    private static PixelitorEdit createMockEdit(long footprint) {
+        PixelitorEdit edit = mock(PixelitorEdit.class);
+
+        when(edit.replaceEdit(any())).thenReturn(false);
+        when(edit.addEdit(any())).thenReturn(false);
+        when(edit.getName()).thenReturn("Edit using " + footprint + " bytes");
+        when(edit.isSignificant()).thenReturn(true);
+        when(edit.getMemoryFootprint(any())).thenReturn(footprint);
+        when(edit.canUndo()).thenReturn(true);
+        when(edit.canRedo()).thenReturn(true);
+
+        return edit;
+    }
+
+    private static PixelitorEdit createTilesEdit(ImageTiles backupTiles) {
+        return createTilesEdit(new ImageTiles[]{backupTiles});
+    }
+
+    // the backup can be replaced through the given array
+    @SuppressWarnings("unchecked")
+    private static PixelitorEdit createTilesEdit(ImageTiles[] backupTiles) {
+        PixelitorEdit edit = createMockEdit(0);
+        when(edit.getMemoryFootprint(any())).thenAnswer(invocation ->
+            backupTiles[0].countMemory((Set<Object>) invocation.getArgument(0)));
+        return edit;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pixelitor.io.ExternalProcess.PipeFormat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.condition.OS.LINUX;
+import static org.junit.jupiter.api.condition.OS.MAC;
+
+@DisplayName("ExternalProcess tests")
+class ExternalProcessTest {
+    @Test
+    void pamRoundTrip() throws IOException {
+        BufferedImage img = createRandomImage(37, 23);
+        var bytes = new ByteArrayOutputStream();
+        PAMFormat.write(img, bytes);
+
+        BufferedImage read = PAMFormat.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(getPixels(read)).isEqualTo(getPixels(img));
+    }
+
+    @Test
+    void pamReadsOtherDepths() throws IOException {
+        // a 2x1 grayscale image with 16-bit samples and a comment
+        byte[] header = "P7\n# comment\nWIDTH 2\nHEIGHT 1\nDEPTH 1\nMAXVAL 65535\nTUPLTYPE GRAYSCALE\nENDHDR\n"
+            .getBytes(US_ASCII);
+        byte[] data = {(byte) 0xFF, (byte) 0xFF, (byte) 0x80, 0x00};
+        var in = new ByteArrayOutputStream();
+        in.write(header);
+        in.write(data);
+
+        BufferedImage read = PAMFormat.read(new ByteArrayInputStream(in.toByteArray()));
+        assertThat(read.getRGB(0, 0)).isEqualTo(0xFF_FF_FF_FF);
+        assertThat(read.getRGB(1, 0)).isEqualTo(0xFF_80_80_80);
+    }
+
+    @Test
+    void pamRejectsInvalidData() throws IOException {
+        assertThat(PAMFormat.read(new ByteArrayInputStream(new byte[0]))).isNull();
+        assertThatThrownBy(() -> PAMFormat.read(new ByteArrayInputStream("P6\n".getBytes(US_ASCII))))
+            .isInstanceOf(IOException.class);
+
+        byte[] truncated = "P7\nWIDTH 2\nHEIGHT 2\nDEPTH 4\nMAXVAL 255\nENDHDR\n123".getBytes(US_ASCII);
+        assertThatThrownBy(() -> PAMFormat.read(new ByteArrayInputStream(truncated)))
+            .isInstanceOf(IOException.class);
+
+        // the pixel count overflows an int, and nothing is allocated
+        byte[] huge = "P7\nWIDTH 100000\nHEIGHT 100000\nDEPTH 4\nMAXVAL 255\nENDHDR\n".getBytes(US_ASCII);
+        assertThatThrownBy(() -> PAMFormat.read(new ByteArrayInputStream(huge)))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("too large");
+    }
+
+    // the image is bigger than the pipe buffers, and cat starts writing
+    // its output before reading all its input, which would block
+    // if the input and the output weren't transferred at the same time
+    @ParameterizedTest
+    @EnumSource(PipeFormat.class)
+    @EnabledOnOs({LINUX, MAC})
+    @Timeout(60)
+    void pipesLargeImagesWithoutBlocking(PipeFormat format) {
+        BufferedImage img = createRandomImage(700, 500);
+
+        var result = FileIO.runCommandLineFilter(img, List.of("cat"), format);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(getPixels(result.get())).isEqualTo(getPixels(img));
+    }
+
+    @Test
+    @EnabledOnOs({LINUX, MAC})
+    @Timeout(60)
+    void reportsErrorOutput() {
+        var result = FileIO.runCommandLineFilter(createRandomImage(10, 10),
+            List.of("sh", "-c", "cat > /dev/null; echo failed >&2; exit 1"), PipeFormat.PAM);
+
+        assertThat(result.isSuccess()).isFalse();
+        assertThat(result.errorDetails()).contains("failed");
+    }
+
+    private static BufferedImage createRandomImage(int width, int height) {
+        Random rand = new Random(width * 31L + height);
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, rand.nextInt());
+            }
+        }
+        return img;
+    }
+
+    private static int[] getPixels(BufferedImage img) {
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.layers.ImageLayer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.Composition.fromImage;
+
+@DisplayName("OpenRaster tests")
+class OpenRasterTest {
+    private static final int NUM_LAYERS = 12;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @Test
+    void layerOrderSurvivesParallelDecoding() throws Exception {
+        Composition comp = fromImage(createImage(layerColor(0)), null, "OpenRasterTest");
+        TestHelper.setupMockViewFor(comp);
+        for (int i = 1; i < NUM_LAYERS; i++) {
+            comp.addLayerWithoutUI(TestHelper.createImageLayer(
+                comp, createImage(layerColor(i)), "layer " + i));
+        }
+
+        File file = tempDir.resolve("order.ora").toFile();
+        OpenRaster.write(comp, file);
+        Composition read = OpenRaster.read(file);
+
+        assertThat(read.getNumLayers()).isEqualTo(NUM_LAYERS);
+        for (int i = 0; i < NUM_LAYERS; i++) {
+            BufferedImage image = ((ImageLayer) read.getLayer(i)).getImage();
+            assertThat(image.getRGB(10, 20)).as("layer " + i).isEqualTo(layerColor(i).getRGB());
+        }
+        assertThat(read.getLayer(NUM_LAYERS - 1).getName()).isEqualTo("layer " + (NUM_LAYERS - 1));
+    }
+
+    private static Color layerColor(int index) {
+        return new Color(index * 20, 255 - index * 20, 100);
+    }
+
+    private static BufferedImage createImage(Color color) {
+        BufferedImage img = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        var g = img.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 40, 30);
+        g.dispose();
+        return img;
+    }
+}
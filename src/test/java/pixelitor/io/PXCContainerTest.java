@@ -0,0 +1,179 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.layers.ImageLayer;
+import pixelitor.layers.LayerMask;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.Composition.fromImage;
+import static pixelitor.layers.LayerMaskAddType.REVEAL_ALL;
+
+@DisplayName("PXCContainer tests")
+class PXCContainerTest {
+    private static final int WIDTH = 53;
+    private static final int HEIGHT = 37;
+
+    @TempDir
+    Path tempDir;
+
+    private Composition comp;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @BeforeEach
+    void beforeEachTest() {
+        Random rand = new Random(7);
+        comp = fromImage(createRandomImage(rand), null, "PXCContainerTest");
+        TestHelper.setupMockViewFor(comp);
+        comp.addLayerWithoutUI(TestHelper.createImageLayer(
+            comp, createRandomImage(rand), "upper"));
+    }
+
+    @Test
+    void roundTrip() throws Exception {
+        File file = tempDir.resolve("roundTrip.pxc").toFile();
+        PXCFormat.write(comp, file);
+
+        Composition read = PXCFormat.read(file);
+        assertSamePixels(read, comp);
+        assertThat(PXCFormat.readThumbnail(file)).isNotNull();
+    }
+
+    @Test
+    void resaveOfReadComposition() throws Exception {
+        File file = tempDir.resolve("first.pxc").toFile();
+        PXCFormat.write(comp, file);
+
+        // the images of the read composition are copied from the first file
+        Composition read = PXCFormat.read(file);
+        File copy = tempDir.resolve("second.pxc").toFile();
+        PXCFormat.write(read, copy);
+
+        assertSamePixels(PXCFormat.read(copy), comp);
+    }
+
+    @Test
+    void inPlaceChangesAreSaved() throws Exception {
+        File file = tempDir.resolve("changed.pxc").toFile();
+        PXCFormat.write(comp, file);
+
+        // change the pixels without replacing the image
+        BufferedImage img = getImage(comp, 1);
+        img.setRGB(3, 4, 0xFF_12_34_56);
+
+        // save again over the source of the chunks
+        PXCFormat.write(comp, file);
+
+        Composition read = PXCFormat.read(file);
+        assertThat(getImage(read, 1).getRGB(3, 4)).isEqualTo(0xFF_12_34_56);
+        assertSamePixels(read, comp);
+    }
+
+    @Test
+    void deferredImagesOfHiddenLayersAndMasks() throws Exception {
+        ImageLayer upper = (ImageLayer) comp.getLayer(1);
+        upper.setVisible(false);
+        upper.addMask(REVEAL_ALL);
+        upper.getMask().getImage().getRaster().setSample(3, 4, 0, 77);
+
+        File file = tempDir.resolve("deferred.pxc").toFile();
+        PXCFormat.write(comp, file);
+
+        // saved again before the deferred images are first used
+        Composition read = PXCFormat.read(file);
+        File copy = tempDir.resolve("deferredCopy.pxc").toFile();
+        PXCFormat.write(read, copy);
+
+        Composition reread = PXCFormat.read(copy);
+        assertSamePixels(reread, comp);
+
+        ImageLayer rereadUpper = (ImageLayer) reread.getLayer(1);
+        assertThat(rereadUpper.isVisible()).isFalse();
+        LayerMask mask = rereadUpper.getMask();
+        assertThat(mask.getTransparencyImage()).isNotNull();
+        assertThat(mask.getImage().getRaster().getSample(3, 4, 0)).isEqualTo(77);
+    }
+
+    @Test
+    void hashDetectsChanges() {
+        BufferedImage img = createRandomImage(new Random(1));
+        long hash = PXCContainer.hashPixels(img);
+        assertThat(hash).isNotZero();
+        assertThat(PXCContainer.hashPixels(img)).isEqualTo(hash);
+
+        img.setRGB(WIDTH - 1, HEIGHT - 1, img.getRGB(WIDTH - 1, HEIGHT - 1) ^ 1);
+        assertThat(PXCContainer.hashPixels(img)).isNotEqualTo(hash);
+    }
+
+    @Test
+    void tempFilesAreRemoved() throws IOException {
+        PXCFormat.write(comp, tempDir.resolve("clean.pxc").toFile());
+
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(tempDir.resolve("clean.pxc"));
+        }
+    }
+
+    private static void assertSamePixels(Composition actual, Composition expected) {
+        assertThat(actual.getNumLayers()).isEqualTo(expected.getNumLayers());
+        for (int i = 0; i < expected.getNumLayers(); i++) {
+            assertThat(getPixels(getImage(actual, i)))
+                .as("layer " + i)
+                .isEqualTo(getPixels(getImage(expected, i)));
+        }
+    }
+
+    private static BufferedImage getImage(Composition comp, int layerIndex) {
+        return ((ImageLayer) comp.getLayer(layerIndex)).getImage();
+    }
+
+    // opaque, because the premultiplied layer images
+    // can't be restored exactly from semi-transparent PNG pixels
+    private static BufferedImage createRandomImage(Random rand) {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, TYPE_INT_ARGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, 0xFF_00_00_00 | rand.nextInt());
+            }
+        }
+        return img;
+    }
+
+    private static int[] getPixels(BufferedImage img) {
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.utils.ProgressTracker;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ParallelPNGEncoder tests")
+class ParallelPNGEncoderTest {
+    @Test
+    void sameBytesInOriginalOrder() throws IOException {
+        Random rand = new Random(3);
+        List<BufferedImage> images = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // every third image is written by the caller
+            images.add(i % 3 == 1 ? null : createRandomImage(rand, 20 + i, 30 - i));
+        }
+
+        try (var encoder = new ParallelPNGEncoder(images)) {
+            for (BufferedImage image : images) {
+                byte[] encoded = encoder.next();
+                if (image == null) {
+                    assertThat(encoded).isNull();
+                } else {
+                    assertThat(encoded).isEqualTo(encodeDirectly(image));
+                    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+                    assertThat(decoded.getWidth()).isEqualTo(image.getWidth());
+                    assertThat(decoded.getRGB(5, 7)).isEqualTo(image.getRGB(5, 7));
+                }
+            }
+            assertThatThrownBy(encoder::next).isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    private static byte[] encodeDirectly(BufferedImage image) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        TrackedIO.writeToStream(image, bytes, "PNG", ProgressTracker.NULL_TRACKER);
+        return bytes.toByteArray();
+    }
+
+    private static BufferedImage createRandomImage(Random rand, int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, rand.nextInt());
+            }
+        }
+        return img;
+    }
+}
@@ -20,8 +20,20 @@ package pixelitor.layers;
 import org.junit.jupiter.api.*;
 import pixelitor.Composition;
 import pixelitor.TestHelper;
+import pixelitor.filters.Invert;
+import pixelitor.gui.View;
+import pixelitor.tools.util.PRectangle;
+import pixelitor.utils.ImageUtils;
 import pixelitor.utils.MockFilter;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 @DisplayName("Adjustment layer tests")
 @TestMethodOrder(MethodOrderer.Random.class)
 class AdjustmentLayerTest {
@@ -56,6 +68,75 @@ class AdjustmentLayerTest {
         checkFilterRuns(1);
     }
 
+    @Test
+    void outputIsReusedWhenOnlyLayersAboveChange() {
+        // a filter that doesn't return its source, so that its output is cached
+        MockFilter copyingFilter = new MockFilter("Copying Filter") {
+            @Override
+            protected BufferedImage transform(BufferedImage src, BufferedImage dest) {
+                super.transform(src, dest);
+                return ImageUtils.copyImage(src);
+            }
+        };
+        Composition comp = layer.getComp();
+        View view = comp.getView();
+        ImageLayer below = (ImageLayer) comp.getLayer(0);
+        comp.deleteLayer(layer, false);
+        comp.addLayerWithoutUI(new AdjustmentLayer(comp, "copying", copyingFilter));
+        ImageLayer above = TestHelper.createEmptyImageLayer(comp, "above");
+        comp.addLayerWithoutUI(above);
+
+        comp.getCompositeImage();
+        int runs = copyingFilter.getNumTransformCalls();
+
+        // painting on the layer above doesn't change the filter's input
+        above.repaintRegion(PRectangle.fromIm(0, 0, 2, 2, view));
+        comp.getCompositeImage();
+        assertThat(copyingFilter.getNumTransformCalls()).isEqualTo(runs);
+
+        // painting on the layer below does
+        below.repaintRegion(PRectangle.fromIm(0, 0, 2, 2, view));
+        comp.getCompositeImage();
+        assertThat(copyingFilter.getNumTransformCalls()).isEqualTo(runs + 1);
+
+        // and so does any other update
+        comp.update();
+        comp.getCompositeImage();
+        assertThat(copyingFilter.getNumTransformCalls()).isEqualTo(runs + 2);
+    }
+
+    @Test
+    void groupRecalculationDoesNotKeepStaleOutput() {
+        Composition comp = Composition.fromImage(
+            TestHelper.create1x1Image(Color.BLUE), null, "groupRecalculation");
+        TestHelper.setupMockViewFor(comp);
+
+        ImageLayer below = TestHelper.createImageLayer(
+            comp, TestHelper.create1x1Image(Color.BLUE), "below");
+        var invert = new AdjustmentLayer(comp, "invert", new Invert());
+        var group = new LayerGroup(comp, "group", new ArrayList<>(List.of(below, invert)));
+        group.createUI();
+        comp.addLayerWithoutUI(group);
+        group.setBlendingMode(BlendingMode.NORMAL, false, true); // isolated
+        assertThat(compositeRGB(comp)).isEqualTo(0xFF_FF_FF_00);
+
+        // recalculated lazily, like after a move
+        group.invalidateImageCache();
+        assertThat(compositeRGB(comp)).isEqualTo(0xFF_FF_FF_00);
+
+        Graphics2D g = below.getImage().createGraphics();
+        g.setColor(Color.GREEN);
+        g.fillRect(0, 0, 1, 1);
+        g.dispose();
+        below.update();
+
+        assertThat(compositeRGB(comp)).isEqualTo(0xFF_FF_00_FF);
+    }
+
+    private static int compositeRGB(Composition comp) {
+        return comp.getCompositeImage().getRGB(0, 0);
+    }
+
     private void checkFilterRuns(int expected) {
         // once it was run during setup
         int actual = filter.getNumTransformCalls() - 1;
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pixelitor.TestHelper;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_4BYTE_ABGR;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.params.provider.EnumSource.Mode.EXCLUDE;
+
+/**
+ * Checks that the packed-int, multithreaded compositing of the
+ * blending modes gives the same result as the generic code path.
+ */
+@DisplayName("Blending mode composite tests")
+class BlendingModeCompositeTest {
+    // large enough to be composited in parallel bands
+    private static final int SIZE = 300;
+
+    private static final float[] OPACITIES = {1.0f, 0.73f, 0.0f};
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = BlendingMode.class, mode = EXCLUDE, names = {"PASS_THROUGH", "NORMAL"})
+    void packedMatchesGeneric(BlendingMode mode) {
+        Random rand = new Random(mode.ordinal());
+        int[] srcPixels = createPixels(rand);
+        int[] dstPixels = createPixels(rand);
+
+        for (float opacity : OPACITIES) {
+            // the TYPE_INT_ARGB images are composited as packed ints
+            BufferedImage packed = createImage(TYPE_INT_ARGB, dstPixels);
+            composite(packed, createImage(TYPE_INT_ARGB, srcPixels), mode, opacity);
+
+            BufferedImage generic = createImage(TYPE_4BYTE_ABGR, dstPixels);
+            composite(generic, createImage(TYPE_4BYTE_ABGR, srcPixels), mode, opacity);
+
+            int[] packedResult = packed.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+            int[] genericResult = generic.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+            assertThat(packedResult).as("opacity = " + opacity).isEqualTo(genericResult);
+        }
+    }
+
+    private static int[] createPixels(Random rand) {
+        int[] pixels = new int[SIZE * SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            int alpha = switch (rand.nextInt(4)) {
+                case 0 -> 0;
+                case 1 -> 255;
+                default -> rand.nextInt(256);
+            };
+            // a few repeated colors exercise the memoization of the HSB modes
+            int rgb = rand.nextInt(3) == 0 ? 0x80_40_C0 : rand.nextInt(0x1_00_00_00);
+            pixels[i] = alpha << 24 | rgb;
+        }
+        return pixels;
+    }
+
+    private static BufferedImage createImage(int type, int[] pixels) {
+        BufferedImage img = new BufferedImage(SIZE, SIZE, type);
+        img.setRGB(0, 0, SIZE, SIZE, pixels, 0, SIZE);
+        return img;
+    }
+
+    private static void composite(BufferedImage dst, BufferedImage src,
+                                  BlendingMode mode, float opacity) {
+        Graphics2D g = dst.createGraphics();
+        g.setComposite(mode.getComposite(opacity));
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.layers;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.Composition;
+import pixelitor.TestHelper;
+import pixelitor.gui.View;
+import pixelitor.tools.move.MoveMode;
+import pixelitor.tools.util.PRectangle;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static pixelitor.Composition.fromImage;
+import static pixelitor.TestHelper.create1x1Image;
+
+@DisplayName("Masked layer cache tests")
+class MaskedLayerCacheTest {
+    private static final int LOWER_RGB = 0xFF_00_00_FF;
+    private static final int UPPER_RGB = 0xFF_FF_00_00;
+
+    private Composition comp;
+    private View view;
+    private ImageLayer upperLayer;
+
+    @BeforeAll
+    static void beforeAllTests() {
+        TestHelper.setUnitTestingMode();
+    }
+
+    @BeforeEach
+    void beforeEachTest() {
+        comp = fromImage(create1x1Image(new Color(LOWER_RGB)), null, "MaskedLayerCacheTest");
+        view = TestHelper.setupMockViewFor(comp);
+
+        upperLayer = TestHelper.createImageLayer(
+            comp, create1x1Image(new Color(UPPER_RGB)), "upper");
+        comp.addLayerWithoutUI(upperLayer);
+        upperLayer.addMask(LayerMaskAddType.HIDE_ALL);
+    }
+
+    @Test
+    void maskPaintedInPlace() {
+        assertThat(compositeRGB()).isEqualTo(LOWER_RGB);
+
+        // paint the mask white as a brush would do it
+        fill(upperLayer.getMask().getImage(), Color.WHITE);
+        comp.repaintRegion(PRectangle.fromIm(0, 0, 1, 1, view));
+
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+    }
+
+    @Test
+    void layerChangedInPlace() {
+        upperLayer.getMask().setImage(createWhiteMaskImage());
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+
+        fill(upperLayer.getImage(), Color.GREEN);
+        upperLayer.update();
+
+        assertThat(compositeRGB()).isEqualTo(Color.GREEN.getRGB());
+    }
+
+    @Test
+    void otherLayerChangesKeepTheCache() {
+        ImageLayer nested = createNestedMaskedLayer();
+        LayerGroup group = (LayerGroup) nested.getHolder();
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+        long nestedVersion = nested.getPixelsVersion();
+        long groupVersion = group.getPixelsVersion();
+
+        ImageLayer lower = (ImageLayer) comp.getLayer(0);
+        fill(lower.getImage(), Color.GREEN);
+        lower.update();
+        assertThat(nested.getPixelsVersion()).isEqualTo(nestedVersion);
+        assertThat(group.getPixelsVersion()).isEqualTo(groupVersion);
+
+        // a change of the nested layer changes it and its group
+        long lowerVersion = lower.getPixelsVersion();
+        nested.update();
+        assertThat(nested.getPixelsVersion()).isGreaterThan(nestedVersion);
+        assertThat(group.getPixelsVersion()).isGreaterThan(groupVersion);
+        assertThat(lower.getPixelsVersion()).isEqualTo(lowerVersion);
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+    }
+
+    @Test
+    void propertyChangesKeepTheContent() {
+        upperLayer.getMask().setImage(createWhiteMaskImage());
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+
+        upperLayer.setOpacity(0.0f, false, true);
+        assertThat(compositeRGB()).isEqualTo(LOWER_RGB);
+
+        upperLayer.setOpacity(1.0f, false, true);
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+
+        upperLayer.setVisible(false, false, true);
+        upperLayer.setVisible(true, false, true);
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+    }
+
+    @Test
+    void nestedPropertyChanges() {
+        ImageLayer nested = createNestedMaskedLayer();
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+
+        nested.setOpacity(0.0f, false, true);
+        assertThat(compositeRGB()).isEqualTo(LOWER_RGB);
+
+        nested.setOpacity(1.0f, false, true);
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+
+        nested.setVisible(false, false, true);
+        assertThat(compositeRGB()).isEqualTo(LOWER_RGB);
+    }
+
+    @Test
+    void movingNestedLayer() {
+        ImageLayer nested = createNestedMaskedLayer();
+        assertThat(compositeRGB()).isEqualTo(UPPER_RGB);
+
+        nested.activate();
+        comp.prepareMovement(MoveMode.MOVE_LAYER_ONLY, false);
+        comp.moveActiveContent(MoveMode.MOVE_LAYER_ONLY, 1, 0);
+
+        assertThat(compositeRGB()).isEqualTo(LOWER_RGB);
+    }
+
+    // adds a masked layer within an isolated group instead of the upper layer
+    private ImageLayer createNestedMaskedLayer() {
+        comp.deleteLayer(upperLayer, false);
+
+        ImageLayer nested = TestHelper.createImageLayer(
+            comp, create1x1Image(new Color(UPPER_RGB)), "nested");
+        nested.addMask(LayerMaskAddType.REVEAL_ALL);
+        var group = new LayerGroup(comp, "group", new ArrayList<>(List.of(nested)));
+        group.createUI();
+        comp.addLayerWithoutUI(group);
+        group.setBlendingMode(BlendingMode.NORMAL, false, true);
+        return nested;
+    }
+
+    private int compositeRGB() {
+        return comp.getCompositeImage().getRGB(0, 0);
+    }
+
+    private static BufferedImage createWhiteMaskImage() {
+        var img = new BufferedImage(1, 1, TYPE_BYTE_GRAY);
+        fill(img, Color.WHITE);
+        return img;
+    }
+
+    private static void fill(BufferedImage img, Color color) {
+        var g = img.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, img.getWidth(), img.getHeight());
+        g.dispose();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("FloodFill tests")
+class FloodFillTest {
+    private static final int W = 0xFF_FF_FF_FF;
+    private static final int B = 0xFF_00_00_00;
+    private static final int G = 0xFF_05_05_05; // similar to black
+
+    // a black ring with a white inside and outside
+    private static final int[] RING = {
+        W, W, W, W, W, W,
+        W, B, B, B, B, W,
+        W, B, W, W, G, W,
+        W, B, W, W, B, W,
+        W, B, B, B, B, W,
+        W, W, W, W, W, W,
+    };
+    private static final int SIZE = 6;
+
+    @Test
+    void fillsOnlyTheContiguousRegion() {
+        FloodFill fill = FloodFill.run(RING, SIZE, SIZE, 2, 2, W, 0);
+
+        assertThat(fill.getBounds()).isEqualTo(new Rectangle(2, 2, 2, 2));
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                boolean inside = x >= 2 && x <= 3 && y >= 2 && y <= 3;
+                assertThat(fill.isFilled(x, y)).as("(%d, %d)", x, y).isEqualTo(inside);
+            }
+        }
+    }
+
+    @Test
+    void respectsTolerance() {
+        FloodFill exact = FloodFill.run(RING, SIZE, SIZE, 1, 1, B, 0);
+        assertThat(exact.isFilled(4, 2)).isFalse();
+        assertThat(exact.isFilled(4, 3)).isTrue(); // reached around the gray pixel
+
+        FloodFill tolerant = FloodFill.run(RING, SIZE, SIZE, 1, 1, B, 10);
+        assertThat(tolerant.isFilled(4, 2)).isTrue();
+    }
+
+    @Test
+    void fillsAroundObstacles() {
+        // the outer white region is connected around the ring
+        FloodFill fill = FloodFill.run(RING, SIZE, SIZE, 0, 0, W, 0);
+
+        assertThat(fill.getBounds()).isEqualTo(new Rectangle(0, 0, SIZE, SIZE));
+        assertThat(fill.isFilled(5, 5)).isTrue();
+        assertThat(fill.isFilled(2, 2)).isFalse();
+    }
+
+    @Test
+    void fillPixels() {
+        int[] pixels = RING.clone();
+        FloodFill.run(pixels, SIZE, SIZE, 2, 2, W, 0).fillPixels(pixels, B);
+
+        assertThat(pixels[2 + 2 * SIZE]).isEqualTo(B);
+        assertThat(pixels[3 + 3 * SIZE]).isEqualTo(B);
+        assertThat(pixels[0]).isEqualTo(W);
+    }
+
+    @Test
+    void areaMatchesFilledPixels() {
+        FloodFill fill = FloodFill.run(RING, SIZE, SIZE, 0, 0, W, 0);
+        Area area = fill.toArea(10, 20);
+
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                boolean inArea = area.contains(x + 10.5, y + 20.5);
+                assertThat(inArea).as("(%d, %d)", x, y).isEqualTo(fill.isFilled(x, y));
+            }
+        }
+    }
+
+    @Test
+    void emptyAreaForEmptyFill() {
+        // the start pixel isn't similar to the target color
+        FloodFill fill = FloodFill.run(RING, SIZE, SIZE, 0, 0, B, 0);
+
+        assertThat(fill.isEmpty()).isTrue();
+        assertThat(fill.getBounds()).isNull();
+        assertThat(fill.toArea(0, 0).isEmpty()).isTrue();
+    }
+}
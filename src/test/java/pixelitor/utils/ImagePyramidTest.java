@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ImagePyramid tests")
+class ImagePyramidTest {
+    @Test
+    void choosesLevelForScale() {
+        BufferedImage base = new BufferedImage(301, 200, TYPE_INT_ARGB);
+        ImagePyramid pyramid = new ImagePyramid();
+
+        assertThat(pyramid.getImageForScale(base, 1.0)).isSameAs(base);
+        assertThat(pyramid.getImageForScale(base, 0.6)).isSameAs(base);
+
+        BufferedImage half = pyramid.getImageForScale(base, 0.5);
+        assertThat(half.getWidth()).isEqualTo(151);
+        assertThat(half.getHeight()).isEqualTo(100);
+
+        BufferedImage quarter = pyramid.getImageForScale(base, 0.2);
+        assertThat(quarter.getWidth()).isEqualTo(76);
+        assertThat(quarter.getHeight()).isEqualTo(50);
+
+        // the levels stop before getting too small
+        BufferedImage smallest = pyramid.getImageForScale(base, 0.001);
+        assertThat(smallest.getHeight()).isEqualTo(25);
+    }
+
+    @Test
+    void averagesWithAlphaWeights() {
+        BufferedImage base = new BufferedImage(64, 64, TYPE_INT_ARGB);
+        // each 2x2 block has one opaque red and three transparent pixels
+        for (int y = 0; y < 64; y += 2) {
+            for (int x = 0; x < 64; x += 2) {
+                base.setRGB(x, y, 0xFF_FF_00_00);
+            }
+        }
+
+        BufferedImage half = new ImagePyramid().getImageForScale(base, 0.5);
+
+        // transparent pixels don't affect the color
+        assertThat(half.getRGB(5, 7)).isEqualTo(0x40_FF_00_00);
+    }
+
+    @Test
+    void regionUpdateMatchesRebuild() {
+        BufferedImage base = createRandomImage(new Random(42), 333, 257);
+        ImagePyramid pyramid = new ImagePyramid();
+        pyramid.getImageForScale(base, 0.1); // builds all levels
+
+        Graphics2D g = base.createGraphics();
+        g.setColor(Color.GREEN);
+        Rectangle changed = new Rectangle(100, 41, 37, 23);
+        g.fill(changed);
+        g.dispose();
+        pyramid.invalidateRegion(changed);
+
+        ImagePyramid rebuilt = new ImagePyramid();
+        for (double scale = 0.5; scale > 0.01; scale /= 2) {
+            int[] updated = getPixels(pyramid.getImageForScale(base, scale));
+            int[] expected = getPixels(rebuilt.getImageForScale(base, scale));
+            assertThat(updated).as("scale = " + scale).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void rebuildsWhenSizeChanges() {
+        ImagePyramid pyramid = new ImagePyramid();
+        pyramid.getImageForScale(new BufferedImage(100, 100, TYPE_INT_ARGB), 0.5);
+
+        BufferedImage level = pyramid.getImageForScale(
+            new BufferedImage(200, 80, TYPE_INT_ARGB), 0.5);
+        assertThat(level.getWidth()).isEqualTo(100);
+        assertThat(level.getHeight()).isEqualTo(40);
+    }
+
+    private static BufferedImage createRandomImage(Random rand, int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, rand.nextInt());
+            }
+        }
+        return img;
+    }
+
+    private static int[] getPixels(BufferedImage img) {
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+    }
+}
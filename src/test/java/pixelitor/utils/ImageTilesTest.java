@@ -0,0 +1,201 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package pixelitor.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pixelitor.ThreadPool;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.awt.image.BufferedImage.TYPE_3BYTE_BGR;
+import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB_PRE;
+import static pixelitor.assertions.PixelitorAssertions.assertThat;
+
+@DisplayName("ImageTiles tests")
+class ImageTilesTest {
+    // not a multiple of the tile size, and big enough for parallel capturing
+    private static final int WIDTH = 700;
+    private static final int HEIGHT = 1100;
+
+    @Test
+    void roundTrip() {
+        BufferedImage img = createRandomImage(TYPE_INT_ARGB);
+
+        ImageTiles tiles = ImageTiles.capture(img, null);
+        BufferedImage restored = tiles.toImage();
+
+        assertThat(restored.getType()).isEqualTo(TYPE_INT_ARGB);
+        assertThat(restored).hasSamePixelsAs(img);
+    }
+
+    @Test
+    void roundTripPremultiplied() {
+        BufferedImage img = createRandomImage(TYPE_INT_ARGB_PRE);
+
+        BufferedImage restored = ImageTiles.capture(img, null).toImage();
+
+        assertThat(restored.getType()).isEqualTo(TYPE_INT_ARGB_PRE);
+        assertThat(restored).hasSamePixelsAs(img);
+    }
+
+    @Test
+    void unchangedTilesAreShared() {
+        BufferedImage img = createRandomImage(TYPE_INT_ARGB);
+        ImageTiles first = ImageTiles.capture(img, null);
+
+        // change a small area within a single tile
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(300, 300, 10, 10);
+        g.dispose();
+
+        ImageTiles second = ImageTiles.capture(img, first);
+
+        assertThat(second.countSharedTiles(first)).isEqualTo(first.getNumTiles() - 1);
+        assertThat(second.toImage()).hasSamePixelsAs(img);
+    }
+
+    @Test
+    void unreportedChangesAreCaptured() {
+        BufferedImage img = createRandomImage(TYPE_INT_ARGB);
+        ImageTiles first = ImageTiles.capture(img, null);
+
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(300, 300, 10, 10); // in the known changed area
+        g.fillRect(600, 1000, 10, 10); // not reported
+        g.dispose();
+
+        ImageTiles second = ImageTiles.capture(img, first, new Rectangle(290, 290, 30, 30));
+
+        assertThat(second.countSharedTiles(first)).isEqualTo(first.getNumTiles() - 2);
+        assertThat(second.toImage()).hasSamePixelsAs(img);
+    }
+
+    @Test
+    void captureFromPoolThread() throws Exception {
+        BufferedImage img = createRandomImage(TYPE_INT_ARGB);
+
+        // all pool threads capture at the same time, which must not deadlock
+        List<Future<ImageTiles>> futures = new ArrayList<>();
+        for (int i = 0; i < ThreadPool.NUM_CORES + 1; i++) {
+            futures.add(ThreadPool.submit2(() -> ImageTiles.capture(img, null)));
+        }
+        for (Future<ImageTiles> future : futures) {
+            assertThat(future.get(1, TimeUnit.MINUTES).toImage()).hasSamePixelsAs(img);
+        }
+    }
+
+    @Test
+    void differentSizeSharesNothing() {
+        ImageTiles first = ImageTiles.capture(createRandomImage(TYPE_INT_ARGB), null);
+        BufferedImage smaller = new BufferedImage(WIDTH / 2, HEIGHT, TYPE_INT_ARGB);
+
+        ImageTiles second = ImageTiles.capture(smaller, first);
+
+        assertThat(second.countSharedTiles(first)).isZero();
+        assertThat(second.toImage()).hasSamePixelsAs(smaller);
+    }
+
+    @Test
+    void roundTripGray() {
+        BufferedImage img = createRandomImage(TYPE_BYTE_GRAY);
+        BufferedImage subImage = img.getSubimage(10, 20, 600, 300);
+
+        BufferedImage restored = ImageTiles.capture(subImage, null).toImage();
+
+        assertThat(restored.getType()).isEqualTo(TYPE_BYTE_GRAY);
+        assertThat(restored).hasSamePixelsAs(subImage);
+    }
+
+    @Test
+    void survivesCompressionAndSpilling() {
+        BufferedImage img = createRandomImage(TYPE_INT_ARGB);
+        BufferedImage mask = createRandomImage(TYPE_BYTE_GRAY);
+        ImageTiles tiles = ImageTiles.capture(img, null);
+        ImageTiles maskTiles = ImageTiles.capture(mask, null);
+
+        long budget = TileStore.getMemoryBudget();
+        try {
+            // with zero budget all tiles are compressed and then spilled
+            TileStore.setMemoryBudget(0);
+            TileStore.trim();
+            assertThat(TileStore.getSpilledBytes()).isPositive();
+            assertThat(TileStore.getUncompressedBytes()).isZero();
+
+            assertThat(tiles.toImage()).hasSamePixelsAs(img);
+            assertThat(maskTiles.toImage()).hasSamePixelsAs(mask);
+
+            // the loaded tiles can be shared again
+            ImageTiles second = ImageTiles.capture(img, tiles);
+            assertThat(second.countSharedTiles(tiles)).isEqualTo(tiles.getNumTiles());
+        } finally {
+            TileStore.setMemoryBudget(budget);
+        }
+    }
+
+    @Test
+    void comparingDoesNotRestoreStoredTiles() {
+        BufferedImage img = createRandomImage(TYPE_INT_ARGB);
+        ImageTiles tiles = ImageTiles.capture(img, null);
+
+        long budget = TileStore.getMemoryBudget();
+        try {
+            TileStore.setMemoryBudget(0);
+            TileStore.trim();
+            assertThat(TileStore.getUncompressedBytes()).isZero();
+
+            // the unchanged tiles are shared after comparing
+            // them with temporary decompressed copies
+            ImageTiles second = ImageTiles.capture(img, tiles);
+            assertThat(second.countSharedTiles(tiles)).isEqualTo(tiles.getNumTiles());
+            assertThat(TileStore.getUncompressedBytes()).isZero();
+        } finally {
+            TileStore.setMemoryBudget(budget);
+        }
+    }
+
+    @Test
+    void canStore() {
+        assertThat(ImageTiles.canStore(new BufferedImage(2, 2, TYPE_INT_ARGB))).isTrue();
+        assertThat(ImageTiles.canStore(new BufferedImage(2, 2, TYPE_BYTE_GRAY))).isTrue();
+        assertThat(ImageTiles.canStore(new BufferedImage(2, 2, TYPE_3BYTE_BGR))).isFalse();
+    }
+
+    private static BufferedImage createRandomImage(int type) {
+        var img = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                img.setRGB(x, y, random.nextInt());
+            }
+        }
+        return img;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2025 Laszlo Balazs-Csiki and Contributors
+ *
+ * This file is part of Pixelitor. Pixelitor is free software: you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License, version 3 as published by the Free
+ * Software Foundation.
+ *
+ * Pixelitor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Pixelitor. If not, see <http://www.gnu.org/licenses/>.
+ */
+package pixelitor.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("RenderCache tests")
+class RenderCacheTest {
+    // the images have exactly one megabyte
+    private static final int IMAGE_SIZE = 512;
+
+    private int origBudgetMb;
+
+    @BeforeEach
+    void beforeEachTest() {
+        origBudgetMb = RenderCache.getMemoryBudgetMb();
+        RenderCache.clear();
+    }
+
+    @AfterEach
+    void afterEachTest() {
+        RenderCache.setMemoryBudgetMb(origBudgetMb);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        RenderCache.setMemoryBudgetMb(2);
+        var first = RenderCache.createEntry("test");
+        var second = RenderCache.createEntry("test");
+        var third = RenderCache.createEntry("test");
+
+        first.set(createImage());
+        second.set(createImage());
+        assertThat(first.get()).isNotNull();
+
+        third.set(createImage());
+
+        assertThat(second.isEmpty()).isTrue();
+        assertThat(first.isEmpty()).isFalse();
+        assertThat(third.isEmpty()).isFalse();
+        assertThat(RenderCache.getMemoryUsed()).isEqualTo(2L * MemoryInfo.NUM_BYTES_IN_MEGABYTE);
+        assertThat(RenderCache.getNumEvictions()).isEqualTo(1);
+
+        assertThat(second.get()).isNull();
+        assertThat(RenderCache.getNumHits()).isEqualTo(1);
+        assertThat(RenderCache.getNumMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsNewImageLargerThanBudget() {
+        RenderCache.setMemoryBudgetMb(0);
+        var entry = RenderCache.createEntry("test");
+
+        BufferedImage image = createImage();
+        entry.set(image);
+
+        assertThat(entry.get()).isSameAs(image);
+    }
+
+    @Test
+    void sharedImagesAreCountedOnce() {
+        var entry = RenderCache.createEntry("test");
+        var copy = RenderCache.createEntry("test");
+
+        BufferedImage image = createImage();
+        entry.set(image);
+        copy.set(entry.peek());
+        assertThat(RenderCache.getMemoryUsed()).isEqualTo(MemoryInfo.NUM_BYTES_IN_MEGABYTE);
+
+        entry.clear();
+        assertThat(RenderCache.getMemoryUsed()).isEqualTo(MemoryInfo.NUM_BYTES_IN_MEGABYTE);
+        assertThat(copy.get()).isSameAs(image);
+
+        copy.clear();
+        assertThat(RenderCache.getMemoryUsed()).isZero();
+    }
+
+    @Test
+    void lowerBudgetEvicts() {
+        var entry = RenderCache.createEntry("test");
+        entry.set(createImage());
+
+        RenderCache.setMemoryBudgetMb(0);
+
+        assertThat(entry.isEmpty()).isTrue();
+        assertThat(RenderCache.getMemoryUsed()).isZero();
+    }
+
+    private static BufferedImage createImage() {
+        return new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, TYPE_INT_ARGB);
+    }
+}